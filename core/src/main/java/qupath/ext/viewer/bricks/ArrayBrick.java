@@ -0,0 +1,76 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A brick whose voxels are stored in memory, channel after channel,
+ * then z-slice after z-slice, then row after row.
+ */
+public class ArrayBrick extends Brick {
+
+    private final ByteBuffer data;
+
+    /**
+     * Create a brick whose voxels are all 0.
+     * See {@link Brick#Brick(int, int, int, int, int, int, int, PixelType)} for the parameters.
+     */
+    public ArrayBrick(int x, int y, int z, int width, int height, int depth, int nChannels, PixelType pixelType) {
+        this(x, y, z, width, height, depth, nChannels, pixelType, ByteBuffer.allocate(width * height * depth * nChannels * pixelType.getBytesPerPixel()));
+    }
+
+    /**
+     * Create a brick from existing voxel values.
+     * See {@link Brick#Brick(int, int, int, int, int, int, int, PixelType)} for the other parameters.
+     *
+     * @param data  the values of the voxels, stored as described in {@link ArrayBrick}. The brick
+     *              takes ownership of the buffer, which shouldn't be modified afterwards
+     * @throws IllegalArgumentException when the size of the buffer doesn't match the size of the brick
+     */
+    public ArrayBrick(int x, int y, int z, int width, int height, int depth, int nChannels, PixelType pixelType, ByteBuffer data) {
+        super(x, y, z, width, height, depth, nChannels, pixelType);
+
+        if (data.capacity() != (long) width * height * depth * nChannels * pixelType.getBytesPerPixel()) {
+            throw new IllegalArgumentException(String.format(
+                    "Buffer of %d bytes cannot contain %dx%dx%dx%d voxels of type %s", data.capacity(), width, height, depth, nChannels, pixelType
+            ));
+        }
+        this.data = data;
+    }
+
+    @Override
+    public double getValue(int channel, int x, int y, int z) {
+        return readValue(data, getIndex(channel, x, y, z), getPixelType());
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return data.capacity();
+    }
+
+    /**
+     * @return a read-only view of the values of the voxels of this brick, stored as described in {@link ArrayBrick}
+     */
+    public ByteBuffer getData() {
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Set the value of a voxel. This should only be called while the brick is being filled,
+     * before being shared.
+     *
+     * @param channel  the channel of the voxel
+     * @param x  the x-coordinate of the voxel, relative to the first voxel of this brick
+     * @param y  the y-coordinate of the voxel, relative to the first voxel of this brick
+     * @param z  the z-coordinate of the voxel, relative to the first voxel of this brick
+     * @param value  the new value of the voxel
+     */
+    void setValue(int channel, int x, int y, int z, double value) {
+        writeValue(data, getIndex(channel, x, y, z), getPixelType(), value);
+    }
+
+    private int getIndex(int channel, int x, int y, int z) {
+        return ((channel * getDepth() + z) * getHeight() + y) * getWidth() + x;
+    }
+}
@@ -0,0 +1,157 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A 3D block of voxels of an image, at one resolution level and one time point.
+ * It contains all channels of the image.
+ */
+public abstract class Brick {
+
+    private final int x;
+    private final int y;
+    private final int z;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int nChannels;
+    private final PixelType pixelType;
+
+    /**
+     * Create a brick.
+     *
+     * @param x  the x-coordinate of the first voxel of the brick, in the coordinates of its resolution level
+     * @param y  the y-coordinate of the first voxel of the brick, in the coordinates of its resolution level
+     * @param z  the z-coordinate of the first voxel of the brick
+     * @param width  the number of voxels of the brick on the x-axis
+     * @param height  the number of voxels of the brick on the y-axis
+     * @param depth  the number of voxels of the brick on the z-axis
+     * @param nChannels  the number of channels of the brick
+     * @param pixelType  the type of the values of the voxels
+     */
+    protected Brick(int x, int y, int z, int width, int height, int depth, int nChannels, PixelType pixelType) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.nChannels = nChannels;
+        this.pixelType = pixelType;
+    }
+
+    /**
+     * Get the value of a voxel of this brick. The voxel must be inside this brick,
+     * otherwise the result is undefined or an exception is thrown.
+     *
+     * @param channel  the channel of the voxel
+     * @param x  the x-coordinate of the voxel, relative to the first voxel of this brick
+     * @param y  the y-coordinate of the voxel, relative to the first voxel of this brick
+     * @param z  the z-coordinate of the voxel, relative to the first voxel of this brick
+     * @return the value of the voxel
+     */
+    public abstract double getValue(int channel, int x, int y, int z);
+
+    /**
+     * @return the number of bytes of heap memory used by the voxels of this brick
+     */
+    public abstract long getSizeBytes();
+
+    /**
+     * @return the x-coordinate of the first voxel of this brick, in the coordinates of its resolution level
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return the y-coordinate of the first voxel of this brick, in the coordinates of its resolution level
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return the z-coordinate of the first voxel of this brick
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * @return the number of voxels of this brick on the x-axis
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the number of voxels of this brick on the y-axis
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of voxels of this brick on the z-axis
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the number of channels of this brick
+     */
+    public int nChannels() {
+        return nChannels;
+    }
+
+    /**
+     * @return the type of the values of the voxels of this brick
+     */
+    public PixelType getPixelType() {
+        return pixelType;
+    }
+
+    /**
+     * Read a value stored in a buffer.
+     *
+     * @param buffer  the buffer containing the value
+     * @param index  the index of the value in the buffer, in number of values (not bytes)
+     * @param pixelType  the type of the value
+     * @return the value, converted to double
+     */
+    protected static double readValue(ByteBuffer buffer, int index, PixelType pixelType) {
+        return switch (pixelType) {
+            case UINT8 -> buffer.get(index) & 0xFF;
+            case INT8 -> buffer.get(index);
+            case UINT16 -> buffer.getShort(index * 2) & 0xFFFF;
+            case INT16 -> buffer.getShort(index * 2);
+            case UINT32 -> buffer.getInt(index * 4) & 0xFFFFFFFFL;
+            case INT32 -> buffer.getInt(index * 4);
+            case FLOAT32 -> buffer.getFloat(index * 4);
+            case FLOAT64 -> buffer.getDouble(index * 8);
+        };
+    }
+
+    /**
+     * Write a value to a buffer.
+     *
+     * @param buffer  the buffer to write to
+     * @param index  the index of the value in the buffer, in number of values (not bytes)
+     * @param pixelType  the type of the value
+     * @param value  the value to write. It is cast to the provided type
+     */
+    protected static void writeValue(ByteBuffer buffer, int index, PixelType pixelType, double value) {
+        switch (pixelType) {
+            case UINT8, INT8 -> buffer.put(index, (byte) value);
+            case UINT16, INT16 -> buffer.putShort(index * 2, (short) value);
+            case UINT32 -> buffer.putInt(index * 4, (int) (long) value);
+            case INT32 -> buffer.putInt(index * 4, (int) value);
+            case FLOAT32 -> buffer.putFloat(index * 4, (float) value);
+            case FLOAT64 -> buffer.putDouble(index * 8, value);
+        }
+    }
+}
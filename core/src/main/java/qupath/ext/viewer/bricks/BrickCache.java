@@ -0,0 +1,314 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.ext.viewer.metrics.BrickReadEvent;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.SlicerPose;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>
+ *     An in-memory cache of bricks, limited by the number of bytes used by the stored bricks.
+ *     When the limit is reached, the least recently used bricks are discarded.
+ * </p>
+ * <p>
+ *     A {@link CompressedBrickCache} can be placed below this cache: evicted bricks are then
+ *     compressed into it, and bricks missing from this cache are first looked up there before being
+ *     loaded. Bricks being compressed can still be retrieved from this cache, so a brick is never
+ *     missing from both tiers while it moves from one to the other.
+ * </p>
+ * <p>
+ *     This class is thread-safe. If several threads request the same missing brick at the
+ *     same time, the brick is only loaded once.
+ * </p>
+ * <p>
+ *     Hits and misses are reported to {@link FrameMetrics} under the name {@link #METRICS_NAME},
+ *     and each access emits a {@link BrickReadEvent}.
+ * </p>
+ */
+public class BrickCache {
+
+    /**
+     * The name under which accesses to brick caches are reported to {@link FrameMetrics}
+     */
+    public static final String METRICS_NAME = "Bricks (memory)";
+    private static final double SHARED_CACHE_PROPORTION_OF_HEAP = 0.2;
+    private static final double SHARED_COMPRESSED_CACHE_PROPORTION_OF_HEAP = 0.1;
+    private static BrickCache sharedCache;
+    private final Map<BrickKey, Brick> bricks = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<BrickKey, Brick> bricksBeingCompressed = new HashMap<>();
+    private final Map<BrickKey, CompletableFuture<Brick>> pendingBricks = new ConcurrentHashMap<>();
+    private final long maximumSizeBytes;
+    private final CompressedBrickCache compressedCache;
+    private long sizeBytes = 0;
+
+    /**
+     * A function loading a brick that is not in the cache.
+     */
+    @FunctionalInterface
+    public interface BrickLoader {
+
+        /**
+         * @return the loaded brick
+         * @throws IOException when an error occurs while loading the brick
+         */
+        Brick load() throws IOException;
+    }
+
+    /**
+     * Create a cache without compressed cache below it.
+     *
+     * @param maximumSizeBytes  the maximum number of bytes the stored bricks can use
+     * @throws IllegalArgumentException when the maximum size is negative
+     */
+    public BrickCache(long maximumSizeBytes) {
+        this(maximumSizeBytes, null);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maximumSizeBytes  the maximum number of bytes the stored bricks can use
+     * @param compressedCache  the cache evicted bricks should be compressed into, or null to discard evicted bricks
+     * @throws IllegalArgumentException when the maximum size is negative
+     */
+    public BrickCache(long maximumSizeBytes, CompressedBrickCache compressedCache) {
+        if (maximumSizeBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size: " + maximumSizeBytes);
+        }
+
+        this.maximumSizeBytes = maximumSizeBytes;
+        this.compressedCache = compressedCache;
+    }
+
+    /**
+     * Get the cache shared by all viewers. By default, it can use up to 20% of the maximum heap size,
+     * and is followed by a compressed cache that can use up to 10% of the maximum heap size.
+     * The capacity gain and the mean decompression time of the compressed cache are reported as
+     * gauges of {@link FrameMetrics}.
+     *
+     * @return the cache shared by all viewers
+     */
+    public static synchronized BrickCache getShared() {
+        if (sharedCache == null) {
+            long maxMemory = Runtime.getRuntime().maxMemory();
+            setShared(new BrickCache(
+                    (long) (maxMemory * SHARED_CACHE_PROPORTION_OF_HEAP),
+                    new CompressedBrickCache((long) (maxMemory * SHARED_COMPRESSED_CACHE_PROPORTION_OF_HEAP))
+            ));
+        }
+        return sharedCache;
+    }
+
+    /**
+     * Replace the cache shared by all viewers, for example to change the split of memory
+     * between the decoded and the compressed tiers. Sources already created keep using the previous cache.
+     *
+     * @param cache  the new cache to share
+     */
+    public static synchronized void setShared(BrickCache cache) {
+        sharedCache = cache;
+
+        if (cache.compressedCache == null) {
+            FrameMetrics.unregisterGauge("Compression gain");
+            FrameMetrics.unregisterGauge("Decompression (us)");
+        } else {
+            FrameMetrics.registerGauge("Compression gain", () -> cache.compressedCache.getStatistics().capacityGain());
+            FrameMetrics.registerGauge("Decompression (us)", () -> cache.compressedCache.getStatistics().meanDecompressionMicros());
+        }
+    }
+
+    /**
+     * Get a brick from the cache, loading it if it's not present.
+     *
+     * @param key  the key of the brick
+     * @param loader  the function to call if the brick is not in the cache
+     * @return the brick corresponding to the key
+     * @throws IOException when an error occurs while loading the brick
+     */
+    public Brick get(BrickKey key, BrickLoader loader) throws IOException {
+        BrickReadEvent event = new BrickReadEvent();
+        event.begin();
+
+        Brick brick = getIfPresent(key);
+        boolean cacheHit = brick != null;
+        if (!cacheHit) {
+            brick = load(key, loader);
+        }
+        FrameMetrics.recordCacheAccess(METRICS_NAME, cacheHit);
+
+        if (event.shouldCommit()) {
+            event.poseId = SlicerPose.current();
+            event.image = key.sourceId();
+            event.level = key.level();
+            event.x = brick.getX();
+            event.y = brick.getY();
+            event.z = brick.getZ();
+            event.t = key.t();
+            event.bytes = brick.getSizeBytes();
+            event.cacheHit = cacheHit;
+            event.commit();
+        }
+        return brick;
+    }
+
+    /**
+     * Get a brick from the cache without loading it.
+     *
+     * @param key  the key of the brick
+     * @return the brick corresponding to the key, or null if it's not in the cache
+     */
+    public synchronized Brick getIfPresent(BrickKey key) {
+        Brick brick = bricks.get(key);
+        return brick == null ? bricksBeingCompressed.get(key) : brick;
+    }
+
+    /**
+     * Add a brick to the cache, replacing any brick with the same key.
+     * The bricks evicted to make room for it are compressed into the compressed cache if there is one.
+     *
+     * @param key  the key of the brick
+     * @param brick  the brick to add
+     */
+    public void put(BrickKey key, Brick brick) {
+        List<Map.Entry<BrickKey, Brick>> evictedBricks = new ArrayList<>();
+
+        synchronized (this) {
+            Brick previousBrick = bricks.put(key, brick);
+            if (previousBrick != null) {
+                sizeBytes -= previousBrick.getSizeBytes();
+            }
+            sizeBytes += brick.getSizeBytes();
+
+            Iterator<Map.Entry<BrickKey, Brick>> iterator = bricks.entrySet().iterator();
+            while (sizeBytes > maximumSizeBytes && iterator.hasNext()) {
+                Map.Entry<BrickKey, Brick> entry = iterator.next();
+                sizeBytes -= entry.getValue().getSizeBytes();
+                if (compressedCache != null) {
+                    evictedBricks.add(Map.entry(entry.getKey(), entry.getValue()));
+                    bricksBeingCompressed.put(entry.getKey(), entry.getValue());
+                }
+                iterator.remove();
+            }
+        }
+
+        // Compression is done outside the lock, as it is much slower than a lookup. Until it is done,
+        // the evicted bricks are found by getIfPresent()
+        for (Map.Entry<BrickKey, Brick> evictedBrick: evictedBricks) {
+            compressedCache.put(evictedBrick.getKey(), evictedBrick.getValue());
+
+            synchronized (this) {
+                bricksBeingCompressed.remove(evictedBrick.getKey(), evictedBrick.getValue());
+            }
+        }
+    }
+
+    /**
+     * Remove all bricks of an image from the cache.
+     *
+     * @param sourceId  the ID of the image whose bricks should be removed
+     */
+    public synchronized void invalidate(String sourceId) {
+        if (compressedCache != null) {
+            compressedCache.invalidate(sourceId);
+        }
+
+        Iterator<Map.Entry<BrickKey, Brick>> iterator = bricks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BrickKey, Brick> entry = iterator.next();
+            if (entry.getKey().sourceId() == null ? sourceId == null : entry.getKey().sourceId().equals(sourceId)) {
+                sizeBytes -= entry.getValue().getSizeBytes();
+                iterator.remove();
+            }
+        }
+        bricksBeingCompressed.keySet().removeIf(key -> key.sourceId() == null ? sourceId == null : key.sourceId().equals(sourceId));
+    }
+
+    /**
+     * Remove all bricks from the cache.
+     */
+    public synchronized void clear() {
+        if (compressedCache != null) {
+            compressedCache.clear();
+        }
+        bricks.clear();
+        bricksBeingCompressed.clear();
+        sizeBytes = 0;
+    }
+
+    /**
+     * @return the number of bytes used by the bricks currently in the cache
+     */
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * @return the maximum number of bytes the stored bricks can use
+     */
+    public long getMaximumSizeBytes() {
+        return maximumSizeBytes;
+    }
+
+    /**
+     * @return the cache evicted bricks are compressed into, or null if there is none
+     */
+    public CompressedBrickCache getCompressedCache() {
+        return compressedCache;
+    }
+
+    private Brick load(BrickKey key, BrickLoader loader) throws IOException {
+        CompletableFuture<Brick> future = new CompletableFuture<>();
+        CompletableFuture<Brick> pendingBrick = pendingBricks.putIfAbsent(key, future);
+
+        if (pendingBrick == null) {
+            try {
+                // The brick may have been added between the first lookup and the registration of the future
+                Brick brick = getIfPresent(key);
+                if (brick == null && compressedCache != null) {
+                    brick = compressedCache.remove(key);
+                    if (brick != null) {
+                        put(key, brick);
+                    }
+                }
+                if (brick == null) {
+                    brick = loader.load();
+                    put(key, brick);
+                }
+                future.complete(brick);
+                return brick;
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                pendingBricks.remove(key);
+            }
+        } else {
+            try {
+                return pendingBrick.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for brick " + key);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw new IOException(ioException);
+                } else if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                    throw new IOException(uncheckedIOException.getCause());
+                } else {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+    }
+}
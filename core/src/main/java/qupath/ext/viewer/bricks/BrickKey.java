@@ -0,0 +1,13 @@
+package qupath.ext.viewer.bricks;
+
+/**
+ * The identifier of a brick.
+ *
+ * @param sourceId  the ID of the image the brick belongs to
+ * @param level  the resolution level of the brick
+ * @param t  the time point of the brick
+ * @param x  the index of the brick on the x-axis of the brick grid
+ * @param y  the index of the brick on the y-axis of the brick grid
+ * @param z  the index of the brick on the z-axis of the brick grid
+ */
+public record BrickKey(String sourceId, int level, int t, int x, int y, int z) {}
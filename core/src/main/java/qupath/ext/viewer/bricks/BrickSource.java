@@ -0,0 +1,83 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * <p>
+ *     Something that provides the voxels of an image as bricks.
+ * </p>
+ * <p>
+ *     The bricks of a resolution level and time point form a regular grid: the brick
+ *     of index (x, y, z) starts at the voxel (x * brickWidth, y * brickHeight, z * brickDepth)
+ *     of the level. Bricks on the border of the image can be smaller than the grid size.
+ * </p>
+ */
+public interface BrickSource {
+
+    /**
+     * @return the image whose voxels are provided by this source
+     */
+    ImageServer<BufferedImage> getServer();
+
+    /**
+     * @return the number of voxels of the bricks of the grid on the x-axis
+     */
+    int getBrickWidth();
+
+    /**
+     * @return the number of voxels of the bricks of the grid on the y-axis
+     */
+    int getBrickHeight();
+
+    /**
+     * @return the number of voxels of the bricks of the grid on the z-axis
+     */
+    int getBrickDepth();
+
+    /**
+     * Get a brick of the image. This function may be called from any thread.
+     *
+     * @param level  the resolution level of the brick
+     * @param t  the time point of the brick
+     * @param x  the index of the brick on the x-axis of the grid
+     * @param y  the index of the brick on the y-axis of the grid
+     * @param z  the index of the brick on the z-axis of the grid
+     * @return the brick at the provided position
+     * @throws IOException when an error occurs while reading the image
+     * @throws IllegalArgumentException when the brick is outside the image
+     */
+    Brick getBrick(int level, int t, int x, int y, int z) throws IOException;
+
+    /**
+     * Get the summary of a brick of the image, if it is already known. This doesn't read
+     * the image, so it can be used to decide whether a brick needs to be read at all.
+     * This function may be called from any thread.
+     * See {@link #getBrick(int, int, int, int, int)} for the parameters.
+     *
+     * @return the summary of the brick, or null if it's not known. The default implementation always returns null
+     */
+    default BrickSummary getSummary(int level, int t, int x, int y, int z) {
+        return null;
+    }
+
+    /**
+     * Get a source providing the voxels of an image. If the image already
+     * provides bricks (for example if its pixels are memory-mapped), the image itself is
+     * returned. Otherwise, bricks are read from the image and stored in the
+     * {@link BrickCache#getShared() shared brick cache}, and in the
+     * {@link DiskBrickCache#acquireShared() shared disk cache} if there is one.
+     *
+     * @param server  the image to read
+     * @return a source providing the voxels of the image
+     */
+    static BrickSource create(ImageServer<BufferedImage> server) {
+        if (server instanceof BrickSource brickSource) {
+            return brickSource;
+        } else {
+            return CachedBrickSource.createWithSharedDiskCache(new ServerBrickSource(server), BrickCache.getShared());
+        }
+    }
+}
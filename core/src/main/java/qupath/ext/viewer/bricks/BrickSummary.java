@@ -0,0 +1,104 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.util.Arrays;
+
+/**
+ * Statistics on the voxels of a brick, for each channel. They can be used to skip reading
+ * bricks whose voxels all have the same value (typically the background of an image), or
+ * bricks whose values are not visible with the current display settings.
+ *
+ * @param pixelType  the type of the values of the voxels of the brick
+ * @param min  the minimum value of each channel of the brick
+ * @param max  the maximum value of each channel of the brick
+ * @param mean  the mean value of each channel of the brick
+ */
+public record BrickSummary(PixelType pixelType, double[] min, double[] max, double[] mean) {
+
+    /**
+     * Create the summary.
+     *
+     * @throws IllegalArgumentException when the min, max, and mean arrays don't have the same length
+     */
+    public BrickSummary {
+        if (min.length != max.length || min.length != mean.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Different number of channels in min (%d), max (%d), and mean (%d)", min.length, max.length, mean.length
+            ));
+        }
+    }
+
+    /**
+     * Compute the summary of a brick. This reads all voxels of the brick.
+     *
+     * @param brick  the brick to summarize
+     * @return the summary of the brick
+     */
+    public static BrickSummary of(Brick brick) {
+        double[] min = new double[brick.nChannels()];
+        double[] max = new double[brick.nChannels()];
+        double[] mean = new double[brick.nChannels()];
+        long numberOfVoxels = (long) brick.getWidth() * brick.getHeight() * brick.getDepth();
+
+        for (int c=0; c<brick.nChannels(); c++) {
+            double channelMin = Double.POSITIVE_INFINITY;
+            double channelMax = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+
+            for (int z=0; z<brick.getDepth(); z++) {
+                for (int y=0; y<brick.getHeight(); y++) {
+                    for (int x=0; x<brick.getWidth(); x++) {
+                        double value = brick.getValue(c, x, y, z);
+                        channelMin = Math.min(channelMin, value);
+                        channelMax = Math.max(channelMax, value);
+                        sum += value;
+                    }
+                }
+            }
+
+            min[c] = numberOfVoxels == 0 ? 0 : channelMin;
+            max[c] = numberOfVoxels == 0 ? 0 : channelMax;
+            mean[c] = numberOfVoxels == 0 ? 0 : sum / numberOfVoxels;
+        }
+
+        return new BrickSummary(brick.getPixelType(), min, max, mean);
+    }
+
+    /**
+     * @return the number of channels of the brick
+     */
+    public int nChannels() {
+        return min.length;
+    }
+
+    /**
+     * @return whether all voxels of the brick have the same value in each channel
+     */
+    public boolean isConstant() {
+        // Arrays.equals() considers NaN equal to NaN, which is desired here
+        return Arrays.equals(min, max);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BrickSummary summary &&
+                pixelType == summary.pixelType &&
+                Arrays.equals(min, summary.min) &&
+                Arrays.equals(max, summary.max) &&
+                Arrays.equals(mean, summary.mean);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * pixelType.hashCode() + Arrays.hashCode(min)) + Arrays.hashCode(max)) + Arrays.hashCode(mean);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "BrickSummary[pixelType=%s, min=%s, max=%s, mean=%s]",
+                pixelType, Arrays.toString(min), Arrays.toString(max), Arrays.toString(mean)
+        );
+    }
+}
@@ -0,0 +1,221 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ *     The {@link BrickSummary summaries} of the bricks that have been read so far.
+ *     Summaries are much smaller than bricks, so they are never evicted: once a brick has been
+ *     read, it is known whether it can be skipped, even if its voxels are not cached anymore.
+ * </p>
+ * <p>
+ *     An index can be kept in memory only, or persisted in a file. In the latter case,
+ *     summaries are appended to the file as they are added, and the file is compacted when opened.
+ *     Summaries partially written (for example if the application was stopped while writing them)
+ *     are discarded.
+ * </p>
+ * <p>
+ *     Summaries of images without ID are not stored. This class is thread-safe.
+ * </p>
+ */
+public class BrickSummaryIndex implements Closeable {
+
+    private static final int MAGIC_NUMBER = 0x51564253;
+    private static final int VERSION = 1;
+    private static BrickSummaryIndex sharedIndex;
+    private final Map<BrickKey, BrickSummary> summaries = new ConcurrentHashMap<>();
+    private final Path file;
+    private DataOutputStream outputStream;
+
+    /**
+     * Create an index kept in memory only.
+     */
+    public BrickSummaryIndex() {
+        this.file = null;
+    }
+
+    /**
+     * Open an index persisted in a file, or create it if it doesn't exist.
+     * If the file is not a valid index, it is replaced by an empty index.
+     *
+     * @param file  the file containing the index
+     * @throws IOException when the file cannot be read or written
+     */
+    public BrickSummaryIndex(Path file) throws IOException {
+        this.file = file;
+
+        if (Files.exists(file)) {
+            read();
+        }
+        write();
+    }
+
+    /**
+     * @return an index kept in memory, shared by the sources that don't use any {@link DiskBrickCache}
+     */
+    public static synchronized BrickSummaryIndex getShared() {
+        if (sharedIndex == null) {
+            sharedIndex = new BrickSummaryIndex();
+        }
+        return sharedIndex;
+    }
+
+    /**
+     * Get the summary of a brick.
+     *
+     * @param key  the key of the brick
+     * @return the summary of the brick, or null if it's not known
+     */
+    public BrickSummary get(BrickKey key) {
+        return summaries.get(key);
+    }
+
+    /**
+     * Add the summary of a brick, replacing any summary with the same key.
+     *
+     * @param key  the key of the brick
+     * @param summary  the summary of the brick
+     * @throws IOException when an error occurs while writing the summary to the file of this index.
+     * The summary is still added to the memory
+     */
+    public void put(BrickKey key, BrickSummary summary) throws IOException {
+        if (key.sourceId() == null) {
+            return;
+        }
+
+        summaries.put(key, summary);
+        if (file != null) {
+            synchronized (this) {
+                if (outputStream != null) {
+                    writeSummary(outputStream, key, summary);
+                    outputStream.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all summaries of an image.
+     *
+     * @param sourceId  the ID of the image whose summaries should be removed
+     * @throws IOException when an error occurs while rewriting the file of this index
+     */
+    public synchronized void invalidate(String sourceId) throws IOException {
+        if (summaries.keySet().removeIf(key -> sourceId.equals(key.sourceId())) && file != null) {
+            write();
+        }
+    }
+
+    /**
+     * Remove all summaries.
+     *
+     * @throws IOException when an error occurs while rewriting the file of this index
+     */
+    public synchronized void clear() throws IOException {
+        summaries.clear();
+        if (file != null) {
+            write();
+        }
+    }
+
+    /**
+     * @return the number of summaries of this index
+     */
+    public int size() {
+        return summaries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (outputStream != null) {
+            outputStream.close();
+            outputStream = null;
+        }
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (inputStream.readInt() != MAGIC_NUMBER || inputStream.readInt() != VERSION) {
+                return;
+            }
+
+            while (true) {
+                BrickKey key = new BrickKey(
+                        inputStream.readUTF(),
+                        inputStream.readInt(),
+                        inputStream.readInt(),
+                        inputStream.readInt(),
+                        inputStream.readInt(),
+                        inputStream.readInt()
+                );
+                int pixelTypeIndex = inputStream.readByte();
+                int nChannels = inputStream.readInt();
+                if (pixelTypeIndex < 0 || pixelTypeIndex >= PixelType.values().length || nChannels < 0) {
+                    return;
+                }
+
+                double[] min = new double[nChannels];
+                double[] max = new double[nChannels];
+                double[] mean = new double[nChannels];
+                for (int c=0; c<nChannels; c++) {
+                    min[c] = inputStream.readDouble();
+                    max[c] = inputStream.readDouble();
+                    mean[c] = inputStream.readDouble();
+                }
+
+                summaries.put(key, new BrickSummary(PixelType.values()[pixelTypeIndex], min, max, mean));
+            }
+        } catch (EOFException e) {
+            // End of the file, possibly in the middle of a partially written summary
+        }
+    }
+
+    /**
+     * Write all summaries to a new file replacing the current one, and open it for appending.
+     */
+    private void write() throws IOException {
+        close();
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream temporaryOutputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            temporaryOutputStream.writeInt(MAGIC_NUMBER);
+            temporaryOutputStream.writeInt(VERSION);
+            for (Map.Entry<BrickKey, BrickSummary> entry: summaries.entrySet()) {
+                writeSummary(temporaryOutputStream, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+    }
+
+    private static void writeSummary(DataOutputStream outputStream, BrickKey key, BrickSummary summary) throws IOException {
+        outputStream.writeUTF(key.sourceId());
+        outputStream.writeInt(key.level());
+        outputStream.writeInt(key.t());
+        outputStream.writeInt(key.x());
+        outputStream.writeInt(key.y());
+        outputStream.writeInt(key.z());
+        outputStream.writeByte(summary.pixelType().ordinal());
+        outputStream.writeInt(summary.nChannels());
+        for (int c=0; c<summary.nChannels(); c++) {
+            outputStream.writeDouble(summary.min()[c]);
+            outputStream.writeDouble(summary.max()[c]);
+            outputStream.writeDouble(summary.mean()[c]);
+        }
+    }
+}
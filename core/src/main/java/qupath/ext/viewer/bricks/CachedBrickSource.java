@@ -0,0 +1,295 @@
+package qupath.ext.viewer.bricks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.ImageServerMetadata;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A brick source that stores the bricks provided by another source in a {@link BrickCache}
+ * and optionally in a {@link DiskBrickCache}. Bricks missing from the in-memory cache are
+ * first looked up in the disk cache, and only then read from the other source.
+ * Errors of the disk cache are logged and otherwise ignored.
+ * <p>
+ * The disk cache is either given when creating the source, or is the {@link DiskBrickCache#acquireShared()
+ * shared disk cache}, which is then looked up on each access so that the source follows changes of the
+ * shared cache.
+ * <p>
+ * The {@link BrickSummary summary} of each brick is computed when the brick is first read, and stored
+ * in the {@link DiskBrickCache#getSummaryIndex() summary index of the disk cache} (or in the
+ * {@link BrickSummaryIndex#getShared() shared in-memory index}, or the index given when creating the
+ * source, if there is no disk cache). Bricks
+ * known to be constant are then returned as {@link ConstantBrick ConstantBricks}, without reading
+ * or caching any voxel. The proportion of requested bricks that are constant is reported to
+ * {@link FrameMetrics} under the name {@link #CONSTANT_BRICKS_METRICS_NAME}.
+ * <p>
+ * Bricks are identified by the {@link ImageServer#getPath() path} of the image. Images without path
+ * are given an ID unique to this source instead, so they never share bricks with other images. Their
+ * bricks are not stored in the disk cache, and their summaries are kept by this source only.
+ */
+public class CachedBrickSource implements BrickSource {
+
+    /**
+     * The name under which the proportion of requested bricks that are constant (and therefore
+     * not read) is reported to {@link FrameMetrics}
+     */
+    public static final String CONSTANT_BRICKS_METRICS_NAME = "Bricks (constant)";
+    private static final Logger logger = LoggerFactory.getLogger(CachedBrickSource.class);
+    private static final String UNNAMED_SOURCE_PREFIX = "unnamed-";
+    private final BrickSource source;
+    private final String sourceId;
+    private final BrickCache cache;
+    private final DiskBrickCache diskCache;
+    private final boolean useSharedDiskCache;
+    private final BrickSummaryIndex summaryIndexWithoutDiskCache;
+    private DiskBrickCache checkedSharedDiskCache;
+    private boolean checkedSharedDiskCacheValid;
+
+    /**
+     * Create the cached brick source without disk cache.
+     *
+     * @param source  the source providing the bricks to cache
+     * @param cache  the cache to store the bricks in. It can be shared with other sources
+     */
+    public CachedBrickSource(BrickSource source, BrickCache cache) {
+        this(source, cache, null);
+    }
+
+    /**
+     * Create the cached brick source. Bricks of the disk cache belonging to a previous version
+     * of the image (for example with different dimensions) are removed.
+     *
+     * @param source  the source providing the bricks to cache
+     * @param cache  the in-memory cache to store the bricks in. It can be shared with other sources
+     * @param diskCache  the disk cache to store the bricks in, or null to not use any disk cache.
+     *                   It can be shared with other sources, and must stay open while this source is used
+     */
+    public CachedBrickSource(BrickSource source, BrickCache cache, DiskBrickCache diskCache) {
+        this(source, cache, diskCache, false, null);
+    }
+
+    private CachedBrickSource(
+            BrickSource source,
+            BrickCache cache,
+            DiskBrickCache diskCache,
+            boolean useSharedDiskCache,
+            BrickSummaryIndex summaryIndex
+    ) {
+        this.source = source;
+        this.cache = cache;
+
+        String path = source.getServer().getPath();
+        this.sourceId = path == null ? UNNAMED_SOURCE_PREFIX + UUID.randomUUID() : path;
+        this.useSharedDiskCache = useSharedDiskCache && path != null;
+        this.diskCache = path == null ? null : validate(diskCache);
+        if (summaryIndex != null) {
+            this.summaryIndexWithoutDiskCache = summaryIndex;
+        } else {
+            this.summaryIndexWithoutDiskCache = path == null ? new BrickSummaryIndex() : BrickSummaryIndex.getShared();
+        }
+    }
+
+    /**
+     * Create a cached brick source without disk cache, storing the summaries of the bricks in the provided index
+     * instead of the {@link BrickSummaryIndex#getShared() shared one}. This is useful when the image is only
+     * opened for a short time, since the shared index is never emptied.
+     *
+     * @param source  the source providing the bricks to cache
+     * @param cache  the in-memory cache to store the bricks in. It can be shared with other sources
+     * @param summaryIndex  the index to store the summaries of the bricks in
+     * @return a new cached brick source
+     */
+    public static CachedBrickSource createWithSummaryIndex(BrickSource source, BrickCache cache, BrickSummaryIndex summaryIndex) {
+        return new CachedBrickSource(source, cache, null, false, summaryIndex);
+    }
+
+    /**
+     * Create a cached brick source using the {@link DiskBrickCache#acquireShared() shared disk cache}, if there is one.
+     * The shared disk cache is looked up each time a brick is requested, so it can be replaced or disabled while
+     * the returned source is used. Bricks of the disk cache belonging to a previous version of the image are
+     * removed the first time a disk cache is used.
+     *
+     * @param source  the source providing the bricks to cache
+     * @param cache  the in-memory cache to store the bricks in. It can be shared with other sources
+     * @return a new cached brick source
+     */
+    public static CachedBrickSource createWithSharedDiskCache(BrickSource source, BrickCache cache) {
+        return new CachedBrickSource(source, cache, null, true, null);
+    }
+
+    @Override
+    public ImageServer<BufferedImage> getServer() {
+        return source.getServer();
+    }
+
+    @Override
+    public int getBrickWidth() {
+        return source.getBrickWidth();
+    }
+
+    @Override
+    public int getBrickHeight() {
+        return source.getBrickHeight();
+    }
+
+    @Override
+    public int getBrickDepth() {
+        return source.getBrickDepth();
+    }
+
+    @Override
+    public Brick getBrick(int level, int t, int x, int y, int z) throws IOException {
+        BrickKey key = new BrickKey(sourceId, level, t, x, y, z);
+        if (!useSharedDiskCache) {
+            return getBrick(key, diskCache);
+        }
+
+        DiskBrickCache sharedDiskCache = DiskBrickCache.acquireShared();
+        try {
+            return getBrick(key, validateShared(sharedDiskCache));
+        } finally {
+            DiskBrickCache.releaseShared();
+        }
+    }
+
+    @Override
+    public BrickSummary getSummary(int level, int t, int x, int y, int z) {
+        BrickKey key = new BrickKey(sourceId, level, t, x, y, z);
+        if (!useSharedDiskCache) {
+            return getSummaryIndex(diskCache).get(key);
+        }
+
+        DiskBrickCache sharedDiskCache = DiskBrickCache.acquireShared();
+        try {
+            return getSummaryIndex(validateShared(sharedDiskCache)).get(key);
+        } finally {
+            DiskBrickCache.releaseShared();
+        }
+    }
+
+    private Brick getBrick(BrickKey key, DiskBrickCache diskCache) throws IOException {
+        BrickSummaryIndex summaryIndex = getSummaryIndex(diskCache);
+
+        BrickSummary summary = summaryIndex.get(key);
+        FrameMetrics.recordCacheAccess(CONSTANT_BRICKS_METRICS_NAME, summary != null && summary.isConstant());
+        if (summary != null && summary.isConstant()) {
+            return createConstantBrick(key.level(), key.x(), key.y(), key.z(), summary);
+        }
+
+        return cache.get(key, () -> {
+            Brick brick = readBrick(key, diskCache);
+
+            if (summaryIndex.get(key) == null) {
+                try {
+                    summaryIndex.put(key, BrickSummary.of(brick));
+                } catch (IOException e) {
+                    logger.warn("Cannot write the summary of {}", key, e);
+                }
+            }
+            return brick;
+        });
+    }
+
+    private BrickSummaryIndex getSummaryIndex(DiskBrickCache diskCache) {
+        return diskCache == null ? summaryIndexWithoutDiskCache : diskCache.getSummaryIndex();
+    }
+
+    /**
+     * Indicate the signature of the image to a disk cache.
+     *
+     * @return the provided disk cache, or null if it is null or cannot be used
+     */
+    private DiskBrickCache validate(DiskBrickCache diskCache) {
+        if (diskCache == null) {
+            return null;
+        }
+
+        try {
+            diskCache.validateSource(sourceId, getSignature(source));
+            return diskCache;
+        } catch (IOException e) {
+            logger.warn("Cannot use the disk cache located in {}", diskCache.getDirectory(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Same as {@link #validate(DiskBrickCache)}, but only validates each shared disk cache once.
+     */
+    private synchronized DiskBrickCache validateShared(DiskBrickCache sharedDiskCache) {
+        if (sharedDiskCache != checkedSharedDiskCache) {
+            checkedSharedDiskCache = sharedDiskCache;
+            checkedSharedDiskCacheValid = validate(sharedDiskCache) != null;
+        }
+        return checkedSharedDiskCacheValid ? sharedDiskCache : null;
+    }
+
+    private Brick readBrick(BrickKey key, DiskBrickCache diskCache) throws IOException {
+        if (diskCache == null) {
+            return source.getBrick(key.level(), key.t(), key.x(), key.y(), key.z());
+        }
+
+        try {
+            Brick brick = diskCache.get(key);
+            if (brick != null) {
+                return brick;
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot read {} from the disk cache", key, e);
+        }
+
+        Brick brick = source.getBrick(key.level(), key.t(), key.x(), key.y(), key.z());
+        try {
+            diskCache.put(key, brick);
+        } catch (IOException e) {
+            logger.warn("Cannot write {} to the disk cache", key, e);
+        }
+        return brick;
+    }
+
+    private ConstantBrick createConstantBrick(int level, int x, int y, int z, BrickSummary summary) {
+        ImageServerMetadata.ImageResolutionLevel resolutionLevel = source.getServer().getMetadata().getLevel(level);
+        int xOrigin = x * getBrickWidth();
+        int yOrigin = y * getBrickHeight();
+        int zOrigin = z * getBrickDepth();
+
+        return new ConstantBrick(
+                xOrigin,
+                yOrigin,
+                zOrigin,
+                Math.min(getBrickWidth(), resolutionLevel.getWidth() - xOrigin),
+                Math.min(getBrickHeight(), resolutionLevel.getHeight() - yOrigin),
+                Math.min(getBrickDepth(), source.getServer().nZSlices() - zOrigin),
+                summary.pixelType(),
+                summary.min()
+        );
+    }
+
+    /**
+     * @return a text that changes whenever the voxels or the brick grid of the source may change
+     */
+    private static String getSignature(BrickSource source) {
+        ImageServer<BufferedImage> server = source.getServer();
+
+        return String.format(
+                "%dx%dx%dx%d/%d-%s%s/%s/%dx%dx%d",
+                server.getWidth(),
+                server.getHeight(),
+                server.nZSlices(),
+                server.nTimepoints(),
+                server.nChannels(),
+                server.getPixelType(),
+                server.isRGB() ? "-rgb" : "",
+                Arrays.toString(server.getPreferredDownsamples()),
+                source.getBrickWidth(),
+                source.getBrickHeight(),
+                source.getBrickDepth()
+        );
+    }
+}
@@ -0,0 +1,248 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.lib.images.servers.PixelType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ *     An in-memory cache of bricks compressed with the
+ *     <a href="https://www.rfc-editor.org/rfc/rfc1951">DEFLATE</a> algorithm (fastest level). It is intended
+ *     to hold the bricks evicted from a {@link BrickCache}: images containing large uniform regions compress
+ *     very well, so many more bricks fit in the same amount of memory. Bricks are decompressed and removed
+ *     from this cache when they are requested, so that they can be promoted back to the {@link BrickCache}.
+ * </p>
+ * <p>
+ *     This cache is limited by the number of compressed bytes it stores. When the limit is reached,
+ *     the least recently used bricks are discarded. Only {@link ArrayBrick ArrayBricks} can be stored.
+ * </p>
+ * <p>
+ *     Hits and misses are reported to {@link FrameMetrics} under the name {@link #METRICS_NAME},
+ *     and the time spent decompressing as {@link PipelineStage#DECOMPRESSION}. The capacity gain and the cost
+ *     of compression can be retrieved with {@link #getStatistics()}. This class is thread-safe.
+ * </p>
+ */
+public class CompressedBrickCache {
+
+    /**
+     * The name under which accesses to compressed caches are reported to {@link FrameMetrics}
+     */
+    public static final String METRICS_NAME = "Bricks (compressed)";
+    private final Map<BrickKey, CompressedBrick> bricks = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder numberOfCompressions = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+    private final LongAdder numberOfDecompressions = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+    private final long maximumSizeBytes;
+    private long compressedBytes = 0;
+    private long uncompressedBytes = 0;
+
+    private record CompressedBrick(
+            byte[] data,
+            int uncompressedSize,
+            int x,
+            int y,
+            int z,
+            int width,
+            int height,
+            int depth,
+            int nChannels,
+            PixelType pixelType
+    ) {}
+
+    /**
+     * Create a compressed cache.
+     *
+     * @param maximumSizeBytes  the maximum number of compressed bytes the stored bricks can use
+     * @throws IllegalArgumentException when the maximum size is negative
+     */
+    public CompressedBrickCache(long maximumSizeBytes) {
+        if (maximumSizeBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size: " + maximumSizeBytes);
+        }
+
+        this.maximumSizeBytes = maximumSizeBytes;
+    }
+
+    /**
+     * Compress a brick and add it to the cache, replacing any brick with the same key.
+     * Bricks that are not {@link ArrayBrick ArrayBricks} are ignored.
+     *
+     * @param key  the key of the brick
+     * @param brick  the brick to add
+     */
+    public void put(BrickKey key, Brick brick) {
+        if (!(brick instanceof ArrayBrick arrayBrick)) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        CompressedBrick compressedBrick = compress(arrayBrick);
+        compressionNanos.add(System.nanoTime() - startTime);
+        numberOfCompressions.increment();
+
+        synchronized (this) {
+            removeFromSizes(bricks.put(key, compressedBrick));
+            compressedBytes += compressedBrick.data.length;
+            uncompressedBytes += compressedBrick.uncompressedSize;
+
+            Iterator<CompressedBrick> iterator = bricks.values().iterator();
+            while (compressedBytes > maximumSizeBytes && iterator.hasNext()) {
+                removeFromSizes(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove a brick from the cache and decompress it.
+     *
+     * @param key  the key of the brick
+     * @return the decompressed brick, or null if it's not in the cache
+     */
+    public Brick remove(BrickKey key) {
+        CompressedBrick compressedBrick;
+        synchronized (this) {
+            compressedBrick = bricks.remove(key);
+            removeFromSizes(compressedBrick);
+        }
+        FrameMetrics.recordCacheAccess(METRICS_NAME, compressedBrick != null);
+        if (compressedBrick == null) {
+            return null;
+        }
+
+        long startTime = System.nanoTime();
+        Brick brick = decompress(compressedBrick);
+        long duration = System.nanoTime() - startTime;
+        decompressionNanos.add(duration);
+        numberOfDecompressions.increment();
+        FrameMetrics.recordDuration(PipelineStage.DECOMPRESSION, duration);
+
+        return brick;
+    }
+
+    /**
+     * Remove all bricks of an image from the cache.
+     *
+     * @param sourceId  the ID of the image whose bricks should be removed
+     */
+    public synchronized void invalidate(String sourceId) {
+        Iterator<Map.Entry<BrickKey, CompressedBrick>> iterator = bricks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BrickKey, CompressedBrick> entry = iterator.next();
+            if (entry.getKey().sourceId() == null ? sourceId == null : entry.getKey().sourceId().equals(sourceId)) {
+                removeFromSizes(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all bricks from the cache.
+     */
+    public synchronized void clear() {
+        bricks.clear();
+        compressedBytes = 0;
+        uncompressedBytes = 0;
+    }
+
+    /**
+     * @return the maximum number of compressed bytes the stored bricks can use
+     */
+    public long getMaximumSizeBytes() {
+        return maximumSizeBytes;
+    }
+
+    /**
+     * @return the current statistics of this cache
+     */
+    public synchronized CompressionStatistics getStatistics() {
+        return new CompressionStatistics(
+                bricks.size(),
+                uncompressedBytes,
+                compressedBytes,
+                numberOfCompressions.sum(),
+                compressionNanos.sum(),
+                numberOfDecompressions.sum(),
+                decompressionNanos.sum()
+        );
+    }
+
+    private void removeFromSizes(CompressedBrick compressedBrick) {
+        if (compressedBrick != null) {
+            compressedBytes -= compressedBrick.data.length;
+            uncompressedBytes -= compressedBrick.uncompressedSize;
+        }
+    }
+
+    private static CompressedBrick compress(ArrayBrick brick) {
+        ByteBuffer data = brick.getData();
+        int uncompressedSize = data.remaining();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, uncompressedSize / 8));
+
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                outputStream.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return new CompressedBrick(
+                outputStream.toByteArray(),
+                uncompressedSize,
+                brick.getX(),
+                brick.getY(),
+                brick.getZ(),
+                brick.getWidth(),
+                brick.getHeight(),
+                brick.getDepth(),
+                brick.nChannels(),
+                brick.getPixelType()
+        );
+    }
+
+    private static Brick decompress(CompressedBrick compressedBrick) {
+        byte[] data = new byte[compressedBrick.uncompressedSize];
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(compressedBrick.data);
+            int length = 0;
+            while (length < data.length && !inflater.finished()) {
+                length += inflater.inflate(data, length, data.length - length);
+            }
+        } catch (DataFormatException e) {
+            // Data compressed by this class is always valid
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+
+        return new ArrayBrick(
+                compressedBrick.x,
+                compressedBrick.y,
+                compressedBrick.z,
+                compressedBrick.width,
+                compressedBrick.height,
+                compressedBrick.depth,
+                compressedBrick.nChannels,
+                compressedBrick.pixelType,
+                ByteBuffer.wrap(data)
+        );
+    }
+}
@@ -0,0 +1,45 @@
+package qupath.ext.viewer.bricks;
+
+/**
+ * Statistics of a {@link CompressedBrickCache}.
+ *
+ * @param numberOfBricks  the number of bricks currently stored
+ * @param uncompressedBytes  the number of bytes the stored bricks would use if they were not compressed
+ * @param compressedBytes  the number of bytes used by the stored bricks
+ * @param numberOfCompressions  the number of bricks compressed so far
+ * @param compressionNanos  the total time spent compressing bricks, in nanoseconds
+ * @param numberOfDecompressions  the number of bricks decompressed so far
+ * @param decompressionNanos  the total time spent decompressing bricks, in nanoseconds
+ */
+public record CompressionStatistics(
+        long numberOfBricks,
+        long uncompressedBytes,
+        long compressedBytes,
+        long numberOfCompressions,
+        long compressionNanos,
+        long numberOfDecompressions,
+        long decompressionNanos
+) {
+
+    /**
+     * @return how many times more bricks the cache can hold thanks to compression,
+     * or 1 if the cache is empty
+     */
+    public double capacityGain() {
+        return compressedBytes == 0 ? 1 : (double) uncompressedBytes / compressedBytes;
+    }
+
+    /**
+     * @return the mean time spent compressing a brick, in microseconds, or 0 if no brick was compressed
+     */
+    public double meanCompressionMicros() {
+        return numberOfCompressions == 0 ? 0 : compressionNanos / 1000.0 / numberOfCompressions;
+    }
+
+    /**
+     * @return the mean time spent decompressing a brick, in microseconds, or 0 if no brick was decompressed
+     */
+    public double meanDecompressionMicros() {
+        return numberOfDecompressions == 0 ? 0 : decompressionNanos / 1000.0 / numberOfDecompressions;
+    }
+}
@@ -0,0 +1,35 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.PixelType;
+
+/**
+ * A brick whose voxels all have the same value in each channel. It doesn't store any voxel,
+ * so it can be created without reading the image.
+ */
+public class ConstantBrick extends Brick {
+
+    private final double[] values;
+
+    /**
+     * Create a constant brick.
+     * See {@link Brick#Brick(int, int, int, int, int, int, int, PixelType)} for the other parameters.
+     *
+     * @param values  the value of all voxels of each channel. The number of channels of the brick
+     *                is the length of this array
+     */
+    public ConstantBrick(int x, int y, int z, int width, int height, int depth, PixelType pixelType, double[] values) {
+        super(x, y, z, width, height, depth, values.length, pixelType);
+
+        this.values = values.clone();
+    }
+
+    @Override
+    public double getValue(int channel, int x, int y, int z) {
+        return values[channel];
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return (long) values.length * Double.BYTES;
+    }
+}
@@ -0,0 +1,661 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.lib.images.servers.PixelType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ *     A cache of bricks stored on disk, so that bricks read during a session can be reused
+ *     in the following sessions. It is limited by the number of bytes used by the stored bricks.
+ *     When the limit is reached, the least recently used bricks are discarded.
+ * </p>
+ * <p>
+ *     The cache is stored in a directory containing four files, and a lock file preventing
+ *     other instances (in this process or in others) from opening the same directory while
+ *     this cache is open:
+ * </p>
+ * <ul>
+ *     <li>
+ *         A data file split into chunks of {@link #CHUNK_SIZE} bytes. Each brick occupies a run of
+ *         consecutive chunks, and the runs freed by evicted bricks are reused.
+ *     </li>
+ *     <li>
+ *         A memory-mapped index containing one fixed-size entry per brick (key, position in the data file,
+ *         dimensions, checksum, and time of last access). It grows when full.
+ *     </li>
+ *     <li>
+ *         A properties file containing the ID and the signature of each image that has bricks in the cache.
+ *     </li>
+ *     <li>
+ *         A {@link BrickSummaryIndex} containing the summaries of the bricks of these images. Summaries
+ *         are kept when bricks are evicted, and only removed when the signature of their image changes.
+ *     </li>
+ * </ul>
+ * <p>
+ *     Opening the cache only reads the index, not the data file. Bricks whose checksum doesn't match
+ *     when they are read (for example if the application was stopped while writing them) are discarded.
+ * </p>
+ * <p>
+ *     Only {@link ArrayBrick ArrayBricks} can be stored. Bricks of images without ID are not stored.
+ *     This class is thread-safe.
+ * </p>
+ * <p>
+ *     The {@link #acquireShared() shared cache} used by the viewers can be replaced at any time. To not close
+ *     a cache while it is being used, it must be acquired for the duration of each access, and it is only
+ *     closed once all accesses in progress have released it.
+ * </p>
+ */
+public class DiskBrickCache implements Closeable {
+
+    /**
+     * The name under which accesses to disk caches are reported to {@link FrameMetrics}
+     */
+    public static final String METRICS_NAME = "Bricks (disk)";
+    /**
+     * The number of bytes of a chunk of the data file
+     */
+    public static final int CHUNK_SIZE = 4096;
+    private static final String INDEX_FILE = "index.bin";
+    private static final String DATA_FILE = "data.bin";
+    private static final String SOURCES_FILE = "sources.properties";
+    private static final String SUMMARIES_FILE = "summaries.bin";
+    private static final String LOCK_FILE = "cache.lock";
+    private static final int MAGIC_NUMBER = 0x51564243;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 80;
+    private static final int INITIAL_NUMBER_OF_SLOTS = 4096;
+    private static final ReadWriteLock sharedCacheLock = new ReentrantReadWriteLock();
+    private static DiskBrickCache sharedCache;
+    private final Map<BrickKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final TreeMap<Integer, Integer> freeRuns = new TreeMap<>();
+    private final List<Integer> freeSlots = new ArrayList<>();
+    private final Map<String, Integer> sourceIndices = new HashMap<>();
+    private final Properties sources = new Properties();
+    private final Path directory;
+    private final long maximumSizeBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private final BrickSummaryIndex summaryIndex;
+    private MappedByteBuffer index;
+    private int numberOfSlots;
+    private int endChunk = 0;
+    private long clock;
+    private long sizeBytes = 0;
+
+    private record Entry(
+            int slot,
+            int firstChunk,
+            int numberOfChunks,
+            int length,
+            int checksum,
+            int x,
+            int y,
+            int z,
+            int width,
+            int height,
+            int depth,
+            int nChannels,
+            PixelType pixelType
+    ) {}
+
+    /**
+     * Open a cache, or create it if it doesn't exist. Bricks are evicted if the cache
+     * is larger than the provided limit.
+     *
+     * @param directory  the directory containing the files of the cache. It is created if it doesn't exist
+     * @param maximumSizeBytes  the maximum number of bytes the stored bricks can use
+     * @throws IOException when the files of the cache cannot be opened or created, or when the directory
+     * is already used by another open cache
+     * @throws IllegalArgumentException when the maximum size is negative
+     */
+    public DiskBrickCache(Path directory, long maximumSizeBytes) throws IOException {
+        if (maximumSizeBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size: " + maximumSizeBytes);
+        }
+        this.directory = directory;
+        this.maximumSizeBytes = maximumSizeBytes;
+
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lockChannel.close();
+            throw new IOException(String.format("The disk cache located in %s is already open", directory), e);
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException(String.format("The disk cache located in %s is used by another process", directory));
+        }
+
+        try {
+            Path sourcesFile = directory.resolve(SOURCES_FILE);
+            if (Files.exists(sourcesFile)) {
+                try (InputStream inputStream = Files.newInputStream(sourcesFile)) {
+                    sources.load(inputStream);
+                }
+            }
+
+            indexChannel = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            dataChannel = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            summaryIndex = new BrickSummaryIndex(directory.resolve(SUMMARIES_FILE));
+            if (!readIndex()) {
+                createIndex();
+                summaryIndex.clear();
+            }
+            evict(0);
+        } catch (IOException | RuntimeException e) {
+            // Releases the lock
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the cache used by the viewers, and prevent it from being closed until {@link #releaseShared()}
+     * is called. Both functions must be called from the same thread, and {@link #releaseShared()} must
+     * be called even if this function returns null, so a typical use is:
+     * <pre>{@code
+     * DiskBrickCache cache = DiskBrickCache.acquireShared();
+     * try {
+     *     ...
+     * } finally {
+     *     DiskBrickCache.releaseShared();
+     * }
+     * }</pre>
+     *
+     * @return the cache used by the viewers, or null if no disk cache should be used
+     */
+    public static DiskBrickCache acquireShared() {
+        sharedCacheLock.readLock().lock();
+        return sharedCache;
+    }
+
+    /**
+     * Indicate that the cache returned by {@link #acquireShared()} is not used by this thread anymore.
+     */
+    public static void releaseShared() {
+        sharedCacheLock.readLock().unlock();
+    }
+
+    /**
+     * Replace the cache used by the viewers. This waits until the previous cache is not used anymore (see
+     * {@link #acquireShared()}), closes it, and then opens the new cache, so it shouldn't be called from the
+     * JavaFX Application Thread. If the new cache cannot be opened, no disk cache is used.
+     *
+     * @param directory  the directory of the new cache, or null if no disk cache should be used
+     * @param maximumSizeBytes  the maximum number of bytes the bricks of the new cache can use
+     * @throws IOException when an error occurs while closing the previous cache or opening the new one
+     * @throws IllegalArgumentException when the maximum size is negative
+     */
+    public static void setShared(Path directory, long maximumSizeBytes) throws IOException {
+        sharedCacheLock.writeLock().lock();
+        try {
+            if (sharedCache != null) {
+                DiskBrickCache previousCache = sharedCache;
+                sharedCache = null;
+                previousCache.close();
+            }
+            if (directory != null) {
+                sharedCache = new DiskBrickCache(directory, maximumSizeBytes);
+            }
+        } finally {
+            sharedCacheLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indicate the signature of an image, which should change whenever the voxels or the brick grid of the
+     * image change (for example when the dimensions or the pixel type of the image change).
+     * If the signature doesn't match the one stored in the cache, all bricks of the image are removed.
+     *
+     * @param sourceId  the ID of the image
+     * @param signature  the current signature of the image
+     * @throws IOException when an error occurs while writing the new signature
+     */
+    public synchronized void validateSource(String sourceId, String signature) throws IOException {
+        if (sourceId == null) {
+            return;
+        }
+
+        int sourceIndex = getSourceIndex(sourceId);
+        if (!signature.equals(sources.getProperty(sourceIndex + ".signature"))) {
+            invalidate(sourceId);
+            sources.setProperty(sourceIndex + ".signature", signature);
+            writeSources();
+        }
+    }
+
+    /**
+     * Get a brick from the cache.
+     *
+     * @param key  the key of the brick
+     * @return the brick corresponding to the key, or null if it's not in the cache
+     * @throws IOException when an error occurs while reading the data file
+     */
+    public Brick get(BrickKey key) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                index.putLong(HEADER_SIZE + entry.slot * ENTRY_SIZE + 24, ++clock);
+                index.putLong(8, clock);
+            }
+        }
+        if (entry == null) {
+            FrameMetrics.recordCacheAccess(METRICS_NAME, false);
+            return null;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(entry.length);
+        long position = (long) entry.firstChunk * CHUNK_SIZE;
+        while (data.hasRemaining()) {
+            if (dataChannel.read(data, position + data.position()) < 0) {
+                break;
+            }
+        }
+
+        // The chunks may have been reused by another brick since the entry was retrieved
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), 0, data.position());
+        if (data.hasRemaining() || (int) crc.getValue() != entry.checksum) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    remove(key);
+                }
+            }
+            FrameMetrics.recordCacheAccess(METRICS_NAME, false);
+            return null;
+        }
+
+        FrameMetrics.recordCacheAccess(METRICS_NAME, true);
+        return new ArrayBrick(entry.x, entry.y, entry.z, entry.width, entry.height, entry.depth, entry.nChannels, entry.pixelType, data.clear());
+    }
+
+    /**
+     * Add a brick to the cache, replacing any brick with the same key. Bricks that are not
+     * {@link ArrayBrick ArrayBricks}, bricks of images without ID, and bricks larger than
+     * the cache are ignored.
+     *
+     * @param key  the key of the brick
+     * @param brick  the brick to add
+     * @throws IOException when an error occurs while writing the brick
+     */
+    public void put(BrickKey key, Brick brick) throws IOException {
+        if (!(brick instanceof ArrayBrick arrayBrick) || key.sourceId() == null || brick.getSizeBytes() > maximumSizeBytes) {
+            return;
+        }
+
+        ByteBuffer data = arrayBrick.getData();
+        int length = data.remaining();
+        int numberOfChunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int firstChunk;
+        synchronized (this) {
+            remove(key);
+            evict((long) numberOfChunks * CHUNK_SIZE);
+            firstChunk = allocate(numberOfChunks);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        long position = (long) firstChunk * CHUNK_SIZE;
+        while (data.hasRemaining()) {
+            dataChannel.write(data, position + length - data.remaining());
+        }
+
+        synchronized (this) {
+            Entry entry = new Entry(
+                    getFreeSlot(),
+                    firstChunk,
+                    numberOfChunks,
+                    length,
+                    (int) crc.getValue(),
+                    brick.getX(),
+                    brick.getY(),
+                    brick.getZ(),
+                    brick.getWidth(),
+                    brick.getHeight(),
+                    brick.getDepth(),
+                    brick.nChannels(),
+                    brick.getPixelType()
+            );
+            writeEntry(entry, getSourceIndex(key.sourceId()), key);
+
+            Entry previousEntry = entries.put(key, entry);
+            if (previousEntry != null) {
+                // Another thread stored the same brick in the meantime
+                free(previousEntry);
+            }
+            sizeBytes += (long) numberOfChunks * CHUNK_SIZE;
+        }
+    }
+
+    /**
+     * Remove all bricks and brick summaries of an image from the cache.
+     *
+     * @param sourceId  the ID of the image whose bricks should be removed
+     * @throws IOException when an error occurs while removing the summaries
+     */
+    public synchronized void invalidate(String sourceId) throws IOException {
+        summaryIndex.invalidate(sourceId);
+        for (BrickKey key: entries.keySet().stream().filter(key -> sourceId.equals(key.sourceId())).toList()) {
+            remove(key);
+        }
+    }
+
+    /**
+     * @return the number of bytes used by the bricks currently in the cache
+     */
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * @return the maximum number of bytes the stored bricks can use
+     */
+    public long getMaximumSizeBytes() {
+        return maximumSizeBytes;
+    }
+
+    /**
+     * @return the index containing the summaries of the bricks of the images of this cache
+     */
+    public BrickSummaryIndex getSummaryIndex() {
+        return summaryIndex;
+    }
+
+    /**
+     * @return the directory containing the files of this cache
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            index.force();
+            summaryIndex.close();
+            indexChannel.close();
+            dataChannel.close();
+        } finally {
+            // Releases the lock
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Read the index file and the entries it contains.
+     *
+     * @return whether the index file was valid
+     */
+    private boolean readIndex() throws IOException {
+        if (indexChannel.size() < HEADER_SIZE) {
+            return false;
+        }
+
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+        if (index.getInt(0) != MAGIC_NUMBER || index.getInt(4) != VERSION || index.getInt(16) != CHUNK_SIZE) {
+            return false;
+        }
+        clock = index.getLong(8);
+        numberOfSlots = index.getInt(20);
+        if (indexChannel.size() < HEADER_SIZE + (long) numberOfSlots * ENTRY_SIZE) {
+            return false;
+        }
+
+        for (Object key: sources.keySet()) {
+            String property = (String) key;
+            if (property.endsWith(".id")) {
+                sourceIndices.put(sources.getProperty(property), Integer.parseInt(property.substring(0, property.length() - 3)));
+            }
+        }
+        Map<Integer, String> sourceIds = new HashMap<>();
+        sourceIndices.forEach((id, sourceIndex) -> sourceIds.put(sourceIndex, id));
+
+        long dataChunks = dataChannel.size() / CHUNK_SIZE;
+        Map<BrickKey, Long> lastAccesses = new HashMap<>();
+        Map<BrickKey, Entry> readEntries = new HashMap<>();
+        for (int slot=0; slot<numberOfSlots; slot++) {
+            int position = HEADER_SIZE + slot * ENTRY_SIZE;
+            int sourceIndex = index.getInt(position) - 1;
+            String sourceId = sourceIds.get(sourceIndex);
+            Entry entry = readEntry(slot);
+
+            if (sourceId == null || entry.firstChunk < 0 || entry.numberOfChunks < 1 || entry.firstChunk + (long) entry.numberOfChunks > dataChunks) {
+                index.putInt(position, 0);
+                freeSlots.add(slot);
+            } else {
+                BrickKey key = new BrickKey(
+                        sourceId,
+                        index.getInt(position + 4),
+                        index.getInt(position + 8),
+                        index.getInt(position + 12),
+                        index.getInt(position + 16),
+                        index.getInt(position + 20)
+                );
+                readEntries.put(key, entry);
+                lastAccesses.put(key, index.getLong(position + 24));
+            }
+        }
+
+        readEntries.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> lastAccesses.get(entry.getKey())))
+                .forEach(entry -> {
+                    entries.put(entry.getKey(), entry.getValue());
+                    sizeBytes += (long) entry.getValue().numberOfChunks * CHUNK_SIZE;
+                });
+
+        // Chunks not used by any entry are free
+        List<Entry> sortedEntries = entries.values().stream().sorted(Comparator.comparingInt(Entry::firstChunk)).toList();
+        int chunk = 0;
+        for (Entry entry: sortedEntries) {
+            if (entry.firstChunk > chunk) {
+                freeRuns.put(chunk, entry.firstChunk - chunk);
+            }
+            chunk = Math.max(chunk, entry.firstChunk + entry.numberOfChunks);
+        }
+        endChunk = chunk;
+
+        return true;
+    }
+
+    private void createIndex() throws IOException {
+        entries.clear();
+        freeRuns.clear();
+        freeSlots.clear();
+        sourceIndices.clear();
+        sources.clear();
+        writeSources();
+        dataChannel.truncate(0);
+        indexChannel.truncate(0);
+
+        numberOfSlots = INITIAL_NUMBER_OF_SLOTS;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) numberOfSlots * ENTRY_SIZE);
+        index.putInt(0, MAGIC_NUMBER);
+        index.putInt(4, VERSION);
+        index.putLong(8, 0);
+        index.putInt(16, CHUNK_SIZE);
+        index.putInt(20, numberOfSlots);
+        for (int slot=numberOfSlots-1; slot>=0; slot--) {
+            freeSlots.add(slot);
+        }
+        clock = 0;
+        endChunk = 0;
+        sizeBytes = 0;
+    }
+
+    private Entry readEntry(int slot) {
+        int position = HEADER_SIZE + slot * ENTRY_SIZE;
+        int pixelTypeIndex = index.getInt(position + 76);
+
+        return new Entry(
+                slot,
+                index.getInt(position + 32),
+                index.getInt(position + 36),
+                index.getInt(position + 40),
+                index.getInt(position + 44),
+                index.getInt(position + 48),
+                index.getInt(position + 52),
+                index.getInt(position + 56),
+                index.getInt(position + 60),
+                index.getInt(position + 64),
+                index.getInt(position + 68),
+                index.getInt(position + 72),
+                pixelTypeIndex >= 0 && pixelTypeIndex < PixelType.values().length ? PixelType.values()[pixelTypeIndex] : PixelType.UINT8
+        );
+    }
+
+    private void writeEntry(Entry entry, int sourceIndex, BrickKey key) {
+        int position = HEADER_SIZE + entry.slot * ENTRY_SIZE;
+
+        index.putInt(position + 4, key.level());
+        index.putInt(position + 8, key.t());
+        index.putInt(position + 12, key.x());
+        index.putInt(position + 16, key.y());
+        index.putInt(position + 20, key.z());
+        index.putLong(position + 24, ++clock);
+        index.putInt(position + 32, entry.firstChunk);
+        index.putInt(position + 36, entry.numberOfChunks);
+        index.putInt(position + 40, entry.length);
+        index.putInt(position + 44, entry.checksum);
+        index.putInt(position + 48, entry.x);
+        index.putInt(position + 52, entry.y);
+        index.putInt(position + 56, entry.z);
+        index.putInt(position + 60, entry.width);
+        index.putInt(position + 64, entry.height);
+        index.putInt(position + 68, entry.depth);
+        index.putInt(position + 72, entry.nChannels);
+        index.putInt(position + 76, entry.pixelType.ordinal());
+        index.putLong(8, clock);
+        // The source is written last, so that the entry is only considered valid once complete
+        index.putInt(position, sourceIndex + 1);
+    }
+
+    private int getFreeSlot() throws IOException {
+        if (freeSlots.isEmpty()) {
+            int newNumberOfSlots = numberOfSlots * 2;
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newNumberOfSlots * ENTRY_SIZE);
+            index.putInt(20, newNumberOfSlots);
+            for (int slot=newNumberOfSlots-1; slot>=numberOfSlots; slot--) {
+                freeSlots.add(slot);
+            }
+            numberOfSlots = newNumberOfSlots;
+        }
+        return freeSlots.remove(freeSlots.size() - 1);
+    }
+
+    private int getSourceIndex(String sourceId) throws IOException {
+        Integer sourceIndex = sourceIndices.get(sourceId);
+
+        if (sourceIndex == null) {
+            sourceIndex = sourceIndices.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+            sourceIndices.put(sourceId, sourceIndex);
+            sources.setProperty(sourceIndex + ".id", sourceId);
+            writeSources();
+        }
+        return sourceIndex;
+    }
+
+    private void writeSources() throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(directory.resolve(SOURCES_FILE))) {
+            sources.store(outputStream, "Images with bricks in the cache");
+        }
+    }
+
+    /**
+     * Evict the least recently used bricks until the provided number of bytes can be added to the cache.
+     */
+    private void evict(long bytesToAdd) {
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (sizeBytes + bytesToAdd > maximumSizeBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            free(entry);
+        }
+    }
+
+    private void remove(BrickKey key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            free(entry);
+        }
+    }
+
+    private void free(Entry entry) {
+        index.putInt(HEADER_SIZE + entry.slot * ENTRY_SIZE, 0);
+        freeSlots.add(entry.slot);
+        sizeBytes -= (long) entry.numberOfChunks * CHUNK_SIZE;
+
+        // Merge the freed run with its neighbours
+        int firstChunk = entry.firstChunk;
+        int numberOfChunks = entry.numberOfChunks;
+        Map.Entry<Integer, Integer> previousRun = freeRuns.floorEntry(firstChunk);
+        if (previousRun != null && previousRun.getKey() + previousRun.getValue() == firstChunk) {
+            freeRuns.remove(previousRun.getKey());
+            firstChunk = previousRun.getKey();
+            numberOfChunks += previousRun.getValue();
+        }
+        Integer nextRunLength = freeRuns.remove(firstChunk + numberOfChunks);
+        if (nextRunLength != null) {
+            numberOfChunks += nextRunLength;
+        }
+
+        if (firstChunk + numberOfChunks == endChunk) {
+            endChunk = firstChunk;
+        } else {
+            freeRuns.put(firstChunk, numberOfChunks);
+        }
+    }
+
+    /**
+     * Find a run of free chunks (first-fit), or append chunks to the end of the data file.
+     *
+     * @return the index of the first allocated chunk
+     */
+    private int allocate(int numberOfChunks) {
+        for (Map.Entry<Integer, Integer> run: freeRuns.entrySet()) {
+            if (run.getValue() >= numberOfChunks) {
+                freeRuns.remove(run.getKey());
+                if (run.getValue() > numberOfChunks) {
+                    freeRuns.put(run.getKey() + numberOfChunks, run.getValue() - numberOfChunks);
+                }
+                return run.getKey();
+            }
+        }
+
+        int firstChunk = endChunk;
+        endChunk += numberOfChunks;
+        return firstChunk;
+    }
+}
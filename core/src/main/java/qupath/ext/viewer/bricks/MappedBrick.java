@@ -0,0 +1,75 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ *     A brick whose voxels are read directly from buffers containing entire z-slices,
+ *     such as memory-mapped files. No voxel is copied.
+ * </p>
+ * <p>
+ *     Each z-slice is stored in one buffer if channels are interleaved (the channel index
+ *     varying fastest, then x, then y), or in one buffer per channel otherwise (x varying fastest,
+ *     then y).
+ * </p>
+ */
+public class MappedBrick extends Brick {
+
+    private final ByteBuffer[] slices;
+    private final int sliceWidth;
+    private final boolean channelsInterleaved;
+
+    /**
+     * Create a brick.
+     * See {@link Brick#Brick(int, int, int, int, int, int, int, PixelType)} for the other parameters.
+     *
+     * @param slices  the buffers containing the z-slices of the brick, indexed by {@code z * nChannels + c} if
+     *                channels are not interleaved and by {@code z} otherwise, where z is relative to the first
+     *                voxel of the brick. The byte order of the buffers must already be set
+     * @param sliceWidth  the number of voxels on the x-axis of the z-slices stored in the buffers
+     * @param channelsInterleaved  whether the channels of a voxel are stored next to each other
+     * @throws IllegalArgumentException when the number of buffers doesn't match the depth and the number of channels of the brick
+     */
+    public MappedBrick(
+            int x,
+            int y,
+            int z,
+            int width,
+            int height,
+            int depth,
+            int nChannels,
+            PixelType pixelType,
+            ByteBuffer[] slices,
+            int sliceWidth,
+            boolean channelsInterleaved
+    ) {
+        super(x, y, z, width, height, depth, nChannels, pixelType);
+
+        if (slices.length != depth * (channelsInterleaved ? 1 : nChannels)) {
+            throw new IllegalArgumentException(String.format(
+                    "%d buffers provided for %d z-slices of %d channels", slices.length, depth, nChannels
+            ));
+        }
+        this.slices = slices;
+        this.sliceWidth = sliceWidth;
+        this.channelsInterleaved = channelsInterleaved;
+    }
+
+    @Override
+    public double getValue(int channel, int x, int y, int z) {
+        int pixelIndex = (getY() + y) * sliceWidth + getX() + x;
+
+        if (channelsInterleaved) {
+            return readValue(slices[z], pixelIndex * nChannels() + channel, getPixelType());
+        } else {
+            return readValue(slices[z * nChannels() + channel], pixelIndex, getPixelType());
+        }
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return 0;
+    }
+}
@@ -0,0 +1,194 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.ImageServerMetadata;
+import qupath.lib.images.servers.PixelType;
+import qupath.lib.images.servers.TileRequest;
+import qupath.lib.regions.RegionRequest;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+
+/**
+ * <p>
+ *     A brick source that reads each brick from an image server, one z-slice after the other.
+ *     Bricks are not cached: see {@link CachedBrickSource} for this.
+ * </p>
+ * <p>
+ *     Each z-slice of a brick is read as the {@link TileRequest TileRequests} of the server that cover it.
+ *     Tiles are first looked up in a {@link TileCache} (by default the one set with
+ *     {@link #setSharedTileCache(TileCache)}), so tiles already decoded by other viewers are not decoded again.
+ *     Missing tiles are read from the server, which also stores them in its cache for the other viewers.
+ *     Hits and misses of the tile cache are reported to {@link FrameMetrics} under the name {@link #TILES_METRICS_NAME}.
+ * </p>
+ */
+public class ServerBrickSource implements BrickSource {
+
+    /**
+     * The name under which accesses to the tile cache are reported to {@link FrameMetrics}
+     */
+    public static final String TILES_METRICS_NAME = "Tiles (QuPath)";
+    private static final int DEFAULT_BRICK_WIDTH = 64;
+    private static final int DEFAULT_BRICK_HEIGHT = 64;
+    private static final int DEFAULT_BRICK_DEPTH = 16;
+    private static volatile TileCache sharedTileCache = ImageServer::getCachedTile;
+    private final ImageServer<BufferedImage> server;
+    private final TileCache tileCache;
+    private final int brickWidth;
+    private final int brickHeight;
+    private final int brickDepth;
+
+    /**
+     * Create a brick source with bricks of 64x64x16 voxels, using the shared tile cache.
+     *
+     * @param server  the image to read
+     */
+    public ServerBrickSource(ImageServer<BufferedImage> server) {
+        this(server, DEFAULT_BRICK_WIDTH, DEFAULT_BRICK_HEIGHT, DEFAULT_BRICK_DEPTH, getSharedTileCache());
+    }
+
+    /**
+     * Create a brick source.
+     *
+     * @param server  the image to read
+     * @param brickWidth  the number of voxels of the bricks on the x-axis
+     * @param brickHeight  the number of voxels of the bricks on the y-axis
+     * @param brickDepth  the number of voxels of the bricks on the z-axis
+     * @param tileCache  the cache to look up tiles in before reading them
+     * @throws IllegalArgumentException when one of the brick dimensions is less than 1
+     */
+    public ServerBrickSource(ImageServer<BufferedImage> server, int brickWidth, int brickHeight, int brickDepth, TileCache tileCache) {
+        if (brickWidth < 1 || brickHeight < 1 || brickDepth < 1) {
+            throw new IllegalArgumentException(String.format("Invalid brick size: %dx%dx%d", brickWidth, brickHeight, brickDepth));
+        }
+
+        this.server = server;
+        this.tileCache = tileCache;
+        this.brickWidth = brickWidth;
+        this.brickHeight = brickHeight;
+        this.brickDepth = brickDepth;
+    }
+
+    /**
+     * @return the tile cache used by the brick sources created without explicit tile cache. By default,
+     * this is the cache of each image server (see {@link ImageServer#getCachedTile(TileRequest)})
+     */
+    public static TileCache getSharedTileCache() {
+        return sharedTileCache;
+    }
+
+    /**
+     * Set the tile cache used by the brick sources created without explicit tile cache. Sources
+     * already created keep using the previous cache.
+     *
+     * @param tileCache  the new tile cache to use
+     */
+    public static void setSharedTileCache(TileCache tileCache) {
+        sharedTileCache = tileCache;
+    }
+
+    @Override
+    public ImageServer<BufferedImage> getServer() {
+        return server;
+    }
+
+    @Override
+    public int getBrickWidth() {
+        return brickWidth;
+    }
+
+    @Override
+    public int getBrickHeight() {
+        return brickHeight;
+    }
+
+    @Override
+    public int getBrickDepth() {
+        return brickDepth;
+    }
+
+    @Override
+    public Brick getBrick(int level, int t, int x, int y, int z) throws IOException {
+        ImageServerMetadata.ImageResolutionLevel resolutionLevel = server.getMetadata().getLevel(level);
+        int xOrigin = x * brickWidth;
+        int yOrigin = y * brickHeight;
+        int zOrigin = z * brickDepth;
+        if (xOrigin < 0 || yOrigin < 0 || zOrigin < 0 || t < 0 ||
+                xOrigin >= resolutionLevel.getWidth() || yOrigin >= resolutionLevel.getHeight() || zOrigin >= server.nZSlices() || t >= server.nTimepoints()) {
+            throw new IllegalArgumentException(String.format("Brick (%d, %d, %d, level %d, t %d) outside of image", x, y, z, level, t));
+        }
+
+        int width = Math.min(brickWidth, resolutionLevel.getWidth() - xOrigin);
+        int height = Math.min(brickHeight, resolutionLevel.getHeight() - yOrigin);
+        int depth = Math.min(brickDepth, server.nZSlices() - zOrigin);
+        double downsample = resolutionLevel.getDownsample();
+        int xFullResolution = (int) (xOrigin * downsample);
+        int yFullResolution = (int) (yOrigin * downsample);
+        ArrayBrick brick = new ArrayBrick(xOrigin, yOrigin, zOrigin, width, height, depth, server.isRGB() ? 3 : server.nChannels(), getStoragePixelType(server));
+
+        for (int k=0; k<depth; k++) {
+            RegionRequest request = RegionRequest.createInstance(
+                    server.getPath(),
+                    downsample,
+                    xFullResolution,
+                    yFullResolution,
+                    Math.min((int) Math.ceil(width * downsample), server.getWidth() - xFullResolution),
+                    Math.min((int) Math.ceil(height * downsample), server.getHeight() - yFullResolution),
+                    zOrigin + k,
+                    t
+            );
+
+            for (TileRequest tileRequest: server.getTileRequestManager().getTileRequests(request)) {
+                BufferedImage tile = tileCache.getCachedTile(server, tileRequest);
+                FrameMetrics.recordCacheAccess(TILES_METRICS_NAME, tile != null);
+                if (tile == null) {
+                    tile = server.readRegion(tileRequest.getRegionRequest());
+                }
+
+                if (tile != null) {
+                    copyTile(tile.getRaster(), tileRequest.getTileX(), tileRequest.getTileY(), brick, k);
+                }
+            }
+        }
+
+        return brick;
+    }
+
+    /**
+     * Copy the part of a tile that overlaps a z-slice of a brick.
+     *
+     * @param raster  the pixels of the tile
+     * @param tileX  the x-coordinate of the tile, in the coordinates of its resolution level
+     * @param tileY  the y-coordinate of the tile, in the coordinates of its resolution level
+     * @param brick  the brick to fill
+     * @param z  the z-slice of the brick to fill, relative to the first voxel of the brick
+     */
+    private static void copyTile(Raster raster, int tileX, int tileY, ArrayBrick brick, int z) {
+        int xStart = Math.max(tileX, brick.getX());
+        int yStart = Math.max(tileY, brick.getY());
+        int xEnd = Math.min(tileX + raster.getWidth(), brick.getX() + brick.getWidth());
+        int yEnd = Math.min(tileY + raster.getHeight(), brick.getY() + brick.getHeight());
+        if (xEnd <= xStart || yEnd <= yStart) {
+            return;
+        }
+
+        int copyWidth = xEnd - xStart;
+        int copyHeight = yEnd - yStart;
+        double[] samples = new double[copyWidth * copyHeight];
+        for (int c=0; c<brick.nChannels() && c<raster.getNumBands(); c++) {
+            raster.getSamples(xStart - tileX, yStart - tileY, copyWidth, copyHeight, c, samples);
+            for (int j=0; j<copyHeight; j++) {
+                for (int i=0; i<copyWidth; i++) {
+                    brick.setValue(c, xStart - brick.getX() + i, yStart - brick.getY() + j, z, samples[j * copyWidth + i]);
+                }
+            }
+        }
+    }
+
+    private static PixelType getStoragePixelType(ImageServer<BufferedImage> server) {
+        // RGB images are stored as three 8-bit channels, whatever their reported pixel type
+        return server.isRGB() ? PixelType.UINT8 : server.getPixelType();
+    }
+}
@@ -0,0 +1,30 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.TileRequest;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>
+ *     A cache of decoded tiles, shared with the rest of the application. It is used by
+ *     {@link ServerBrickSource} to reuse the tiles already decoded by other viewers
+ *     (for example the 2D viewer of QuPath) before reading them.
+ * </p>
+ * <p>
+ *     The cache is only queried: tiles are added to it by the image servers when they are read.
+ *     See {@link ServerBrickSource#setSharedTileCache(TileCache)} to change the cache used by the viewers.
+ * </p>
+ */
+@FunctionalInterface
+public interface TileCache {
+
+    /**
+     * Get a tile from the cache. This function may be called from any thread.
+     *
+     * @param server  the image the tile belongs to
+     * @param tileRequest  the tile to retrieve
+     * @return the tile, or null if it is not in the cache
+     */
+    BufferedImage getCachedTile(ImageServer<BufferedImage> server, TileRequest tileRequest);
+}
@@ -0,0 +1,4 @@
+/**
+ * Access to the voxels of an image as 3D blocks (bricks), and caching of these blocks.
+ */
+package qupath.ext.viewer.bricks;
@@ -2,7 +2,12 @@ package qupath.ext.viewer.extensions;
 
 import javafx.geometry.Point3D;
 import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.BrickReadEvent;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.metrics.SlicerPose;
 import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.TileRequest;
 import qupath.lib.regions.RegionRequest;
 
 import java.awt.image.BufferedImage;
@@ -22,6 +27,8 @@ public class ImageServerExtension {
      * The region can be located anywhere in the (x, y, z) space.
      * The width (height) of the returned image is the width (height) of the region + 1.
      * This function is very slow because it reads the region pixel by pixel.
+     * The time spent reading pixels is recorded as {@link PipelineStage#IO}, and the
+     * remaining time as {@link PipelineStage#RESAMPLING}.
      *
      * @param server  the image to read
      * @param area  the region of the image to read. It must be a rectangle, otherwise an unexpected result
@@ -31,6 +38,8 @@ public class ImageServerExtension {
      * @throws IOException when an exception occurs while reading the image
      */
     public static BufferedImage readRegion(ImageServer<BufferedImage> server, Rectangle area, int t) throws IOException {
+        long startTime = System.nanoTime();
+        long ioDuration = 0;
         int width = (int) area.getU().magnitude() + 1;
         int height = (int) area.getV().magnitude() + 1;
         BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
@@ -46,7 +55,7 @@ public class ImageServerExtension {
                 int z = (int) Math.round(point.getZ());
 
                 if (0 <= x && x < server.getWidth() && 0 <= y && y < server.getHeight() && 0 <= z && z < server.nZSlices()) {
-                    BufferedImage pixel = server.readRegion(RegionRequest.createInstance(
+                    RegionRequest request = RegionRequest.createInstance(
                             server.getPath(),
                             1.0,
                             (int) point.getX(),
@@ -55,12 +64,38 @@ public class ImageServerExtension {
                             1,
                             (int) point.getZ(),
                             t
-                    ));
+                    );
+                    BrickReadEvent event = new BrickReadEvent();
+                    boolean cacheHit = event.isEnabled() && isCached(server, request);
+
+                    event.begin();
+                    long ioStartTime = System.nanoTime();
+                    BufferedImage pixel = server.readRegion(request);
+                    ioDuration += System.nanoTime() - ioStartTime;
+                    if (event.shouldCommit()) {
+                        event.poseId = SlicerPose.current();
+                        event.image = server.getPath();
+                        event.level = 0;
+                        event.x = request.getX();
+                        event.y = request.getY();
+                        event.z = request.getZ();
+                        event.t = t;
+                        event.bytes = (long) server.nChannels() * server.getPixelType().getBytesPerPixel();
+                        event.cacheHit = cacheHit;
+                        event.commit();
+                    }
                     image.setRGB(i, j, pixel.getRGB(0, 0));
                 }
             }
         }
 
+        FrameMetrics.recordDuration(PipelineStage.IO, ioDuration);
+        FrameMetrics.recordDuration(PipelineStage.RESAMPLING, System.nanoTime() - startTime - ioDuration);
         return image;
     }
+
+    private static boolean isCached(ImageServer<BufferedImage> server, RegionRequest request) {
+        TileRequest tile = server.getTileRequestManager().getTileRequest(0, request.getX(), request.getY(), request.getZ(), request.getT());
+        return tile != null && server.getCachedTile(tile) != null;
+    }
 }
@@ -1,7 +1,8 @@
-package qupath.ext.viewer.scene;
+package qupath.ext.viewer.mathsoperations;
 
 import javafx.geometry.Point3D;
-import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
 import qupath.lib.images.servers.ImageServer;
 
 import java.util.ArrayList;
@@ -13,11 +14,21 @@ import java.util.function.Function;
  * It is centered at (0, 0, 0) and its dimension are
  * (imageWidth * pixelWidth, imageHeight * pixelHeight, imageDepth * zSpacing).
  * It is possible to retrieve the part of the cube that is located in front of a rectangle.
+ * This class is thread-safe.
  */
-class Cube {
+public class Cube {
 
     private final List<Rectangle> sides;
     private final Function<Point3D, Point3D> spaceToPixelTransform;
+    private final Function<Point3D, Point3D> pixelToSpaceTransform;
+
+    /**
+     * A face of the part of a cube located in front of a rectangle.
+     *
+     * @param points  the vertices of the face, in no particular order. There are at least 3 of them
+     * @param onRectangle  whether this face is the part of the rectangle located inside the cube
+     */
+    public record Face(List<Point3D> points, boolean onRectangle) {}
 
     /**
      * Create the cube.
@@ -27,6 +38,7 @@ class Cube {
     public Cube(ImageServer<?> imageServer) {
         sides = getSides(imageServer);
         spaceToPixelTransform = getSpaceToPixelTransform(imageServer);
+        pixelToSpaceTransform = getPixelToSpaceTransform(imageServer);
     }
 
     /**
@@ -34,25 +46,44 @@ class Cube {
      * The result is a closed 3D shape, represented as a list of faces.
      *
      * @param rectangle  the rectangle the cube should be in front of
-     * @return a list of faces that represent the part of the cube that is located in front of the rectangle
+     * @return a list of faces that represent the part of the cube that is located in front of the rectangle.
+     * If the rectangle cuts the cube, the last face is the part of the rectangle inside the cube
+     * (see {@link Face#onRectangle()})
      */
-    public List<Polygon> getPartOfCubeInFrontOfRectangle(Rectangle rectangle) {
-        List<Polygon> polygons = new ArrayList<>();
+    public List<Face> getPartOfCubeInFrontOfRectangle(Rectangle rectangle) {
+        long startTime = System.nanoTime();
+        List<Face> faces = new ArrayList<>();
 
         for (Rectangle side: this.sides) {
             List<Point3D> points = side.getPartOfRectangleInFrontOfOtherRectangle(rectangle);
 
             if (points.size() > 2) {
-                polygons.add(new Polygon(points, spaceToPixelTransform));
+                faces.add(new Face(points, false));
             }
         }
 
         List<Point3D> pointsOfSlicer = rectangle.getPartOfRectangleInsideCube(this.sides);
         if (pointsOfSlicer.size() > 2) {
-            polygons.add(new Polygon(pointsOfSlicer, spaceToPixelTransform));
+            faces.add(new Face(pointsOfSlicer, true));
         }
 
-        return polygons;
+        FrameMetrics.record(PipelineStage.CLIPPING, startTime);
+        return faces;
+    }
+
+    /**
+     * @return a function that maps a point in space to a pixel coordinate of the image
+     */
+    public Function<Point3D, Point3D> getSpaceToPixelTransform() {
+        return spaceToPixelTransform;
+    }
+
+    /**
+     * @return a function that maps a pixel coordinate of the image to a point in space.
+     * This is the inverse of {@link #getSpaceToPixelTransform()}
+     */
+    public Function<Point3D, Point3D> getPixelToSpaceTransform() {
+        return pixelToSpaceTransform;
     }
 
     private static List<Rectangle> getSides(ImageServer<?> imageServer) {
@@ -150,4 +181,22 @@ class Cube {
                         (-imageServer.getPixelCalibration().getZSpacing().doubleValue() * imageServer.nZSlices())
         );
     }
+
+    /**
+     * Return a function that maps a pixel coordinate of the image to a point in space.
+     *
+     * @param imageServer  the image to get the pixel coordinates from
+     * @return the inverse of the function returned by {@link #getSpaceToPixelTransform(ImageServer)}
+     */
+    private static Function<Point3D, Point3D> getPixelToSpaceTransform(ImageServer<?> imageServer) {
+        double width = imageServer.getPixelCalibration().getPixelWidth().doubleValue() * imageServer.getWidth();
+        double height = imageServer.getPixelCalibration().getPixelHeight().doubleValue() * imageServer.getHeight();
+        double depth = imageServer.getPixelCalibration().getZSpacing().doubleValue() * imageServer.nZSlices();
+
+        return p -> new Point3D(
+                p.getX() * width / Math.max(1, imageServer.getWidth() - 1) - width / 2,
+                p.getY() * height / Math.max(1, imageServer.getHeight() - 1) - height / 2,
+                depth / 2 - p.getZ() * depth / Math.max(1, imageServer.nZSlices() - 1)
+        );
+    }
 }
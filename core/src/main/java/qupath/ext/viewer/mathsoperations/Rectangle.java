@@ -1,11 +1,8 @@
 package qupath.ext.viewer.mathsoperations;
 
 import javafx.geometry.Point3D;
-import javafx.scene.transform.Transform;
 import qupath.ext.viewer.extensions.Point3DExtension;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
@@ -44,30 +41,6 @@ public record Rectangle(Point3D p0, Point3D p1, Point3D p2) {
         );
     }
 
-    /**
-     * Create a rectangle from a JavaFX rectangle. This will the transforms of the JavaFX
-     * rectangle into account.
-     *
-     * @param rectangle  the JavaFX rectangle to copy
-     * @return a new rectangle corresponding to the JavaFX rectangle
-     */
-    public static Rectangle createFromJavaFXRectangle(javafx.scene.shape.Rectangle rectangle) {
-        Point3D A = new Point3D(rectangle.getX(), rectangle.getY(), 0);
-        Point3D B = new Point3D(rectangle.getX() + rectangle.getWidth(), rectangle.getY(), 0);
-        Point3D C = new Point3D(rectangle.getX() + rectangle.getWidth(), rectangle.getY() + rectangle.getHeight(), 0);
-
-        List<Transform> transforms = new ArrayList<>(rectangle.getTransforms());
-        Collections.reverse(transforms);
-
-        for (Transform transform: transforms) {
-            A = transform.transform(A);
-            B = transform.transform(B);
-            C = transform.transform(C);
-        }
-
-        return new Rectangle(A, B, C);
-    }
-
     /**
      * @return the upper left corner of the rectangle, as defined in {@link #Rectangle(Point3D,Point3D,Point3D)}.
      */
@@ -0,0 +1,25 @@
+package qupath.ext.viewer.meshes;
+
+/**
+ * A triangle mesh whose triangles reference shared vertices.
+ *
+ * @param vertices  the (x, y, z) coordinates of the vertices, one vertex after the other
+ * @param triangles  the indices of the three vertices of each triangle, one triangle after the other.
+ *                   Vertices are listed counterclockwise when the triangle is seen from the outside of the surface
+ */
+public record IndexedMesh(float[] vertices, int[] triangles) {
+
+    /**
+     * @return the number of vertices of this mesh
+     */
+    public int nVertices() {
+        return vertices.length / 3;
+    }
+
+    /**
+     * @return the number of triangles of this mesh
+     */
+    public int nTriangles() {
+        return triangles.length / 3;
+    }
+}
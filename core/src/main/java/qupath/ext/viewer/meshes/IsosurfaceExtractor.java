@@ -0,0 +1,401 @@
+package qupath.ext.viewer.meshes;
+
+import qupath.ext.viewer.bricks.Brick;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.bricks.BrickSummary;
+import qupath.ext.viewer.metrics.SlicerPose;
+import qupath.lib.images.servers.ImageServerMetadata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>
+ *     Extract the surface separating the voxels of a channel above and below a threshold.
+ * </p>
+ * <p>
+ *     The cube formed by each group of 8 neighbouring voxels is split into 6 tetrahedra sharing the diagonal
+ *     of the cube, and the surface is interpolated along the edges of the tetrahedra
+ *     (<a href="https://en.wikipedia.org/wiki/Marching_tetrahedra">marching tetrahedra</a>). Compared to
+ *     marching cubes, this requires no case table and the surface never has holes, at the cost of more triangles
+ *     (see {@link QuadricDecimator} to reduce them).
+ * </p>
+ * <p>
+ *     Cubes are processed brick by brick, in parallel on all cores, and the triangles of each brick are added to
+ *     the result as soon as the brick is processed, so only the bricks being processed and the result are kept in
+ *     memory. Vertices are shared between the triangles of a brick, and between the triangles of neighbouring bricks.
+ *     Bricks whose {@link BrickSource#getSummary(int, int, int, int, int) summary} (and the summaries of the
+ *     neighbours they touch) show they are entirely above or below the threshold are not read.
+ * </p>
+ */
+public class IsosurfaceExtractor {
+
+    private static final int[][] TETRAHEDRA = {
+            {0, 1, 3, 7},
+            {0, 1, 5, 7},
+            {0, 2, 3, 7},
+            {0, 2, 6, 7},
+            {0, 4, 5, 7},
+            {0, 4, 6, 7}
+    };
+    private final BrickSource brickSource;
+    private final int level;
+    private final int t;
+    private final int channel;
+    private final double threshold;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final double downsample;
+
+    private record BrickIndex(int x, int y, int z) {}
+
+    /**
+     * Create an extractor.
+     *
+     * @param brickSource  the source providing the voxels of the image
+     * @param level  the resolution level to read voxels from
+     * @param t  the time point to read
+     * @param channel  the channel whose values should be compared to the threshold
+     * @param threshold  voxels whose value is greater than or equal to this threshold are inside the surface
+     * @throws IllegalArgumentException when the channel doesn't exist
+     */
+    public IsosurfaceExtractor(BrickSource brickSource, int level, int t, int channel, double threshold) {
+        int nChannels = brickSource.getServer().isRGB() ? 3 : brickSource.getServer().nChannels();
+        if (channel < 0 || channel >= nChannels) {
+            throw new IllegalArgumentException(String.format("Channel %d doesn't exist in an image of %d channels", channel, nChannels));
+        }
+
+        ImageServerMetadata.ImageResolutionLevel resolutionLevel = brickSource.getServer().getMetadata().getLevel(level);
+        this.brickSource = brickSource;
+        this.level = level;
+        this.t = t;
+        this.channel = channel;
+        this.threshold = threshold;
+        this.width = resolutionLevel.getWidth();
+        this.height = resolutionLevel.getHeight();
+        this.depth = brickSource.getServer().nZSlices();
+        this.downsample = resolutionLevel.getDownsample();
+    }
+
+    /**
+     * Extract the surface. This function reads the image, so it shouldn't be called from the JavaFX Application Thread.
+     *
+     * @param cancelled  a function called before processing each brick. If it returns true, the extraction stops
+     * @return the surface, in full resolution pixel coordinates, or null if the extraction was cancelled
+     * @throws IOException when an error occurs while reading the image
+     */
+    public IndexedMesh extract(BooleanSupplier cancelled) throws IOException {
+        List<BrickIndex> bricks = new ArrayList<>();
+        for (int z=0; z<ceilDiv(depth, brickSource.getBrickDepth()); z++) {
+            for (int y=0; y<ceilDiv(height, brickSource.getBrickHeight()); y++) {
+                for (int x=0; x<ceilDiv(width, brickSource.getBrickWidth()); x++) {
+                    bricks.add(new BrickIndex(x, y, z));
+                }
+            }
+        }
+
+        MeshBuilder meshBuilder = new MeshBuilder();
+        try {
+            bricks.parallelStream().forEach(SlicerPose.wrap(brick -> {
+                if (!cancelled.getAsBoolean()) {
+                    try {
+                        processBrick(brick, meshBuilder);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return cancelled.getAsBoolean() ? null : meshBuilder.build();
+    }
+
+    private void processBrick(BrickIndex brickIndex, MeshBuilder meshBuilder) throws IOException {
+        if (canSkip(brickIndex)) {
+            return;
+        }
+
+        // Cubes of this brick start at the voxels of the brick, and end one voxel further
+        int xStart = brickIndex.x() * brickSource.getBrickWidth();
+        int yStart = brickIndex.y() * brickSource.getBrickHeight();
+        int zStart = brickIndex.z() * brickSource.getBrickDepth();
+        int numberOfCubesX = Math.min(xStart + brickSource.getBrickWidth(), width - 1) - xStart;
+        int numberOfCubesY = Math.min(yStart + brickSource.getBrickHeight(), height - 1) - yStart;
+        int numberOfCubesZ = Math.min(zStart + brickSource.getBrickDepth(), depth - 1) - zStart;
+        if (numberOfCubesX < 1 || numberOfCubesY < 1 || numberOfCubesZ < 1) {
+            return;
+        }
+
+        float[] values = readValues(xStart, yStart, zStart, numberOfCubesX + 1, numberOfCubesY + 1, numberOfCubesZ + 1);
+        Map<Long, Integer> localVertices = new HashMap<>();
+        int[] triangles = new int[3 * 256];
+        int numberOfIndices = 0;
+        float[] cornerValues = new float[8];
+        int[] edgeVertices = new int[4];
+
+        for (int z=0; z<numberOfCubesZ; z++) {
+            for (int y=0; y<numberOfCubesY; y++) {
+                for (int x=0; x<numberOfCubesX; x++) {
+                    int numberOfInsideCorners = 0;
+                    for (int corner=0; corner<8; corner++) {
+                        cornerValues[corner] = values[
+                                ((z + (corner >> 2 & 1)) * (numberOfCubesY + 1) + y + (corner >> 1 & 1)) * (numberOfCubesX + 1) + x + (corner & 1)
+                        ];
+                        if (cornerValues[corner] >= threshold) {
+                            numberOfInsideCorners++;
+                        }
+                    }
+                    if (numberOfInsideCorners == 0 || numberOfInsideCorners == 8) {
+                        continue;
+                    }
+
+                    for (int[] tetrahedron: TETRAHEDRA) {
+                        int numberOfEdgeVertices = polygonize(
+                                tetrahedron,
+                                cornerValues,
+                                xStart + x,
+                                yStart + y,
+                                zStart + z,
+                                localVertices,
+                                meshBuilder,
+                                edgeVertices
+                        );
+
+                        if (numberOfIndices + 6 > triangles.length) {
+                            triangles = Arrays.copyOf(triangles, 2 * triangles.length);
+                        }
+                        if (numberOfEdgeVertices >= 3) {
+                            triangles[numberOfIndices++] = edgeVertices[0];
+                            triangles[numberOfIndices++] = edgeVertices[1];
+                            triangles[numberOfIndices++] = edgeVertices[2];
+                        }
+                        if (numberOfEdgeVertices == 4) {
+                            triangles[numberOfIndices++] = edgeVertices[0];
+                            triangles[numberOfIndices++] = edgeVertices[2];
+                            triangles[numberOfIndices++] = edgeVertices[3];
+                        }
+                    }
+                }
+            }
+        }
+
+        meshBuilder.addTriangles(triangles, numberOfIndices);
+    }
+
+    /**
+     * Compute the part of the surface crossing a tetrahedron of a cube.
+     *
+     * @param tetrahedron  the corners of the cube forming the tetrahedron
+     * @param cornerValues  the values of the 8 corners of the cube
+     * @param x  the x-coordinate of the first corner of the cube
+     * @param y  the y-coordinate of the first corner of the cube
+     * @param z  the z-coordinate of the first corner of the cube
+     * @param localVertices  the vertices already added by the current brick, that can't be added by other bricks
+     * @param meshBuilder  the builder to add vertices to
+     * @param edgeVertices  an array that will be filled with the indices of the vertices of the polygon (a triangle or
+     *                      a quadrilateral), in counterclockwise order when seen from outside the surface
+     * @return the number of vertices of the polygon (0, 3 or 4)
+     */
+    private int polygonize(
+            int[] tetrahedron,
+            float[] cornerValues,
+            int x,
+            int y,
+            int z,
+            Map<Long, Integer> localVertices,
+            MeshBuilder meshBuilder,
+            int[] edgeVertices
+    ) {
+        int[] inside = new int[4];
+        int[] outside = new int[4];
+        int numberOfInside = 0;
+        int numberOfOutside = 0;
+        for (int corner: tetrahedron) {
+            if (cornerValues[corner] >= threshold) {
+                inside[numberOfInside++] = corner;
+            } else {
+                outside[numberOfOutside++] = corner;
+            }
+        }
+
+        int[][] edges = switch (numberOfInside) {
+            case 1 -> new int[][] {{inside[0], outside[0]}, {inside[0], outside[1]}, {inside[0], outside[2]}};
+            case 2 -> new int[][] {{inside[0], outside[0]}, {inside[0], outside[1]}, {inside[1], outside[1]}, {inside[1], outside[0]}};
+            case 3 -> new int[][] {{inside[0], outside[0]}, {inside[1], outside[0]}, {inside[2], outside[0]}};
+            default -> new int[0][];
+        };
+        if (edges.length == 0) {
+            return 0;
+        }
+
+        float[][] positions = new float[edges.length][];
+        for (int i=0; i<edges.length; i++) {
+            positions[i] = interpolate(edges[i][0], edges[i][1], cornerValues, x, y, z);
+            edgeVertices[i] = addVertex(edges[i][0], edges[i][1], x, y, z, positions[i], localVertices, meshBuilder);
+        }
+
+        // The normal of the polygon should point from the inside corners to the outside corners
+        double[] normal = cross(subtract(positions[1], positions[0]), subtract(positions[2], positions[0]));
+        double[] insideToOutside = new double[3];
+        for (int i=0; i<numberOfOutside; i++) {
+            add(insideToOutside, getCornerOffset(outside[i]), 1d / numberOfOutside);
+        }
+        for (int i=0; i<numberOfInside; i++) {
+            add(insideToOutside, getCornerOffset(inside[i]), -1d / numberOfInside);
+        }
+        if (normal[0] * insideToOutside[0] + normal[1] * insideToOutside[1] + normal[2] * insideToOutside[2] < 0) {
+            for (int i=0; i<edges.length/2; i++) {
+                int vertex = edgeVertices[i];
+                edgeVertices[i] = edgeVertices[edges.length - 1 - i];
+                edgeVertices[edges.length - 1 - i] = vertex;
+            }
+        }
+
+        return edges.length;
+    }
+
+    private float[] interpolate(int firstCorner, int secondCorner, float[] cornerValues, int x, int y, int z) {
+        double ratio = (threshold - cornerValues[firstCorner]) / (cornerValues[secondCorner] - cornerValues[firstCorner]);
+        return new float[] {
+                (float) ((x + (firstCorner & 1) + ratio * ((secondCorner & 1) - (firstCorner & 1))) * downsample),
+                (float) ((y + (firstCorner >> 1 & 1) + ratio * ((secondCorner >> 1 & 1) - (firstCorner >> 1 & 1))) * downsample),
+                (float) (z + (firstCorner >> 2 & 1) + ratio * ((secondCorner >> 2 & 1) - (firstCorner >> 2 & 1)))
+        };
+    }
+
+    /**
+     * Add the vertex located on an edge of a tetrahedron, unless it has already been added.
+     * Vertices located on a plane separating two bricks can be added by both bricks, so they are shared
+     * with the other bricks. Other vertices are only shared within the current brick.
+     */
+    private int addVertex(
+            int firstCorner,
+            int secondCorner,
+            int x,
+            int y,
+            int z,
+            float[] position,
+            Map<Long, Integer> localVertices,
+            MeshBuilder meshBuilder
+    ) {
+        // Corners of the edges of the tetrahedra are ordered: the bits of one corner are a subset of the bits of the other
+        int lowCorner = Math.min(firstCorner, secondCorner);
+        int highCorner = Math.max(firstCorner, secondCorner);
+        int lowX = x + (lowCorner & 1);
+        int lowY = y + (lowCorner >> 1 & 1);
+        int lowZ = z + (lowCorner >> 2 & 1);
+        int direction = lowCorner ^ highCorner;
+        long key = ((((long) lowZ * height + lowY) * width + lowX) << 3) | direction;
+
+        boolean onBrickBoundary = ((direction & 1) == 0 && lowX % brickSource.getBrickWidth() == 0) ||
+                ((direction & 2) == 0 && lowY % brickSource.getBrickHeight() == 0) ||
+                ((direction & 4) == 0 && lowZ % brickSource.getBrickDepth() == 0);
+        if (onBrickBoundary) {
+            return meshBuilder.addSharedVertex(key, position[0], position[1], position[2]);
+        } else {
+            return localVertices.computeIfAbsent(key, k -> meshBuilder.addVertex(position[0], position[1], position[2]));
+        }
+    }
+
+    /**
+     * @return whether the brick and the neighbours it touches are known to be entirely on one side of the threshold
+     */
+    private boolean canSkip(BrickIndex brickIndex) {
+        boolean allInside = true;
+        boolean allOutside = true;
+
+        for (int z=brickIndex.z(); z<=Math.min(brickIndex.z() + 1, ceilDiv(depth, brickSource.getBrickDepth()) - 1); z++) {
+            for (int y=brickIndex.y(); y<=Math.min(brickIndex.y() + 1, ceilDiv(height, brickSource.getBrickHeight()) - 1); y++) {
+                for (int x=brickIndex.x(); x<=Math.min(brickIndex.x() + 1, ceilDiv(width, brickSource.getBrickWidth()) - 1); x++) {
+                    BrickSummary summary = brickSource.getSummary(level, t, x, y, z);
+                    if (summary == null || channel >= summary.nChannels()) {
+                        return false;
+                    }
+
+                    allInside &= summary.min()[channel] >= threshold;
+                    allOutside &= summary.max()[channel] < threshold;
+                }
+            }
+        }
+        return allInside || allOutside;
+    }
+
+    /**
+     * @return the values of the channel in a box of the level, indexed by {@code (z * height + y) * width + x}
+     */
+    private float[] readValues(int xStart, int yStart, int zStart, int width, int height, int depth) throws IOException {
+        float[] values = new float[width * height * depth];
+
+        Brick brick = null;
+        for (int z=0; z<depth; z++) {
+            for (int y=0; y<height; y++) {
+                for (int x=0; x<width; x++) {
+                    int xLevel = xStart + x;
+                    int yLevel = yStart + y;
+                    int zLevel = zStart + z;
+
+                    if (brick == null || !contains(brick, xLevel, yLevel, zLevel)) {
+                        brick = brickSource.getBrick(
+                                level,
+                                t,
+                                xLevel / brickSource.getBrickWidth(),
+                                yLevel / brickSource.getBrickHeight(),
+                                zLevel / brickSource.getBrickDepth()
+                        );
+                    }
+                    values[(z * height + y) * width + x] = (float) brick.getValue(
+                            channel,
+                            xLevel - brick.getX(),
+                            yLevel - brick.getY(),
+                            zLevel - brick.getZ()
+                    );
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the position of a corner relative to the first corner of its cube, in full resolution pixel coordinates
+     */
+    private double[] getCornerOffset(int corner) {
+        return new double[] {(corner & 1) * downsample, (corner >> 1 & 1) * downsample, corner >> 2 & 1};
+    }
+
+    private static double[] subtract(float[] a, float[] b) {
+        return new double[] {a[0] - b[0], a[1] - b[1], a[2] - b[2]};
+    }
+
+    private static double[] cross(double[] a, double[] b) {
+        return new double[] {
+                a[1] * b[2] - a[2] * b[1],
+                a[2] * b[0] - a[0] * b[2],
+                a[0] * b[1] - a[1] * b[0]
+        };
+    }
+
+    private static void add(double[] accumulator, double[] vector, double factor) {
+        for (int i=0; i<accumulator.length; i++) {
+            accumulator[i] += factor * vector[i];
+        }
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static boolean contains(Brick brick, int x, int y, int z) {
+        return brick.getX() <= x && x < brick.getX() + brick.getWidth() &&
+                brick.getY() <= y && y < brick.getY() + brick.getHeight() &&
+                brick.getZ() <= z && z < brick.getZ() + brick.getDepth();
+    }
+}
@@ -0,0 +1,83 @@
+package qupath.ext.viewer.meshes;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ *     Collect the vertices and triangles of an {@link IndexedMesh} produced by several threads.
+ * </p>
+ * <p>
+ *     Vertices that can be produced by several threads (for example vertices located on the boundary
+ *     between two blocks of work) are identified by a key, so that they are only added once.
+ *     Other vertices are added without key, so that only the keys of shared vertices are kept in memory.
+ * </p>
+ * <p>
+ *     This class is thread-safe.
+ * </p>
+ */
+class MeshBuilder {
+
+    private final Map<Long, Integer> sharedVertices = new ConcurrentHashMap<>();
+    private float[] vertices = new float[3 * 1024];
+    private int[] triangles = new int[3 * 1024];
+    private int numberOfVertices = 0;
+    private int numberOfTriangles = 0;
+
+    /**
+     * Add a vertex.
+     *
+     * @return the index of the new vertex
+     */
+    public synchronized int addVertex(float x, float y, float z) {
+        if (3 * (numberOfVertices + 1) > vertices.length) {
+            vertices = Arrays.copyOf(vertices, 2 * vertices.length);
+        }
+        vertices[3 * numberOfVertices] = x;
+        vertices[3 * numberOfVertices + 1] = y;
+        vertices[3 * numberOfVertices + 2] = z;
+        return numberOfVertices++;
+    }
+
+    /**
+     * Add a vertex that may be added by other threads, unless a vertex with the same key has already been added.
+     *
+     * @param key  a key identifying the vertex
+     * @return the index of the vertex with the provided key
+     */
+    public int addSharedVertex(long key, float x, float y, float z) {
+        return sharedVertices.computeIfAbsent(key, k -> addVertex(x, y, z));
+    }
+
+    /**
+     * Add triangles.
+     *
+     * @param triangles  the indices of the vertices of the triangles to add, as described in {@link IndexedMesh}
+     * @param length  the number of elements of the provided array to add
+     */
+    public synchronized void addTriangles(int[] triangles, int length) {
+        if (3 * numberOfTriangles + length > this.triangles.length) {
+            this.triangles = Arrays.copyOf(this.triangles, Math.max(2 * this.triangles.length, 3 * numberOfTriangles + length));
+        }
+        System.arraycopy(triangles, 0, this.triangles, 3 * numberOfTriangles, length);
+        numberOfTriangles += length / 3;
+    }
+
+    /**
+     * @return the number of triangles added so far
+     */
+    public synchronized int getNumberOfTriangles() {
+        return numberOfTriangles;
+    }
+
+    /**
+     * @return a mesh containing the vertices and triangles added so far
+     */
+    public synchronized IndexedMesh build() {
+        return new IndexedMesh(
+                Arrays.copyOf(vertices, 3 * numberOfVertices),
+                Arrays.copyOf(triangles, 3 * numberOfTriangles)
+        );
+    }
+}
@@ -0,0 +1,367 @@
+package qupath.ext.viewer.meshes;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ *     Reduce the number of triangles of a mesh by collapsing its edges one after the other, using the
+ *     <a href="https://www.cs.cmu.edu/~./garland/Papers/quadrics.pdf">quadric error metric</a> of Garland and Heckbert
+ *     to collapse first the edges whose removal changes the surface the least.
+ * </p>
+ * <p>
+ *     Collapses that would flip a triangle (or turn it into a thin sliver) are not performed. The decimation stops when the target number of
+ *     triangles is reached, or when no edge can be collapsed anymore.
+ * </p>
+ */
+public class QuadricDecimator {
+
+    private static final int QUADRIC_SIZE = 10;
+    private static final double MINIMUM_NORMAL_COSINE = 0.2;
+    private static final double MINIMUM_QUALITY = 1e-2;
+    private static final double SINGULARITY_THRESHOLD = 1e-6;
+
+    private record Collapse(double cost, int keptVertex, int removedVertex, int keptVersion, int removedVersion, double[] position) {}
+
+    private QuadricDecimator() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Decimate a mesh.
+     *
+     * @param mesh  the mesh to decimate. It is not modified
+     * @param targetNumberOfTriangles  the number of triangles the result should have
+     * @return a new mesh with at most the target number of triangles if possible, or the provided mesh if it already
+     * has less triangles than the target
+     */
+    public static IndexedMesh decimate(IndexedMesh mesh, int targetNumberOfTriangles) {
+        if (mesh.nTriangles() <= targetNumberOfTriangles) {
+            return mesh;
+        }
+
+        int nVertices = mesh.nVertices();
+        int nTriangles = mesh.nTriangles();
+        double[] positions = new double[3 * nVertices];
+        for (int i=0; i<positions.length; i++) {
+            positions[i] = mesh.vertices()[i];
+        }
+        int[] triangles = mesh.triangles().clone();
+        boolean[] aliveTriangles = new boolean[nTriangles];
+        Arrays.fill(aliveTriangles, true);
+        boolean[] aliveVertices = new boolean[nVertices];
+        Arrays.fill(aliveVertices, true);
+        int[] versions = new int[nVertices];
+        double[] quadrics = computeQuadrics(positions, triangles, nVertices);
+        int[][] adjacentTriangles = computeAdjacentTriangles(triangles, nVertices);
+        int[] numberOfAdjacentTriangles = new int[nVertices];
+        for (int vertex=0; vertex<nVertices; vertex++) {
+            numberOfAdjacentTriangles[vertex] = adjacentTriangles[vertex].length;
+        }
+
+        PriorityQueue<Collapse> collapses = new PriorityQueue<>((first, second) -> Double.compare(first.cost(), second.cost()));
+        for (int triangle=0; triangle<nTriangles; triangle++) {
+            for (int corner=0; corner<3; corner++) {
+                int first = triangles[3 * triangle + corner];
+                int second = triangles[3 * triangle + (corner + 1) % 3];
+                // The edge is shared by two triangles listing its vertices in opposite orders
+                if (first < second) {
+                    collapses.add(computeCollapse(first, second, positions, quadrics, versions));
+                }
+            }
+        }
+
+        int numberOfAliveTriangles = nTriangles;
+        while (numberOfAliveTriangles > targetNumberOfTriangles && !collapses.isEmpty()) {
+            Collapse collapse = collapses.poll();
+            int kept = collapse.keptVertex();
+            int removed = collapse.removedVertex();
+            if (!aliveVertices[kept] || !aliveVertices[removed] ||
+                    versions[kept] != collapse.keptVersion() || versions[removed] != collapse.removedVersion()) {
+                continue;
+            }
+            if (flipsTriangle(collapse, positions, triangles, aliveTriangles, adjacentTriangles, numberOfAdjacentTriangles)) {
+                continue;
+            }
+
+            System.arraycopy(collapse.position(), 0, positions, 3 * kept, 3);
+            for (int i=0; i<QUADRIC_SIZE; i++) {
+                quadrics[QUADRIC_SIZE * kept + i] += quadrics[QUADRIC_SIZE * removed + i];
+            }
+            aliveVertices[removed] = false;
+            versions[kept]++;
+
+            for (int i=0; i<numberOfAdjacentTriangles[removed]; i++) {
+                int triangle = adjacentTriangles[removed][i];
+                if (!aliveTriangles[triangle]) {
+                    continue;
+                }
+
+                if (contains(triangles, triangle, kept)) {
+                    aliveTriangles[triangle] = false;
+                    numberOfAliveTriangles--;
+                } else {
+                    for (int corner=0; corner<3; corner++) {
+                        if (triangles[3 * triangle + corner] == removed) {
+                            triangles[3 * triangle + corner] = kept;
+                        }
+                    }
+                    if (numberOfAdjacentTriangles[kept] == adjacentTriangles[kept].length) {
+                        adjacentTriangles[kept] = Arrays.copyOf(adjacentTriangles[kept], Math.max(4, 2 * adjacentTriangles[kept].length));
+                    }
+                    adjacentTriangles[kept][numberOfAdjacentTriangles[kept]++] = triangle;
+                }
+            }
+
+            // Remove dead triangles from the adjacency of the kept vertex, and update the cost of its edges
+            int numberOfKeptTriangles = 0;
+            for (int i=0; i<numberOfAdjacentTriangles[kept]; i++) {
+                int triangle = adjacentTriangles[kept][i];
+                if (aliveTriangles[triangle]) {
+                    adjacentTriangles[kept][numberOfKeptTriangles++] = triangle;
+
+                    for (int corner=0; corner<3; corner++) {
+                        int neighbour = triangles[3 * triangle + corner];
+                        if (neighbour != kept) {
+                            collapses.add(computeCollapse(kept, neighbour, positions, quadrics, versions));
+                        }
+                    }
+                }
+            }
+            numberOfAdjacentTriangles[kept] = numberOfKeptTriangles;
+        }
+
+        return createMesh(positions, triangles, aliveVertices, aliveTriangles, numberOfAliveTriangles);
+    }
+
+    /**
+     * @return the sum of the quadrics of the planes of the triangles adjacent to each vertex
+     */
+    private static double[] computeQuadrics(double[] positions, int[] triangles, int nVertices) {
+        double[] quadrics = new double[QUADRIC_SIZE * nVertices];
+
+        for (int triangle=0; triangle<triangles.length/3; triangle++) {
+            double[] normal = computeNormal(positions, triangles[3 * triangle], triangles[3 * triangle + 1], triangles[3 * triangle + 2]);
+            double length = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]);
+            if (length == 0) {
+                continue;
+            }
+
+            double a = normal[0] / length;
+            double b = normal[1] / length;
+            double c = normal[2] / length;
+            int firstVertex = triangles[3 * triangle];
+            double d = -(a * positions[3 * firstVertex] + b * positions[3 * firstVertex + 1] + c * positions[3 * firstVertex + 2]);
+            double[] planeQuadric = new double[] {a * a, a * b, a * c, a * d, b * b, b * c, b * d, c * c, c * d, d * d};
+
+            for (int corner=0; corner<3; corner++) {
+                int vertex = triangles[3 * triangle + corner];
+                for (int i=0; i<QUADRIC_SIZE; i++) {
+                    quadrics[QUADRIC_SIZE * vertex + i] += planeQuadric[i];
+                }
+            }
+        }
+        return quadrics;
+    }
+
+    private static int[][] computeAdjacentTriangles(int[] triangles, int nVertices) {
+        int[] counts = new int[nVertices];
+        for (int vertex: triangles) {
+            counts[vertex]++;
+        }
+
+        int[][] adjacentTriangles = new int[nVertices][];
+        for (int vertex=0; vertex<nVertices; vertex++) {
+            adjacentTriangles[vertex] = new int[counts[vertex]];
+        }
+        Arrays.fill(counts, 0);
+        for (int i=0; i<triangles.length; i++) {
+            int vertex = triangles[i];
+            adjacentTriangles[vertex][counts[vertex]++] = i / 3;
+        }
+        return adjacentTriangles;
+    }
+
+    /**
+     * Compute the position minimizing the error of the collapse of an edge, and the corresponding error.
+     * The position is the solution of the quadric equation when it exists, and the best of the two
+     * vertices and the middle of the edge otherwise.
+     */
+    private static Collapse computeCollapse(int first, int second, double[] positions, double[] quadrics, int[] versions) {
+        double[] q = new double[QUADRIC_SIZE];
+        for (int i=0; i<QUADRIC_SIZE; i++) {
+            q[i] = quadrics[QUADRIC_SIZE * first + i] + quadrics[QUADRIC_SIZE * second + i];
+        }
+
+        double[] firstPosition = Arrays.copyOfRange(positions, 3 * first, 3 * first + 3);
+        double[] secondPosition = Arrays.copyOfRange(positions, 3 * second, 3 * second + 3);
+        double[] middle = new double[] {
+                (firstPosition[0] + secondPosition[0]) / 2,
+                (firstPosition[1] + secondPosition[1]) / 2,
+                (firstPosition[2] + secondPosition[2]) / 2
+        };
+
+        // The optimal position is the solution of A * position = b (Cramer's rule). When A is close to singular
+        // (for example on flat parts of the surface), the solution is unstable and can be far from the edge
+        double[] position = null;
+        double determinant = determinant(q[0], q[1], q[2], q[1], q[4], q[5], q[2], q[5], q[7]);
+        double trace = q[0] + q[4] + q[7];
+        if (Math.abs(determinant) > SINGULARITY_THRESHOLD * trace * trace * trace) {
+            double[] solution = new double[] {
+                    determinant(-q[3], q[1], q[2], -q[6], q[4], q[5], -q[8], q[5], q[7]) / determinant,
+                    determinant(q[0], -q[3], q[2], q[1], -q[6], q[5], q[2], -q[8], q[7]) / determinant,
+                    determinant(q[0], q[1], -q[3], q[1], q[4], -q[6], q[2], q[5], -q[8]) / determinant
+            };
+            if (distanceSquared(solution, middle) <= distanceSquared(firstPosition, secondPosition)) {
+                position = solution;
+            }
+        }
+
+        if (position == null) {
+            position = middle;
+            for (double[] candidate: new double[][] {firstPosition, secondPosition}) {
+                if (computeError(q, candidate) < computeError(q, position)) {
+                    position = candidate;
+                }
+            }
+        }
+
+        return new Collapse(computeError(q, position), first, second, versions[first], versions[second], position);
+    }
+
+    /**
+     * @return the determinant of the 3x3 matrix whose rows are (a, b, c), (d, e, f) and (g, h, i)
+     */
+    private static double determinant(double a, double b, double c, double d, double e, double f, double g, double h, double i) {
+        return a * (e * i - f * h) - b * (d * i - f * g) + c * (d * h - e * g);
+    }
+
+    private static double distanceSquared(double[] first, double[] second) {
+        return (first[0] - second[0]) * (first[0] - second[0]) +
+                (first[1] - second[1]) * (first[1] - second[1]) +
+                (first[2] - second[2]) * (first[2] - second[2]);
+    }
+
+    private static double computeError(double[] q, double[] position) {
+        double x = position[0];
+        double y = position[1];
+        double z = position[2];
+        return q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x +
+                q[4] * y * y + 2 * q[5] * y * z + 2 * q[6] * y +
+                q[7] * z * z + 2 * q[8] * z +
+                q[9];
+    }
+
+    /**
+     * @return whether moving the vertices of the collapsed edge would flip one of the triangles that are not removed by the collapse
+     */
+    private static boolean flipsTriangle(
+            Collapse collapse,
+            double[] positions,
+            int[] triangles,
+            boolean[] aliveTriangles,
+            int[][] adjacentTriangles,
+            int[] numberOfAdjacentTriangles
+    ) {
+        for (int vertex: new int[] {collapse.keptVertex(), collapse.removedVertex()}) {
+            for (int i=0; i<numberOfAdjacentTriangles[vertex]; i++) {
+                int triangle = adjacentTriangles[vertex][i];
+                if (!aliveTriangles[triangle] ||
+                        (contains(triangles, triangle, collapse.keptVertex()) && contains(triangles, triangle, collapse.removedVertex()))) {
+                    continue;
+                }
+
+                double[] trianglePositions = new double[9];
+                for (int corner=0; corner<3; corner++) {
+                    System.arraycopy(positions, 3 * triangles[3 * triangle + corner], trianglePositions, 3 * corner, 3);
+                }
+                double[] normalBefore = computeNormal(trianglePositions, 0, 1, 2);
+                double qualityBefore = computeQuality(trianglePositions, normalBefore);
+                for (int corner=0; corner<3; corner++) {
+                    if (triangles[3 * triangle + corner] == vertex) {
+                        System.arraycopy(collapse.position(), 0, trianglePositions, 3 * corner, 3);
+                    }
+                }
+                double[] normalAfter = computeNormal(trianglePositions, 0, 1, 2);
+                double qualityAfter = computeQuality(trianglePositions, normalAfter);
+
+                // Triangles turned by more than about 80 degrees or becoming thin slivers are considered flipped
+                double lengthBefore = Math.sqrt(normalBefore[0] * normalBefore[0] + normalBefore[1] * normalBefore[1] + normalBefore[2] * normalBefore[2]);
+                double lengthAfter = Math.sqrt(normalAfter[0] * normalAfter[0] + normalAfter[1] * normalAfter[1] + normalAfter[2] * normalAfter[2]);
+                double dotProduct = normalBefore[0] * normalAfter[0] + normalBefore[1] * normalAfter[1] + normalBefore[2] * normalAfter[2];
+                if (dotProduct <= MINIMUM_NORMAL_COSINE * lengthBefore * lengthAfter ||
+                        qualityAfter < Math.min(MINIMUM_QUALITY, qualityBefore)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the area of a triangle divided by the square of its longest edge. This is 0 for degenerate triangles
+     */
+    private static double computeQuality(double[] trianglePositions, double[] normal) {
+        double longestEdge = 0;
+        for (int corner=0; corner<3; corner++) {
+            longestEdge = Math.max(longestEdge, distanceSquared(
+                    Arrays.copyOfRange(trianglePositions, 3 * corner, 3 * corner + 3),
+                    Arrays.copyOfRange(trianglePositions, 3 * ((corner + 1) % 3), 3 * ((corner + 1) % 3) + 3)
+            ));
+        }
+        double area = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]) / 2;
+        return longestEdge == 0 ? 0 : area / longestEdge;
+    }
+
+    private static double[] computeNormal(double[] positions, int first, int second, int third) {
+        double[] u = new double[3];
+        double[] v = new double[3];
+        for (int i=0; i<3; i++) {
+            u[i] = positions[3 * second + i] - positions[3 * first + i];
+            v[i] = positions[3 * third + i] - positions[3 * first + i];
+        }
+        return new double[] {
+                u[1] * v[2] - u[2] * v[1],
+                u[2] * v[0] - u[0] * v[2],
+                u[0] * v[1] - u[1] * v[0]
+        };
+    }
+
+    private static boolean contains(int[] triangles, int triangle, int vertex) {
+        return triangles[3 * triangle] == vertex || triangles[3 * triangle + 1] == vertex || triangles[3 * triangle + 2] == vertex;
+    }
+
+    private static IndexedMesh createMesh(
+            double[] positions,
+            int[] triangles,
+            boolean[] aliveVertices,
+            boolean[] aliveTriangles,
+            int numberOfAliveTriangles
+    ) {
+        int[] newIndices = new int[aliveVertices.length];
+        int numberOfAliveVertices = 0;
+        for (int vertex=0; vertex<aliveVertices.length; vertex++) {
+            newIndices[vertex] = aliveVertices[vertex] ? numberOfAliveVertices++ : -1;
+        }
+
+        float[] newVertices = new float[3 * numberOfAliveVertices];
+        for (int vertex=0; vertex<aliveVertices.length; vertex++) {
+            if (aliveVertices[vertex]) {
+                for (int i=0; i<3; i++) {
+                    newVertices[3 * newIndices[vertex] + i] = (float) positions[3 * vertex + i];
+                }
+            }
+        }
+
+        int[] newTriangles = new int[3 * numberOfAliveTriangles];
+        int numberOfIndices = 0;
+        for (int triangle=0; triangle<aliveTriangles.length; triangle++) {
+            if (aliveTriangles[triangle]) {
+                for (int corner=0; corner<3; corner++) {
+                    newTriangles[numberOfIndices++] = newIndices[triangles[3 * triangle + corner]];
+                }
+            }
+        }
+        return new IndexedMesh(newVertices, newTriangles);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Creation of triangle meshes from the voxels of an image, and simplification of these meshes.
+ */
+package qupath.ext.viewer.meshes;
@@ -0,0 +1,52 @@
+package qupath.ext.viewer.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event covering the reading of a block of pixels from an image.
+ * The duration of the event is the latency of the read.
+ */
+@Name("qupath.viewer.BrickRead")
+@Label("Brick Read")
+@Category({"QuPath", "3D Viewer"})
+@Description("A block of pixels was read from an image")
+@StackTrace(false)
+public class BrickReadEvent extends Event {
+
+    @Label("Pose ID")
+    @Description("ID of the slicer position the pixels were read for")
+    public long poseId;
+
+    @Label("Image")
+    @Description("Path of the image the pixels were read from")
+    public String image;
+
+    @Label("Level")
+    public int level;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Z")
+    public int z;
+
+    @Label("T")
+    public int t;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Cache Hit")
+    @Description("Whether the pixels were already cached before being read")
+    public boolean cacheHit;
+}
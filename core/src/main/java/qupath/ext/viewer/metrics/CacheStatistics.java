@@ -0,0 +1,18 @@
+package qupath.ext.viewer.metrics;
+
+/**
+ * Number of hits and misses of a cache.
+ *
+ * @param hits  the number of times a requested value was present in the cache
+ * @param misses  the number of times a requested value was not present in the cache
+ */
+public record CacheStatistics(long hits, long misses) {
+
+    /**
+     * @return the proportion of requests that were hits, between 0 and 1, or 0 if
+     * no request was made
+     */
+    public double hitRatio() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
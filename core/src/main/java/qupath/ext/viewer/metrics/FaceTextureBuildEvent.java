@@ -0,0 +1,35 @@
+package qupath.ext.viewer.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event covering the computation of the texture of one face of a volume.
+ */
+@Name("qupath.viewer.FaceTextureBuild")
+@Label("Face Texture Build")
+@Category({"QuPath", "3D Viewer"})
+@Description("The texture of a face of the volume was computed")
+@StackTrace(false)
+public class FaceTextureBuildEvent extends Event {
+
+    @Label("Pose ID")
+    @Description("ID of the slicer position the texture was computed for")
+    public long poseId;
+
+    @Label("Width")
+    @Description("Width of the texture in pixels")
+    public int width;
+
+    @Label("Height")
+    @Description("Height of the texture in pixels")
+    public int height;
+
+    @Label("Level")
+    @Description("Resolution level of the image the texture was read from, or -1 if it was read from the overview volume")
+    public int level;
+}
@@ -0,0 +1,33 @@
+package qupath.ext.viewer.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event emitted when a frame took longer than its time budget,
+ * so that the display couldn't be refreshed at its normal rate.
+ */
+@Name("qupath.viewer.FrameDropped")
+@Label("Frame Dropped")
+@Category({"QuPath", "3D Viewer"})
+@Description("A frame exceeded its time budget")
+@StackTrace(false)
+public class FrameDroppedEvent extends Event {
+
+    @Label("Pose ID")
+    @Description("ID of the slicer position of the late frame")
+    public long poseId;
+
+    @Label("Budget")
+    @Timespan(Timespan.NANOSECONDS)
+    public long budget;
+
+    @Label("Missed Frames")
+    @Description("Number of display refreshes that happened while the frame was computed")
+    public int missedFrames;
+}
@@ -0,0 +1,188 @@
+package qupath.ext.viewer.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * <p>
+ *     Record the time spent in each {@link PipelineStage} while creating frames.
+ * </p>
+ * <p>
+ *     A stage can be recorded several times within a frame (for example once per polygon);
+ *     its durations are summed until {@link #endFrame(long)} is called. The per-frame totals
+ *     of the last {@link #WINDOW_SIZE} frames are kept to compute percentiles.
+ * </p>
+ * <p>
+ *     Caches and queues of the pipeline can also report their hits and depths here, as well as any
+ *     other value through gauges, so that
+ *     all statistics can be retrieved at once with {@link #getSnapshot()} (for example from a script).
+ * </p>
+ * <p>
+ *     This class is thread-safe.
+ * </p>
+ */
+public class FrameMetrics {
+
+    /**
+     * The number of frames used to compute percentiles.
+     */
+    public static final int WINDOW_SIZE = 256;
+    private static final Map<PipelineStage, LongAdder> currentFrameDurations = new EnumMap<>(PipelineStage.class);
+    private static final Map<PipelineStage, RollingWindow> stageDurations = new EnumMap<>(PipelineStage.class);
+    private static final RollingWindow frameDurations = new RollingWindow(WINDOW_SIZE);
+    private static final AtomicLong numberOfFrames = new AtomicLong(0);
+    private static final Map<String, LongAdder[]> cacheAccesses = new ConcurrentHashMap<>();
+    private static final Map<String, IntSupplier> queues = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    static {
+        for (PipelineStage stage: PipelineStage.values()) {
+            currentFrameDurations.put(stage, new LongAdder());
+            stageDurations.put(stage, new RollingWindow(WINDOW_SIZE));
+        }
+    }
+
+    private FrameMetrics() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Add some time to a stage of the current frame.
+     *
+     * @param stage  the stage that took place
+     * @param startNanos  the value of {@link System#nanoTime()} when the stage started.
+     *                    The stage is considered to end when this function is called
+     */
+    public static void record(PipelineStage stage, long startNanos) {
+        recordDuration(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Add some time to a stage of the current frame.
+     *
+     * @param stage  the stage that took place
+     * @param durationNanos  the time spent in the stage, in nanoseconds
+     */
+    public static void recordDuration(PipelineStage stage, long durationNanos) {
+        currentFrameDurations.get(stage).add(durationNanos);
+    }
+
+    /**
+     * Indicate that a frame has been completed. The time accumulated by each stage since
+     * the last call to this function is added to the statistics.
+     *
+     * @param frameStartNanos  the value of {@link System#nanoTime()} when the frame started
+     */
+    public static void endFrame(long frameStartNanos) {
+        frameDurations.add(System.nanoTime() - frameStartNanos);
+        for (PipelineStage stage: PipelineStage.values()) {
+            stageDurations.get(stage).add(currentFrameDurations.get(stage).sumThenReset());
+        }
+        numberOfFrames.incrementAndGet();
+    }
+
+    /**
+     * Record an access to a cache.
+     *
+     * @param cacheName  the name of the cache. The cache doesn't need to be registered beforehand
+     * @param hit  whether the requested value was present in the cache
+     */
+    public static void recordCacheAccess(String cacheName, boolean hit) {
+        cacheAccesses.computeIfAbsent(cacheName, k -> new LongAdder[] {new LongAdder(), new LongAdder()})[hit ? 0 : 1].increment();
+    }
+
+    /**
+     * Register a queue whose depth should be part of the statistics.
+     * If a queue with the same name is already registered, it is replaced.
+     *
+     * @param queueName  the name of the queue
+     * @param depth  a function returning the number of elements currently waiting in the queue
+     */
+    public static void registerQueue(String queueName, IntSupplier depth) {
+        queues.put(queueName, depth);
+    }
+
+    /**
+     * Stop reporting the depth of a queue. Nothing happens if the queue is not registered.
+     *
+     * @param queueName  the name of the queue
+     */
+    public static void unregisterQueue(String queueName) {
+        queues.remove(queueName);
+    }
+
+    /**
+     * Register a gauge whose value should be part of the statistics.
+     * If a gauge with the same name is already registered, it is replaced.
+     *
+     * @param gaugeName  the name of the gauge
+     * @param value  a function returning the current value of the gauge
+     */
+    public static void registerGauge(String gaugeName, DoubleSupplier value) {
+        gauges.put(gaugeName, value);
+    }
+
+    /**
+     * Stop reporting the value of a gauge. Nothing happens if the gauge is not registered.
+     *
+     * @param gaugeName  the name of the gauge
+     */
+    public static void unregisterGauge(String gaugeName) {
+        gauges.remove(gaugeName);
+    }
+
+    /**
+     * Remove all recorded durations and cache accesses. Registered queues and gauges are kept.
+     */
+    public static void reset() {
+        frameDurations.clear();
+        for (PipelineStage stage: PipelineStage.values()) {
+            currentFrameDurations.get(stage).reset();
+            stageDurations.get(stage).clear();
+        }
+        cacheAccesses.clear();
+        numberOfFrames.set(0);
+    }
+
+    /**
+     * @return the current statistics of the pipeline. The returned object
+     * won't be updated if new measurements are recorded
+     */
+    public static MetricsSnapshot getSnapshot() {
+        Map<PipelineStage, StageStatistics> stages = new EnumMap<>(PipelineStage.class);
+        for (PipelineStage stage: PipelineStage.values()) {
+            stages.put(stage, StageStatistics.createFromSortedNanos(stageDurations.get(stage).getSortedValues()));
+        }
+
+        Map<String, CacheStatistics> caches = new TreeMap<>();
+        for (Map.Entry<String, LongAdder[]> cache: cacheAccesses.entrySet()) {
+            caches.put(cache.getKey(), new CacheStatistics(cache.getValue()[0].sum(), cache.getValue()[1].sum()));
+        }
+
+        Map<String, Integer> queueDepths = new TreeMap<>();
+        for (Map.Entry<String, IntSupplier> queue: queues.entrySet()) {
+            queueDepths.put(queue.getKey(), queue.getValue().getAsInt());
+        }
+
+        Map<String, Double> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, DoubleSupplier> gauge: gauges.entrySet()) {
+            gaugeValues.put(gauge.getKey(), gauge.getValue().getAsDouble());
+        }
+
+        return new MetricsSnapshot(
+                numberOfFrames.get(),
+                StageStatistics.createFromSortedNanos(frameDurations.getSortedValues()),
+                Collections.unmodifiableMap(stages),
+                Collections.unmodifiableMap(caches),
+                Collections.unmodifiableMap(queueDepths),
+                Collections.unmodifiableMap(gaugeValues)
+        );
+    }
+}
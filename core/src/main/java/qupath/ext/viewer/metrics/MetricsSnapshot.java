@@ -0,0 +1,52 @@
+package qupath.ext.viewer.metrics;
+
+import java.util.Map;
+
+/**
+ * The state of the {@link FrameMetrics} at a particular moment.
+ *
+ * @param numberOfFrames  the number of frames recorded since the last reset
+ * @param frame  the statistics of the total duration of the frames
+ * @param stages  the statistics of the duration of each stage of the pipeline, within one frame
+ * @param caches  the hits and misses of each registered cache
+ * @param queueDepths  the number of elements currently waiting in each registered queue
+ * @param gauges  the current value of each registered gauge
+ */
+public record MetricsSnapshot(
+        long numberOfFrames,
+        StageStatistics frame,
+        Map<PipelineStage, StageStatistics> stages,
+        Map<String, CacheStatistics> caches,
+        Map<String, Integer> queueDepths,
+        Map<String, Double> gauges
+) {
+
+    /**
+     * @return a multi-line, human-readable description of this snapshot
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("%-20s %8s %8s %8s%n", "ms (" + numberOfFrames + " frames)", "p50", "p95", "p99"));
+
+        for (Map.Entry<PipelineStage, StageStatistics> stage: stages.entrySet()) {
+            appendStatistics(text, stage.getKey().toString(), stage.getValue());
+        }
+        appendStatistics(text, "Frame", frame);
+
+        for (Map.Entry<String, CacheStatistics> cache: caches.entrySet()) {
+            text.append(String.format("%-20s %7.1f%% hits%n", cache.getKey(), 100 * cache.getValue().hitRatio()));
+        }
+        for (Map.Entry<String, Integer> queue: queueDepths.entrySet()) {
+            text.append(String.format("%-20s %8d queued%n", queue.getKey(), queue.getValue()));
+        }
+        for (Map.Entry<String, Double> gauge: gauges.entrySet()) {
+            text.append(String.format("%-20s %8.2f%n", gauge.getKey(), gauge.getValue()));
+        }
+
+        return text.toString().stripTrailing();
+    }
+
+    private static void appendStatistics(StringBuilder text, String name, StageStatistics statistics) {
+        text.append(String.format("%-20s %8.2f %8.2f %8.2f%n", name, statistics.p50(), statistics.p95(), statistics.p99()));
+    }
+}
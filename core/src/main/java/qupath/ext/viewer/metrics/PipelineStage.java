@@ -0,0 +1,60 @@
+package qupath.ext.viewer.metrics;
+
+/**
+ * The stages of the pipeline that creates a frame of the viewer.
+ */
+public enum PipelineStage {
+    /**
+     * Computation of the part of the cube located in front of the slicer.
+     */
+    CLIPPING("Clipping"),
+    /**
+     * Computation of the bounding rectangles, vertex order and meshes of the polygons.
+     */
+    POLYGON_PREPARATION("Polygon preparation"),
+    /**
+     * Reading of pixels from the image.
+     */
+    IO("I/O"),
+    /**
+     * Decompression of pixels stored compressed in memory. This is part of {@link #IO}.
+     */
+    DECOMPRESSION("Decompression"),
+    /**
+     * Mapping of the pixels of the image to the pixels of the textures.
+     */
+    RESAMPLING("Resampling"),
+    /**
+     * Casting of rays through the volume, when the volume is rendered by ray casting.
+     * The time spent reading voxels is recorded as {@link #IO}.
+     */
+    RAY_CASTING("Ray casting"),
+    /**
+     * Extraction and decimation of isosurfaces, and construction of the meshes of detections.
+     * The time spent reading voxels is recorded as {@link #IO}.
+     */
+    MESHING("Meshing"),
+    /**
+     * Conversion of the textures to RGB.
+     */
+    RGB_CONVERSION("RGB conversion"),
+    /**
+     * Conversion of the textures to JavaFX images and assignment to the materials.
+     */
+    TEXTURE_UPLOAD("Texture upload"),
+    /**
+     * Replacement of the nodes of the scene.
+     */
+    SCENE_UPDATE("Scene update");
+
+    private final String name;
+
+    PipelineStage(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,51 @@
+package qupath.ext.viewer.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size window containing the last values added to it.
+ * This class is thread-safe.
+ */
+class RollingWindow {
+
+    private final long[] values;
+    private int size = 0;
+    private int next = 0;
+
+    /**
+     * Create the window.
+     *
+     * @param capacity  the maximum number of values this window can contain
+     */
+    public RollingWindow(int capacity) {
+        values = new long[capacity];
+    }
+
+    /**
+     * Add a value to this window. If the window is full, the oldest value is discarded.
+     *
+     * @param value  the value to add
+     */
+    public synchronized void add(long value) {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        size = Math.min(size + 1, values.length);
+    }
+
+    /**
+     * Remove all values of this window.
+     */
+    public synchronized void clear() {
+        size = 0;
+        next = 0;
+    }
+
+    /**
+     * @return the values currently contained in this window, sorted in ascending order
+     */
+    public synchronized long[] getSortedValues() {
+        long[] sortedValues = Arrays.copyOf(values, size);
+        Arrays.sort(sortedValues);
+        return sortedValues;
+    }
+}
@@ -0,0 +1,95 @@
+package qupath.ext.viewer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ *     Identify the successive positions of slicers, so that the JFR events emitted
+ *     while rendering a position can be linked to the {@link SlicerPoseChangeEvent} that
+ *     triggered them.
+ * </p>
+ * <p>
+ *     Each new position gets a unique ID with {@link #next()}. The ID of the position
+ *     currently being rendered is stored per thread with {@link #setCurrent(long)}.
+ *     Work handed to other threads (executors, parallel streams) should be wrapped with
+ *     {@link #wrap(Runnable)} or {@link #wrap(Consumer)}, so that the events it emits are linked
+ *     to the position that requested it.
+ * </p>
+ */
+public class SlicerPose {
+
+    private static final AtomicLong counter = new AtomicLong(0);
+    private static final ThreadLocal<Long> current = ThreadLocal.withInitial(() -> 0L);
+
+    private SlicerPose() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * @return a new unique position ID, greater than all previously returned IDs
+     */
+    public static long next() {
+        return counter.incrementAndGet();
+    }
+
+    /**
+     * Set the ID of the position rendered by the current thread.
+     *
+     * @param poseId  the ID of the position
+     */
+    public static void setCurrent(long poseId) {
+        current.set(poseId);
+    }
+
+    /**
+     * @return the ID of the position rendered by the current thread, or 0 if
+     * no position was set on this thread
+     */
+    public static long current() {
+        return current.get();
+    }
+
+    /**
+     * Wrap a task so that, on whichever thread it runs, it renders the position that is current
+     * on the calling thread when this function is called. The previous position of the running
+     * thread is restored once the task is done.
+     *
+     * @param task  the task to wrap
+     * @return a task running the provided task with the position of the calling thread
+     */
+    public static Runnable wrap(Runnable task) {
+        long poseId = current();
+
+        return () -> {
+            long previousPoseId = current();
+            setCurrent(poseId);
+            try {
+                task.run();
+            } finally {
+                setCurrent(previousPoseId);
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #wrap(Runnable)}, for an action applied to the elements of a (for example parallel) stream.
+     *
+     * @param action  the action to wrap
+     * @return an action running the provided action with the position of the calling thread
+     * @param <T>  the type of elements the action accepts
+     */
+    public static <T> Consumer<T> wrap(Consumer<T> action) {
+        long poseId = current();
+
+        return element -> {
+            long previousPoseId = current();
+            setCurrent(poseId);
+            try {
+                action.accept(element);
+            } finally {
+                setCurrent(previousPoseId);
+            }
+        };
+    }
+}
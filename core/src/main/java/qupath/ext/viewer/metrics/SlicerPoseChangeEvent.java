@@ -0,0 +1,35 @@
+package qupath.ext.viewer.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event emitted when the position of a slicer changes.
+ */
+@Name("qupath.viewer.SlicerPoseChange")
+@Label("Slicer Pose Change")
+@Category({"QuPath", "3D Viewer"})
+@Description("The translation or rotation of a slicer changed")
+@StackTrace(false)
+public class SlicerPoseChangeEvent extends Event {
+
+    @Label("Pose ID")
+    @Description("ID of the new position, shared by the events emitted while rendering it")
+    public long poseId;
+
+    @Label("Translation")
+    @Description("Translation of the slicer on the z-axis")
+    public double translation;
+
+    @Label("X Rotation")
+    @Description("Rotation of the slicer on the x-axis, in degrees")
+    public double xRotation;
+
+    @Label("Y Rotation")
+    @Description("Rotation of the slicer on the y-axis, in degrees")
+    public double yRotation;
+}
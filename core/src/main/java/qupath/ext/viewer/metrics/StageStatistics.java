@@ -0,0 +1,39 @@
+package qupath.ext.viewer.metrics;
+
+/**
+ * Percentiles of the durations of a pipeline stage over the last frames.
+ *
+ * @param p50  the median duration in milliseconds
+ * @param p95  the 95th percentile of the duration in milliseconds
+ * @param p99  the 99th percentile of the duration in milliseconds
+ * @param numberOfSamples  the number of durations the percentiles were computed from
+ */
+public record StageStatistics(double p50, double p95, double p99, int numberOfSamples) {
+
+    /**
+     * Compute the statistics of a list of durations.
+     *
+     * @param sortedNanos  the durations in nanoseconds, sorted in ascending order
+     * @return the statistics of the provided durations. All percentiles are 0 if no durations are provided
+     */
+    static StageStatistics createFromSortedNanos(long[] sortedNanos) {
+        return new StageStatistics(
+                percentile(sortedNanos, 50),
+                percentile(sortedNanos, 95),
+                percentile(sortedNanos, 99),
+                sortedNanos.length
+        );
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        // This function uses the nearest-rank method described in:
+        // https://en.wikipedia.org/wiki/Percentile#The_nearest-rank_method
+
+        if (sortedNanos.length == 0) {
+            return 0;
+        } else {
+            int rank = (int) Math.ceil(percentile / 100 * sortedNanos.length);
+            return sortedNanos[Math.max(rank - 1, 0)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package qupath.ext.viewer.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event covering the computation of all faces of a volume.
+ */
+@Name("qupath.viewer.VolumeRebuild")
+@Label("Volume Rebuild")
+@Category({"QuPath", "3D Viewer"})
+@Description("The faces of the volume were recomputed")
+@StackTrace(false)
+public class VolumeRebuildEvent extends Event {
+
+    @Label("Pose ID")
+    @Description("ID of the slicer position the volume was rebuilt for")
+    public long poseId;
+
+    @Label("Number Of Faces")
+    public int numberOfFaces;
+}
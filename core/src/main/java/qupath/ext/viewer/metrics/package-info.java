@@ -0,0 +1,5 @@
+/**
+ * Timing and statistics of the different stages of the rendering pipeline,
+ * and the Java Flight Recorder events emitted by it.
+ */
+package qupath.ext.viewer.metrics;
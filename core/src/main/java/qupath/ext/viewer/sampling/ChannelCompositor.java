@@ -0,0 +1,104 @@
+package qupath.ext.viewer.sampling;
+
+import qupath.lib.images.servers.ImageChannel;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.PixelType;
+
+/**
+ * <p>
+ *     Convert the channel values of samples to packed ARGB colors.
+ * </p>
+ * <p>
+ *     RGB images are converted by packing their three channels. Images with one channel are displayed
+ *     in grayscale. Other images are displayed by adding the colors of their channels, each channel being
+ *     weighted by its value scaled to the range of the pixel type (or [0, 1] for floating point types).
+ * </p>
+ */
+public class ChannelCompositor {
+
+    private static final int OPAQUE = 0xFF000000;
+    private final boolean rgb;
+    private final double minValue;
+    private final double maxValue;
+    private final int[] channelColors;
+
+    /**
+     * Create a compositor for an image.
+     *
+     * @param server  the image whose samples will be converted
+     */
+    public ChannelCompositor(ImageServer<?> server) {
+        this.rgb = server.isRGB();
+        this.minValue = getMinValue(server.getPixelType());
+        this.maxValue = getMaxValue(server.getPixelType());
+        this.channelColors = server.getMetadata().getChannels().stream()
+                .map(ImageChannel::getColor)
+                .mapToInt(color -> color == null ? 0xFFFFFF : color)
+                .toArray();
+    }
+
+    /**
+     * Convert a plane of samples to colors.
+     *
+     * @param plane  the samples to convert
+     * @return the ARGB colors of the samples, indexed by {@code y * width + x}
+     */
+    public int[] toARGB(SampledPlane plane) {
+        int[] colors = new int[plane.width() * plane.height()];
+        float[][] values = plane.values();
+
+        if (rgb && values.length >= 3) {
+            for (int i=0; i<colors.length; i++) {
+                colors[i] = OPAQUE | toByte(values[0][i]) << 16 | toByte(values[1][i]) << 8 | toByte(values[2][i]);
+            }
+        } else if (values.length == 1) {
+            double scale = 255 / (maxValue - minValue);
+            for (int i=0; i<colors.length; i++) {
+                int gray = toByte((values[0][i] - minValue) * scale);
+                colors[i] = OPAQUE | gray << 16 | gray << 8 | gray;
+            }
+        } else {
+            double scale = 1 / (maxValue - minValue);
+            for (int i=0; i<colors.length; i++) {
+                double red = 0;
+                double green = 0;
+                double blue = 0;
+                for (int c=0; c<values.length && c<channelColors.length; c++) {
+                    double weight = Math.min(1, Math.max(0, (values[c][i] - minValue) * scale));
+                    red += weight * (channelColors[c] >> 16 & 0xFF);
+                    green += weight * (channelColors[c] >> 8 & 0xFF);
+                    blue += weight * (channelColors[c] & 0xFF);
+                }
+                colors[i] = OPAQUE | toByte(red) << 16 | toByte(green) << 8 | toByte(blue);
+            }
+        }
+
+        return colors;
+    }
+
+    /**
+     * @return the value displayed black. Lower values are displayed black too
+     */
+    public double getMinValue() {
+        return minValue;
+    }
+
+    /**
+     * @return the value displayed with the full intensity of its channel. Higher values are displayed with the full intensity too
+     */
+    public double getMaxValue() {
+        return maxValue;
+    }
+
+    private static int toByte(double value) {
+        return (int) Math.min(255, Math.max(0, value));
+    }
+
+    private static double getMinValue(PixelType pixelType) {
+        return pixelType.isFloatingPoint() ? 0 : Math.max(0, pixelType.getLowerBound().doubleValue());
+    }
+
+    private static double getMaxValue(PixelType pixelType) {
+        return pixelType.isFloatingPoint() ? 1 : pixelType.getUpperBound().doubleValue();
+    }
+}
@@ -0,0 +1,26 @@
+package qupath.ext.viewer.sampling;
+
+/**
+ * The values of an image sampled along a polyline.
+ *
+ * @param distances  the distance of each sample from the first vertex of the polyline, measured along
+ *                   the polyline in the calibrated units of the image
+ * @param values  the values of the samples, indexed by channel and then by sample. Samples located
+ *                outside the image are {@link Float#NaN}
+ */
+public record IntensityProfile(double[] distances, float[][] values) {
+
+    /**
+     * @return the number of channels of this profile
+     */
+    public int nChannels() {
+        return values.length;
+    }
+
+    /**
+     * @return the number of samples of this profile
+     */
+    public int nSamples() {
+        return distances.length;
+    }
+}
@@ -0,0 +1,174 @@
+package qupath.ext.viewer.sampling;
+
+import javafx.geometry.Point3D;
+import qupath.ext.viewer.bricks.Brick;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.ImageServerMetadata;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * <p>
+ *     Resample an image along a rectangle located anywhere in the (x, y, z) space,
+ *     using nearest neighbour interpolation.
+ * </p>
+ * <p>
+ *     Voxels are read from the bricks of a {@link BrickSource}, so no intermediate image is created.
+ *     Bricks whose {@link BrickSource#getSummary(int, int, int, int, int) summary} shows they are constant
+ *     are not read: their constant value is used directly.
+ *     The time spent retrieving bricks is recorded as {@link PipelineStage#IO}, the time spent
+ *     resampling as {@link PipelineStage#RESAMPLING}, and the time spent converting samples to
+ *     colors as {@link PipelineStage#RGB_CONVERSION}.
+ * </p>
+ */
+public class ObliqueSampler {
+
+    private final BrickSource brickSource;
+    private final ChannelCompositor compositor;
+
+    /**
+     * Create a sampler.
+     *
+     * @param brickSource  the source providing the voxels of the image to sample
+     */
+    public ObliqueSampler(BrickSource brickSource) {
+        this.brickSource = brickSource;
+        this.compositor = new ChannelCompositor(brickSource.getServer());
+    }
+
+    /**
+     * @return the image sampled by this sampler
+     */
+    public ImageServer<BufferedImage> getServer() {
+        return brickSource.getServer();
+    }
+
+    /**
+     * Resample the image along a rectangle. Sample (i, j) of the result is located at
+     * {@code p0 + U * i / width + V * j / height}, where U and V are the vectors
+     * defined in {@link Rectangle}.
+     *
+     * @param area  the rectangle to sample, in full resolution pixel coordinates
+     * @param t  the time point to sample
+     * @param level  the resolution level to read voxels from
+     * @param width  the number of samples on the x-axis of the result
+     * @param height  the number of samples on the y-axis of the result
+     * @return the sampled values of each channel of the image
+     * @throws IOException when an error occurs while reading the image
+     */
+    public SampledPlane sample(Rectangle area, int t, int level, int width, int height) throws IOException {
+        long startTime = System.nanoTime();
+        long ioDuration = 0;
+
+        ImageServer<BufferedImage> server = brickSource.getServer();
+        ImageServerMetadata.ImageResolutionLevel resolutionLevel = server.getMetadata().getLevel(level);
+        double downsample = resolutionLevel.getDownsample();
+        int levelWidth = resolutionLevel.getWidth();
+        int levelHeight = resolutionLevel.getHeight();
+        int levelDepth = server.nZSlices();
+        int nChannels = server.isRGB() ? 3 : server.nChannels();
+        float[][] values = new float[nChannels][width * height];
+
+        Point3D p0 = area.p0();
+        Point3D u = area.getU();
+        double xStepU = u.getX() / width / downsample;
+        double yStepU = u.getY() / width / downsample;
+        double zStepU = u.getZ() / width;
+        Point3D v = area.getV();
+        double xStepV = v.getX() / height / downsample;
+        double yStepV = v.getY() / height / downsample;
+        double zStepV = v.getZ() / height;
+
+        Brick brick = null;
+        for (int j=0; j<height; j++) {
+            double xRow = p0.getX() / downsample + j * xStepV;
+            double yRow = p0.getY() / downsample + j * yStepV;
+            double zRow = p0.getZ() + j * zStepV;
+
+            for (int i=0; i<width; i++) {
+                int x = (int) Math.round(xRow + i * xStepU);
+                int y = (int) Math.round(yRow + i * yStepU);
+                int z = (int) Math.round(zRow + i * zStepU);
+
+                if (0 <= x && x < levelWidth && 0 <= y && y < levelHeight && 0 <= z && z < levelDepth) {
+                    // Consecutive samples are most likely in the same brick
+                    if (brick == null || !contains(brick, x, y, z)) {
+                        long ioStartTime = System.nanoTime();
+                        brick = brickSource.getBrick(
+                                level,
+                                t,
+                                x / brickSource.getBrickWidth(),
+                                y / brickSource.getBrickHeight(),
+                                z / brickSource.getBrickDepth()
+                        );
+                        ioDuration += System.nanoTime() - ioStartTime;
+                    }
+
+                    int index = j * width + i;
+                    for (int c=0; c<nChannels && c<brick.nChannels(); c++) {
+                        values[c][index] = (float) brick.getValue(c, x - brick.getX(), y - brick.getY(), z - brick.getZ());
+                    }
+                }
+            }
+        }
+
+        FrameMetrics.recordDuration(PipelineStage.IO, ioDuration);
+        FrameMetrics.recordDuration(PipelineStage.RESAMPLING, System.nanoTime() - startTime - ioDuration);
+        return new SampledPlane(width, height, values);
+    }
+
+    /**
+     * Resample the image along a rectangle and convert the samples to colors.
+     * See {@link #sample(Rectangle, int, int, int, int)} for the parameters.
+     *
+     * @return the ARGB colors of the samples, indexed by {@code y * width + x}
+     * @throws IOException when an error occurs while reading the image
+     */
+    public int[] sampleARGB(Rectangle area, int t, int level, int width, int height) throws IOException {
+        SampledPlane plane = sample(area, t, level, width, height);
+
+        long startTime = System.nanoTime();
+        int[] colors = compositor.toARGB(plane);
+        FrameMetrics.record(PipelineStage.RGB_CONVERSION, startTime);
+
+        return colors;
+    }
+
+    /**
+     * Resample the overview of the image along a rectangle and convert the samples to colors.
+     * This doesn't read the image, so it can be called from the JavaFX Application Thread.
+     * See {@link OverviewVolume#sample(Rectangle, int, int)} for the parameters.
+     *
+     * @param overview  the overview of the image sampled by this sampler
+     * @return the ARGB colors of the samples, indexed by {@code y * width + x}
+     */
+    public int[] sampleARGB(OverviewVolume overview, Rectangle area, int width, int height) {
+        long startTime = System.nanoTime();
+        SampledPlane plane = overview.sample(area, width, height);
+        FrameMetrics.record(PipelineStage.RESAMPLING, startTime);
+
+        startTime = System.nanoTime();
+        int[] colors = compositor.toARGB(plane);
+        FrameMetrics.record(PipelineStage.RGB_CONVERSION, startTime);
+
+        return colors;
+    }
+
+    /**
+     * @return the compositor used by this sampler to convert samples to colors
+     */
+    public ChannelCompositor getCompositor() {
+        return compositor;
+    }
+
+    private static boolean contains(Brick brick, int x, int y, int z) {
+        return brick.getX() <= x && x < brick.getX() + brick.getWidth() &&
+                brick.getY() <= y && y < brick.getY() + brick.getHeight() &&
+                brick.getZ() <= z && z < brick.getZ() + brick.getDepth();
+    }
+}
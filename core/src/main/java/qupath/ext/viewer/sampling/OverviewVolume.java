@@ -0,0 +1,284 @@
+package qupath.ext.viewer.sampling;
+
+import javafx.geometry.Point3D;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.regions.RegionRequest;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     A low resolution copy of a whole image (at one time point), small enough to be kept in memory.
+ *     It is used to display something as soon as possible, while the full resolution voxels are being read.
+ * </p>
+ * <p>
+ *     The dimensions of the overview are chosen so that its voxels fit in a byte budget. The image is
+ *     downsampled on the x and y axes, and also on the z-axis if downsampling on the x and y axes is not enough.
+ * </p>
+ * <p>
+ *     z-slices are read by {@link #load(int, Runnable)} in an order that refines the whole volume
+ *     progressively (first slice, middle slice, quarter slices, and so on). The overview can be sampled while
+ *     it is being loaded: slices not read yet are replaced by the closest slice already read.
+ * </p>
+ * <p>
+ *     This class is thread-safe.
+ * </p>
+ */
+public class OverviewVolume {
+
+    /**
+     * The default maximum number of bytes the voxels of an overview can use. This corresponds
+     * to 256x256x256 voxels with one channel
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE_BYTES = 256L * 256 * 256 * Float.BYTES;
+    private final ImageServer<BufferedImage> server;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final double xyDownsample;
+    private final double zDownsample;
+    private final float[][] values;
+    private final boolean[] loadedSlices;
+    private volatile int[] closestLoadedSlices;
+    private volatile int numberOfLoadedSlices = 0;
+
+    /**
+     * Create an empty overview of an image. Call {@link #load(int, Runnable)} to read its voxels.
+     *
+     * @param server  the image to represent
+     * @param maximumSizeBytes  the maximum number of bytes the voxels of the overview can use.
+     *                          Voxels are stored as floats
+     * @throws IllegalArgumentException when the maximum size is too small to contain a single voxel
+     */
+    public OverviewVolume(ImageServer<BufferedImage> server, long maximumSizeBytes) {
+        int nChannels = server.isRGB() ? 3 : server.nChannels();
+        double maximumNumberOfVoxels = (double) maximumSizeBytes / ((long) nChannels * Float.BYTES);
+        if (maximumNumberOfVoxels < 1) {
+            throw new IllegalArgumentException(String.format("%d bytes cannot contain a voxel of %d channels", maximumSizeBytes, nChannels));
+        }
+
+        double numberOfVoxels = (double) server.getWidth() * server.getHeight() * server.nZSlices();
+        double isotropicDownsample = Math.max(1, Math.cbrt(numberOfVoxels / maximumNumberOfVoxels));
+        if (server.nZSlices() <= isotropicDownsample) {
+            // Thin stacks are only downsampled on the x and y axes
+            this.zDownsample = 1;
+            this.xyDownsample = Math.max(1, Math.sqrt(numberOfVoxels / maximumNumberOfVoxels));
+        } else {
+            this.zDownsample = isotropicDownsample;
+            this.xyDownsample = isotropicDownsample;
+        }
+
+        this.server = server;
+        this.width = Math.max(1, (int) (server.getWidth() / xyDownsample));
+        this.height = Math.max(1, (int) (server.getHeight() / xyDownsample));
+        this.depth = Math.max(1, (int) (server.nZSlices() / zDownsample));
+        this.values = new float[nChannels][width * height * depth];
+        this.loadedSlices = new boolean[depth];
+        this.closestLoadedSlices = new int[depth];
+        Arrays.fill(closestLoadedSlices, -1);
+    }
+
+    /**
+     * Read the voxels of the overview. This function blocks until all z-slices have been read,
+     * so it should be called from a background thread. It stops early if the calling thread is interrupted.
+     *
+     * @param t  the time point to read
+     * @param onSliceLoaded  a function called (from the calling thread) each time a z-slice has been read.
+     *                       Can be null
+     * @throws IOException when an error occurs while reading the image
+     */
+    public void load(int t, Runnable onSliceLoaded) throws IOException {
+        for (int z: getLoadingOrder(depth)) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            BufferedImage image = server.readRegion(RegionRequest.createInstance(
+                    server.getPath(),
+                    xyDownsample,
+                    0,
+                    0,
+                    server.getWidth(),
+                    server.getHeight(),
+                    Math.min(server.nZSlices() - 1, (int) ((z + 0.5) * zDownsample)),
+                    t
+            ));
+            FrameMetrics.record(PipelineStage.IO, startTime);
+
+            if (image != null) {
+                copySlice(image.getRaster(), z);
+            }
+            setSliceLoaded(z);
+
+            if (onSliceLoaded != null) {
+                onSliceLoaded.run();
+            }
+        }
+    }
+
+    /**
+     * Resample the overview along a rectangle, using nearest neighbour interpolation.
+     * Sample (i, j) of the result is located at {@code p0 + U * i / width + V * j / height}, where
+     * U and V are the vectors defined in {@link Rectangle}.
+     *
+     * @param area  the rectangle to sample, in full resolution pixel coordinates
+     * @param width  the number of samples on the x-axis of the result
+     * @param height  the number of samples on the y-axis of the result
+     * @return the sampled values of each channel of the overview. Samples outside the image, or
+     * samples taken before any z-slice has been read, are 0
+     */
+    public SampledPlane sample(Rectangle area, int width, int height) {
+        float[][] samples = new float[values.length][width * height];
+        int[] closestLoadedSlices = this.closestLoadedSlices;
+
+        Point3D p0 = area.p0();
+        Point3D u = area.getU();
+        Point3D v = area.getV();
+        double xStepU = u.getX() / width / xyDownsample;
+        double yStepU = u.getY() / width / xyDownsample;
+        double zStepU = u.getZ() / width / zDownsample;
+        double xStepV = v.getX() / height / xyDownsample;
+        double yStepV = v.getY() / height / xyDownsample;
+        double zStepV = v.getZ() / height / zDownsample;
+
+        for (int j=0; j<height; j++) {
+            // Full resolution voxel k covers [k - 0.5, k + 0.5[, so it is part of overview voxel floor((k + 0.5) / downsample)
+            double xRow = (p0.getX() + 0.5) / xyDownsample + j * xStepV;
+            double yRow = (p0.getY() + 0.5) / xyDownsample + j * yStepV;
+            double zRow = (p0.getZ() + 0.5) / zDownsample + j * zStepV;
+
+            for (int i=0; i<width; i++) {
+                double xOverview = xRow + i * xStepU;
+                double yOverview = yRow + i * yStepU;
+                double zOverview = zRow + i * zStepU;
+
+                if (0 <= xOverview && xOverview < this.width && 0 <= yOverview && yOverview < this.height && 0 <= zOverview && zOverview < depth) {
+                    int z = closestLoadedSlices[(int) zOverview];
+
+                    if (z >= 0) {
+                        int index = (z * this.height + (int) yOverview) * this.width + (int) xOverview;
+                        for (int c=0; c<values.length; c++) {
+                            samples[c][j * width + i] = values[c][index];
+                        }
+                    }
+                }
+            }
+        }
+
+        return new SampledPlane(width, height, samples);
+    }
+
+    /**
+     * @return the image represented by this overview
+     */
+    public ImageServer<BufferedImage> getServer() {
+        return server;
+    }
+
+    /**
+     * @return the factor between the full resolution image and this overview on the x and y axes
+     */
+    public double getXYDownsample() {
+        return xyDownsample;
+    }
+
+    /**
+     * @return the factor between the full resolution image and this overview on the z-axis
+     */
+    public double getZDownsample() {
+        return zDownsample;
+    }
+
+    /**
+     * @return whether this overview contains the image at its full resolution
+     */
+    public boolean isFullResolution() {
+        return xyDownsample == 1 && zDownsample == 1;
+    }
+
+    /**
+     * @return the proportion of z-slices of this overview that have been read, between 0 and 1
+     */
+    public double getLoadedProportion() {
+        return (double) numberOfLoadedSlices / depth;
+    }
+
+    /**
+     * @return whether all z-slices of this overview have been read
+     */
+    public boolean isLoaded() {
+        return numberOfLoadedSlices == depth;
+    }
+
+    /**
+     * @return the number of bytes used by the voxels of this overview
+     */
+    public long getSizeBytes() {
+        return (long) values.length * values[0].length * Float.BYTES;
+    }
+
+    private void copySlice(Raster raster, int z) {
+        int copyWidth = Math.min(width, raster.getWidth());
+        int copyHeight = Math.min(height, raster.getHeight());
+        float[] samples = new float[copyWidth * copyHeight];
+
+        for (int c=0; c<values.length && c<raster.getNumBands(); c++) {
+            raster.getSamples(0, 0, copyWidth, copyHeight, c, samples);
+            for (int y=0; y<copyHeight; y++) {
+                System.arraycopy(samples, y * copyWidth, values[c], (z * height + y) * width, copyWidth);
+            }
+        }
+    }
+
+    private synchronized void setSliceLoaded(int z) {
+        loadedSlices[z] = true;
+
+        int[] closestLoadedSlices = new int[depth];
+        int previousLoadedSlice = -1;
+        for (int i=0; i<depth; i++) {
+            if (loadedSlices[i]) {
+                previousLoadedSlice = i;
+            }
+            closestLoadedSlices[i] = previousLoadedSlice;
+        }
+        int nextLoadedSlice = -1;
+        for (int i=depth-1; i>=0; i--) {
+            if (loadedSlices[i]) {
+                nextLoadedSlice = i;
+            }
+            if (nextLoadedSlice >= 0 && (closestLoadedSlices[i] < 0 || nextLoadedSlice - i < i - closestLoadedSlices[i])) {
+                closestLoadedSlices[i] = nextLoadedSlice;
+            }
+        }
+
+        // Publishing the new array after the slice has been copied makes the slice visible to sampling threads
+        this.closestLoadedSlices = closestLoadedSlices;
+        numberOfLoadedSlices++;
+    }
+
+    /**
+     * @return the indices of all z-slices in an order where each slice is as far as possible from the previous ones
+     */
+    private static int[] getLoadingOrder(int depth) {
+        int[] order = new int[depth];
+        boolean[] added = new boolean[depth];
+        int numberOfAddedSlices = 0;
+
+        for (int step = Integer.highestOneBit(Math.max(1, depth - 1)) * 2; step >= 1; step /= 2) {
+            for (int z=0; z<depth; z+=step) {
+                if (!added[z]) {
+                    added[z] = true;
+                    order[numberOfAddedSlices++] = z;
+                }
+            }
+        }
+        return order;
+    }
+}
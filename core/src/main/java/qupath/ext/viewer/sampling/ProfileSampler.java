@@ -0,0 +1,175 @@
+package qupath.ext.viewer.sampling;
+
+import javafx.geometry.Point3D;
+import qupath.ext.viewer.bricks.Brick;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.PixelCalibration;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ *     Sample all channels of an image along polylines located anywhere in the (x, y, z) space,
+ *     at the full resolution and using nearest neighbour interpolation.
+ * </p>
+ * <p>
+ *     Each segment of a polyline is divided into as many steps as the largest number of voxels it
+ *     crosses on one axis, so no voxel is skipped along the segment. Voxels are read from the bricks of a
+ *     {@link BrickSource}: consecutive samples of a polyline are most likely in the same brick, so a brick is
+ *     only retrieved when a sample leaves the previous one, and no intermediate image is created.
+ *     The time spent retrieving bricks is recorded as {@link PipelineStage#IO}, and the time spent
+ *     resampling as {@link PipelineStage#RESAMPLING}.
+ * </p>
+ * <p>
+ *     This class is thread-safe, and {@link #sampleAll(List, int)} samples many polylines in parallel,
+ *     for example from a script.
+ * </p>
+ */
+public class ProfileSampler {
+
+    private final BrickSource brickSource;
+
+    /**
+     * Create a sampler.
+     *
+     * @param brickSource  the source providing the voxels of the image to sample
+     */
+    public ProfileSampler(BrickSource brickSource) {
+        this.brickSource = brickSource;
+    }
+
+    /**
+     * @return the image sampled by this sampler
+     */
+    public ImageServer<BufferedImage> getServer() {
+        return brickSource.getServer();
+    }
+
+    /**
+     * Sample the image along a polyline. The first sample is located at the first vertex,
+     * the last sample at the last vertex, and consecutive samples are at most one voxel
+     * apart on each axis.
+     *
+     * @param polyline  the vertices of the polyline, in full resolution pixel coordinates
+     * @param t  the time point to sample
+     * @return the profile of each channel of the image along the polyline
+     * @throws IOException when an error occurs while reading the image
+     * @throws IllegalArgumentException when the polyline has less than two vertices
+     */
+    public IntensityProfile sample(List<Point3D> polyline, int t) throws IOException {
+        if (polyline.size() < 2) {
+            throw new IllegalArgumentException(String.format(
+                    "A polyline must have at least two vertices, but %d were provided", polyline.size()
+            ));
+        }
+        long startTime = System.nanoTime();
+        long ioDuration = 0;
+
+        ImageServer<BufferedImage> server = brickSource.getServer();
+        PixelCalibration calibration = server.getPixelCalibration();
+        double pixelWidth = calibration.getPixelWidth().doubleValue();
+        double pixelHeight = calibration.getPixelHeight().doubleValue();
+        double zSpacing = calibration.getZSpacing().doubleValue();
+        int nChannels = server.isRGB() ? 3 : server.nChannels();
+
+        int[] steps = new int[polyline.size() - 1];
+        int nSamples = 1;
+        for (int i=0; i<steps.length; i++) {
+            Point3D segment = polyline.get(i + 1).subtract(polyline.get(i));
+            steps[i] = (int) Math.ceil(Math.max(Math.max(Math.abs(segment.getX()), Math.abs(segment.getY())), Math.abs(segment.getZ())));
+            nSamples += steps[i];
+        }
+
+        double[] distances = new double[nSamples];
+        float[][] values = new float[nChannels][nSamples];
+        for (float[] channel: values) {
+            Arrays.fill(channel, Float.NaN);
+        }
+
+        Brick brick = null;
+        double segmentStartDistance = 0;
+        int index = 0;
+        for (int i=0; i<steps.length; i++) {
+            Point3D start = polyline.get(i);
+            Point3D segment = polyline.get(i + 1).subtract(start);
+            double segmentLength = Math.sqrt(
+                    Math.pow(segment.getX() * pixelWidth, 2) +
+                    Math.pow(segment.getY() * pixelHeight, 2) +
+                    Math.pow(segment.getZ() * zSpacing, 2)
+            );
+            // The last segment also samples its end
+            int nSegmentSamples = i == steps.length - 1 ? steps[i] + 1 : steps[i];
+
+            for (int k=0; k<nSegmentSamples; k++) {
+                double ratio = steps[i] == 0 ? 0 : (double) k / steps[i];
+                int x = (int) Math.round(start.getX() + ratio * segment.getX());
+                int y = (int) Math.round(start.getY() + ratio * segment.getY());
+                int z = (int) Math.round(start.getZ() + ratio * segment.getZ());
+                distances[index] = segmentStartDistance + ratio * segmentLength;
+
+                if (0 <= x && x < server.getWidth() && 0 <= y && y < server.getHeight() && 0 <= z && z < server.nZSlices()) {
+                    if (brick == null || !contains(brick, x, y, z)) {
+                        long ioStartTime = System.nanoTime();
+                        brick = brickSource.getBrick(
+                                0,
+                                t,
+                                x / brickSource.getBrickWidth(),
+                                y / brickSource.getBrickHeight(),
+                                z / brickSource.getBrickDepth()
+                        );
+                        ioDuration += System.nanoTime() - ioStartTime;
+                    }
+
+                    for (int c=0; c<nChannels && c<brick.nChannels(); c++) {
+                        values[c][index] = (float) brick.getValue(c, x - brick.getX(), y - brick.getY(), z - brick.getZ());
+                    }
+                }
+                index++;
+            }
+            segmentStartDistance += segmentLength;
+        }
+
+        FrameMetrics.recordDuration(PipelineStage.IO, ioDuration);
+        FrameMetrics.recordDuration(PipelineStage.RESAMPLING, System.nanoTime() - startTime - ioDuration);
+        return new IntensityProfile(distances, values);
+    }
+
+    /**
+     * Sample the image along several polylines, in parallel.
+     * See {@link #sample(List, int)} for how each polyline is sampled.
+     *
+     * @param polylines  the polylines to sample, each one given by its vertices in full resolution pixel coordinates
+     * @param t  the time point to sample
+     * @return the profiles of the polylines, in the order of the provided polylines
+     * @throws IOException when an error occurs while reading the image
+     * @throws IllegalArgumentException when a polyline has less than two vertices
+     */
+    public List<IntensityProfile> sampleAll(List<List<Point3D>> polylines, int t) throws IOException {
+        try {
+            return polylines.parallelStream()
+                    .map(polyline -> {
+                        try {
+                            return sample(polyline, t);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean contains(Brick brick, int x, int y, int z) {
+        return brick.getX() <= x && x < brick.getX() + brick.getWidth() &&
+                brick.getY() <= y && y < brick.getY() + brick.getHeight() &&
+                brick.getZ() <= z && z < brick.getZ() + brick.getDepth();
+    }
+}
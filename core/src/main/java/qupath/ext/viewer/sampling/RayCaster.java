@@ -0,0 +1,376 @@
+package qupath.ext.viewer.sampling;
+
+import javafx.geometry.Point3D;
+import qupath.ext.viewer.bricks.Brick;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.bricks.BrickSummary;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.metrics.SlicerPose;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.ImageServerMetadata;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>
+ *     Render a whole image by casting parallel rays through its voxels, using nearest neighbour interpolation
+ *     and one sample per voxel along each ray. See {@link RayCastingMode} for the ways samples are combined.
+ * </p>
+ * <p>
+ *     The rendered image is divided into square tiles that are rendered in parallel on all cores.
+ *     Voxels are read from the bricks of a {@link BrickSource}, and bricks whose
+ *     {@link BrickSource#getSummary(int, int, int, int, int) summary} shows they cannot change the
+ *     result of a ray are skipped without being read: with {@link RayCastingMode#MAXIMUM_INTENSITY}, bricks whose
+ *     maximum is not greater than the maximum found so far by the ray, and with {@link RayCastingMode#COMPOSITING},
+ *     bricks that are entirely transparent. Rays stop early once the result cannot change anymore: when their
+ *     maximum is displayed with the full intensity, or when they are opaque.
+ * </p>
+ * <p>
+ *     The time spent retrieving bricks is recorded as {@link PipelineStage#IO}, the time spent casting rays as
+ *     {@link PipelineStage#RAY_CASTING}, and the bricks skipped as hits of the {@link #SKIPPED_BRICKS_METRICS_NAME}
+ *     cache. This class is thread-safe.
+ * </p>
+ */
+public class RayCaster {
+
+    /**
+     * The name under which bricks skipped (hits) and read (misses) by rays are recorded in {@link FrameMetrics}
+     */
+    public static final String SKIPPED_BRICKS_METRICS_NAME = "Bricks (skipped by rays)";
+    private static final int TILE_SIZE = 32;
+    private static final double OPACITY_THRESHOLD = 0.1;
+    private static final double OPACITY_PER_VOXEL = 0.05;
+    private static final double OPAQUE = 0.99;
+    private final BrickSource brickSource;
+    private final ChannelCompositor compositor;
+
+    private record Ray(double x, double y, double z, double dx, double dy, double dz) {}
+    private record Tile(int x, int y, int width, int height) {}
+    private record Level(int level, int t, int width, int height, int depth, double downsample) {}
+
+    /**
+     * Create a ray caster.
+     *
+     * @param brickSource  the source providing the voxels of the image to render
+     */
+    public RayCaster(BrickSource brickSource) {
+        this.brickSource = brickSource;
+        this.compositor = new ChannelCompositor(brickSource.getServer());
+    }
+
+    /**
+     * @return the image rendered by this ray caster
+     */
+    public ImageServer<BufferedImage> getServer() {
+        return brickSource.getServer();
+    }
+
+    /**
+     * Render the image. The ray of sample (i, j) of the result starts at
+     * {@code p0 + U * i / width + V * j / height}, where U and V are the vectors defined in
+     * {@link Rectangle}, and goes in the provided direction.
+     * This function reads the image, so it shouldn't be called from the JavaFX Application Thread.
+     *
+     * @param viewPlane  the rectangle rays start from, in full resolution pixel coordinates. It should
+     *                   be located in front of the image
+     * @param direction  the direction of the rays, in full resolution pixel coordinates. Its length doesn't matter
+     * @param mode  how the samples along each ray are combined
+     * @param t  the time point to render
+     * @param level  the resolution level to read voxels from
+     * @param width  the number of rays on the x-axis of the result
+     * @param height  the number of rays on the y-axis of the result
+     * @param cancelled  a function called before rendering each tile. If it returns true, the rendering stops
+     * @return the combined values of each channel of the image, or null if the rendering was cancelled.
+     * Rays that don't go through the image are 0
+     * @throws IOException when an error occurs while reading the image
+     */
+    public SampledPlane render(
+            Rectangle viewPlane,
+            Point3D direction,
+            RayCastingMode mode,
+            int t,
+            int level,
+            int width,
+            int height,
+            BooleanSupplier cancelled
+    ) throws IOException {
+        ImageServer<BufferedImage> server = brickSource.getServer();
+        ImageServerMetadata.ImageResolutionLevel resolutionLevel = server.getMetadata().getLevel(level);
+        Level levelInfo = new Level(
+                level,
+                t,
+                resolutionLevel.getWidth(),
+                resolutionLevel.getHeight(),
+                server.nZSlices(),
+                resolutionLevel.getDownsample()
+        );
+        float[][] values = new float[server.isRGB() ? 3 : server.nChannels()][width * height];
+
+        List<Tile> tiles = new ArrayList<>();
+        for (int y=0; y<height; y+=TILE_SIZE) {
+            for (int x=0; x<width; x+=TILE_SIZE) {
+                tiles.add(new Tile(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y)));
+            }
+        }
+
+        try {
+            tiles.parallelStream().forEach(SlicerPose.wrap(tile -> {
+                if (!cancelled.getAsBoolean()) {
+                    try {
+                        renderTile(tile, viewPlane, direction, mode, levelInfo, width, height, values);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return cancelled.getAsBoolean() ? null : new SampledPlane(width, height, values);
+    }
+
+    /**
+     * Render the image and convert the result to colors.
+     * See {@link #render(Rectangle, Point3D, RayCastingMode, int, int, int, int, BooleanSupplier)} for the parameters.
+     *
+     * @return the ARGB colors of the rays, indexed by {@code y * width + x}, or null if the rendering was cancelled
+     * @throws IOException when an error occurs while reading the image
+     */
+    public int[] renderARGB(
+            Rectangle viewPlane,
+            Point3D direction,
+            RayCastingMode mode,
+            int t,
+            int level,
+            int width,
+            int height,
+            BooleanSupplier cancelled
+    ) throws IOException {
+        SampledPlane plane = render(viewPlane, direction, mode, t, level, width, height, cancelled);
+        if (plane == null) {
+            return null;
+        }
+
+        long startTime = System.nanoTime();
+        int[] colors = compositor.toARGB(plane);
+        FrameMetrics.record(PipelineStage.RGB_CONVERSION, startTime);
+
+        return colors;
+    }
+
+    /**
+     * @return the compositor used by this ray caster to convert the results to colors
+     */
+    public ChannelCompositor getCompositor() {
+        return compositor;
+    }
+
+    private void renderTile(
+            Tile tile,
+            Rectangle viewPlane,
+            Point3D direction,
+            RayCastingMode mode,
+            Level level,
+            int width,
+            int height,
+            float[][] values
+    ) throws IOException {
+        long startTime = System.nanoTime();
+        long ioDuration = 0;
+
+        // Rays are cast in the voxel coordinates of the level, with a length of one voxel per step
+        Point3D levelDirection = new Point3D(
+                direction.getX() / level.downsample(),
+                direction.getY() / level.downsample(),
+                direction.getZ()
+        ).normalize();
+        Point3D u = viewPlane.getU();
+        Point3D v = viewPlane.getV();
+        float[] result = new float[values.length];
+
+        for (int j=tile.y(); j<tile.y()+tile.height(); j++) {
+            for (int i=tile.x(); i<tile.x()+tile.width(); i++) {
+                Point3D origin = viewPlane.p0().add(u.multiply((double) i / width)).add(v.multiply((double) j / height));
+                Ray ray = new Ray(
+                        origin.getX() / level.downsample(),
+                        origin.getY() / level.downsample(),
+                        origin.getZ(),
+                        levelDirection.getX(),
+                        levelDirection.getY(),
+                        levelDirection.getZ()
+                );
+
+                ioDuration += castRay(ray, mode, level, result);
+                for (int c=0; c<values.length; c++) {
+                    values[c][j * width + i] = result[c];
+                }
+            }
+        }
+
+        FrameMetrics.recordDuration(PipelineStage.IO, ioDuration);
+        FrameMetrics.recordDuration(PipelineStage.RAY_CASTING, System.nanoTime() - startTime - ioDuration);
+    }
+
+    /**
+     * Cast a ray through the image.
+     *
+     * @param ray  the ray to cast, in voxel coordinates of the level
+     * @param mode  how the samples along the ray are combined
+     * @param level  the level to read voxels from
+     * @param result  an array that will be filled with the combined value of each channel
+     * @return the time spent retrieving bricks, in nanoseconds
+     * @throws IOException when an error occurs while reading the image
+     */
+    private long castRay(Ray ray, RayCastingMode mode, Level level, float[] result) throws IOException {
+        long ioDuration = 0;
+        Arrays.fill(result, mode == RayCastingMode.MAXIMUM_INTENSITY ? Float.NEGATIVE_INFINITY : 0);
+        double opacity = 0;
+
+        // Voxel k covers [k - 0.5, k + 0.5[
+        double[] interval = intersect(ray, -0.5, -0.5, -0.5, level.width() - 0.5, level.height() - 0.5, level.depth() - 0.5);
+        double distance = Math.max(0, interval[0]) + 0.5;
+
+        Brick brick = null;
+        while (distance < interval[1]) {
+            int x = (int) Math.round(ray.x() + distance * ray.dx());
+            int y = (int) Math.round(ray.y() + distance * ray.dy());
+            int z = (int) Math.round(ray.z() + distance * ray.dz());
+            if (x < 0 || x >= level.width() || y < 0 || y >= level.height() || z < 0 || z >= level.depth()) {
+                distance++;
+                continue;
+            }
+
+            if (brick == null || !contains(brick, x, y, z)) {
+                int brickX = x / brickSource.getBrickWidth();
+                int brickY = y / brickSource.getBrickHeight();
+                int brickZ = z / brickSource.getBrickDepth();
+                BrickSummary summary = brickSource.getSummary(level.level(), level.t(), brickX, brickY, brickZ);
+                boolean skip = summary != null && canSkip(summary, mode, result);
+                FrameMetrics.recordCacheAccess(SKIPPED_BRICKS_METRICS_NAME, skip);
+
+                if (skip) {
+                    double exit = intersect(
+                            ray,
+                            brickX * brickSource.getBrickWidth() - 0.5,
+                            brickY * brickSource.getBrickHeight() - 0.5,
+                            brickZ * brickSource.getBrickDepth() - 0.5,
+                            (brickX + 1) * brickSource.getBrickWidth() - 0.5,
+                            (brickY + 1) * brickSource.getBrickHeight() - 0.5,
+                            (brickZ + 1) * brickSource.getBrickDepth() - 0.5
+                    )[1];
+                    distance += Math.max(1, Math.ceil(exit - distance));
+                    brick = null;
+                    continue;
+                }
+
+                long ioStartTime = System.nanoTime();
+                brick = brickSource.getBrick(level.level(), level.t(), brickX, brickY, brickZ);
+                ioDuration += System.nanoTime() - ioStartTime;
+            }
+
+            if (mode == RayCastingMode.MAXIMUM_INTENSITY) {
+                boolean saturated = true;
+                for (int c=0; c<result.length && c<brick.nChannels(); c++) {
+                    result[c] = Math.max(result[c], (float) brick.getValue(c, x - brick.getX(), y - brick.getY(), z - brick.getZ()));
+                    saturated &= result[c] >= compositor.getMaxValue();
+                }
+
+                // Higher values wouldn't be displayed differently
+                if (saturated) {
+                    break;
+                }
+            } else {
+                double maxWeight = 0;
+                for (int c=0; c<result.length && c<brick.nChannels(); c++) {
+                    maxWeight = Math.max(maxWeight, getWeight(brick.getValue(c, x - brick.getX(), y - brick.getY(), z - brick.getZ())));
+                }
+                double alpha = Math.max(0, (maxWeight - OPACITY_THRESHOLD) / (1 - OPACITY_THRESHOLD)) * OPACITY_PER_VOXEL;
+
+                if (alpha > 0) {
+                    for (int c=0; c<result.length && c<brick.nChannels(); c++) {
+                        result[c] += (float) ((1 - opacity) * alpha * brick.getValue(c, x - brick.getX(), y - brick.getY(), z - brick.getZ()));
+                    }
+                    opacity += (1 - opacity) * alpha;
+
+                    if (opacity >= OPAQUE) {
+                        break;
+                    }
+                }
+            }
+            distance++;
+        }
+
+        for (int c=0; c<result.length; c++) {
+            if (result[c] == Float.NEGATIVE_INFINITY) {
+                result[c] = 0;
+            }
+        }
+        return ioDuration;
+    }
+
+    private boolean canSkip(BrickSummary summary, RayCastingMode mode, float[] result) {
+        for (int c=0; c<summary.nChannels() && c<result.length; c++) {
+            boolean channelCanBeSkipped = switch (mode) {
+                case MAXIMUM_INTENSITY -> summary.max()[c] <= result[c];
+                case COMPOSITING -> getWeight(summary.max()[c]) <= OPACITY_THRESHOLD;
+            };
+            if (!channelCanBeSkipped) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the intensity of a value as displayed by the compositor, between 0 and 1
+     */
+    private double getWeight(double value) {
+        return Math.min(1, Math.max(0, (value - compositor.getMinValue()) / (compositor.getMaxValue() - compositor.getMinValue())));
+    }
+
+    /**
+     * Intersect a ray with an axis-aligned box, using the
+     * <a href="https://en.wikipedia.org/wiki/Slab_method">slab method</a>.
+     *
+     * @return the distances along the ray where it enters and exits the box. The ray
+     * doesn't intersect the box if the first distance is not less than the second
+     */
+    private static double[] intersect(Ray ray, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double[] interval = new double[] {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+
+        intersectSlab(ray.x(), ray.dx(), minX, maxX, interval);
+        intersectSlab(ray.y(), ray.dy(), minY, maxY, interval);
+        intersectSlab(ray.z(), ray.dz(), minZ, maxZ, interval);
+
+        return interval;
+    }
+
+    private static void intersectSlab(double origin, double direction, double min, double max, double[] interval) {
+        if (direction == 0) {
+            if (origin < min || origin > max) {
+                interval[0] = Double.POSITIVE_INFINITY;
+                interval[1] = Double.NEGATIVE_INFINITY;
+            }
+        } else {
+            double first = (min - origin) / direction;
+            double second = (max - origin) / direction;
+            interval[0] = Math.max(interval[0], Math.min(first, second));
+            interval[1] = Math.min(interval[1], Math.max(first, second));
+        }
+    }
+
+    private static boolean contains(Brick brick, int x, int y, int z) {
+        return brick.getX() <= x && x < brick.getX() + brick.getWidth() &&
+                brick.getY() <= y && y < brick.getY() + brick.getHeight() &&
+                brick.getZ() <= z && z < brick.getZ() + brick.getDepth();
+    }
+}
@@ -0,0 +1,27 @@
+package qupath.ext.viewer.sampling;
+
+/**
+ * The ways the samples taken along a ray by a {@link RayCaster} can be combined into a single value.
+ */
+public enum RayCastingMode {
+    /**
+     * The maximum value of the samples along the ray (maximum intensity projection).
+     */
+    MAXIMUM_INTENSITY("Maximum intensity"),
+    /**
+     * The front-to-back alpha compositing of the samples along the ray, each sample being more
+     * opaque as its value increases.
+     */
+    COMPOSITING("Compositing");
+
+    private final String name;
+
+    RayCastingMode(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
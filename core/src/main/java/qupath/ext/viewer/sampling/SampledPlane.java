@@ -0,0 +1,19 @@
+package qupath.ext.viewer.sampling;
+
+/**
+ * The values of an image resampled on a 2D grid.
+ *
+ * @param width  the number of samples of the grid on the x-axis
+ * @param height  the number of samples of the grid on the y-axis
+ * @param values  the values of the samples, indexed by channel and then by
+ *                {@code y * width + x}. Samples located outside the image are 0
+ */
+public record SampledPlane(int width, int height, float[][] values) {
+
+    /**
+     * @return the number of channels of this plane
+     */
+    public int nChannels() {
+        return values.length;
+    }
+}
@@ -0,0 +1,43 @@
+package qupath.ext.viewer.sampling;
+
+import qupath.ext.viewer.mathsoperations.Rectangle;
+
+/**
+ * A thick slice of an image, centered on a plane.
+ *
+ * @param plane  a rectangle located in the middle of the slab, in full resolution pixel coordinates.
+ *               Only its position and orientation are used, not its extent
+ * @param thickness  the distance between the two faces of the slab, in full resolution pixels
+ * @param numberOfSamples  the number of samples taken along the normal of the plane, spread evenly
+ *                         over the thickness of the slab
+ * @param projection  how the samples taken along the normal of the plane are combined
+ */
+public record Slab(Rectangle plane, double thickness, int numberOfSamples, SlabProjection projection) {
+
+    /**
+     * Create a slab.
+     *
+     * @throws IllegalArgumentException when the thickness is not positive, or when the number of samples is less than 1
+     */
+    public Slab {
+        if (!(thickness > 0)) {
+            throw new IllegalArgumentException(String.format("The thickness of a slab must be positive (got %f)", thickness));
+        }
+        if (numberOfSamples < 1) {
+            throw new IllegalArgumentException(String.format("A slab needs at least one sample (got %d)", numberOfSamples));
+        }
+    }
+
+    /**
+     * Create a slab with one sample per pixel of thickness.
+     *
+     * @param plane  see {@link #plane()}
+     * @param thickness  see {@link #thickness()}
+     * @param projection  see {@link #projection()}
+     * @return a new slab
+     * @throws IllegalArgumentException when the thickness is not positive
+     */
+    public static Slab create(Rectangle plane, double thickness, SlabProjection projection) {
+        return new Slab(plane, thickness, Math.max(1, (int) Math.ceil(thickness)), projection);
+    }
+}
@@ -0,0 +1,56 @@
+package qupath.ext.viewer.sampling;
+
+/**
+ * The ways the samples of a {@link Slab} can be combined into a single value.
+ */
+public enum SlabProjection {
+    /**
+     * The maximum value of the samples (maximum intensity projection).
+     */
+    MAXIMUM("Maximum"),
+    /**
+     * The minimum value of the samples (minimum intensity projection).
+     */
+    MINIMUM("Minimum"),
+    /**
+     * The mean value of the samples.
+     */
+    MEAN("Mean");
+
+    private final String name;
+
+    SlabProjection(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Combine a value with the accumulation of the previous values of a projection.
+     *
+     * @param accumulation  the accumulation of the previous values
+     * @param value  the value to add
+     * @return the new accumulation
+     */
+    float accumulate(float accumulation, float value) {
+        return switch (this) {
+            case MAXIMUM -> Math.max(accumulation, value);
+            case MINIMUM -> Math.min(accumulation, value);
+            case MEAN -> accumulation + value;
+        };
+    }
+
+    /**
+     * Convert the accumulation of all values of a projection to the projected value.
+     *
+     * @param accumulation  the accumulation of all values
+     * @param numberOfValues  the number of accumulated values
+     * @return the projected value
+     */
+    float finish(float accumulation, int numberOfValues) {
+        return this == MEAN ? accumulation / numberOfValues : accumulation;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,265 @@
+package qupath.ext.viewer.sampling;
+
+import javafx.geometry.Point3D;
+import qupath.ext.viewer.extensions.Point3DExtension;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.metrics.SlicerPose;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Project the voxels of a {@link Slab} onto its middle plane, for example to display
+ *     the maximum intensity of a thick slice of the image.
+ * </p>
+ * <p>
+ *     The slab is sampled on a grid attached to the orientation of the slab: one sample per full resolution pixel
+ *     in the plane, and {@link Slab#numberOfSamples()} samples along the normal of the plane. This grid is divided
+ *     into square tiles that are sampled and projected in parallel, reading voxels through an {@link ObliqueSampler}
+ *     (and therefore through its cached bricks).
+ * </p>
+ * <p>
+ *     The samples of each tile and each position along the normal are kept while they fit in a byte budget.
+ *     When the slab only moves along its normal (for example when the slicer is translated by a small step),
+ *     only the positions not covered by the previous slab are sampled. Changing the orientation, the thickness or
+ *     the number of samples of the slab discards the kept samples.
+ * </p>
+ * <p>
+ *     The time spent combining samples is recorded as {@link PipelineStage#RESAMPLING}, and the samples reused
+ *     from a previous projection as hits of the {@link #SLICES_METRICS_NAME} cache. This class is thread-safe,
+ *     but only one projection is computed at a time.
+ * </p>
+ */
+public class SlabProjector {
+
+    /**
+     * The name under which accesses to the kept samples are recorded in {@link FrameMetrics}
+     */
+    public static final String SLICES_METRICS_NAME = "Slab slices";
+    /**
+     * The default maximum number of bytes the kept samples can use
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE_BYTES = 128L * 1024 * 1024;
+    private static final int TILE_SIZE = 64;
+    private static final int ORIENTATION_PRECISION = 9;
+    private final ObliqueSampler sampler;
+    private final long maximumSizeBytes;
+    private final Map<SliceKey, float[][]> slices = new ConcurrentHashMap<>();
+    private final AtomicLong sizeBytes = new AtomicLong(0);
+    private Grid grid;
+
+    private record Grid(Point3D xAxis, Point3D yAxis, Point3D normal, double step, int t) {}
+    private record SliceKey(int tileX, int tileY, int position) {}
+    private record Tile(int tileX, int tileY) {}
+
+    /**
+     * Create a projector.
+     *
+     * @param sampler  the sampler to read voxels from
+     * @param maximumSizeBytes  the maximum number of bytes the samples kept between two projections can use.
+     *                          Samples are stored as floats
+     */
+    public SlabProjector(ObliqueSampler sampler, long maximumSizeBytes) {
+        this.sampler = sampler;
+        this.maximumSizeBytes = maximumSizeBytes;
+    }
+
+    /**
+     * Project a slab and resample the projection along a rectangle. Sample (i, j) of the result is
+     * the projection of the line of the slab going through {@code p0 + U * i / width + V * j / height},
+     * where U and V are the vectors defined in {@link Rectangle}.
+     * This function reads the image, so it shouldn't be called from the JavaFX Application Thread.
+     *
+     * @param slab  the slab to project
+     * @param area  the rectangle to sample, in full resolution pixel coordinates. It should lie in
+     *              the middle plane of the slab
+     * @param t  the time point to sample
+     * @param width  the number of samples on the x-axis of the result
+     * @param height  the number of samples on the y-axis of the result
+     * @return the projected values of each channel of the image. Samples of the slab located
+     * outside the image are 0, and take part in the projection
+     * @throws IOException when an error occurs while reading the image
+     */
+    public synchronized SampledPlane project(Slab slab, Rectangle area, int t, int width, int height) throws IOException {
+        updateGrid(slab, t);
+
+        // Slab positions are multiples of the step along the normal, so that consecutive slabs share positions
+        double center = grid.normal().dotProduct(slab.plane().p0()) / grid.step();
+        int firstPosition = (int) Math.round(center - (slab.numberOfSamples() - 1) / 2d);
+        int lastPosition = firstPosition + slab.numberOfSamples() - 1;
+
+        List<Point3D> corners = List.of(area.p0(), area.p1(), area.p2(), area.p3());
+        int minTileX = Math.floorDiv((int) Math.floor(Point3DExtension.min(corners, grid.xAxis()::dotProduct)), TILE_SIZE);
+        int maxTileX = Math.floorDiv((int) Math.ceil(Point3DExtension.max(corners, grid.xAxis()::dotProduct)), TILE_SIZE);
+        int minTileY = Math.floorDiv((int) Math.floor(Point3DExtension.min(corners, grid.yAxis()::dotProduct)), TILE_SIZE);
+        int maxTileY = Math.floorDiv((int) Math.ceil(Point3DExtension.max(corners, grid.yAxis()::dotProduct)), TILE_SIZE);
+
+        List<Tile> tiles = new ArrayList<>();
+        for (int tileY=minTileY; tileY<=maxTileY; tileY++) {
+            for (int tileX=minTileX; tileX<=maxTileX; tileX++) {
+                tiles.add(new Tile(tileX, tileY));
+            }
+        }
+
+        Map<Tile, float[][]> projectedTiles = new ConcurrentHashMap<>();
+        try {
+            tiles.parallelStream().forEach(SlicerPose.wrap(tile -> {
+                try {
+                    projectedTiles.put(tile, projectTile(tile, firstPosition, lastPosition, slab.projection()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Samples that won't be part of a slab moving by a small step are not needed anymore
+        slices.entrySet().removeIf(entry -> {
+            SliceKey key = entry.getKey();
+            boolean obsolete = key.tileX() < minTileX || key.tileX() > maxTileX || key.tileY() < minTileY || key.tileY() > maxTileY ||
+                    key.position() < firstPosition - slab.numberOfSamples() || key.position() > lastPosition + slab.numberOfSamples();
+            if (obsolete) {
+                sizeBytes.addAndGet(-getSizeBytes(entry.getValue()));
+            }
+            return obsolete;
+        });
+
+        long startTime = System.nanoTime();
+        SampledPlane plane = resample(projectedTiles, area, width, height);
+        FrameMetrics.record(PipelineStage.RESAMPLING, startTime);
+
+        return plane;
+    }
+
+    /**
+     * Discard all samples kept from previous projections.
+     */
+    public synchronized void clear() {
+        slices.clear();
+        sizeBytes.set(0);
+        grid = null;
+    }
+
+    /**
+     * @return the number of bytes currently used by the samples kept from previous projections
+     */
+    public long getSizeBytes() {
+        return sizeBytes.get();
+    }
+
+    private void updateGrid(Slab slab, int t) {
+        // Rounding prevents floating point errors of the slicer transforms from discarding the kept samples
+        Point3D xAxis = Point3DExtension.round(slab.plane().getU().normalize(), ORIENTATION_PRECISION);
+        Point3D normal = Point3DExtension.round(slab.plane().getU().crossProduct(slab.plane().getV()).normalize(), ORIENTATION_PRECISION);
+        Grid newGrid = new Grid(
+                xAxis,
+                normal.crossProduct(xAxis),
+                normal,
+                slab.thickness() / slab.numberOfSamples(),
+                t
+        );
+
+        if (!newGrid.equals(grid)) {
+            clear();
+            grid = newGrid;
+        }
+    }
+
+    private float[][] projectTile(Tile tile, int firstPosition, int lastPosition, SlabProjection projection) throws IOException {
+        float[][] projectedTile = null;
+
+        for (int position=firstPosition; position<=lastPosition; position++) {
+            float[][] slice = getSlice(new SliceKey(tile.tileX(), tile.tileY(), position));
+
+            long startTime = System.nanoTime();
+            if (projectedTile == null) {
+                projectedTile = new float[slice.length][];
+                for (int c=0; c<slice.length; c++) {
+                    projectedTile[c] = slice[c].clone();
+                }
+            } else {
+                for (int c=0; c<slice.length; c++) {
+                    for (int i=0; i<slice[c].length; i++) {
+                        projectedTile[c][i] = projection.accumulate(projectedTile[c][i], slice[c][i]);
+                    }
+                }
+            }
+            FrameMetrics.record(PipelineStage.RESAMPLING, startTime);
+        }
+
+        int numberOfSamples = lastPosition - firstPosition + 1;
+        for (float[] channel: projectedTile) {
+            for (int i=0; i<channel.length; i++) {
+                channel[i] = projection.finish(channel[i], numberOfSamples);
+            }
+        }
+        return projectedTile;
+    }
+
+    private float[][] getSlice(SliceKey key) throws IOException {
+        float[][] slice = slices.get(key);
+        FrameMetrics.recordCacheAccess(SLICES_METRICS_NAME, slice != null);
+        if (slice != null) {
+            return slice;
+        }
+
+        Point3D p0 = grid.xAxis().multiply(key.tileX() * TILE_SIZE)
+                .add(grid.yAxis().multiply(key.tileY() * TILE_SIZE))
+                .add(grid.normal().multiply(key.position() * grid.step()));
+        Point3D p1 = p0.add(grid.xAxis().multiply(TILE_SIZE));
+        Point3D p2 = p1.add(grid.yAxis().multiply(TILE_SIZE));
+        slice = sampler.sample(new Rectangle(p0, p1, p2), grid.t(), 0, TILE_SIZE, TILE_SIZE).values();
+
+        long size = getSizeBytes(slice);
+        if (sizeBytes.addAndGet(size) <= maximumSizeBytes) {
+            slices.put(key, slice);
+        } else {
+            sizeBytes.addAndGet(-size);
+        }
+        return slice;
+    }
+
+    private SampledPlane resample(Map<Tile, float[][]> projectedTiles, Rectangle area, int width, int height) {
+        int nChannels = projectedTiles.values().stream().findAny().map(tile -> tile.length).orElse(0);
+        float[][] values = new float[nChannels][width * height];
+
+        Point3D u = area.getU();
+        Point3D v = area.getV();
+        double xOrigin = grid.xAxis().dotProduct(area.p0());
+        double yOrigin = grid.yAxis().dotProduct(area.p0());
+        double xStepU = grid.xAxis().dotProduct(u) / width;
+        double yStepU = grid.yAxis().dotProduct(u) / width;
+        double xStepV = grid.xAxis().dotProduct(v) / height;
+        double yStepV = grid.yAxis().dotProduct(v) / height;
+
+        for (int j=0; j<height; j++) {
+            for (int i=0; i<width; i++) {
+                int x = (int) Math.round(xOrigin + i * xStepU + j * xStepV);
+                int y = (int) Math.round(yOrigin + i * yStepU + j * yStepV);
+                float[][] tile = projectedTiles.get(new Tile(Math.floorDiv(x, TILE_SIZE), Math.floorDiv(y, TILE_SIZE)));
+
+                if (tile != null) {
+                    int index = Math.floorMod(y, TILE_SIZE) * TILE_SIZE + Math.floorMod(x, TILE_SIZE);
+                    for (int c=0; c<nChannels; c++) {
+                        values[c][j * width + i] = tile[c][index];
+                    }
+                }
+            }
+        }
+
+        return new SampledPlane(width, height, values);
+    }
+
+    private static long getSizeBytes(float[][] slice) {
+        return (long) slice.length * TILE_SIZE * TILE_SIZE * Float.BYTES;
+    }
+}
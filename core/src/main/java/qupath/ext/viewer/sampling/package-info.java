@@ -0,0 +1,5 @@
+/**
+ * Resampling of the voxels of an image along arbitrary planes and polylines, and conversion of the
+ * resampled values to displayable colors.
+ */
+package qupath.ext.viewer.sampling;
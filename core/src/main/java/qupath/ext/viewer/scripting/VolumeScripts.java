@@ -0,0 +1,100 @@
+package qupath.ext.viewer.scripting;
+
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.SampledPlane;
+import qupath.ext.viewer.sampling.Slab;
+import qupath.ext.viewer.sampling.SlabProjection;
+import qupath.ext.viewer.sampling.SlabProjector;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p>
+ *     Static functions to clip the volume of an image and to sample oblique planes and slabs of it, for
+ *     example from a Groovy script or a batch job running without any display. They only rely on the
+ *     geometry classes of JavaFX (such as {@link javafx.geometry.Point3D}), which don't need the JavaFX
+ *     toolkit to be started.
+ * </p>
+ * <p>
+ *     All coordinates are full resolution pixel coordinates, with z expressed in z-slices. Voxels are read through
+ *     {@link BrickSource#create(ImageServer)}, so bricks are shared with the viewers and with other scripts
+ *     reading the same image. All functions are thread-safe: they can be called in parallel, for example on
+ *     several images or on several planes of the same image.
+ * </p>
+ */
+public class VolumeScripts {
+
+    private VolumeScripts() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Compute the part of the volume of an image located in front of a plane, as a closed 3D shape
+     * represented by a list of faces. This is what the viewer displays when the slicer is at this plane.
+     *
+     * @param server  the image whose volume should be clipped
+     * @param plane  the plane clipping the volume, in full resolution pixel coordinates
+     * @return the faces of the part of the volume located in front of the plane, in full resolution pixel coordinates.
+     * If the plane cuts the volume, the last face is the part of the plane inside the volume (see {@link Cube.Face#onRectangle()})
+     */
+    public static List<Cube.Face> getClippedFaces(ImageServer<?> server, Rectangle plane) {
+        Cube cube = new Cube(server);
+
+        return cube.getPartOfCubeInFrontOfRectangle(new Rectangle(plane, cube.getPixelToSpaceTransform())).stream()
+                .map(face -> new Cube.Face(face.points().stream().map(cube.getSpaceToPixelTransform()).toList(), face.onRectangle()))
+                .toList();
+    }
+
+    /**
+     * Resample an image along a rectangle, using nearest neighbour interpolation.
+     * See {@link ObliqueSampler#sample(Rectangle, int, int, int, int)} for the position of the samples.
+     *
+     * @param server  the image to sample
+     * @param area  the rectangle to sample, in full resolution pixel coordinates
+     * @param t  the time point to sample
+     * @param level  the resolution level to read voxels from
+     * @param width  the number of samples on the x-axis of the result
+     * @param height  the number of samples on the y-axis of the result
+     * @return the sampled values of each channel of the image, as float arrays
+     * @throws IOException when an error occurs while reading the image
+     */
+    public static SampledPlane samplePlane(ImageServer<BufferedImage> server, Rectangle area, int t, int level, int width, int height) throws IOException {
+        return new ObliqueSampler(BrickSource.create(server)).sample(area, t, level, width, height);
+    }
+
+    /**
+     * Project the slab of an image centered on a rectangle, and resample the projection along this rectangle.
+     * One sample is taken per full resolution pixel of thickness. See {@link SlabProjector#project(Slab, Rectangle, int, int, int)}
+     * for the position of the samples.
+     *
+     * @param server  the image to sample
+     * @param area  the rectangle in the middle of the slab to sample, in full resolution pixel coordinates
+     * @param thickness  the distance between the two faces of the slab, in full resolution pixels
+     * @param projection  how the samples taken along the normal of the rectangle are combined
+     * @param t  the time point to sample
+     * @param width  the number of samples on the x-axis of the result
+     * @param height  the number of samples on the y-axis of the result
+     * @return the projected values of each channel of the image, as float arrays
+     * @throws IOException when an error occurs while reading the image
+     * @throws IllegalArgumentException when the thickness is not positive
+     */
+    public static SampledPlane sampleSlab(
+            ImageServer<BufferedImage> server,
+            Rectangle area,
+            double thickness,
+            SlabProjection projection,
+            int t,
+            int width,
+            int height
+    ) throws IOException {
+        // Samples are not kept, as the projector is not reused
+        SlabProjector projector = new SlabProjector(new ObliqueSampler(BrickSource.create(server)), 0);
+        return projector.project(Slab.create(area, thickness, projection), area, t, width, height);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Static functions to clip and sample the volume of an image from scripts, without any display.
+ */
+package qupath.ext.viewer.scripting;
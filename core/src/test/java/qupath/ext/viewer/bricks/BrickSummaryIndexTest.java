@@ -0,0 +1,154 @@
+package qupath.ext.viewer.bricks;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import qupath.lib.images.servers.PixelType;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BrickSummaryIndexTest {
+
+    @Test
+    void Check_Summary_Read_After_Being_Added() throws IOException {
+        BrickKey key = new BrickKey("image", 0, 0, 0, 0, 0);
+        BrickSummary expectedSummary = createSummary(1);
+
+        try (BrickSummaryIndex index = new BrickSummaryIndex()) {
+            index.put(key, expectedSummary);
+
+            Assertions.assertEquals(expectedSummary, index.get(key));
+        }
+    }
+
+    @Test
+    void Check_Summary_Of_Image_Without_Id_Not_Stored() throws IOException {
+        try (BrickSummaryIndex index = new BrickSummaryIndex()) {
+            index.put(new BrickKey(null, 0, 0, 0, 0, 0), createSummary(1));
+
+            Assertions.assertEquals(0, index.size());
+        }
+    }
+
+    @Test
+    void Check_Summaries_Read_After_Index_Reopened(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("summaries");
+        BrickKey firstKey = new BrickKey("image", 0, 0, 0, 0, 0);
+        BrickKey secondKey = new BrickKey("image", 1, 2, 3, 4, 5);
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            index.put(firstKey, createSummary(1));
+            index.put(secondKey, createSummary(2));
+        }
+
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            Assertions.assertEquals(2, index.size());
+            Assertions.assertEquals(createSummary(1), index.get(firstKey));
+            Assertions.assertEquals(createSummary(2), index.get(secondKey));
+        }
+    }
+
+    @Test
+    void Check_Invalidation_Persisted(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("summaries");
+        BrickKey removedKey = new BrickKey("first image", 0, 0, 0, 0, 0);
+        BrickKey keptKey = new BrickKey("second image", 0, 0, 0, 0, 0);
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            index.put(removedKey, createSummary(1));
+            index.put(keptKey, createSummary(2));
+
+            index.invalidate("first image");
+        }
+
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            Assertions.assertNull(index.get(removedKey));
+            Assertions.assertEquals(createSummary(2), index.get(keptKey));
+        }
+    }
+
+    @Test
+    void Check_Partially_Written_Summary_Discarded(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("summaries");
+        BrickKey firstKey = new BrickKey("image", 0, 0, 0, 0, 0);
+        BrickKey secondKey = new BrickKey("image", 0, 0, 1, 0, 0);
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            index.put(firstKey, createSummary(1));
+            index.put(secondKey, createSummary(2));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            Assertions.assertEquals(1, index.size());
+            Assertions.assertEquals(createSummary(1), index.get(firstKey));
+        }
+    }
+
+    @Test
+    void Check_Invalid_File_Replaced_By_Empty_Index(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("summaries");
+        Files.writeString(file, "not an index");
+
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            Assertions.assertEquals(0, index.size());
+
+            index.put(new BrickKey("image", 0, 0, 0, 0, 0), createSummary(1));
+        }
+
+        try (BrickSummaryIndex index = new BrickSummaryIndex(file)) {
+            Assertions.assertEquals(1, index.size());
+        }
+    }
+
+    @Test
+    void Check_Summary_Of_Brick() {
+        ArrayBrick brick = new ArrayBrick(0, 0, 0, 2, 1, 1, 2, PixelType.UINT8);
+        brick.setValue(0, 0, 0, 0, 10);
+        brick.setValue(0, 1, 0, 0, 20);
+        brick.setValue(1, 0, 0, 0, 5);
+        brick.setValue(1, 1, 0, 0, 5);
+
+        BrickSummary summary = BrickSummary.of(brick);
+
+        Assertions.assertEquals(2, summary.nChannels());
+        Assertions.assertArrayEquals(new double[] {10, 5}, summary.min());
+        Assertions.assertArrayEquals(new double[] {20, 5}, summary.max());
+        Assertions.assertArrayEquals(new double[] {15, 5}, summary.mean());
+    }
+
+    @Test
+    void Check_Uniform_Brick_Is_Constant() {
+        ArrayBrick brick = new ArrayBrick(0, 0, 0, 2, 2, 2, 1, PixelType.UINT8);
+
+        Assertions.assertTrue(BrickSummary.of(brick).isConstant());
+    }
+
+    @Test
+    void Check_Non_Uniform_Brick_Is_Not_Constant() {
+        ArrayBrick brick = new ArrayBrick(0, 0, 0, 2, 2, 2, 1, PixelType.UINT8);
+        brick.setValue(0, 1, 1, 1, 1);
+
+        Assertions.assertFalse(BrickSummary.of(brick).isConstant());
+    }
+
+    @Test
+    void Check_Summary_With_Different_Number_Of_Channels_Rejected() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new BrickSummary(PixelType.UINT8, new double[1], new double[2], new double[1])
+        );
+    }
+
+    private static BrickSummary createSummary(double offset) {
+        return new BrickSummary(
+                PixelType.UINT16,
+                new double[] {offset, offset + 1},
+                new double[] {offset + 10, offset + 11},
+                new double[] {offset + 5, offset + 6}
+        );
+    }
+}
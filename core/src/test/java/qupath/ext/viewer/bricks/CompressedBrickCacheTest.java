@@ -0,0 +1,165 @@
+package qupath.ext.viewer.bricks;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import qupath.lib.images.servers.PixelType;
+
+import java.util.Random;
+
+public class CompressedBrickCacheTest {
+
+    private static final int BRICK_SIZE = 16;
+    private static final long BRICK_BYTES = BRICK_SIZE * BRICK_SIZE * BRICK_SIZE;
+
+    @Test
+    void Check_Brick_Decompressed_Without_Loss() {
+        CompressedBrickCache cache = new CompressedBrickCache(10 * BRICK_BYTES);
+        BrickKey key = new BrickKey("image", 0, 0, 0, 0, 0);
+        ArrayBrick expectedBrick = createRandomBrick(3, PixelType.UINT16, 1);
+
+        cache.put(key, expectedBrick);
+        Brick brick = cache.remove(key);
+
+        assertBricksEqual(expectedBrick, brick);
+    }
+
+    @Test
+    void Check_Brick_Removed_After_Being_Decompressed() {
+        CompressedBrickCache cache = new CompressedBrickCache(10 * BRICK_BYTES);
+        BrickKey key = new BrickKey("image", 0, 0, 0, 0, 0);
+        cache.put(key, createUniformBrick(0));
+
+        cache.remove(key);
+
+        Assertions.assertNull(cache.remove(key));
+        Assertions.assertEquals(0, cache.getStatistics().numberOfBricks());
+    }
+
+    @Test
+    void Check_Uniform_Brick_Gains_Capacity() {
+        CompressedBrickCache cache = new CompressedBrickCache(10 * BRICK_BYTES);
+
+        cache.put(new BrickKey("image", 0, 0, 0, 0, 0), createUniformBrick(0));
+
+        CompressionStatistics statistics = cache.getStatistics();
+        Assertions.assertEquals(1, statistics.numberOfBricks());
+        Assertions.assertEquals(BRICK_BYTES, statistics.uncompressedBytes());
+        Assertions.assertTrue(statistics.capacityGain() > 10);
+    }
+
+    @Test
+    void Check_Empty_Cache_Has_No_Capacity_Gain() {
+        CompressedBrickCache cache = new CompressedBrickCache(10 * BRICK_BYTES);
+
+        Assertions.assertEquals(1, cache.getStatistics().capacityGain());
+    }
+
+    @Test
+    void Check_Compressed_Size_Does_Not_Exceed_Maximum() {
+        long maximumSizeBytes = 3 * BRICK_BYTES;
+        CompressedBrickCache cache = new CompressedBrickCache(maximumSizeBytes);
+
+        for (int x=0; x<10; x++) {
+            cache.put(new BrickKey("image", 0, 0, x, 0, 0), createRandomBrick(x, PixelType.UINT8, x));
+        }
+
+        CompressionStatistics statistics = cache.getStatistics();
+        Assertions.assertTrue(statistics.compressedBytes() <= maximumSizeBytes);
+        Assertions.assertTrue(statistics.numberOfBricks() < 10);
+    }
+
+    @Test
+    void Check_Least_Recently_Used_Brick_Evicted() {
+        CompressedBrickCache cache = new CompressedBrickCache(2 * BRICK_BYTES + BRICK_BYTES / 2);
+        BrickKey firstKey = new BrickKey("image", 0, 0, 0, 0, 0);
+        BrickKey secondKey = new BrickKey("image", 0, 0, 1, 0, 0);
+
+        cache.put(firstKey, createRandomBrick(0, PixelType.UINT8, 1));
+        cache.put(secondKey, createRandomBrick(1, PixelType.UINT8, 2));
+        cache.put(new BrickKey("image", 0, 0, 2, 0, 0), createRandomBrick(2, PixelType.UINT8, 3));
+
+        Assertions.assertNull(cache.remove(firstKey));
+        Assertions.assertNotNull(cache.remove(secondKey));
+    }
+
+    @Test
+    void Check_Bricks_Of_Invalidated_Image_Removed() {
+        CompressedBrickCache cache = new CompressedBrickCache(10 * BRICK_BYTES);
+        BrickKey removedKey = new BrickKey("first image", 0, 0, 0, 0, 0);
+        BrickKey keptKey = new BrickKey("second image", 0, 0, 0, 0, 0);
+        cache.put(removedKey, createUniformBrick(0));
+        cache.put(keptKey, createUniformBrick(0));
+
+        cache.invalidate("first image");
+
+        Assertions.assertNull(cache.remove(removedKey));
+        Assertions.assertNotNull(cache.remove(keptKey));
+    }
+
+    @Test
+    void Check_Evicted_Brick_Found_In_Compressed_Cache() throws Exception {
+        CompressedBrickCache compressedCache = new CompressedBrickCache(10 * BRICK_BYTES);
+        BrickCache cache = new BrickCache(BRICK_BYTES, compressedCache);
+        BrickKey firstKey = new BrickKey("image", 0, 0, 0, 0, 0);
+        ArrayBrick expectedBrick = createRandomBrick(0, PixelType.UINT8, 1);
+        cache.put(firstKey, expectedBrick);
+        cache.put(new BrickKey("image", 0, 0, 1, 0, 0), createUniformBrick(1));
+
+        Brick brick = cache.get(firstKey, () -> {
+            throw new AssertionError("The evicted brick should not be loaded again");
+        });
+
+        Assertions.assertEquals(1, compressedCache.getStatistics().numberOfBricks());
+        assertBricksEqual(expectedBrick, brick);
+    }
+
+    @Test
+    void Check_Negative_Size_Rejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CompressedBrickCache(-1));
+    }
+
+    private static ArrayBrick createUniformBrick(int x) {
+        ArrayBrick brick = new ArrayBrick(x * BRICK_SIZE, 0, 0, BRICK_SIZE, BRICK_SIZE, BRICK_SIZE, 1, PixelType.UINT8);
+        for (int k=0; k<BRICK_SIZE; k++) {
+            for (int j=0; j<BRICK_SIZE; j++) {
+                for (int i=0; i<BRICK_SIZE; i++) {
+                    brick.setValue(0, i, j, k, 42);
+                }
+            }
+        }
+        return brick;
+    }
+
+    private static ArrayBrick createRandomBrick(int x, PixelType pixelType, long seed) {
+        Random random = new Random(seed);
+        int maximumValue = pixelType == PixelType.UINT16 ? 65536 : 256;
+        ArrayBrick brick = new ArrayBrick(x * BRICK_SIZE, 0, 0, BRICK_SIZE, BRICK_SIZE, BRICK_SIZE, 1, pixelType);
+        for (int k=0; k<BRICK_SIZE; k++) {
+            for (int j=0; j<BRICK_SIZE; j++) {
+                for (int i=0; i<BRICK_SIZE; i++) {
+                    brick.setValue(0, i, j, k, random.nextInt(maximumValue));
+                }
+            }
+        }
+        return brick;
+    }
+
+    private static void assertBricksEqual(Brick expectedBrick, Brick brick) {
+        Assertions.assertNotNull(brick);
+        Assertions.assertEquals(expectedBrick.getX(), brick.getX());
+        Assertions.assertEquals(expectedBrick.getY(), brick.getY());
+        Assertions.assertEquals(expectedBrick.getZ(), brick.getZ());
+        Assertions.assertEquals(expectedBrick.getWidth(), brick.getWidth());
+        Assertions.assertEquals(expectedBrick.getHeight(), brick.getHeight());
+        Assertions.assertEquals(expectedBrick.getDepth(), brick.getDepth());
+        Assertions.assertEquals(expectedBrick.nChannels(), brick.nChannels());
+        Assertions.assertEquals(expectedBrick.getPixelType(), brick.getPixelType());
+        for (int k=0; k<brick.getDepth(); k++) {
+            for (int j=0; j<brick.getHeight(); j++) {
+                for (int i=0; i<brick.getWidth(); i++) {
+                    Assertions.assertEquals(expectedBrick.getValue(0, i, j, k), brick.getValue(0, i, j, k));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package qupath.ext.viewer.bricks;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import qupath.lib.images.servers.PixelType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class DiskBrickCacheTest {
+
+    private static final int BRICK_SIZE = 16;
+    private static final long BRICK_BYTES = BRICK_SIZE * BRICK_SIZE * BRICK_SIZE;
+
+    @Test
+    void Check_Brick_Read_After_Being_Written(@TempDir Path directory) throws IOException {
+        BrickKey key = new BrickKey("image", 0, 0, 1, 2, 3);
+        ArrayBrick expectedBrick = createBrick(1, 5);
+
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            cache.put(key, expectedBrick);
+
+            assertBricksEqual(expectedBrick, cache.get(key));
+        }
+    }
+
+    @Test
+    void Check_Missing_Brick_Is_Null(@TempDir Path directory) throws IOException {
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            cache.put(new BrickKey("image", 0, 0, 0, 0, 0), createBrick(0, 1));
+
+            Assertions.assertNull(cache.get(new BrickKey("image", 0, 0, 1, 0, 0)));
+        }
+    }
+
+    @Test
+    void Check_Brick_Read_After_Cache_Reopened(@TempDir Path directory) throws IOException {
+        BrickKey key = new BrickKey("image", 0, 0, 0, 0, 0);
+        ArrayBrick expectedBrick = createBrick(0, 7);
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            cache.validateSource("image", "signature");
+            cache.put(key, expectedBrick);
+        }
+
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            cache.validateSource("image", "signature");
+
+            assertBricksEqual(expectedBrick, cache.get(key));
+        }
+    }
+
+    @Test
+    void Check_Bricks_Removed_When_Signature_Changes(@TempDir Path directory) throws IOException {
+        BrickKey key = new BrickKey("image", 0, 0, 0, 0, 0);
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            cache.validateSource("image", "first signature");
+            cache.put(key, createBrick(0, 1));
+        }
+
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            cache.validateSource("image", "second signature");
+
+            Assertions.assertNull(cache.get(key));
+        }
+    }
+
+    @Test
+    void Check_Least_Recently_Used_Brick_Evicted(@TempDir Path directory) throws IOException {
+        BrickKey firstKey = new BrickKey("image", 0, 0, 0, 0, 0);
+        BrickKey secondKey = new BrickKey("image", 0, 0, 1, 0, 0);
+        BrickKey thirdKey = new BrickKey("image", 0, 0, 2, 0, 0);
+
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 2 * BRICK_BYTES)) {
+            cache.put(firstKey, createBrick(0, 1));
+            cache.put(secondKey, createBrick(1, 2));
+            cache.get(firstKey);
+            cache.put(thirdKey, createBrick(2, 3));
+
+            Assertions.assertNotNull(cache.get(firstKey));
+            Assertions.assertNull(cache.get(secondKey));
+            Assertions.assertNotNull(cache.get(thirdKey));
+        }
+    }
+
+    @Test
+    void Check_Size_Does_Not_Exceed_Maximum(@TempDir Path directory) throws IOException {
+        long maximumSizeBytes = 3 * BRICK_BYTES;
+
+        try (DiskBrickCache cache = new DiskBrickCache(directory, maximumSizeBytes)) {
+            for (int x=0; x<10; x++) {
+                cache.put(new BrickKey("image", 0, 0, x, 0, 0), createBrick(x, x));
+            }
+
+            Assertions.assertTrue(cache.getSizeBytes() <= maximumSizeBytes);
+        }
+    }
+
+    @Test
+    void Check_Bricks_Of_Invalidated_Image_Removed(@TempDir Path directory) throws IOException {
+        BrickKey removedKey = new BrickKey("first image", 0, 0, 0, 0, 0);
+        BrickKey keptKey = new BrickKey("second image", 0, 0, 0, 0, 0);
+
+        try (DiskBrickCache cache = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            cache.put(removedKey, createBrick(0, 1));
+            cache.put(keptKey, createBrick(0, 2));
+
+            cache.invalidate("first image");
+
+            Assertions.assertNull(cache.get(removedKey));
+            Assertions.assertNotNull(cache.get(keptKey));
+        }
+    }
+
+    @Test
+    void Check_Directory_Cannot_Be_Opened_Twice(@TempDir Path directory) throws IOException {
+        try (DiskBrickCache ignored = new DiskBrickCache(directory, 10 * BRICK_BYTES)) {
+            Assertions.assertThrows(IOException.class, () -> new DiskBrickCache(directory, 10 * BRICK_BYTES));
+        }
+    }
+
+    @Test
+    void Check_Directory_Can_Be_Opened_After_Close(@TempDir Path directory) throws IOException {
+        new DiskBrickCache(directory, 10 * BRICK_BYTES).close();
+
+        Assertions.assertDoesNotThrow(() -> new DiskBrickCache(directory, 10 * BRICK_BYTES).close());
+    }
+
+    @Test
+    void Check_Negative_Size_Rejected(@TempDir Path directory) {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new DiskBrickCache(directory, -1));
+    }
+
+    private static ArrayBrick createBrick(int x, int offset) {
+        ArrayBrick brick = new ArrayBrick(x * BRICK_SIZE, 0, 0, BRICK_SIZE, BRICK_SIZE, BRICK_SIZE, 1, PixelType.UINT8);
+        for (int k=0; k<BRICK_SIZE; k++) {
+            for (int j=0; j<BRICK_SIZE; j++) {
+                for (int i=0; i<BRICK_SIZE; i++) {
+                    brick.setValue(0, i, j, k, (i + j + k + offset) % 256);
+                }
+            }
+        }
+        return brick;
+    }
+
+    private static void assertBricksEqual(Brick expectedBrick, Brick brick) {
+        Assertions.assertNotNull(brick);
+        Assertions.assertEquals(expectedBrick.getX(), brick.getX());
+        Assertions.assertEquals(expectedBrick.getY(), brick.getY());
+        Assertions.assertEquals(expectedBrick.getZ(), brick.getZ());
+        Assertions.assertEquals(expectedBrick.getWidth(), brick.getWidth());
+        Assertions.assertEquals(expectedBrick.getHeight(), brick.getHeight());
+        Assertions.assertEquals(expectedBrick.getDepth(), brick.getDepth());
+        Assertions.assertEquals(expectedBrick.nChannels(), brick.nChannels());
+        Assertions.assertEquals(expectedBrick.getPixelType(), brick.getPixelType());
+        for (int k=0; k<brick.getDepth(); k++) {
+            for (int j=0; j<brick.getHeight(); j++) {
+                for (int i=0; i<brick.getWidth(); i++) {
+                    Assertions.assertEquals(expectedBrick.getValue(0, i, j, k), brick.getValue(0, i, j, k));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package qupath.ext.viewer.bricks;
+
+import qupath.lib.images.servers.AbstractImageServer;
+import qupath.lib.images.servers.ImageChannel;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.ImageServerBuilder;
+import qupath.lib.images.servers.ImageServerMetadata;
+import qupath.lib.images.servers.PixelType;
+import qupath.lib.regions.RegionRequest;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link BrickSource} of a single resolution level and time point, whose 32-bit floating point
+ * voxels are computed by a function. It is intended for tests that need an image without reading one.
+ */
+public class FunctionBrickSource implements BrickSource {
+
+    private final ImageServer<BufferedImage> server;
+    private final int brickSize;
+    private final VoxelFunction function;
+
+    /**
+     * A function giving the value of a voxel.
+     */
+    @FunctionalInterface
+    public interface VoxelFunction {
+
+        /**
+         * @param channel  the channel of the voxel
+         * @param x  the x-coordinate of the voxel
+         * @param y  the y-coordinate of the voxel
+         * @param z  the z-coordinate of the voxel
+         * @return the value of the voxel
+         */
+        double getValue(int channel, int x, int y, int z);
+    }
+
+    /**
+     * Create the source.
+     *
+     * @param width  the width of the image in pixels
+     * @param height  the height of the image in pixels
+     * @param depth  the number of z-slices of the image
+     * @param nChannels  the number of channels of the image
+     * @param pixelSizeMicrons  the width and height of a pixel in micrometers
+     * @param zSpacingMicrons  the spacing between z-slices in micrometers
+     * @param brickSize  the number of voxels of the bricks on each axis
+     * @param function  the function giving the value of each voxel
+     */
+    public FunctionBrickSource(
+            int width,
+            int height,
+            int depth,
+            int nChannels,
+            double pixelSizeMicrons,
+            double zSpacingMicrons,
+            int brickSize,
+            VoxelFunction function
+    ) {
+        this.server = new FunctionImageServer(new ImageServerMetadata.Builder()
+                .width(width)
+                .height(height)
+                .sizeZ(depth)
+                .sizeT(1)
+                .pixelType(PixelType.FLOAT32)
+                .rgb(false)
+                .channels(ImageChannel.getDefaultChannelList(nChannels))
+                .pixelSizeMicrons(pixelSizeMicrons, pixelSizeMicrons)
+                .zSpacingMicrons(zSpacingMicrons)
+                .build()
+        );
+        this.brickSize = brickSize;
+        this.function = function;
+    }
+
+    @Override
+    public ImageServer<BufferedImage> getServer() {
+        return server;
+    }
+
+    @Override
+    public int getBrickWidth() {
+        return brickSize;
+    }
+
+    @Override
+    public int getBrickHeight() {
+        return brickSize;
+    }
+
+    @Override
+    public int getBrickDepth() {
+        return brickSize;
+    }
+
+    @Override
+    public Brick getBrick(int level, int t, int x, int y, int z) {
+        int xStart = x * brickSize;
+        int yStart = y * brickSize;
+        int zStart = z * brickSize;
+        if (level != 0 || t != 0 || x < 0 || y < 0 || z < 0 ||
+                xStart >= server.getWidth() || yStart >= server.getHeight() || zStart >= server.nZSlices()) {
+            throw new IllegalArgumentException(String.format("Brick (%d, %d, %d, %d, %d) outside the image", level, t, x, y, z));
+        }
+
+        int width = Math.min(brickSize, server.getWidth() - xStart);
+        int height = Math.min(brickSize, server.getHeight() - yStart);
+        int depth = Math.min(brickSize, server.nZSlices() - zStart);
+        ArrayBrick brick = new ArrayBrick(xStart, yStart, zStart, width, height, depth, server.nChannels(), PixelType.FLOAT32);
+        for (int c=0; c<server.nChannels(); c++) {
+            for (int k=0; k<depth; k++) {
+                for (int j=0; j<height; j++) {
+                    for (int i=0; i<width; i++) {
+                        brick.setValue(c, i, j, k, function.getValue(c, xStart + i, yStart + j, zStart + k));
+                    }
+                }
+            }
+        }
+        return brick;
+    }
+
+    private static class FunctionImageServer extends AbstractImageServer<BufferedImage> {
+
+        private final ImageServerMetadata metadata;
+
+        public FunctionImageServer(ImageServerMetadata metadata) {
+            super(BufferedImage.class);
+
+            this.metadata = metadata;
+        }
+
+        @Override
+        protected ImageServerBuilder.ServerBuilder<BufferedImage> createServerBuilder() {
+            return null;
+        }
+
+        @Override
+        protected String createID() {
+            return getClass().getName() + ": " + System.identityHashCode(this);
+        }
+
+        @Override
+        public Collection<URI> getURIs() {
+            return List.of();
+        }
+
+        @Override
+        public String getServerType() {
+            return "Function";
+        }
+
+        @Override
+        public ImageServerMetadata getOriginalMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public BufferedImage readRegion(RegionRequest request) {
+            throw new UnsupportedOperationException("The voxels of this image are only provided as bricks");
+        }
+    }
+}
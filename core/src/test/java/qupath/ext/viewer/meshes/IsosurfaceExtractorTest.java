@@ -0,0 +1,69 @@
+package qupath.ext.viewer.meshes;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.bricks.FunctionBrickSource;
+
+import java.io.IOException;
+
+public class IsosurfaceExtractorTest {
+
+    private static final double[] CENTER = {15.7, 16.2, 15.9};
+    private static final double RADIUS = 9.5;
+
+    @Test
+    void Check_Sphere_Surface_Closed() throws IOException {
+        IndexedMesh mesh = new IsosurfaceExtractor(createSphere(), 0, 0, 0, 0).extract(() -> false);
+
+        Assertions.assertTrue(mesh.nTriangles() > 0);
+        MeshAssertions.assertClosed(mesh);
+    }
+
+    @Test
+    void Check_Sphere_Surface_Vertices_On_Sphere() throws IOException {
+        IndexedMesh mesh = new IsosurfaceExtractor(createSphere(), 0, 0, 0, 0).extract(() -> false);
+
+        MeshAssertions.assertOnSphere(mesh, CENTER, RADIUS, 0.1);
+    }
+
+    @Test
+    void Check_Sphere_Surface_Oriented_Outwards() throws IOException {
+        double expectedVolume = 4 * Math.PI * Math.pow(RADIUS, 3) / 3;
+
+        IndexedMesh mesh = new IsosurfaceExtractor(createSphere(), 0, 0, 0, 0).extract(() -> false);
+
+        Assertions.assertEquals(expectedVolume, MeshAssertions.computeVolume(mesh), 0.05 * expectedVolume);
+    }
+
+    @Test
+    void Check_Threshold_Above_Maximum_Gives_Empty_Surface() throws IOException {
+        IndexedMesh mesh = new IsosurfaceExtractor(createSphere(), 0, 0, 0, 2 * RADIUS).extract(() -> false);
+
+        Assertions.assertEquals(0, mesh.nTriangles());
+    }
+
+    @Test
+    void Check_Cancelled_Extraction_Gives_Null() throws IOException {
+        IndexedMesh mesh = new IsosurfaceExtractor(createSphere(), 0, 0, 0, 0).extract(() -> true);
+
+        Assertions.assertNull(mesh);
+    }
+
+    @Test
+    void Check_Invalid_Channel_Rejected() {
+        BrickSource brickSource = createSphere();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new IsosurfaceExtractor(brickSource, 0, 0, 1, 0));
+    }
+
+    /**
+     * @return an image whose values are the distance to the surface of a sphere, positive inside the sphere.
+     * Bricks are smaller than the sphere, so the surface crosses several bricks
+     */
+    private static BrickSource createSphere() {
+        return new FunctionBrickSource(32, 32, 32, 1, 1, 1, 8, (c, x, y, z) -> RADIUS - Math.sqrt(
+                Math.pow(x - CENTER[0], 2) + Math.pow(y - CENTER[1], 2) + Math.pow(z - CENTER[2], 2)
+        ));
+    }
+}
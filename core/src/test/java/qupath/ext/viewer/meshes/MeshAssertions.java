@@ -0,0 +1,90 @@
+package qupath.ext.viewer.meshes;
+
+import org.junit.jupiter.api.Assertions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assertions and measurements shared by the tests of meshes.
+ */
+class MeshAssertions {
+
+    private MeshAssertions() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Assert that a mesh is a closed surface whose triangles are consistently oriented, i.e. that
+     * each edge is shared by exactly two triangles listing its vertices in opposite orders.
+     *
+     * @param mesh  the mesh to check
+     */
+    public static void assertClosed(IndexedMesh mesh) {
+        Map<Long, Integer> numberOfDirectedEdges = new HashMap<>();
+        int[] triangles = mesh.triangles();
+        for (int triangle=0; triangle<mesh.nTriangles(); triangle++) {
+            for (int corner=0; corner<3; corner++) {
+                long edge = (long) triangles[3 * triangle + corner] * mesh.nVertices() + triangles[3 * triangle + (corner + 1) % 3];
+                numberOfDirectedEdges.merge(edge, 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<Long, Integer> entry: numberOfDirectedEdges.entrySet()) {
+            long first = entry.getKey() / mesh.nVertices();
+            long second = entry.getKey() % mesh.nVertices();
+
+            Assertions.assertEquals(1, entry.getValue(), String.format("Edge (%d, %d) listed several times", first, second));
+            Assertions.assertEquals(
+                    1,
+                    numberOfDirectedEdges.getOrDefault(second * mesh.nVertices() + first, 0),
+                    String.format("Edge (%d, %d) not shared with another triangle", first, second)
+            );
+        }
+    }
+
+    /**
+     * Assert that all vertices of a mesh are close to a sphere.
+     *
+     * @param mesh  the mesh to check
+     * @param center  the (x, y, z) coordinates of the center of the sphere
+     * @param radius  the radius of the sphere
+     * @param tolerance  the maximum distance between the vertices and the sphere
+     */
+    public static void assertOnSphere(IndexedMesh mesh, double[] center, double radius, double tolerance) {
+        float[] vertices = mesh.vertices();
+        for (int vertex=0; vertex<mesh.nVertices(); vertex++) {
+            double distance = Math.sqrt(
+                    Math.pow(vertices[3 * vertex] - center[0], 2) +
+                    Math.pow(vertices[3 * vertex + 1] - center[1], 2) +
+                    Math.pow(vertices[3 * vertex + 2] - center[2], 2)
+            );
+
+            Assertions.assertEquals(radius, distance, tolerance);
+        }
+    }
+
+    /**
+     * Compute the volume enclosed by a closed mesh. It is positive when the triangles are
+     * listed counterclockwise when seen from outside the surface.
+     *
+     * @param mesh  the mesh whose volume should be computed
+     * @return the volume enclosed by the mesh
+     */
+    public static double computeVolume(IndexedMesh mesh) {
+        float[] vertices = mesh.vertices();
+        int[] triangles = mesh.triangles();
+        double volume = 0;
+
+        for (int triangle=0; triangle<mesh.nTriangles(); triangle++) {
+            int a = 3 * triangles[3 * triangle];
+            int b = 3 * triangles[3 * triangle + 1];
+            int c = 3 * triangles[3 * triangle + 2];
+
+            volume += vertices[a] * (vertices[b + 1] * vertices[c + 2] - vertices[b + 2] * vertices[c + 1]) +
+                    vertices[a + 1] * (vertices[b + 2] * vertices[c] - vertices[b] * vertices[c + 2]) +
+                    vertices[a + 2] * (vertices[b] * vertices[c + 1] - vertices[b + 1] * vertices[c]);
+        }
+        return volume / 6;
+    }
+}
@@ -0,0 +1,122 @@
+package qupath.ext.viewer.meshes;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class QuadricDecimatorTest {
+
+    private static final double[] CENTER = {0, 0, 0};
+    private static final double RADIUS = 10;
+
+    @Test
+    void Check_Mesh_Below_Target_Unchanged() {
+        IndexedMesh mesh = createSphere(8, 16);
+
+        IndexedMesh decimatedMesh = QuadricDecimator.decimate(mesh, mesh.nTriangles());
+
+        Assertions.assertSame(mesh, decimatedMesh);
+    }
+
+    @Test
+    void Check_Number_Of_Triangles_Reaches_Target() {
+        IndexedMesh mesh = createSphere(32, 64);
+        int targetNumberOfTriangles = mesh.nTriangles() / 10;
+
+        IndexedMesh decimatedMesh = QuadricDecimator.decimate(mesh, targetNumberOfTriangles);
+
+        Assertions.assertTrue(decimatedMesh.nTriangles() <= targetNumberOfTriangles);
+        Assertions.assertTrue(decimatedMesh.nTriangles() > targetNumberOfTriangles / 2);
+    }
+
+    @Test
+    void Check_Decimated_Mesh_Closed() {
+        IndexedMesh mesh = createSphere(32, 64);
+
+        IndexedMesh decimatedMesh = QuadricDecimator.decimate(mesh, mesh.nTriangles() / 10);
+
+        MeshAssertions.assertClosed(decimatedMesh);
+    }
+
+    @Test
+    void Check_Decimated_Mesh_Close_To_Surface() {
+        IndexedMesh mesh = createSphere(32, 64);
+
+        IndexedMesh decimatedMesh = QuadricDecimator.decimate(mesh, mesh.nTriangles() / 10);
+
+        MeshAssertions.assertOnSphere(decimatedMesh, CENTER, RADIUS, 0.05 * RADIUS);
+    }
+
+    @Test
+    void Check_Decimated_Mesh_Keeps_Volume() {
+        IndexedMesh mesh = createSphere(32, 64);
+        double expectedVolume = MeshAssertions.computeVolume(mesh);
+
+        IndexedMesh decimatedMesh = QuadricDecimator.decimate(mesh, mesh.nTriangles() / 10);
+
+        Assertions.assertEquals(expectedVolume, MeshAssertions.computeVolume(decimatedMesh), 0.05 * expectedVolume);
+    }
+
+    @Test
+    void Check_Input_Mesh_Not_Modified() {
+        IndexedMesh mesh = createSphere(16, 32);
+        float[] expectedVertices = mesh.vertices().clone();
+        int[] expectedTriangles = mesh.triangles().clone();
+
+        QuadricDecimator.decimate(mesh, mesh.nTriangles() / 4);
+
+        Assertions.assertArrayEquals(expectedVertices, mesh.vertices());
+        Assertions.assertArrayEquals(expectedTriangles, mesh.triangles());
+    }
+
+    /**
+     * Create a UV sphere: a closed mesh made of rings of vertices between two poles, whose triangles are
+     * listed counterclockwise when seen from outside.
+     */
+    private static IndexedMesh createSphere(int numberOfRings, int numberOfSegments) {
+        int nVertices = 2 + (numberOfRings - 1) * numberOfSegments;
+        float[] vertices = new float[3 * nVertices];
+        vertices[2] = (float) RADIUS;
+        vertices[3 * (nVertices - 1) + 2] = (float) -RADIUS;
+        for (int ring=1; ring<numberOfRings; ring++) {
+            double theta = Math.PI * ring / numberOfRings;
+            for (int segment=0; segment<numberOfSegments; segment++) {
+                double phi = 2 * Math.PI * segment / numberOfSegments;
+                int vertex = getVertex(ring, segment, numberOfSegments);
+
+                vertices[3 * vertex] = (float) (RADIUS * Math.sin(theta) * Math.cos(phi));
+                vertices[3 * vertex + 1] = (float) (RADIUS * Math.sin(theta) * Math.sin(phi));
+                vertices[3 * vertex + 2] = (float) (RADIUS * Math.cos(theta));
+            }
+        }
+
+        int[] triangles = new int[3 * 2 * numberOfSegments * (numberOfRings - 1)];
+        int i = 0;
+        for (int segment=0; segment<numberOfSegments; segment++) {
+            int nextSegment = (segment + 1) % numberOfSegments;
+
+            triangles[i++] = 0;
+            triangles[i++] = getVertex(1, segment, numberOfSegments);
+            triangles[i++] = getVertex(1, nextSegment, numberOfSegments);
+
+            for (int ring=1; ring<numberOfRings-1; ring++) {
+                triangles[i++] = getVertex(ring, segment, numberOfSegments);
+                triangles[i++] = getVertex(ring + 1, segment, numberOfSegments);
+                triangles[i++] = getVertex(ring + 1, nextSegment, numberOfSegments);
+
+                triangles[i++] = getVertex(ring, segment, numberOfSegments);
+                triangles[i++] = getVertex(ring + 1, nextSegment, numberOfSegments);
+                triangles[i++] = getVertex(ring, nextSegment, numberOfSegments);
+            }
+
+            triangles[i++] = getVertex(numberOfRings - 1, segment, numberOfSegments);
+            triangles[i++] = nVertices - 1;
+            triangles[i++] = getVertex(numberOfRings - 1, nextSegment, numberOfSegments);
+        }
+
+        return new IndexedMesh(vertices, triangles);
+    }
+
+    private static int getVertex(int ring, int segment, int numberOfSegments) {
+        return 1 + (ring - 1) * numberOfSegments + segment;
+    }
+}
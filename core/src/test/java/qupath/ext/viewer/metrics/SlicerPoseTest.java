@@ -0,0 +1,130 @@
+package qupath.ext.viewer.metrics;
+
+import javafx.geometry.Point3D;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import qupath.ext.viewer.bricks.BrickCache;
+import qupath.ext.viewer.bricks.CachedBrickSource;
+import qupath.ext.viewer.bricks.FunctionBrickSource;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.Slab;
+import qupath.ext.viewer.sampling.SlabProjection;
+import qupath.ext.viewer.sampling.SlabProjector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SlicerPoseTest {
+
+    private static final String BRICK_READ_EVENT_NAME = "qupath.viewer.BrickRead";
+
+    @Test
+    void Check_Next_Pose_Greater_Than_Previous() {
+        long poseId = SlicerPose.next();
+
+        Assertions.assertTrue(SlicerPose.next() > poseId);
+    }
+
+    @Test
+    void Check_Wrapped_Task_Runs_With_Pose_Of_Caller() throws Exception {
+        long poseId = SlicerPose.next();
+        SlicerPose.setCurrent(poseId);
+        AtomicLong poseIdOfTask = new AtomicLong(-1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            executor.submit(SlicerPose.wrap(() -> poseIdOfTask.set(SlicerPose.current()))).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(poseId, poseIdOfTask.get());
+    }
+
+    @Test
+    void Check_Wrapped_Task_Uses_Pose_When_Wrapped() {
+        long poseId = SlicerPose.next();
+        SlicerPose.setCurrent(poseId);
+        AtomicLong poseIdOfTask = new AtomicLong(-1);
+        Runnable task = SlicerPose.wrap(() -> poseIdOfTask.set(SlicerPose.current()));
+
+        SlicerPose.setCurrent(SlicerPose.next());
+        task.run();
+
+        Assertions.assertEquals(poseId, poseIdOfTask.get());
+    }
+
+    @Test
+    void Check_Pose_Of_Thread_Restored_After_Wrapped_Task() {
+        SlicerPose.setCurrent(SlicerPose.next());
+        Runnable task = SlicerPose.wrap(() -> {});
+        long poseId = SlicerPose.next();
+        SlicerPose.setCurrent(poseId);
+
+        task.run();
+
+        Assertions.assertEquals(poseId, SlicerPose.current());
+    }
+
+    @Test
+    void Check_Wrapped_Action_Runs_With_Pose_Of_Caller_In_Parallel_Stream() {
+        long poseId = SlicerPose.next();
+        SlicerPose.setCurrent(poseId);
+        List<AtomicLong> poseIdsOfActions = List.of(new AtomicLong(-1), new AtomicLong(-1), new AtomicLong(-1), new AtomicLong(-1));
+
+        poseIdsOfActions.parallelStream().forEach(SlicerPose.wrap(poseIdOfAction -> poseIdOfAction.set(SlicerPose.current())));
+
+        for (AtomicLong poseIdOfAction: poseIdsOfActions) {
+            Assertions.assertEquals(poseId, poseIdOfAction.get());
+        }
+    }
+
+    @Test
+    void Check_Background_Texture_Build_Events_Have_Pose_Of_Caller(@TempDir Path tempDir) throws Exception {
+        SlabProjector projector = new SlabProjector(new ObliqueSampler(new CachedBrickSource(
+                new FunctionBrickSource(256, 256, 32, 1, 1, 1, 16, (c, x, y, z) -> x + y + z),
+                new BrickCache(Long.MAX_VALUE)
+        )), 0);
+        Rectangle plane = new Rectangle(new Point3D(0, 0, 16), new Point3D(255, 0, 16), new Point3D(255, 255, 16));
+        long poseId = SlicerPose.next();
+        SlicerPose.setCurrent(poseId);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Path recordingFile = tempDir.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(BrickReadEvent.class).withoutThreshold();
+            recording.start();
+            // As in a volume, the texture is computed by an executor, which projects the slab with a parallel stream
+            CompletableFuture.runAsync(SlicerPose.wrap(() -> {
+                try {
+                    projector.project(Slab.create(plane, 4, SlabProjection.MAXIMUM), plane, 0, 256, 256);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }), executor).get();
+            recording.stop();
+            recording.dump(recordingFile);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> event.getEventType().getName().equals(BRICK_READ_EVENT_NAME))
+                .toList();
+        Assertions.assertFalse(events.isEmpty());
+        for (RecordedEvent event: events) {
+            Assertions.assertEquals(poseId, event.getLong("poseId"));
+        }
+    }
+}
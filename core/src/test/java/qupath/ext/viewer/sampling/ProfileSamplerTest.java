@@ -0,0 +1,123 @@
+package qupath.ext.viewer.sampling;
+
+import javafx.geometry.Point3D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.bricks.FunctionBrickSource;
+
+import java.io.IOException;
+import java.util.List;
+
+public class ProfileSamplerTest {
+
+    private static final double PIXEL_SIZE_MICRONS = 0.5;
+    private static final double Z_SPACING_MICRONS = 2;
+
+    @Test
+    void Check_Values_Along_Line() throws IOException {
+        ProfileSampler sampler = new ProfileSampler(createImage());
+
+        IntensityProfile profile = sampler.sample(List.of(new Point3D(2, 5, 3), new Point3D(12, 5, 3)), 0);
+
+        Assertions.assertEquals(2, profile.nChannels());
+        Assertions.assertEquals(11, profile.nSamples());
+        for (int i=0; i<profile.nSamples(); i++) {
+            Assertions.assertEquals(getValue(0, 2 + i, 5, 3), profile.values()[0][i]);
+            Assertions.assertEquals(getValue(1, 2 + i, 5, 3), profile.values()[1][i]);
+        }
+    }
+
+    @Test
+    void Check_Values_Along_Diagonal_Rounded_To_Nearest_Voxel() throws IOException {
+        ProfileSampler sampler = new ProfileSampler(createImage());
+
+        IntensityProfile profile = sampler.sample(List.of(new Point3D(1, 1, 1), new Point3D(9, 5, 3)), 0);
+
+        Assertions.assertEquals(9, profile.nSamples());
+        for (int i=0; i<profile.nSamples(); i++) {
+            Assertions.assertEquals(
+                    getValue(0, 1 + i, (int) Math.round(1 + i / 2d), (int) Math.round(1 + i / 4d)),
+                    profile.values()[0][i]
+            );
+        }
+    }
+
+    @Test
+    void Check_Distances_Use_Calibration() throws IOException {
+        ProfileSampler sampler = new ProfileSampler(createImage());
+
+        IntensityProfile profile = sampler.sample(List.of(new Point3D(4, 4, 1), new Point3D(4, 4, 5)), 0);
+
+        Assertions.assertArrayEquals(new double[] {0, 2, 4, 6, 8}, profile.distances(), 1e-9);
+    }
+
+    @Test
+    void Check_Distances_Along_Polyline() throws IOException {
+        ProfileSampler sampler = new ProfileSampler(createImage());
+
+        IntensityProfile profile = sampler.sample(
+                List.of(new Point3D(0, 0, 0), new Point3D(4, 0, 0), new Point3D(4, 6, 0)),
+                0
+        );
+
+        Assertions.assertEquals(11, profile.nSamples());
+        Assertions.assertEquals(0, profile.distances()[0], 1e-9);
+        Assertions.assertEquals(4 * PIXEL_SIZE_MICRONS, profile.distances()[4], 1e-9);
+        Assertions.assertEquals(10 * PIXEL_SIZE_MICRONS, profile.distances()[10], 1e-9);
+        Assertions.assertEquals(getValue(0, 4, 6, 0), profile.values()[0][10]);
+    }
+
+    @Test
+    void Check_Samples_Outside_Image_Are_NaN() throws IOException {
+        ProfileSampler sampler = new ProfileSampler(createImage());
+
+        IntensityProfile profile = sampler.sample(List.of(new Point3D(-3, 4, 4), new Point3D(3, 4, 4)), 0);
+
+        Assertions.assertEquals(7, profile.nSamples());
+        for (int i=0; i<3; i++) {
+            Assertions.assertTrue(Float.isNaN(profile.values()[0][i]));
+        }
+        for (int i=3; i<profile.nSamples(); i++) {
+            Assertions.assertEquals(getValue(0, i - 3, 4, 4), profile.values()[0][i]);
+        }
+    }
+
+    @Test
+    void Check_Polylines_Sampled_In_Order() throws IOException {
+        ProfileSampler sampler = new ProfileSampler(createImage());
+        List<List<Point3D>> polylines = List.of(
+                List.of(new Point3D(0, 0, 0), new Point3D(3, 0, 0)),
+                List.of(new Point3D(0, 2, 0), new Point3D(0, 10, 0)),
+                List.of(new Point3D(5, 5, 0), new Point3D(5, 5, 6))
+        );
+
+        List<IntensityProfile> profiles = sampler.sampleAll(polylines, 0);
+
+        Assertions.assertEquals(polylines.size(), profiles.size());
+        for (int i=0; i<polylines.size(); i++) {
+            IntensityProfile expectedProfile = sampler.sample(polylines.get(i), 0);
+            Assertions.assertArrayEquals(expectedProfile.distances(), profiles.get(i).distances());
+            Assertions.assertArrayEquals(expectedProfile.values()[0], profiles.get(i).values()[0]);
+        }
+    }
+
+    @Test
+    void Check_Polyline_With_One_Vertex_Rejected() {
+        ProfileSampler sampler = new ProfileSampler(createImage());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sampler.sample(List.of(new Point3D(0, 0, 0)), 0));
+    }
+
+    /**
+     * @return an image of two channels whose values depend on the position of the voxels, made of bricks
+     * smaller than the sampled polylines
+     */
+    private static BrickSource createImage() {
+        return new FunctionBrickSource(16, 16, 8, 2, PIXEL_SIZE_MICRONS, Z_SPACING_MICRONS, 4, ProfileSamplerTest::getValue);
+    }
+
+    private static float getValue(int channel, int x, int y, int z) {
+        return (1 - 2 * channel) * (x + 16 * y + 256 * z);
+    }
+}
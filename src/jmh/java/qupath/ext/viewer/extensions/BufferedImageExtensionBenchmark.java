@@ -0,0 +1,52 @@
+package qupath.ext.viewer.extensions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link BufferedImageExtension#toRGB(BufferedImage)} on images of different types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferedImageExtensionBenchmark {
+
+    @Param({"TYPE_BYTE_GRAY", "TYPE_3BYTE_BGR", "TYPE_INT_ARGB", "TYPE_INT_RGB"})
+    private String imageType;
+    @Param({"512"})
+    private int size;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        image = new BufferedImage(size, size, BufferedImage.class.getField(imageType).getInt(null));
+
+        Random random = new Random(0);
+        for (int x=0; x<size; x++) {
+            for (int y=0; y<size; y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage toRGB() {
+        return BufferedImageExtension.toRGB(image);
+    }
+}
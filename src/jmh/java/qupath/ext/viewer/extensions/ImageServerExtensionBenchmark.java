@@ -0,0 +1,58 @@
+package qupath.ext.viewer.extensions;
+
+import javafx.geometry.Point3D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qupath.ext.viewer.SampleImageServer;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ImageServerExtension#readRegion(ImageServer, Rectangle, int)} on an
+ * oblique square of the {@link SampleImageServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageServerExtensionBenchmark {
+
+    @Param({"16", "64", "256"})
+    private int size;
+    private ImageServer<BufferedImage> imageServer;
+    private Rectangle area;
+
+    @Setup
+    public void setUp() {
+        imageServer = new SampleImageServer(BufferedImage.class);
+
+        Point3D center = new Point3D(imageServer.getWidth() / 2., imageServer.getHeight() / 2., imageServer.nZSlices() / 2.);
+        Point3D u = new Point3D(1, 0, 1).normalize().multiply(size);
+        Point3D v = new Point3D(0, 1, 0).multiply(size);
+        area = new Rectangle(
+                center.subtract(u.multiply(0.5)).subtract(v.multiply(0.5)),
+                center.add(u.multiply(0.5)).subtract(v.multiply(0.5)),
+                center.add(u.multiply(0.5)).add(v.multiply(0.5))
+        );
+    }
+
+    @Benchmark
+    public BufferedImage readRegion() throws IOException {
+        return ImageServerExtension.readRegion(imageServer, area, 0);
+    }
+}
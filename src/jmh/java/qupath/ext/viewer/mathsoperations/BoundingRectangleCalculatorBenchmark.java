@@ -0,0 +1,52 @@
+package qupath.ext.viewer.mathsoperations;
+
+import javafx.geometry.Point3D;
+import javafx.scene.transform.Rotate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link BoundingRectangleCalculator#getFromPoints(List)} on
+ * regular polygons located on an oblique plane.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoundingRectangleCalculatorBenchmark {
+
+    @Param({"3", "6", "12"})
+    private int numberOfPoints;
+    private List<Point3D> points;
+
+    @Setup
+    public void setUp() {
+        Rotate rotate = new Rotate(35, new Point3D(1, 1, 0));
+
+        points = new ArrayList<>();
+        for (int i=0; i<numberOfPoints; i++) {
+            double angle = 2 * Math.PI * i / numberOfPoints;
+            points.add(rotate.transform(400 * Math.cos(angle), 300 * Math.sin(angle), 50));
+        }
+    }
+
+    @Benchmark
+    public Rectangle getFromPoints() {
+        return BoundingRectangleCalculator.getFromPoints(points);
+    }
+}
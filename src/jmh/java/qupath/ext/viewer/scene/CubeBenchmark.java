@@ -0,0 +1,52 @@
+package qupath.ext.viewer.scene;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qupath.ext.viewer.SampleImageServer;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the clipping of a {@link Cube} by a slicer, for a sweep of slicer angles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CubeBenchmark {
+
+    @Param({"0", "15", "30", "45", "60", "75", "90"})
+    private double xRotation;
+    @Param({"0", "30", "60"})
+    private double yRotation;
+    private Cube cube;
+    private Rectangle slicer;
+
+    @Setup
+    public void setUp() {
+        SampleImageServer imageServer = new SampleImageServer(BufferedImage.class);
+
+        cube = new Cube(imageServer);
+        slicer = Slicers.create(imageServer, imageServer.nZSlices() / 2., xRotation, yRotation);
+    }
+
+    @Benchmark
+    public List<Cube.Face> getPartOfCubeInFrontOfRectangle() {
+        return cube.getPartOfCubeInFrontOfRectangle(slicer);
+    }
+}
@@ -0,0 +1,65 @@
+package qupath.ext.viewer.scene;
+
+import javafx.geometry.Point3D;
+import javafx.scene.shape.Mesh;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qupath.ext.viewer.SampleImageServer;
+import qupath.ext.viewer.extensions.Point3DExtension;
+import qupath.ext.viewer.mathsoperations.Cube;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Benchmark of the creation of a {@link Polygon} and of its mesh, using the
+ * cap of a cube cut by an oblique slicer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolygonBenchmark {
+
+    private List<Point3D> points;
+    private Function<Point3D, Point3D> spaceToPixelTransform;
+    private Polygon polygon;
+    private Point3D centroidOfVolume;
+
+    @Setup
+    public void setUp() {
+        SampleImageServer imageServer = new SampleImageServer(BufferedImage.class);
+        Cube cube = new Cube(imageServer);
+        List<Cube.Face> faces = cube.getPartOfCubeInFrontOfRectangle(
+                Slicers.create(imageServer, imageServer.nZSlices() / 2., 30, 30)
+        );
+
+        Cube.Face face = faces.get(faces.size() - 1);
+        polygon = new Polygon(face.points(), cube.getSpaceToPixelTransform(), face.onRectangle());
+        points = polygon.getPoints();
+        spaceToPixelTransform = Function.identity();
+        centroidOfVolume = Point3DExtension.centroid(faces.stream().map(Cube.Face::points).flatMap(List::stream).toList());
+    }
+
+    @Benchmark
+    public Polygon createPolygon() {
+        return new Polygon(points, spaceToPixelTransform);
+    }
+
+    @Benchmark
+    public Mesh computeMesh() {
+        return polygon.computeMesh(centroidOfVolume);
+    }
+}
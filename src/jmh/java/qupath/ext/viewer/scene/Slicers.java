@@ -0,0 +1,44 @@
+package qupath.ext.viewer.scene;
+
+import javafx.geometry.Point3D;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Translate;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.lib.images.servers.ImageServer;
+
+/**
+ * Create rectangles positioned like a {@link Slicer}, without requiring
+ * the JavaFX toolkit to be started.
+ */
+class Slicers {
+
+    private Slicers() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Create the rectangle a {@link Slicer} of {@link Scene3D} would represent.
+     *
+     * @param imageServer  the image the slicer slices
+     * @param translation  the translation on the z-axis of the slicer
+     * @param xRotation  the rotation on the x-axis of the slicer, in degrees
+     * @param yRotation  the rotation on the y-axis of the slicer, in degrees
+     * @return a rectangle with the same coordinates as the corresponding slicer
+     */
+    public static Rectangle create(ImageServer<?> imageServer, double translation, double xRotation, double yRotation) {
+        double width = 2 * imageServer.getWidth();
+        double height = 2 * imageServer.getHeight();
+        Rotate yRotate = new Rotate(yRotation, Rotate.Y_AXIS);
+        Rotate xRotate = new Rotate(xRotation, Rotate.X_AXIS);
+        Translate translate = new Translate(0, 0, translation - imageServer.nZSlices() / 2.);
+
+        return new Rectangle(
+                new Rectangle(
+                        new Point3D(-width / 2, -height / 2, 0),
+                        new Point3D(width / 2, -height / 2, 0),
+                        new Point3D(width / 2, height / 2, 0)
+                ),
+                p -> yRotate.transform(xRotate.transform(translate.transform(p)))
+        );
+    }
+}
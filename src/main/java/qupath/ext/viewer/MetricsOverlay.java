@@ -0,0 +1,44 @@
+package qupath.ext.viewer;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Region;
+import qupath.ext.viewer.metrics.FrameMetrics;
+
+/**
+ * A label displaying the statistics of {@link FrameMetrics}.
+ * The text is refreshed a few times per second while the label is visible.
+ */
+class MetricsOverlay extends Label {
+
+    private static final long REFRESH_PERIOD_NANOS = 250_000_000;
+    private final AnimationTimer timer = new AnimationTimer() {
+        private long lastRefresh = 0;
+
+        @Override
+        public void handle(long now) {
+            if (now - lastRefresh > REFRESH_PERIOD_NANOS) {
+                setText(FrameMetrics.getSnapshot().toString());
+                lastRefresh = now;
+            }
+        }
+    };
+
+    /**
+     * Create the overlay. It is hidden by default.
+     */
+    public MetricsOverlay() {
+        setStyle("-fx-font-family: monospace; -fx-text-fill: white; -fx-background-color: rgba(0, 0, 0, 0.6); -fx-padding: 5;");
+        setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+        setMouseTransparent(true);
+        setVisible(false);
+
+        visibleProperty().addListener((p, o, n) -> {
+            if (n) {
+                timer.start();
+            } else {
+                timer.stop();
+            }
+        });
+    }
+}
@@ -0,0 +1,251 @@
+package qupath.ext.viewer;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.WritableImage;
+import javafx.scene.transform.Scale;
+import qupath.ext.viewer.export.FrameSink;
+import qupath.ext.viewer.export.MovieKeyframe;
+import qupath.ext.viewer.export.MoviePath;
+import qupath.ext.viewer.scene.FrameListener;
+import qupath.ext.viewer.scene.Scene3D;
+import qupath.lib.common.ThreadTools;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * <p>
+ *     Export a movie of a {@link Scene3D} by moving its slicer and its camera along a {@link MoviePath}.
+ * </p>
+ * <p>
+ *     For each frame, the pose of the frame is applied, and a snapshot of the view is taken once the volume
+ *     displays the image at its full resolution. The full resolution textures of the next frame start being
+ *     computed in the background when the snapshot is taken (see {@link Scene3D#prepareSlicerPosition(double, double, double)}),
+ *     and the snapshot is converted and written by a {@link FrameSink} in a separate thread, so reading the image,
+ *     capturing frames and writing them overlap. At most {@link #MAXIMUM_FRAMES_IN_FLIGHT} frames wait to be written,
+ *     so the memory used by an export doesn't depend on the number of frames.
+ * </p>
+ * <p>
+ *     The export fails if the image cannot be read, and waiting for a frame can be cancelled.
+ * </p>
+ */
+class MovieExporter {
+
+    /**
+     * The maximum number of frames rendered but not yet written
+     */
+    public static final int MAXIMUM_FRAMES_IN_FLIGHT = 4;
+    private static final long CANCELLATION_CHECK_PERIOD_MILLIS = 100;
+    private final Scene3D scene3D;
+    private final Node view;
+    private final DoubleProperty slicerTranslation;
+    private final DoubleProperty slicerXRotation;
+    private final DoubleProperty slicerYRotation;
+
+    /**
+     * Create an exporter.
+     *
+     * @param scene3D  the scene to export
+     * @param view  the node to take snapshots of. It should contain the SubScene of the scene
+     * @param slicerTranslation  the translation of the slicer, as set by the translation slider of the viewer
+     * @param slicerXRotation  the rotation of the slicer around the x-axis, in degrees
+     * @param slicerYRotation  the rotation of the slicer around the y-axis, in degrees
+     */
+    public MovieExporter(
+            Scene3D scene3D,
+            Node view,
+            DoubleProperty slicerTranslation,
+            DoubleProperty slicerXRotation,
+            DoubleProperty slicerYRotation
+    ) {
+        this.scene3D = scene3D;
+        this.view = view;
+        this.slicerTranslation = slicerTranslation;
+        this.slicerXRotation = slicerXRotation;
+        this.slicerYRotation = slicerYRotation;
+    }
+
+    /**
+     * @return the pose the slicer and the camera currently have. This must be called from the JavaFX Application Thread
+     */
+    public MovieKeyframe getCurrentPose() {
+        return new MovieKeyframe(
+                slicerTranslation.get(),
+                slicerXRotation.get(),
+                slicerYRotation.get(),
+                scene3D.getViewXRotation(),
+                scene3D.getViewYRotation()
+        );
+    }
+
+    /**
+     * Export a movie. This moves the slicer and the camera of the scene, and must not be called from
+     * the JavaFX Application Thread.
+     *
+     * @param path  the poses of the frames of the movie
+     * @param sink  where to write the frames. It is not closed by this function
+     * @param scale  the ratio between the size of the frames and the size of the view
+     * @param onProgress  a function called each time a frame is rendered, with the proportion (between 0 and 1)
+     *                    of frames rendered so far
+     * @param cancelled  a function called before rendering each frame and while waiting for a frame. If it returns
+     *                   true, the export stops
+     * @return whether all frames were written
+     * @throws IOException when the image cannot be read, or when a frame cannot be rendered or written
+     * @throws IllegalArgumentException when the scale is not positive
+     */
+    public boolean export(MoviePath path, FrameSink sink, double scale, DoubleConsumer onProgress, BooleanSupplier cancelled) throws IOException {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException(String.format("The scale of the frames must be positive (got %f)", scale));
+        }
+
+        ExecutorService writer = Executors.newSingleThreadExecutor(ThreadTools.createThreadFactory("viewer-movie-writer-", true));
+        Semaphore framesInFlight = new Semaphore(MAXIMUM_FRAMES_IN_FLIGHT);
+        Queue<Future<?>> pendingWrites = new ArrayDeque<>();
+
+        try {
+            for (int i=0; i<path.numberOfFrames(); i++) {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+
+                framesInFlight.acquire();
+                MovieKeyframe nextPose = i + 1 < path.numberOfFrames() ? path.getFrame(i + 1) : null;
+                WritableImage snapshot = waitForFrame(renderFrame(path.getFrame(i), nextPose, scale), cancelled);
+                if (snapshot == null) {
+                    return false;
+                }
+                int index = i;
+                pendingWrites.add(writer.submit(() -> {
+                    try {
+                        sink.write(index, SwingFXUtils.fromFXImage(snapshot, null));
+                    } finally {
+                        framesInFlight.release();
+                    }
+                    return null;
+                }));
+
+                // Report write errors as soon as possible
+                while (!pendingWrites.isEmpty() && pendingWrites.peek().isDone()) {
+                    pendingWrites.remove().get();
+                }
+                onProgress.accept((i + 1d) / path.numberOfFrames());
+            }
+
+            while (!pendingWrites.isEmpty()) {
+                pendingWrites.remove().get();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            } else {
+                throw new IOException(e.getCause());
+            }
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for a frame to be rendered, checking regularly whether the export was cancelled.
+     *
+     * @return the rendered frame, or null if the export was cancelled
+     */
+    private static WritableImage waitForFrame(CompletableFuture<WritableImage> frame, BooleanSupplier cancelled)
+            throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                return frame.get(CANCELLATION_CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (cancelled.getAsBoolean()) {
+                    frame.cancel(false);
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a pose and take a snapshot of the view once the volume is displayed at full resolution.
+     * The textures of the next pose (if not null) start being computed just before the snapshot is taken.
+     * The returned future fails if the image cannot be read.
+     */
+    private CompletableFuture<WritableImage> renderFrame(MovieKeyframe pose, MovieKeyframe nextPose, double scale) {
+        CompletableFuture<WritableImage> frame = new CompletableFuture<>();
+
+        Platform.runLater(() -> {
+            FrameListener frameListener = new FrameListener() {
+                @Override
+                public void onFrame(boolean fullResolution) {
+                    // The frame may have been cancelled
+                    if (frame.isDone()) {
+                        scene3D.removeFrameListener(this);
+                    } else if (fullResolution) {
+                        scene3D.removeFrameListener(this);
+                        prepare(nextPose);
+                        completeWithSnapshot(frame, scale);
+                    }
+                }
+
+                @Override
+                public void onError(IOException error) {
+                    scene3D.removeFrameListener(this);
+                    frame.completeExceptionally(error);
+                }
+            };
+            scene3D.addFrameListener(frameListener);
+
+            slicerTranslation.set(pose.slicerTranslation());
+            slicerXRotation.set(pose.slicerXRotation());
+            slicerYRotation.set(pose.slicerYRotation());
+            scene3D.setViewRotation(pose.viewXRotation(), pose.viewYRotation());
+
+            // Moving only the camera doesn't redraw the volume
+            if (scene3D.isFullResolutionDisplayed()) {
+                scene3D.removeFrameListener(frameListener);
+                prepare(nextPose);
+                completeWithSnapshot(frame, scale);
+            }
+        });
+
+        return frame;
+    }
+
+    private void prepare(MovieKeyframe pose) {
+        if (pose != null) {
+            scene3D.prepareSlicerPosition(pose.slicerTranslation(), pose.slicerXRotation(), pose.slicerYRotation());
+        }
+    }
+
+    private void completeWithSnapshot(CompletableFuture<WritableImage> frame, double scale) {
+        if (frame.isDone()) {
+            return;
+        }
+
+        try {
+            SnapshotParameters parameters = new SnapshotParameters();
+            parameters.setTransform(new Scale(scale, scale));
+            frame.complete(view.snapshot(parameters, null));
+        } catch (RuntimeException e) {
+            frame.completeExceptionally(e);
+        }
+    }
+}
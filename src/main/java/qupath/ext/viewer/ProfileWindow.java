@@ -0,0 +1,133 @@
+package qupath.ext.viewer;
+
+import javafx.application.Platform;
+import javafx.geometry.Point3D;
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.stage.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.sampling.IntensityProfile;
+import qupath.ext.viewer.sampling.ProfileSampler;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ *     A window plotting the intensity profile of each channel of an image along a polyline.
+ * </p>
+ * <p>
+ *     Profiles are sampled in the background by a {@link ProfileSampler}. A profile that is not needed
+ *     anymore when its sampling starts (because the polyline changed again in the meantime, for example
+ *     while a vertex is dragged) is skipped, so the plot follows the polyline without falling behind.
+ * </p>
+ */
+class ProfileWindow extends Stage {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfileWindow.class);
+    private final ImageServer<BufferedImage> imageServer;
+    private final ProfileSampler sampler;
+    private final LineChart<Number, Number> chart;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ThreadTools.createThreadFactory("viewer-profile-", true));
+    private volatile long generation = 0;
+
+    /**
+     * Create the window. It is not shown by default.
+     *
+     * @param owner  the owner of this window
+     * @param title  the title of this window
+     * @param imageServer  the image to sample
+     */
+    public ProfileWindow(Stage owner, String title, ImageServer<BufferedImage> imageServer) {
+        this.imageServer = imageServer;
+        this.sampler = new ProfileSampler(BrickSource.create(imageServer));
+
+        NumberAxis distanceAxis = new NumberAxis();
+        distanceAxis.setLabel(String.format("Distance (%s)", imageServer.getPixelCalibration().getPixelWidthUnit()));
+        NumberAxis intensityAxis = new NumberAxis();
+        intensityAxis.setLabel("Intensity");
+        chart = new LineChart<>(distanceAxis, intensityAxis);
+        chart.setCreateSymbols(false);
+        chart.setAnimated(false);
+
+        setScene(new Scene(chart, 600, 400));
+        setTitle(title);
+        initOwner(owner);
+    }
+
+    /**
+     * Plot the profiles along a polyline, once they are sampled. Nothing is plotted if the
+     * polyline has less than two vertices. This must be called from the JavaFX Application Thread.
+     *
+     * @param polyline  the vertices of the polyline, in full resolution pixel coordinates
+     */
+    public void setPolyline(List<Point3D> polyline) {
+        long currentGeneration = ++generation;
+        if (polyline.size() < 2) {
+            chart.getData().clear();
+            return;
+        }
+        if (executor.isShutdown()) {
+            return;
+        }
+
+        executor.execute(() -> {
+            if (generation != currentGeneration) {
+                return;
+            }
+
+            IntensityProfile profile;
+            try {
+                profile = sampler.sample(polyline, 0);
+            } catch (IOException e) {
+                logger.error("Cannot read {}", imageServer, e);
+                return;
+            }
+
+            Platform.runLater(() -> {
+                if (generation == currentGeneration) {
+                    plot(profile);
+                }
+            });
+        });
+    }
+
+    /**
+     * Stop sampling profiles in the background. This window won't be updated anymore.
+     */
+    public void stopSampling() {
+        generation++;
+        executor.shutdownNow();
+    }
+
+    private void plot(IntensityProfile profile) {
+        List<XYChart.Series<Number, Number>> series = new ArrayList<>();
+
+        for (int c=0; c<profile.nChannels(); c++) {
+            XYChart.Series<Number, Number> channelSeries = new XYChart.Series<>();
+            channelSeries.setName(imageServer.getChannel(c).getName());
+
+            List<XYChart.Data<Number, Number>> data = new ArrayList<>();
+            for (int i=0; i<profile.nSamples(); i++) {
+                // Samples outside the image are not plotted
+                if (!Float.isNaN(profile.values()[c][i])) {
+                    data.add(new XYChart.Data<>(profile.distances()[i], profile.values()[c][i]));
+                }
+            }
+            channelSeries.getData().setAll(data);
+            series.add(channelSeries);
+        }
+
+        chart.getData().setAll(series);
+    }
+}
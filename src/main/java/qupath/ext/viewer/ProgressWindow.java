@@ -0,0 +1,97 @@
+package qupath.ext.viewer;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.fx.dialogs.Dialogs;
+import qupath.lib.common.ThreadTools;
+
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A small window displaying the progress of a long-running job (for example an export) run in the background,
+ * with a button to cancel it. The window closes itself when the job ends.
+ */
+class ProgressWindow extends Stage {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressWindow.class);
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private volatile boolean cancelled = false;
+
+    /**
+     * A job reporting its progress and checking whether it should stop.
+     */
+    @FunctionalInterface
+    public interface Job {
+
+        /**
+         * Run the job. This is called from a background thread.
+         *
+         * @param onProgress  a function to call with the proportion (between 0 and 1) of the job done so far
+         * @param cancelled  a function returning true when the job should stop
+         * @return whether the job completed
+         * @throws IOException when the job fails
+         */
+        boolean run(DoubleConsumer onProgress, BooleanSupplier cancelled) throws IOException;
+    }
+
+    private ProgressWindow(Stage owner, String title) {
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(event -> {
+            cancelled = true;
+            cancelButton.setDisable(true);
+        });
+
+        VBox root = new VBox(10, progressBar, cancelButton);
+        root.setPadding(new Insets(10));
+        progressBar.setPrefWidth(300);
+        setScene(new Scene(root));
+        setTitle(title);
+        if (owner != null) {
+            initOwner(owner);
+        }
+        setOnCloseRequest(event -> cancelled = true);
+    }
+
+    /**
+     * Run a job in the background while displaying its progress. A notification is shown when the job
+     * completes, and an error message when it fails.
+     *
+     * @param owner  the owner of the progress window
+     * @param title  the title of the progress window and of the messages
+     * @param job  the job to run
+     */
+    public static void run(Stage owner, String title, Job job) {
+        ProgressWindow window = new ProgressWindow(owner, title);
+        window.show();
+
+        ThreadTools.createThreadFactory("viewer-job-", true).newThread(() -> {
+            try {
+                boolean completed = job.run(
+                        progress -> Platform.runLater(() -> window.progressBar.setProgress(progress)),
+                        () -> window.cancelled
+                );
+                Platform.runLater(() -> {
+                    window.close();
+                    if (completed) {
+                        Dialogs.showInfoNotification(title, "Done");
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                logger.error("{} failed", title, e);
+                Platform.runLater(() -> {
+                    window.close();
+                    Dialogs.showErrorMessage(title, e);
+                });
+            }
+        }).start();
+    }
+}
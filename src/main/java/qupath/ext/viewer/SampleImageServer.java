@@ -1,6 +1,7 @@
 package qupath.ext.viewer;
 
 import qupath.lib.images.servers.AbstractImageServer;
+import qupath.lib.images.servers.ImageChannel;
 import qupath.lib.images.servers.ImageServerBuilder;
 import qupath.lib.images.servers.ImageServerMetadata;
 import qupath.lib.images.servers.PixelType;
@@ -46,7 +47,9 @@ public class SampleImageServer extends AbstractImageServer<BufferedImage> {
         return new ImageServerMetadata.Builder()
                 .width(800)
                 .height(600)
-                .pixelType(PixelType.INT8)
+                .pixelType(PixelType.UINT8)
+                .rgb(true)
+                .channels(ImageChannel.getDefaultRGBChannels())
                 .sizeT(1)
                 .sizeZ(100)
                 .build();
@@ -0,0 +1,205 @@
+package qupath.ext.viewer;
+
+import javafx.application.Platform;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import qupath.ext.viewer.export.StripedImage;
+import qupath.ext.viewer.export.TiledTiffWriter;
+import qupath.ext.viewer.scene.FrameListener;
+import qupath.ext.viewer.scene.Scene3D;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * <p>
+ *     Export a snapshot of a {@link Scene3D} larger than the window (and than the maximum texture size
+ *     of the graphics card) to a tiled TIFF file.
+ * </p>
+ * <p>
+ *     The snapshot is rendered as a grid of tiles having the size of the view, each one with the
+ *     sub-frustum of the camera covering it (see {@link Scene3D#snapshotTile(double, double, double)}).
+ *     Tiles are rendered one row at a time, when the {@link TiledTiffWriter} reads the row, so only one row
+ *     of tiles is held in memory. The height of the rows is a multiple of the height of the TIFF tiles,
+ *     so each row is rendered once. Rendering starts once the volume displays the image at its full resolution.
+ *     The export fails if the image cannot be read, and waiting for the full resolution can be cancelled.
+ * </p>
+ */
+class SnapshotExporter {
+
+    private static final long CANCELLATION_CHECK_PERIOD_MILLIS = 100;
+    private final Scene3D scene3D;
+
+    /**
+     * Create an exporter.
+     *
+     * @param scene3D  the scene to export
+     */
+    public SnapshotExporter(Scene3D scene3D) {
+        this.scene3D = scene3D;
+    }
+
+    /**
+     * Export a snapshot of the current view. This must not be called from the JavaFX Application Thread.
+     *
+     * @param path  the path of the TIFF file to write. It is overwritten if it already exists
+     * @param scale  the ratio between the size of the snapshot and the size of the view
+     * @param onProgress  a function called each time a row of tiles is rendered, with the proportion
+     *                    (between 0 and 1) of the snapshot rendered so far
+     * @param cancelled  a function called before rendering each tile and while waiting for the full resolution. If it
+     *                   returns true, the export stops and the file is deleted (as it is when an error occurs)
+     * @return whether the whole snapshot was written
+     * @throws IOException when the image cannot be read, or when an error occurs while writing the file
+     * @throws IllegalArgumentException when the scale is less than 1, or when the view is too small to be tiled
+     */
+    public boolean export(Path path, double scale, DoubleConsumer onProgress, BooleanSupplier cancelled) throws IOException {
+        if (!(scale >= 1)) {
+            throw new IllegalArgumentException(String.format("The scale of the snapshot must be at least 1 (got %f)", scale));
+        }
+
+        int[] viewSize = waitUntilCancelled(waitForFullResolution(), cancelled);
+        if (viewSize == null) {
+            return false;
+        }
+        int tileWidth = viewSize[0];
+        int tileHeight = viewSize[1];
+        int tiffTileSize = Math.min(TiledTiffWriter.DEFAULT_TILE_SIZE, Math.min(tileWidth, tileHeight) / 16 * 16);
+        if (tiffTileSize == 0) {
+            throw new IllegalArgumentException(String.format("The view (%d x %d pixels) is too small to be tiled", tileWidth, tileHeight));
+        }
+        // Only keep whole TIFF tiles of each rendered tile, so that each row of TIFF tiles belongs to one row of rendered tiles
+        int stripHeight = tileHeight / tiffTileSize * tiffTileSize;
+        int width = (int) Math.round(scale * tileWidth);
+        int height = (int) Math.round(scale * tileHeight);
+
+        StripedImage image = new StripedImage(width, height, stripHeight, (y, rows) -> {
+            int[] pixels = new int[width * rows];
+            for (int x=0; x<width; x+=tileWidth) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException();
+                }
+                int columns = Math.min(tileWidth, width - x);
+                get(renderTile(scale, x, y, columns, rows, pixels, width));
+            }
+            onProgress.accept((double) (y + rows) / height);
+            return pixels;
+        });
+
+        boolean completed = false;
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, tiffTileSize, null)) {
+            writer.writePage(image);
+            completed = true;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (CancellationException e) {
+            return false;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(path);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a future completed with the width and height of the view once the volume displays the image at its full resolution,
+     * or failing if the image cannot be read
+     */
+    private CompletableFuture<int[]> waitForFullResolution() {
+        CompletableFuture<int[]> viewSize = new CompletableFuture<>();
+
+        Platform.runLater(() -> {
+            int[] size = new int[] {(int) scene3D.getSubScene().getWidth(), (int) scene3D.getSubScene().getHeight()};
+
+            if (scene3D.isFullResolutionDisplayed()) {
+                viewSize.complete(size);
+            } else {
+                scene3D.addFrameListener(new FrameListener() {
+                    @Override
+                    public void onFrame(boolean fullResolution) {
+                        // The wait may have been cancelled
+                        if (fullResolution || viewSize.isDone()) {
+                            scene3D.removeFrameListener(this);
+                            viewSize.complete(size);
+                        }
+                    }
+
+                    @Override
+                    public void onError(IOException error) {
+                        scene3D.removeFrameListener(this);
+                        viewSize.completeExceptionally(error);
+                    }
+                });
+            }
+        });
+
+        return viewSize;
+    }
+
+    /**
+     * Render a tile and copy its top left part to a strip.
+     */
+    private CompletableFuture<Void> renderTile(double scale, int x, int y, int columns, int rows, int[] strip, int stripWidth) {
+        CompletableFuture<Void> tile = new CompletableFuture<>();
+
+        Platform.runLater(() -> {
+            try {
+                WritableImage snapshot = scene3D.snapshotTile(scale, x, y);
+                snapshot.getPixelReader().getPixels(0, 0, columns, rows, PixelFormat.getIntArgbInstance(), strip, x, stripWidth);
+                tile.complete(null);
+            } catch (RuntimeException e) {
+                tile.completeExceptionally(e);
+            }
+        });
+
+        return tile;
+    }
+
+    /**
+     * Wait for a future, checking regularly whether the export was cancelled.
+     *
+     * @return the result of the future, or null if the export was cancelled
+     */
+    private static <T> T waitUntilCancelled(Future<T> future, BooleanSupplier cancelled) throws IOException {
+        while (true) {
+            try {
+                return future.get(CANCELLATION_CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (cancelled.getAsBoolean()) {
+                    future.cancel(false);
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                } else {
+                    throw new IOException(e.getCause());
+                }
+            }
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
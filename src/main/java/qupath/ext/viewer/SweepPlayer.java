@@ -0,0 +1,158 @@
+package qupath.ext.viewer;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.DoubleProperty;
+
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ *     Sweep the translation of the slicer between two values at a constant speed, for example to scan
+ *     the depth of an image.
+ * </p>
+ * <p>
+ *     The translation goes through positions separated by one unit, and the position to display is
+ *     given by the time elapsed since the start of the sweep, so the sweep always lasts the same time.
+ *     At most one position is displayed per frame budget. When moving the slicer (which prepares the
+ *     textures of the new position on the JavaFX Application Thread) takes longer than the budget, the
+ *     next positions are displayed later, and the positions whose time has passed are skipped instead of
+ *     slowing the sweep down. The volume displays the overview of the image at each position, until the
+ *     full resolution textures are ready.
+ * </p>
+ * <p>
+ *     This class must be used from the JavaFX Application Thread.
+ * </p>
+ */
+class SweepPlayer {
+
+    private final DoubleProperty translation;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            onPulse(now);
+        }
+    };
+    private double from;
+    private double direction;
+    private int numberOfPositions;
+    private double speed;
+    private long frameBudgetNanos;
+    private Consumer<Report> onFinished;
+    private boolean playing = false;
+    private long startTime;
+    private long nextFrameTime;
+    private int lastPosition;
+    private int numberOfFrames;
+    private int numberOfSkippedPositions;
+
+    /**
+     * A summary of a sweep.
+     *
+     * @param numberOfFrames  the number of positions displayed
+     * @param numberOfSkippedPositions  the number of positions skipped to keep up with the speed of the sweep
+     * @param durationSeconds  the duration of the sweep, in seconds
+     */
+    public record Report(int numberOfFrames, int numberOfSkippedPositions, double durationSeconds) {
+
+        /**
+         * @return the number of positions displayed per second
+         */
+        public double getFrameRate() {
+            return durationSeconds > 0 ? numberOfFrames / durationSeconds : 0;
+        }
+    }
+
+    /**
+     * Create a player.
+     *
+     * @param translation  the translation of the slicer, as set by the translation slider of the viewer
+     */
+    public SweepPlayer(DoubleProperty translation) {
+        this.translation = translation;
+    }
+
+    /**
+     * Start a sweep. If a sweep is already playing, it is stopped first.
+     *
+     * @param from  the first translation of the sweep
+     * @param to  the last translation of the sweep. It can be less than the first one
+     * @param speed  the number of positions (separated by one unit of translation) to go through per second
+     * @param frameRate  the maximum number of positions to display per second, which gives the frame budget
+     * @param onFinished  a function called with a summary of the sweep when it ends or is stopped
+     * @throws IllegalArgumentException when the speed or the frame rate is not positive
+     */
+    public void play(double from, double to, double speed, double frameRate, Consumer<Report> onFinished) {
+        if (!(speed > 0) || !(frameRate > 0)) {
+            throw new IllegalArgumentException(String.format(
+                    "The speed (%f) and the frame rate (%f) must be positive", speed, frameRate
+            ));
+        }
+        stop();
+
+        this.from = from;
+        this.direction = Math.signum(to - from);
+        this.numberOfPositions = (int) Math.floor(Math.abs(to - from)) + 1;
+        this.speed = speed;
+        this.frameBudgetNanos = (long) (1e9 / frameRate);
+        this.onFinished = onFinished;
+        this.startTime = -1;
+        this.lastPosition = -1;
+        this.numberOfFrames = 0;
+        this.numberOfSkippedPositions = 0;
+
+        playing = true;
+        timer.start();
+    }
+
+    /**
+     * Stop the current sweep, if any. The slicer stays at its current position.
+     */
+    public void stop() {
+        if (playing) {
+            finish(System.nanoTime());
+        }
+    }
+
+    /**
+     * @return whether a sweep is playing
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    private void onPulse(long now) {
+        if (startTime < 0) {
+            startTime = now;
+            nextFrameTime = now;
+        }
+
+        int position = (int) Math.min(numberOfPositions - 1, (now - startTime) / 1e9 * speed);
+        if (now >= nextFrameTime && position != lastPosition) {
+            numberOfSkippedPositions += position - lastPosition - 1;
+
+            long frameStartTime = System.nanoTime();
+            translation.set(from + direction * position);
+            long frameDuration = System.nanoTime() - frameStartTime;
+
+            numberOfFrames++;
+            lastPosition = position;
+            // An overrun delays the next position instead of queuing more work
+            nextFrameTime = now + Math.max(frameBudgetNanos, frameDuration);
+        }
+
+        if (lastPosition == numberOfPositions - 1) {
+            finish(now);
+        }
+    }
+
+    private void finish(long now) {
+        timer.stop();
+        playing = false;
+
+        onFinished.accept(new Report(
+                numberOfFrames,
+                numberOfSkippedPositions,
+                startTime < 0 ? 0 : (now - startTime) / 1e9
+        ));
+    }
+}
@@ -2,22 +2,54 @@ package qupath.ext.viewer;
 
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Slider;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.export.MovieKeyframe;
+import qupath.ext.viewer.export.MoviePath;
+import qupath.ext.viewer.export.PngSequenceSink;
+import qupath.ext.viewer.export.ResliceExporter;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.SlabProjection;
+import qupath.ext.viewer.scene.RenderMode;
 import qupath.ext.viewer.scene.Scene3D;
+import qupath.ext.viewer.slice.SlicePanel;
+import qupath.ext.viewer.slice.SliceTileCache;
+import qupath.fx.dialogs.Dialogs;
+import qupath.fx.dialogs.FileChoosers;
+import qupath.lib.gui.tools.GuiTools;
 import qupath.lib.images.servers.ImageServer;
+import qupath.lib.objects.hierarchy.PathObjectHierarchy;
+import qupath.lib.plugins.parameters.ParameterList;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.ResourceBundle;
 
 /**
  * The main window of the viewer. It contains 3 sliders to change the slider's
- * translation on the z-axis, rotation on the x-axis, and rotation on the y-axis.
+ * translation on the z-axis, rotation on the x-axis, and rotation on the y-axis,
+ * a slider and a combo box to change the thickness of the slicer and how the slab it covers is projected,
+ * a combo box to change how the image is rendered, a button to sweep the slicer through the image,
+ * a button to display an isosurface of the image, a button to export planes parallel to the slicer,
+ * a button to export a high resolution snapshot, a button to export a movie, a checkbox to display
+ * the detections of the image, a checkbox to display the plane of the slicer face-on in a 2D panel,
+ * a checkbox to draw a polyline in the scene and plot the intensity profiles along it,
+ * and a checkbox to display the statistics of the rendering pipeline on top of the scene.
  */
 public class Viewer extends Stage {
 
+    private static final double SLICE_PANEL_PROPORTION = 0.4;
     private static final ResourceBundle resources = ResourceBundle.getBundle("qupath.ext.viewer.strings");
     @FXML
     private BorderPane root;
@@ -27,26 +59,292 @@ public class Viewer extends Stage {
     private Slider xRotationSlider;
     @FXML
     private Slider yRotationSlider;
+    @FXML
+    private Slider slabThicknessSlider;
+    @FXML
+    private ComboBox<SlabProjection> slabProjectionComboBox;
+    @FXML
+    private ComboBox<RenderMode> renderModeComboBox;
+    @FXML
+    private Button playButton;
+    @FXML
+    private CheckBox detectionsCheckBox;
+    @FXML
+    private CheckBox slicePanelCheckBox;
+    @FXML
+    private CheckBox profileCheckBox;
+    @FXML
+    private CheckBox statisticsCheckBox;
+    private final ImageServer<BufferedImage> imageServer;
+    private final Scene3D scene3D;
+    private final StackPane sceneView;
+    private final SweepPlayer sweepPlayer;
 
     /**
-     * Create the viewer window.
+     * Create the viewer window. The image is read in the background, so this
+     * returns without waiting for the image to be displayed.
      *
      * @param owner  the owner of this window
      * @param imageServer  the image to open in the viewer
      * @throws IOException when an exception occurs while creating the window
      */
     public Viewer(Stage owner, ImageServer<BufferedImage> imageServer) throws IOException {
+        this(owner, imageServer, null);
+    }
+
+    /**
+     * Create the viewer window, with the possibility to display the detections of the image.
+     * The image is read in the background, so this returns without waiting for the image to be displayed.
+     *
+     * @param owner  the owner of this window
+     * @param imageServer  the image to open in the viewer
+     * @param hierarchy  the hierarchy containing the detections of the image, or null if the image has no detections.
+     *                   Its coordinates must be the pixel coordinates of the image
+     * @throws IOException when an exception occurs while creating the window
+     */
+    public Viewer(Stage owner, ImageServer<BufferedImage> imageServer, PathObjectHierarchy hierarchy) throws IOException {
+        this.imageServer = imageServer;
         initUI(owner);
 
         translationSlider.setMax(Math.max(Math.max(imageServer.getWidth(), imageServer.getHeight()), imageServer.nZSlices()));
-        root.setCenter(new Scene3D(
+        scene3D = new Scene3D(
                 getScene().widthProperty(),
                 getScene().heightProperty(),
                 imageServer,
                 translationSlider.valueProperty(),
                 xRotationSlider.valueProperty(),
                 yRotationSlider.valueProperty()
-        ).getSubScene());
+        );
+
+        slabProjectionComboBox.getItems().setAll(SlabProjection.values());
+        slabProjectionComboBox.setValue(scene3D.slabProjectionProperty().get());
+        scene3D.slabProjectionProperty().bind(slabProjectionComboBox.valueProperty());
+        scene3D.slabThicknessProperty().bind(slabThicknessSlider.valueProperty());
+        renderModeComboBox.getItems().setAll(RenderMode.values());
+        renderModeComboBox.setValue(scene3D.renderModeProperty().get());
+        scene3D.renderModeProperty().bind(renderModeComboBox.valueProperty());
+
+        detectionsCheckBox.setDisable(hierarchy == null);
+        detectionsCheckBox.selectedProperty().addListener((p, o, n) -> {
+            if (n) {
+                scene3D.showDetections(hierarchy);
+            } else {
+                scene3D.hideDetections();
+            }
+        });
+
+        MetricsOverlay metricsOverlay = new MetricsOverlay();
+        metricsOverlay.visibleProperty().bind(statisticsCheckBox.selectedProperty());
+        StackPane.setAlignment(metricsOverlay, Pos.TOP_LEFT);
+
+        SlicePanel slicePanel = new SlicePanel(imageServer, new SliceTileCache(SliceTileCache.DEFAULT_MAXIMUM_SIZE_BYTES));
+        slicePanel.visibleProperty().bind(slicePanelCheckBox.selectedProperty());
+        slicePanel.setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+        slicePanel.setPrefSize(SLICE_PANEL_PROPORTION * getScene().getWidth(), SLICE_PANEL_PROPORTION * getScene().getHeight());
+        getScene().widthProperty().addListener((p, o, n) -> slicePanel.setPrefWidth(SLICE_PANEL_PROPORTION * n.doubleValue()));
+        getScene().heightProperty().addListener((p, o, n) -> slicePanel.setPrefHeight(SLICE_PANEL_PROPORTION * n.doubleValue()));
+        StackPane.setAlignment(slicePanel, Pos.BOTTOM_RIGHT);
+        slicePanel.setPlane(scene3D.getSlicerPlane());
+        scene3D.addSlicerListener(() -> slicePanel.setPlane(scene3D.getSlicerPlane()));
+
+        ProfileWindow profileWindow = new ProfileWindow(this, resources.getString("Viewer.profile"), imageServer);
+        scene3D.addProfileListener(profileWindow::setPolyline);
+        profileCheckBox.selectedProperty().addListener((p, o, n) -> {
+            scene3D.setProfileEditing(n);
+            if (n) {
+                profileWindow.show();
+            } else {
+                profileWindow.hide();
+                scene3D.clearProfile();
+            }
+        });
+        profileWindow.setOnHidden(event -> profileCheckBox.setSelected(false));
+
+        sceneView = new StackPane(scene3D.getSubScene(), scene3D.getRayCastingView(), slicePanel, metricsOverlay);
+        root.setCenter(sceneView);
+        sweepPlayer = new SweepPlayer(translationSlider.valueProperty());
+        setOnHidden(event -> {
+            sweepPlayer.stop();
+            scene3D.close();
+            slicePanel.close();
+            profileWindow.stopSampling();
+            profileWindow.close();
+        });
+    }
+
+    @FXML
+    private void onIsosurfaceClicked() {
+        ParameterList parameters = new ParameterList()
+                .addBooleanParameter("show", "Show isosurface", true)
+                .addIntParameter("channel", "Channel", 0)
+                .addDoubleParameter("threshold", "Threshold", getDefaultThreshold())
+                .addIntParameter("maximumNumberOfTriangles", "Maximum number of triangles (0 to keep all)", 500_000);
+        if (!GuiTools.showParameterDialog(resources.getString("Viewer.isosurface"), parameters)) {
+            return;
+        }
+
+        if (parameters.getBooleanParameterValue("show")) {
+            try {
+                scene3D.showIsosurface(
+                        parameters.getIntParameterValue("channel"),
+                        parameters.getDoubleParameterValue("threshold"),
+                        parameters.getIntParameterValue("maximumNumberOfTriangles")
+                );
+            } catch (IllegalArgumentException e) {
+                Dialogs.showErrorMessage(resources.getString("Viewer.isosurface"), e.getMessage());
+            }
+        } else {
+            scene3D.hideIsosurface();
+        }
+    }
+
+    @FXML
+    private void onPlayClicked() {
+        if (sweepPlayer.isPlaying()) {
+            sweepPlayer.stop();
+            return;
+        }
+
+        String title = resources.getString("Viewer.play");
+        ParameterList parameters = new ParameterList()
+                .addDoubleParameter("speed", "Speed (positions per second)", 20)
+                .addDoubleParameter("frameRate", "Maximum frame rate (frames per second)", 30);
+        if (!GuiTools.showParameterDialog(title, parameters)) {
+            return;
+        }
+
+        try {
+            sweepPlayer.play(
+                    translationSlider.getMin(),
+                    translationSlider.getMax(),
+                    parameters.getDoubleParameterValue("speed"),
+                    parameters.getDoubleParameterValue("frameRate"),
+                    report -> {
+                        playButton.setText(title);
+                        Dialogs.showInfoNotification(title, String.format(
+                                "%d frames in %.1f s (%.1f frames per second), %d positions skipped",
+                                report.numberOfFrames(),
+                                report.durationSeconds(),
+                                report.getFrameRate(),
+                                report.numberOfSkippedPositions()
+                        ));
+                    }
+            );
+            playButton.setText(resources.getString("Viewer.stop"));
+        } catch (IllegalArgumentException e) {
+            Dialogs.showErrorMessage(title, e.getMessage());
+        }
+    }
+
+    @FXML
+    private void onExportResliceClicked() {
+        String title = resources.getString("Viewer.exportReslice");
+        ParameterList parameters = new ParameterList()
+                .addIntParameter("numberOfPlanes", "Number of planes", imageServer.nZSlices())
+                .addDoubleParameter("spacing", "Spacing between planes (pixels)", 1);
+        if (!GuiTools.showParameterDialog(title, parameters)) {
+            return;
+        }
+
+        ResliceExporter exporter;
+        try {
+            exporter = ResliceExporter.createAlongNormal(
+                    new ObliqueSampler(BrickSource.create(imageServer)),
+                    scene3D.getSlicerPlane(),
+                    parameters.getDoubleParameterValue("spacing"),
+                    parameters.getIntParameterValue("numberOfPlanes"),
+                    0
+            );
+        } catch (IllegalArgumentException e) {
+            Dialogs.showErrorMessage(title, e.getMessage());
+            return;
+        }
+
+        File file = FileChoosers.promptToSaveFile(title, null, new FileChooser.ExtensionFilter("TIFF", "*.tif", "*.tiff"));
+        if (file != null) {
+            ProgressWindow.run(this, title, (onProgress, cancelled) -> exporter.export(file.toPath(), onProgress, cancelled));
+        }
+    }
+
+    @FXML
+    private void onExportSnapshotClicked() {
+        String title = resources.getString("Viewer.exportSnapshot");
+        // The export waits for the volume to be displayed at full resolution, which only the surfaces render mode uses
+        if (scene3D.renderModeProperty().get() != RenderMode.SURFACES) {
+            Dialogs.showErrorMessage(title, "Snapshots can only be exported when the image is rendered as surfaces");
+            return;
+        }
+        ParameterList parameters = new ParameterList()
+                .addDoubleParameter("scale", "Size of the snapshot relative to the window", 4);
+        if (!GuiTools.showParameterDialog(title, parameters)) {
+            return;
+        }
+
+        double scale = parameters.getDoubleParameterValue("scale");
+        if (!(scale >= 1)) {
+            Dialogs.showErrorMessage(title, String.format("The scale of the snapshot must be at least 1 (got %f)", scale));
+            return;
+        }
+
+        File file = FileChoosers.promptToSaveFile(title, null, new FileChooser.ExtensionFilter("TIFF", "*.tif", "*.tiff"));
+        if (file != null) {
+            SnapshotExporter exporter = new SnapshotExporter(scene3D);
+            ProgressWindow.run(this, title, (onProgress, cancelled) -> exporter.export(file.toPath(), scale, onProgress, cancelled));
+        }
+    }
+
+    @FXML
+    private void onExportMovieClicked() {
+        String title = resources.getString("Viewer.exportMovie");
+        MovieExporter exporter = new MovieExporter(
+                scene3D,
+                sceneView,
+                translationSlider.valueProperty(),
+                xRotationSlider.valueProperty(),
+                yRotationSlider.valueProperty()
+        );
+        MovieKeyframe start = exporter.getCurrentPose();
+        ParameterList parameters = new ParameterList()
+                .addIntParameter("numberOfFrames", "Number of frames", 120)
+                .addDoubleParameter("viewXRotation", "Rotation of the view around the x-axis (degrees)", 0)
+                .addDoubleParameter("viewYRotation", "Rotation of the view around the y-axis (degrees)", 360)
+                .addDoubleParameter("slicerTranslation", "Final translation of the slicer", start.slicerTranslation())
+                .addDoubleParameter("scale", "Size of the frames relative to the window", 1);
+        if (!GuiTools.showParameterDialog(title, parameters)) {
+            return;
+        }
+
+        MoviePath path;
+        try {
+            path = new MoviePath(
+                    List.of(start, new MovieKeyframe(
+                            parameters.getDoubleParameterValue("slicerTranslation"),
+                            start.slicerXRotation(),
+                            start.slicerYRotation(),
+                            start.viewXRotation() + parameters.getDoubleParameterValue("viewXRotation"),
+                            start.viewYRotation() + parameters.getDoubleParameterValue("viewYRotation")
+                    )),
+                    parameters.getIntParameterValue("numberOfFrames")
+            );
+        } catch (IllegalArgumentException e) {
+            Dialogs.showErrorMessage(title, e.getMessage());
+            return;
+        }
+
+        File directory = FileChoosers.promptForDirectory(title, null);
+        if (directory != null) {
+            double scale = parameters.getDoubleParameterValue("scale");
+            ProgressWindow.run(this, title, (onProgress, cancelled) -> {
+                try (PngSequenceSink sink = new PngSequenceSink(directory.toPath(), "frame-")) {
+                    return exporter.export(path, sink, scale, onProgress, cancelled);
+                }
+            });
+        }
+    }
+
+    private double getDefaultThreshold() {
+        // The upper bound of floating point pixel types is not representative of the values of the image
+        return imageServer.getPixelType().isFloatingPoint() ? 0.5 : imageServer.getPixelType().getUpperBound().doubleValue() / 2;
     }
 
     private void initUI(Stage owner) throws IOException {
@@ -2,20 +2,45 @@ package qupath.ext.viewer;
 
 import javafx.application.ConditionalFeature;
 import javafx.application.Platform;
+import javafx.geometry.Point3D;
+import javafx.stage.FileChooser;
+import qupath.ext.viewer.bricks.ServerBrickSource;
+import qupath.ext.viewer.export.BatchResliceJob;
+import qupath.ext.viewer.sampling.SlabProjection;
+import qupath.ext.viewer.servers.MappedVolumeImageServer;
+import qupath.ext.viewer.servers.RegionImageServer;
+import qupath.ext.viewer.servers.VolumeLayout;
+import qupath.fx.dialogs.Dialogs;
+import qupath.fx.dialogs.FileChoosers;
 import qupath.lib.common.Version;
 import qupath.lib.gui.QuPathGUI;
 import qupath.lib.gui.actions.ActionTools;
 import qupath.lib.gui.extensions.GitHubProject;
 import qupath.lib.gui.extensions.QuPathExtension;
+import qupath.lib.gui.tools.GuiTools;
 import qupath.lib.gui.tools.MenuTools;
+import qupath.lib.images.ImageData;
 import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.PixelType;
+import qupath.lib.objects.PathObject;
+import qupath.lib.plugins.parameters.ParameterList;
+import qupath.lib.projects.Project;
+import qupath.lib.projects.ProjectImageEntry;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Add two actions in the Extensions menu to open the viewer with the currently opened image
- * and with the sample image described in {@link SampleImageServer}.
+ * Add actions in the Extensions menu to open the viewer with the currently opened image,
+ * with the part of the currently opened image delimited by the selected annotation (see {@link RegionImageServer}),
+ * with the sample image described in {@link SampleImageServer}, and with an uncompressed
+ * local volume read by {@link MappedVolumeImageServer}. Also add an action to reslice all images
+ * of the current project (see {@link BatchResliceJob}).
  */
 public class ViewerExtension implements QuPathExtension, GitHubProject {
 
@@ -47,7 +72,20 @@ public class ViewerExtension implements QuPathExtension, GitHubProject {
 							ActionTools.createAction(
 									() -> {
 										try {
-											ImageServer<BufferedImage> server = QuPathGUI.getInstance().getViewer().getServer();
+											ImageData<BufferedImage> imageData = qupath.getImageData();
+											if (imageData != null) {
+												new Viewer(qupath.getStage(), imageData.getServer(), imageData.getHierarchy());
+											}
+										} catch (IOException e) {
+											throw new RuntimeException(e);
+										}
+									},
+									"Open the current image"
+							),
+							ActionTools.createAction(
+									() -> {
+										try {
+											ImageServer<BufferedImage> server = createServerOfSelectedAnnotation(qupath);
 											if (server != null) {
 												new Viewer(qupath.getStage(), server);
 											}
@@ -55,15 +93,196 @@ public class ViewerExtension implements QuPathExtension, GitHubProject {
 											throw new RuntimeException(e);
 										}
 									},
-									"Open the current image"
+									"Open the selected annotation"
+							),
+							ActionTools.createAction(
+									() -> {
+										File file = FileChoosers.promptForFile(
+												"Open a local volume",
+												new FileChooser.ExtensionFilter("Uncompressed volumes", "*.raw", "*.nrrd", "*.nhdr", "*.tif", "*.tiff")
+										);
+										if (file != null) {
+											try {
+												VolumeLayout layout = readLayout(file);
+												if (layout != null) {
+													new Viewer(qupath.getStage(), new MappedVolumeImageServer(layout));
+												}
+											} catch (IOException e) {
+												throw new RuntimeException(e);
+											}
+										}
+									},
+									"Open a local volume (raw, NRRD, TIFF)"
+							),
+							ActionTools.createAction(
+									() -> resliceProject(qupath),
+									"Reslice the images of the project"
 							)
 					)
 			);
 
+			// Tiles decoded by the 2D viewer are reused by the 3D viewer, and conversely
+			ServerBrickSource.setSharedTileCache(
+					(server, tileRequest) -> qupath.getImageRegionStore().getCachedTile(server, tileRequest.getRegionRequest())
+			);
+			ViewerPreferences.install(qupath);
+
 			isInstalled = true;
 		}
 	}
 
+	/**
+	 * Create an image restricted to the annotation selected in the current image and to a
+	 * range of z-slices asked to the user. An error is shown if no annotation is selected.
+	 *
+	 * @param qupath  the QuPath window containing the current image
+	 * @return the sub-volume of the current image delimited by the selected annotation,
+	 * or null if there is no such annotation or if the user cancelled
+	 */
+	private static ImageServer<BufferedImage> createServerOfSelectedAnnotation(QuPathGUI qupath) {
+		ImageData<BufferedImage> imageData = qupath.getImageData();
+		PathObject selectedObject = imageData == null ? null : imageData.getHierarchy().getSelectionModel().getSelectedObject();
+		if (selectedObject == null || !selectedObject.isAnnotation() || selectedObject.getROI() == null) {
+			Dialogs.showErrorMessage("Open the selected annotation", "Select an annotation of the current image first");
+			return null;
+		}
+
+		ImageServer<BufferedImage> server = imageData.getServer();
+		ParameterList parameters = new ParameterList()
+				.addIntParameter("zStart", "First z-slice", 0)
+				.addIntParameter("zEnd", "Last z-slice", server.nZSlices() - 1);
+		if (server.nZSlices() > 1 && !GuiTools.showParameterDialog("Range of z-slices", parameters)) {
+			return null;
+		}
+
+		int zStart = Math.max(0, parameters.getIntParameterValue("zStart"));
+		int zEnd = Math.min(server.nZSlices() - 1, parameters.getIntParameterValue("zEnd"));
+		if (zStart > zEnd) {
+			Dialogs.showErrorMessage("Open the selected annotation", String.format("Invalid range of z-slices: %d - %d", zStart, zEnd));
+			return null;
+		}
+
+		return new RegionImageServer(server, selectedObject.getROI(), zStart, zEnd + 1);
+	}
+
+	/**
+	 * Export the same oblique plane (or slab projection) of all images of the current project with a
+	 * {@link BatchResliceJob}, whose parameters and output directory are asked to the user. An error is
+	 * shown if no project is opened.
+	 *
+	 * @param qupath  the QuPath window containing the current project
+	 */
+	private static void resliceProject(QuPathGUI qupath) {
+		String title = "Reslice the images of the project";
+		Project<BufferedImage> project = qupath.getProject();
+		if (project == null || project.getImageList().isEmpty()) {
+			Dialogs.showErrorMessage(title, "Open a project containing images first");
+			return;
+		}
+
+		ParameterList parameters = new ParameterList()
+				.addDoubleParameter("normalX", "Normal of the plane (x)", 0)
+				.addDoubleParameter("normalY", "Normal of the plane (y)", 0)
+				.addDoubleParameter("normalZ", "Normal of the plane (z)", 1)
+				.addDoubleParameter("offset", "Offset from the center of each image (pixels)", 0)
+				.addDoubleParameter("thickness", "Slab thickness (pixels, 0 for a plane)", 0)
+				.addChoiceParameter("projection", "Slab projection", SlabProjection.MAXIMUM, List.of(SlabProjection.values()))
+				.addIntParameter("numberOfWorkers", "Number of images exported in parallel", Runtime.getRuntime().availableProcessors())
+				.addIntParameter("memoryBudget", "Memory budget (MB)", (int) (Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024)));
+		if (!GuiTools.showParameterDialog(title, parameters)) {
+			return;
+		}
+
+		BatchResliceJob job;
+		try {
+			job = new BatchResliceJob(
+					new Point3D(
+							parameters.getDoubleParameterValue("normalX"),
+							parameters.getDoubleParameterValue("normalY"),
+							parameters.getDoubleParameterValue("normalZ")
+					),
+					parameters.getDoubleParameterValue("offset"),
+					parameters.getDoubleParameterValue("thickness"),
+					(SlabProjection) parameters.getChoiceParameterValue("projection"),
+					parameters.getIntParameterValue("numberOfWorkers"),
+					parameters.getIntParameterValue("memoryBudget") * 1024L * 1024L
+			);
+		} catch (IllegalArgumentException e) {
+			Dialogs.showErrorMessage(title, e.getMessage());
+			return;
+		}
+
+		File directory = FileChoosers.promptForDirectory(title, null);
+		if (directory != null) {
+			List<ProjectImageEntry<BufferedImage>> entries = project.getImageList();
+			ProgressWindow.run(qupath.getStage(), title, (onProgress, cancelled) -> {
+				AtomicInteger numberOfReports = new AtomicInteger(0);
+				List<BatchResliceJob.Report> reports = job.run(
+						entries,
+						directory.toPath(),
+						report -> onProgress.accept((double) numberOfReports.incrementAndGet() / entries.size()),
+						cancelled
+				);
+
+				long numberOfFailures = reports.stream().filter(report -> !report.isSuccessful()).count();
+				if (numberOfFailures > 0 && !cancelled.getAsBoolean()) {
+					Platform.runLater(() -> Dialogs.showWarningNotification(title, String.format(
+							"%d of %d images could not be exported. See %s for details",
+							numberOfFailures,
+							reports.size(),
+							BatchResliceJob.REPORT_FILE_NAME
+					)));
+				}
+				return !cancelled.getAsBoolean();
+			});
+		}
+	}
+
+	/**
+	 * Get the layout of an uncompressed volume. The layout of raw files is
+	 * asked to the user.
+	 *
+	 * @param file  the file containing the volume
+	 * @return the layout of the volume, or null if the user cancelled
+	 * @throws IOException when the file cannot be read or describes an unsupported volume
+	 */
+	private static VolumeLayout readLayout(File file) throws IOException {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+
+		if (name.endsWith(".nrrd") || name.endsWith(".nhdr")) {
+			return VolumeLayout.createFromNrrd(file.toPath());
+		} else if (name.endsWith(".tif") || name.endsWith(".tiff")) {
+			return VolumeLayout.createFromTiff(file.toPath());
+		} else {
+			ParameterList parameters = new ParameterList()
+					.addIntParameter("width", "Width", 512)
+					.addIntParameter("height", "Height", 512)
+					.addIntParameter("sizeZ", "Number of z-slices", 1)
+					.addIntParameter("nChannels", "Number of channels", 1)
+					.addChoiceParameter("pixelType", "Pixel type", PixelType.UINT8, List.of(
+							PixelType.UINT8, PixelType.UINT16, PixelType.INT16, PixelType.INT32, PixelType.FLOAT32, PixelType.FLOAT64
+					))
+					.addBooleanParameter("littleEndian", "Little-endian", true)
+					.addBooleanParameter("interleaved", "Channels interleaved", false)
+					.addIntParameter("headerSize", "Header size (bytes)", 0);
+			if (!GuiTools.showParameterDialog("Raw volume", parameters)) {
+				return null;
+			}
+
+			return VolumeLayout.createFromRaw(
+					file.toPath(),
+					parameters.getIntParameterValue("width"),
+					parameters.getIntParameterValue("height"),
+					parameters.getIntParameterValue("sizeZ"),
+					parameters.getIntParameterValue("nChannels"),
+					(PixelType) parameters.getChoiceParameterValue("pixelType"),
+					parameters.getBooleanParameterValue("littleEndian") ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN,
+					parameters.getBooleanParameterValue("interleaved"),
+					parameters.getIntParameterValue("headerSize")
+			);
+		}
+	}
+
 	@Override
 	public String getName() {
 		return EXTENSION_NAME;
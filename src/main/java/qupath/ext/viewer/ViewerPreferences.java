@@ -0,0 +1,102 @@
+package qupath.ext.viewer;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.DiskBrickCache;
+import qupath.fx.prefs.controlsfx.PropertyItemBuilder;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.gui.QuPathGUI;
+import qupath.lib.gui.UserDirectoryManager;
+import qupath.lib.gui.prefs.PathPrefs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The persistent preferences of the viewer, displayed in the preferences pane of QuPath.
+ * <p>
+ * Changes to the disk cache preferences are applied in the background once the preferences
+ * have not changed for {@link #DISK_CACHE_UPDATE_DELAY_MILLIS} milliseconds, so that typing a new size
+ * doesn't reopen the cache at each keystroke. The cache is only reopened if its directory or size changed.
+ */
+class ViewerPreferences {
+
+    private static final Logger logger = LoggerFactory.getLogger(ViewerPreferences.class);
+    private static final String CATEGORY = "3D viewer";
+    private static final BooleanProperty diskCacheEnabled = PathPrefs.createPersistentPreference("viewer.diskCache.enabled", false);
+    private static final IntegerProperty diskCacheSizeGB = PathPrefs.createPersistentPreference("viewer.diskCache.sizeGB", 10);
+    private static final long DISK_CACHE_UPDATE_DELAY_MILLIS = 1000;
+    private static final ScheduledExecutorService diskCacheExecutor = Executors.newSingleThreadScheduledExecutor(
+            ThreadTools.createThreadFactory("viewer-disk-cache-", true)
+    );
+    private static ScheduledFuture<?> pendingDiskCacheUpdate;
+    private static Path diskCacheDirectory;
+    private static long diskCacheSizeBytes;
+
+    private ViewerPreferences() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Add the preferences to the preferences pane of QuPath and apply them.
+     *
+     * @param qupath  the QuPath window containing the preferences pane
+     */
+    public static void install(QuPathGUI qupath) {
+        qupath.getPreferencePane().getPropertySheet().getItems().addAll(
+                new PropertyItemBuilder<>(diskCacheEnabled, Boolean.class)
+                        .name("Disk cache")
+                        .category(CATEGORY)
+                        .description("Store the voxels read by the 3D viewer in the QuPath user directory, so that they can be reused in later sessions")
+                        .build(),
+                new PropertyItemBuilder<>(diskCacheSizeGB, Integer.class)
+                        .name("Disk cache size (GB)")
+                        .category(CATEGORY)
+                        .description("The maximum size of the disk cache. The least recently used voxels are removed when it is full")
+                        .build()
+        );
+
+        diskCacheEnabled.addListener((p, o, n) -> scheduleDiskCacheUpdate(DISK_CACHE_UPDATE_DELAY_MILLIS));
+        diskCacheSizeGB.addListener((p, o, n) -> scheduleDiskCacheUpdate(DISK_CACHE_UPDATE_DELAY_MILLIS));
+        scheduleDiskCacheUpdate(0);
+    }
+
+    /**
+     * Apply the current disk cache preferences after a delay, replacing any update not started yet.
+     * This must be called from the JavaFX Application Thread.
+     */
+    private static void scheduleDiskCacheUpdate(long delayMillis) {
+        Path userPath = UserDirectoryManager.getInstance().getUserPath();
+        Path directory = diskCacheEnabled.get() && userPath != null ? userPath.resolve("viewer").resolve("brick-cache") : null;
+        long sizeBytes = Math.max(0, diskCacheSizeGB.get()) * (1L << 30);
+
+        if (pendingDiskCacheUpdate != null) {
+            pendingDiskCacheUpdate.cancel(false);
+        }
+        pendingDiskCacheUpdate = diskCacheExecutor.schedule(() -> updateDiskCache(directory, sizeBytes), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replace the shared disk cache if its directory or size changed. This is only called from the disk cache executor.
+     */
+    private static void updateDiskCache(Path directory, long sizeBytes) {
+        if (Objects.equals(directory, diskCacheDirectory) && (directory == null || sizeBytes == diskCacheSizeBytes)) {
+            return;
+        }
+
+        diskCacheDirectory = directory;
+        diskCacheSizeBytes = sizeBytes;
+        try {
+            DiskBrickCache.setShared(directory, sizeBytes);
+        } catch (IOException e) {
+            logger.warn("Cannot open the disk cache", e);
+        }
+    }
+}
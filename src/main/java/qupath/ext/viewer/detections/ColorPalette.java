@@ -0,0 +1,74 @@
+package qupath.ext.viewer.detections;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ *     A fixed-size list of colors, used to give colors to batched meshes through a single texture:
+ *     each color is a pixel of a texture of {@link #SIZE} by 1 pixels, and each triangle
+ *     uses the texture coordinate of its color (see {@link #getTextureCoordinate(int)}).
+ * </p>
+ * <p>
+ *     Colors are added the first time they are requested. When the palette is full, new colors
+ *     are given the index of the last color of the palette. This class is thread-safe.
+ * </p>
+ */
+public class ColorPalette {
+
+    /**
+     * The maximum number of colors of a palette
+     */
+    public static final int SIZE = 256;
+    private final Map<Integer, Integer> indices = new HashMap<>();
+    private final int[] colors = new int[SIZE];
+    private int version = 0;
+
+    /**
+     * Get the index of a color in this palette, adding it if needed.
+     *
+     * @param color  the packed RGB color to retrieve
+     * @return the index of the color in this palette
+     */
+    public synchronized int getIndex(int color) {
+        Integer index = indices.get(color);
+        if (index != null) {
+            return index;
+        }
+
+        if (indices.size() < SIZE) {
+            index = indices.size();
+            indices.put(color, index);
+            colors[index] = color;
+            version++;
+            return index;
+        } else {
+            return SIZE - 1;
+        }
+    }
+
+    /**
+     * @return a copy of the packed RGB colors of this palette. Unused entries are black
+     */
+    public synchronized int[] getColors() {
+        return Arrays.copyOf(colors, SIZE);
+    }
+
+    /**
+     * @return a number that changes every time a color is added to this palette
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the horizontal texture coordinate of the center of a pixel of the palette texture.
+     *
+     * @param index  the index of the color in this palette
+     * @return the horizontal texture coordinate of the color, between 0 and 1
+     */
+    public static float getTextureCoordinate(int index) {
+        return (index + 0.5f) / SIZE;
+    }
+}
@@ -0,0 +1,24 @@
+package qupath.ext.viewer.detections;
+
+/**
+ * A detection to display in the 3D space, represented by a sphere.
+ *
+ * @param x  the x-coordinate of the center of the detection, in the 3D space
+ * @param y  the y-coordinate of the center of the detection, in the 3D space
+ * @param z  the z-coordinate of the center of the detection, in the 3D space
+ * @param radius  the radius of the sphere representing the detection, in the 3D space
+ * @param color  the packed RGB color of the detection
+ */
+public record Detection(double x, double y, double z, double radius, int color) {
+
+    /**
+     * Create a detection.
+     *
+     * @throws IllegalArgumentException when the radius is negative
+     */
+    public Detection {
+        if (radius < 0) {
+            throw new IllegalArgumentException(String.format("The radius of a detection cannot be negative (got %f)", radius));
+        }
+    }
+}
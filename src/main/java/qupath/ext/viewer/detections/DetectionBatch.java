@@ -0,0 +1,54 @@
+package qupath.ext.viewer.detections;
+
+import java.util.List;
+
+/**
+ * A single mesh representing many detections. The arrays follow the layout of the JavaFX {@code TriangleMesh}.
+ *
+ * @param points  the (x, y, z) coordinates of the vertices of the mesh, one vertex after the other
+ * @param faces  the index of a vertex and the index of a texture coordinate for each corner of each triangle.
+ *               Texture coordinates are indices of a {@link ColorPalette}
+ */
+public record DetectionBatch(float[] points, int[] faces) {
+
+    /**
+     * Create a mesh representing detections.
+     *
+     * @param detections  the detections to represent
+     * @param levelOfDetail  the shape to use to represent each detection
+     * @param palette  the palette containing the colors of the detections. Colors missing from the palette are added
+     * @return a new mesh where each detection is represented by the shape of the level of detail,
+     * scaled to the radius of the detection
+     */
+    public static DetectionBatch create(List<Detection> detections, LevelOfDetail levelOfDetail, ColorPalette palette) {
+        float[] vertices = levelOfDetail.getVertices();
+        int[] triangles = levelOfDetail.getTriangles();
+        float[] points = new float[detections.size() * vertices.length];
+        int[] faces = new int[detections.size() * triangles.length * 2];
+
+        for (int i=0; i<detections.size(); i++) {
+            Detection detection = detections.get(i);
+            int firstVertex = i * vertices.length / 3;
+            int colorIndex = palette.getIndex(detection.color());
+
+            for (int j=0; j<vertices.length; j+=3) {
+                points[i * vertices.length + j] = (float) (detection.x() + detection.radius() * vertices[j]);
+                points[i * vertices.length + j + 1] = (float) (detection.y() + detection.radius() * vertices[j + 1]);
+                points[i * vertices.length + j + 2] = (float) (detection.z() + detection.radius() * vertices[j + 2]);
+            }
+            for (int j=0; j<triangles.length; j++) {
+                faces[2 * (i * triangles.length + j)] = firstVertex + triangles[j];
+                faces[2 * (i * triangles.length + j) + 1] = colorIndex;
+            }
+        }
+
+        return new DetectionBatch(points, faces);
+    }
+
+    /**
+     * @return the number of triangles of this mesh
+     */
+    public int nTriangles() {
+        return faces.length / 6;
+    }
+}
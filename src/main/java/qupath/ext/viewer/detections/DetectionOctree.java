@@ -0,0 +1,248 @@
+package qupath.ext.viewer.detections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *     An <a href="https://en.wikipedia.org/wiki/Octree">octree</a> indexing detections by the position of their center.
+ * </p>
+ * <p>
+ *     Each leaf of the octree holds at most a fixed number of detections (unless the maximum depth is reached), and
+ *     is split into 8 children when this number is exceeded. Leaves are not merged back when detections are removed.
+ *     Each leaf has a version that changes every time one of its detections is added or removed, so that data
+ *     computed from the detections of a leaf (for example a mesh) can be reused until the leaf changes.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ */
+public class DetectionOctree {
+
+    /**
+     * The default maximum number of detections of a leaf
+     */
+    public static final int DEFAULT_LEAF_CAPACITY = 4096;
+    private static final int MAXIMUM_DEPTH = 16;
+    private final Node root;
+    private final int leafCapacity;
+    private double maximumRadius = 0;
+    private int size = 0;
+
+    /**
+     * A node of the octree. Only leaves contain detections.
+     */
+    public static class Node {
+
+        private final double[] min;
+        private final double[] max;
+        private final int depth;
+        private Node[] children = null;
+        private List<Detection> detections = new ArrayList<>();
+        private int version = 0;
+
+        private Node(double[] min, double[] max, int depth) {
+            this.min = min;
+            this.max = max;
+            this.depth = depth;
+        }
+
+        /**
+         * @return the (x, y, z) coordinates of the corner of the box covered by this node with the smallest coordinates
+         */
+        public double[] getMin() {
+            return min.clone();
+        }
+
+        /**
+         * @return the (x, y, z) coordinates of the corner of the box covered by this node with the largest coordinates
+         */
+        public double[] getMax() {
+            return max.clone();
+        }
+
+        /**
+         * @return an unmodifiable view of the detections whose center is located in this node. This is
+         * empty if this node is not a leaf
+         */
+        public List<Detection> getDetections() {
+            return detections == null ? List.of() : Collections.unmodifiableList(detections);
+        }
+
+        /**
+         * @return a number that changes every time a detection is added to or removed from this node
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        private boolean isLeaf() {
+            return children == null;
+        }
+
+        private Node getChild(Detection detection) {
+            int index = 0;
+            if (detection.x() >= (min[0] + max[0]) / 2) {
+                index |= 1;
+            }
+            if (detection.y() >= (min[1] + max[1]) / 2) {
+                index |= 2;
+            }
+            if (detection.z() >= (min[2] + max[2]) / 2) {
+                index |= 4;
+            }
+            return children[index];
+        }
+
+        private void split() {
+            children = new Node[8];
+            for (int i=0; i<8; i++) {
+                double[] childMin = new double[3];
+                double[] childMax = new double[3];
+                for (int axis=0; axis<3; axis++) {
+                    double center = (min[axis] + max[axis]) / 2;
+                    boolean upper = (i & (1 << axis)) != 0;
+                    childMin[axis] = upper ? center : min[axis];
+                    childMax[axis] = upper ? max[axis] : center;
+                }
+                children[i] = new Node(childMin, childMax, depth + 1);
+            }
+
+            for (Detection detection: detections) {
+                getChild(detection).detections.add(detection);
+            }
+            detections = null;
+            version++;
+        }
+    }
+
+    /**
+     * A function that tells whether a box may contain detections of interest.
+     */
+    @FunctionalInterface
+    public interface BoxFilter {
+
+        /**
+         * Tell whether a box may contain detections of interest.
+         *
+         * @param min  the (x, y, z) coordinates of the corner of the box with the smallest coordinates
+         * @param max  the (x, y, z) coordinates of the corner of the box with the largest coordinates
+         * @param maximumRadius  the largest radius of the detections contained in the box
+         * @return false if no detection whose center is in the box is of interest, true otherwise
+         */
+        boolean intersects(double[] min, double[] max, double maximumRadius);
+    }
+
+    /**
+     * Create an empty octree.
+     *
+     * @param min  the (x, y, z) coordinates of the corner of the indexed box with the smallest coordinates
+     * @param max  the (x, y, z) coordinates of the corner of the indexed box with the largest coordinates
+     * @param leafCapacity  the number of detections above which a leaf is split
+     * @throws IllegalArgumentException when the box is empty or the leaf capacity is less than 1
+     */
+    public DetectionOctree(double[] min, double[] max, int leafCapacity) {
+        if (min.length != 3 || max.length != 3 || !(min[0] < max[0] && min[1] < max[1] && min[2] < max[2])) {
+            throw new IllegalArgumentException("The indexed box must have three dimensions and be non-empty");
+        }
+        if (leafCapacity < 1) {
+            throw new IllegalArgumentException(String.format("The leaf capacity must be at least 1 (got %d)", leafCapacity));
+        }
+
+        this.root = new Node(min.clone(), max.clone(), 0);
+        this.leafCapacity = leafCapacity;
+    }
+
+    /**
+     * Add a detection to this octree.
+     *
+     * @param detection  the detection to add
+     * @return whether the detection was added. Detections whose center is located outside
+     * the indexed box are not added
+     */
+    public boolean add(Detection detection) {
+        if (!contains(root, detection)) {
+            return false;
+        }
+
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.getChild(detection);
+        }
+        node.detections.add(detection);
+        node.version++;
+        if (node.detections.size() > leafCapacity && node.depth < MAXIMUM_DEPTH) {
+            node.split();
+        }
+
+        maximumRadius = Math.max(maximumRadius, detection.radius());
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove a detection from this octree.
+     *
+     * @param detection  the detection to remove
+     * @return whether the detection was part of this octree
+     */
+    public boolean remove(Detection detection) {
+        if (!contains(root, detection)) {
+            return false;
+        }
+
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.getChild(detection);
+        }
+        if (node.detections.remove(detection)) {
+            node.version++;
+            size--;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of detections of this octree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the non-empty leaves of this octree that may contain detections of interest.
+     *
+     * @param filter  a function telling whether a node may contain detections of interest. Only
+     *                the descendants of the nodes accepted by this function are visited
+     * @return the non-empty leaves accepted by the filter
+     */
+    public List<Node> getLeaves(BoxFilter filter) {
+        List<Node> leaves = new ArrayList<>();
+        List<Node> nodesToVisit = new ArrayList<>(List.of(root));
+
+        while (!nodesToVisit.isEmpty()) {
+            Node node = nodesToVisit.remove(nodesToVisit.size() - 1);
+
+            if (filter.intersects(node.min, node.max, maximumRadius)) {
+                if (node.isLeaf()) {
+                    if (!node.detections.isEmpty()) {
+                        leaves.add(node);
+                    }
+                } else {
+                    nodesToVisit.addAll(List.of(node.children));
+                }
+            }
+        }
+
+        return leaves;
+    }
+
+    private static boolean contains(Node node, Detection detection) {
+        return detection.x() >= node.min[0] && detection.x() <= node.max[0] &&
+                detection.y() >= node.min[1] && detection.y() <= node.max[1] &&
+                detection.z() >= node.min[2] && detection.z() <= node.max[2];
+    }
+}
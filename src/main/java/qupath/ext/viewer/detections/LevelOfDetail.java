@@ -0,0 +1,129 @@
+package qupath.ext.viewer.detections;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The shapes approximating the spheres that represent detections, from the most to the least detailed.
+ */
+public enum LevelOfDetail {
+    /**
+     * A subdivided octahedron with 32 triangles, for detections that cover many pixels of the screen
+     */
+    HIGH(subdivide(OctahedronHolder.VERTICES, OctahedronHolder.TRIANGLES)),
+    /**
+     * An octahedron with 8 triangles
+     */
+    MEDIUM(new Shape(OctahedronHolder.VERTICES, OctahedronHolder.TRIANGLES)),
+    /**
+     * A tetrahedron with 4 triangles, for detections that cover a few pixels of the screen
+     */
+    LOW(new Shape(
+            normalize(new float[] {1, 1, 1, 1, -1, -1, -1, 1, -1, -1, -1, 1}),
+            new int[] {0, 1, 2, 0, 3, 1, 0, 2, 3, 1, 3, 2}
+    ));
+
+    private static final double HIGH_MINIMUM_PROJECTED_RADIUS = 8;
+    private static final double MEDIUM_MINIMUM_PROJECTED_RADIUS = 2;
+    private static final double LOW_MINIMUM_PROJECTED_RADIUS = 0.25;
+    private final Shape shape;
+
+    private record Shape(float[] vertices, int[] triangles) {}
+
+    private static class OctahedronHolder {
+        private static final float[] VERTICES = {1, 0, 0, -1, 0, 0, 0, 1, 0, 0, -1, 0, 0, 0, 1, 0, 0, -1};
+        private static final int[] TRIANGLES = {
+                0, 2, 4, 2, 1, 4, 1, 3, 4, 3, 0, 4,
+                2, 0, 5, 1, 2, 5, 3, 1, 5, 0, 3, 5
+        };
+    }
+
+    LevelOfDetail(Shape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Get the level of detail to use for a detection, given the size it has on the screen.
+     *
+     * @param projectedRadius  the radius of the detection once projected on the screen, in pixels
+     * @return the level of detail to use, or null if the detection is too small to be displayed
+     */
+    public static LevelOfDetail fromProjectedRadius(double projectedRadius) {
+        if (projectedRadius >= HIGH_MINIMUM_PROJECTED_RADIUS) {
+            return HIGH;
+        } else if (projectedRadius >= MEDIUM_MINIMUM_PROJECTED_RADIUS) {
+            return MEDIUM;
+        } else if (projectedRadius >= LOW_MINIMUM_PROJECTED_RADIUS) {
+            return LOW;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @return the (x, y, z) coordinates of the vertices of a shape approximating the unit sphere, one vertex after the other
+     */
+    float[] getVertices() {
+        return shape.vertices();
+    }
+
+    /**
+     * @return the indices of the three vertices of each triangle of a shape approximating the unit sphere,
+     * one triangle after the other
+     */
+    int[] getTriangles() {
+        return shape.triangles();
+    }
+
+    private static float[] normalize(float[] vertices) {
+        float[] normalized = new float[vertices.length];
+        for (int i=0; i<vertices.length; i+=3) {
+            double length = Math.sqrt(vertices[i] * vertices[i] + vertices[i+1] * vertices[i+1] + vertices[i+2] * vertices[i+2]);
+            for (int axis=0; axis<3; axis++) {
+                normalized[i + axis] = (float) (vertices[i + axis] / length);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Split each triangle into 4 triangles, and move the new vertices onto the unit sphere.
+     */
+    private static Shape subdivide(float[] vertices, int[] triangles) {
+        List<Float> newVertices = new ArrayList<>();
+        for (float coordinate: vertices) {
+            newVertices.add(coordinate);
+        }
+        Map<Long, Integer> midpoints = new HashMap<>();
+        int[] newTriangles = new int[4 * triangles.length];
+
+        for (int i=0; i<triangles.length; i+=3) {
+            int a = triangles[i];
+            int b = triangles[i+1];
+            int c = triangles[i+2];
+            int ab = getMidpoint(a, b, newVertices, midpoints);
+            int bc = getMidpoint(b, c, newVertices, midpoints);
+            int ca = getMidpoint(c, a, newVertices, midpoints);
+
+            System.arraycopy(new int[] {a, ab, ca, ab, b, bc, ca, bc, c, ab, bc, ca}, 0, newTriangles, 4 * i, 12);
+        }
+
+        float[] vertexArray = new float[newVertices.size()];
+        for (int i=0; i<vertexArray.length; i++) {
+            vertexArray[i] = newVertices.get(i);
+        }
+        return new Shape(normalize(vertexArray), newTriangles);
+    }
+
+    private static int getMidpoint(int a, int b, List<Float> vertices, Map<Long, Integer> midpoints) {
+        long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+        return midpoints.computeIfAbsent(key, k -> {
+            for (int axis=0; axis<3; axis++) {
+                vertices.add((vertices.get(3*a + axis) + vertices.get(3*b + axis)) / 2);
+            }
+            return vertices.size() / 3 - 1;
+        });
+    }
+}
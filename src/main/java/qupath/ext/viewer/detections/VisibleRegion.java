@@ -0,0 +1,87 @@
+package qupath.ext.viewer.detections;
+
+import javafx.geometry.Point3D;
+
+/**
+ * <p>
+ *     The region of a volume where detections can be seen when the volume is cut by a slicer.
+ * </p>
+ * <p>
+ *     The volume is an opaque box centered on (0, 0, 0), and only its part located in front of the slicer
+ *     is displayed. Detections are therefore only visible if they are close to the slicer (within the slab
+ *     it covers), or if they are in front of the slicer and close to one of the faces of the box.
+ * </p>
+ *
+ * @param halfSize  half of the dimensions of the box, in the 3D space
+ * @param slicerPoint  a point of the slicer, in the 3D space
+ * @param slicerNormal  the normal of the slicer, pointing towards the displayed part of the volume. It must be normalized
+ * @param slabHalfThickness  half of the thickness of the slab covered by the slicer, in the 3D space
+ * @param faceDistance  the distance to the faces of the box below which detections are visible, in the 3D space
+ */
+public record VisibleRegion(
+        Point3D halfSize,
+        Point3D slicerPoint,
+        Point3D slicerNormal,
+        double slabHalfThickness,
+        double faceDistance
+) implements DetectionOctree.BoxFilter {
+
+    /**
+     * Tell whether a detection is (at least partly) located in this region.
+     *
+     * @param detection  the detection to check
+     * @return whether the detection is located in this region
+     */
+    public boolean contains(Detection detection) {
+        double distanceToSlicer = slicerNormal.dotProduct(
+                detection.x() - slicerPoint.getX(),
+                detection.y() - slicerPoint.getY(),
+                detection.z() - slicerPoint.getZ()
+        );
+        if (Math.abs(distanceToSlicer) <= slabHalfThickness + detection.radius()) {
+            return true;
+        }
+        if (distanceToSlicer < 0) {
+            return false;
+        }
+
+        double distanceToFaces = Math.min(
+                Math.min(halfSize.getX() - Math.abs(detection.x()), halfSize.getY() - Math.abs(detection.y())),
+                halfSize.getZ() - Math.abs(detection.z())
+        );
+        return distanceToFaces <= faceDistance + detection.radius();
+    }
+
+    @Override
+    public boolean intersects(double[] min, double[] max, double maximumRadius) {
+        double minDistanceToSlicer = Double.MAX_VALUE;
+        double maxDistanceToSlicer = -Double.MAX_VALUE;
+        for (int corner=0; corner<8; corner++) {
+            double distance = slicerNormal.dotProduct(
+                    ((corner & 1) == 0 ? min[0] : max[0]) - slicerPoint.getX(),
+                    ((corner & 2) == 0 ? min[1] : max[1]) - slicerPoint.getY(),
+                    ((corner & 4) == 0 ? min[2] : max[2]) - slicerPoint.getZ()
+            );
+            minDistanceToSlicer = Math.min(minDistanceToSlicer, distance);
+            maxDistanceToSlicer = Math.max(maxDistanceToSlicer, distance);
+        }
+
+        double slabDistance = slabHalfThickness + maximumRadius;
+        if (maxDistanceToSlicer >= -slabDistance && minDistanceToSlicer <= slabDistance) {
+            return true;
+        }
+        if (maxDistanceToSlicer < 0) {
+            return false;
+        }
+
+        // The box reaches the shell along the faces unless it is entirely inside the inner box of the shell
+        double[] halfSize = {this.halfSize.getX(), this.halfSize.getY(), this.halfSize.getZ()};
+        for (int axis=0; axis<3; axis++) {
+            double innerHalfSize = halfSize[axis] - faceDistance - maximumRadius;
+            if (min[axis] <= -innerHalfSize || max[axis] >= innerHalfSize) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
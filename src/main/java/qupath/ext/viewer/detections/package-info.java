@@ -0,0 +1,4 @@
+/**
+ * Spatial indexing of the detections of an image, and creation of the batched meshes representing them.
+ */
+package qupath.ext.viewer.detections;
@@ -0,0 +1,345 @@
+package qupath.ext.viewer.export;
+
+import javafx.geometry.Point3D;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.BrickCache;
+import qupath.ext.viewer.bricks.BrickSummaryIndex;
+import qupath.ext.viewer.bricks.CachedBrickSource;
+import qupath.ext.viewer.bricks.ServerBrickSource;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.SlabProjection;
+import qupath.lib.common.GeneralTools;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.projects.ProjectImageEntry;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ *     Export the same oblique plane, or the projection of the same slab, of many images (for example all the images
+ *     of a QuPath project), each one to its own TIFF file written by a {@link ResliceExporter}.
+ * </p>
+ * <p>
+ *     Images are processed in parallel by a fixed number of workers. Each worker opens an image, exports it with a
+ *     single sampling thread (the workers already use the processors), and closes it before moving to the next one.
+ *     The bricks of an image are stored in a {@link BrickCache} used by this image only, instead of the caches shared
+ *     by the viewers, so images don't evict the bricks of each other and the memory of an image is released as soon
+ *     as it is exported. The summaries of the bricks are likewise kept in a {@link BrickSummaryIndex} used by this
+ *     image only, instead of the shared index that is never emptied.
+ * </p>
+ * <p>
+ *     Before opening an image, a worker reserves the size of this cache from the memory budget of the job. Once the
+ *     image is open, it also reserves the memory estimated by {@link ResliceExporter#estimateMemoryBytes(int)}, waiting
+ *     for other images to finish if the budget is exhausted (without holding any memory while waiting, so workers
+ *     cannot block each other). Small images are therefore exported by all workers at once, and large images with
+ *     less parallelism. Waiting for memory stops when the job is cancelled.
+ * </p>
+ * <p>
+ *     Each image gives a {@link Report} with its duration and, if it failed, the reason of the failure. A failure
+ *     doesn't stop the job. Reports are also appended to the {@link #REPORT_FILE_NAME} CSV file of the output directory
+ *     as soon as each image is done (in the order images finish), so the file lists the exported images even if the
+ *     job stops early.
+ * </p>
+ */
+public class BatchResliceJob {
+
+    /**
+     * The name of the CSV file containing the reports of all images, written in the output directory
+     */
+    public static final String REPORT_FILE_NAME = "reslice-report.csv";
+    private static final Logger logger = LoggerFactory.getLogger(BatchResliceJob.class);
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private static final double BRICK_CACHE_PROPORTION_OF_BUDGET = 0.5;
+    private static final int EXPORT_THREADS_PER_WORKER = 1;
+    private static final long CANCELLATION_CHECK_PERIOD_MILLIS = 100;
+    private final Point3D normal;
+    private final double offset;
+    private final double slabThickness;
+    private final SlabProjection slabProjection;
+    private final int numberOfWorkers;
+    private final long memoryBudgetBytes;
+
+    /**
+     * The result of the export of one image.
+     *
+     * @param imageName  the name of the image
+     * @param file  the TIFF file the image was exported to. It doesn't exist if the export failed
+     * @param durationSeconds  the time spent opening, exporting and closing the image, in seconds.
+     *                         This doesn't include the time spent waiting for memory
+     * @param error  the reason of the failure, or null if the image was exported
+     */
+    public record Report(String imageName, Path file, double durationSeconds, String error) {
+
+        /**
+         * @return whether the image was exported
+         */
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Create a job.
+     *
+     * @param normal  the normal of the plane to export, in full resolution pixel coordinates (z being expressed in z-slices)
+     * @param offset  the signed distance between the center of each image and the plane, along the normal, in full resolution pixels
+     * @param slabThickness  the thickness of the slab centered on the plane to project, in full resolution pixels,
+     *                       or 0 to export the voxels the plane goes through
+     * @param slabProjection  how the voxels of the slab are projected. It is not used when the thickness is 0
+     * @param numberOfWorkers  the maximum number of images to export at the same time
+     * @param memoryBudgetBytes  the maximum number of bytes the exports can use at the same time
+     * @throws IllegalArgumentException when the normal is null, when the thickness is negative, or when the number
+     * of workers or the memory budget is not positive
+     */
+    public BatchResliceJob(
+            Point3D normal,
+            double offset,
+            double slabThickness,
+            SlabProjection slabProjection,
+            int numberOfWorkers,
+            long memoryBudgetBytes
+    ) {
+        if (normal.magnitude() == 0) {
+            throw new IllegalArgumentException("The normal of the plane cannot be null");
+        }
+        if (!(slabThickness >= 0)) {
+            throw new IllegalArgumentException(String.format("The thickness of the slab cannot be negative (got %f)", slabThickness));
+        }
+        if (numberOfWorkers < 1 || memoryBudgetBytes < BYTES_PER_MEGABYTE) {
+            throw new IllegalArgumentException(String.format(
+                    "The number of workers (%d) and the memory budget (%d bytes) must be at least 1 and 1 MB", numberOfWorkers, memoryBudgetBytes
+            ));
+        }
+
+        this.normal = normal.normalize();
+        this.offset = offset;
+        this.slabThickness = slabThickness;
+        this.slabProjection = slabProjection;
+        this.numberOfWorkers = numberOfWorkers;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Export images. This function reads the images, so it shouldn't be called from the JavaFX Application Thread.
+     *
+     * @param entries  the images to export, for example the images of a project
+     * @param outputDirectory  the directory to write the TIFF files and the report file to. It is created if it doesn't exist,
+     *                         and files with the same names are overwritten
+     * @param onReport  a function called with the report of each image once it is exported or has failed. It is called
+     *                  from the thread of the worker that processed the image, not in the order of the images
+     * @param cancelled  a function returning true when the job should stop. Images not exported yet are then
+     *                   reported as cancelled
+     * @return the reports of the images, in the order of the provided images
+     * @throws IOException when the output directory or the report file cannot be written, or when the function
+     * called with the reports fails. The reports of the images already done are still in the report file
+     */
+    public List<Report> run(
+            List<ProjectImageEntry<BufferedImage>> entries,
+            Path outputDirectory,
+            Consumer<Report> onReport,
+            BooleanSupplier cancelled
+    ) throws IOException {
+        Files.createDirectories(outputDirectory);
+
+        long brickCacheBytes = (long) (BRICK_CACHE_PROPORTION_OF_BUDGET * memoryBudgetBytes / numberOfWorkers);
+        Semaphore memory = new Semaphore((int) Math.min(Integer.MAX_VALUE, memoryBudgetBytes / BYTES_PER_MEGABYTE), true);
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(numberOfWorkers, entries.size())),
+                ThreadTools.createThreadFactory("viewer-batch-reslice-", true)
+        );
+
+        List<Report> reports = new ArrayList<>();
+        try (PrintWriter reportWriter = new PrintWriter(Files.newBufferedWriter(outputDirectory.resolve(REPORT_FILE_NAME)))) {
+            reportWriter.println("image,file,durationSeconds,error");
+            reportWriter.flush();
+
+            List<Future<Report>> pendingReports = entries.stream()
+                    .map(entry -> executor.submit(() -> {
+                        Report report = export(entry, outputDirectory, brickCacheBytes, memory, cancelled);
+                        writeReport(reportWriter, report);
+                        onReport.accept(report);
+                        return report;
+                    }))
+                    .toList();
+
+            for (Future<Report> pendingReport: pendingReports) {
+                reports.add(getReport(pendingReport));
+            }
+
+            if (reportWriter.checkError()) {
+                throw new IOException(String.format("Cannot write the report file in %s", outputDirectory));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return reports;
+    }
+
+    private Report export(
+            ProjectImageEntry<BufferedImage> entry,
+            Path outputDirectory,
+            long brickCacheBytes,
+            Semaphore memory,
+            BooleanSupplier cancelled
+    ) {
+        String name = entry.getImageName();
+        Path file = outputDirectory.resolve(String.format("%s-%s.tif", GeneralTools.stripInvalidFilenameChars(name), entry.getID()));
+        if (cancelled.getAsBoolean()) {
+            return new Report(name, file, 0, "Cancelled");
+        }
+
+        long startTime = System.nanoTime();
+        long waitingStartTime = System.nanoTime();
+        int brickCacheMegabytes = toMegabytes(brickCacheBytes);
+        // The brick cache is reserved before opening the image, so that no more images are open than the budget allows
+        if (!acquire(memory, brickCacheMegabytes, cancelled)) {
+            return new Report(name, file, 0, "Cancelled");
+        }
+        int reservedMegabytes = brickCacheMegabytes;
+        long waitingDuration = System.nanoTime() - waitingStartTime;
+
+        String error = null;
+        try (ImageServer<BufferedImage> server = entry.getServerBuilder().build()) {
+            BrickCache cache = new BrickCache(brickCacheBytes);
+            ResliceExporter exporter = ResliceExporter.createAlongNormal(
+                    new ObliqueSampler(CachedBrickSource.createWithSummaryIndex(new ServerBrickSource(server), cache, new BrickSummaryIndex())),
+                    createPlane(server),
+                    1,
+                    1,
+                    slabThickness,
+                    slabProjection,
+                    0
+            );
+
+            int requiredMegabytes = toMegabytes(brickCacheBytes + exporter.estimateMemoryBytes(EXPORT_THREADS_PER_WORKER));
+            if (requiredMegabytes > memoryBudgetBytes / BYTES_PER_MEGABYTE) {
+                throw new IOException(String.format(
+                        "The export needs %d MB, but the memory budget is %d MB",
+                        requiredMegabytes,
+                        memoryBudgetBytes / BYTES_PER_MEGABYTE
+                ));
+            }
+
+            waitingStartTime = System.nanoTime();
+            if (memory.tryAcquire(requiredMegabytes - reservedMegabytes)) {
+                reservedMegabytes = requiredMegabytes;
+            } else {
+                // Waiting for the rest while keeping the brick cache reserved could deadlock workers waiting for each other.
+                // Nothing was read yet, so the brick cache is still empty
+                memory.release(reservedMegabytes);
+                reservedMegabytes = 0;
+                if (acquire(memory, requiredMegabytes, cancelled)) {
+                    reservedMegabytes = requiredMegabytes;
+                }
+            }
+            waitingDuration += System.nanoTime() - waitingStartTime;
+
+            if (reservedMegabytes == 0 || !exporter.export(file, EXPORT_THREADS_PER_WORKER, progress -> {}, cancelled)) {
+                error = "Cancelled";
+            }
+            cache.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted";
+        } catch (Exception e) {
+            logger.error("Cannot export {}", name, e);
+            error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        } finally {
+            memory.release(reservedMegabytes);
+        }
+
+        return new Report(name, file, (System.nanoTime() - startTime - waitingDuration) / 1e9, error);
+    }
+
+    /**
+     * Reserve memory from the budget, checking regularly whether the job was cancelled.
+     *
+     * @return whether the memory was reserved. If false, the job was cancelled or the thread interrupted
+     */
+    static boolean acquire(Semaphore memory, int megabytes, BooleanSupplier cancelled) {
+        try {
+            while (!memory.tryAcquire(megabytes, CANCELLATION_CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    static int toMegabytes(long bytes) {
+        // Rounding up with (bytes + BYTES_PER_MEGABYTE - 1) would overflow for very large sizes
+        long megabytes = bytes / BYTES_PER_MEGABYTE + (bytes % BYTES_PER_MEGABYTE == 0 ? 0 : 1);
+        return (int) Math.min(Integer.MAX_VALUE, megabytes);
+    }
+
+    /**
+     * Create a plane orthogonal to the normal of this job, located at the offset of this job from the center of an image.
+     * Only its position and orientation matter, as exported planes are cropped to the image.
+     */
+    private Rectangle createPlane(ImageServer<?> server) {
+        Point3D center = new Point3D((server.getWidth() - 1) / 2d, (server.getHeight() - 1) / 2d, (server.nZSlices() - 1) / 2d);
+        Point3D p0 = center.add(normal.multiply(offset));
+
+        // U x V must have the direction of the normal
+        Point3D u = normal.crossProduct(Math.abs(normal.getX()) < 0.9 ? new Point3D(1, 0, 0) : new Point3D(0, 1, 0)).normalize();
+        Point3D v = normal.crossProduct(u);
+        Point3D p1 = p0.add(u);
+        return new Rectangle(p0, p1, p1.add(v));
+    }
+
+    private static Report getReport(Future<Report> report) throws IOException {
+        try {
+            return report.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Append the row of a report to the report file, and flush it so that the row is kept if the job stops.
+     * This can be called by several workers at the same time.
+     */
+    static void writeReport(PrintWriter writer, Report report) {
+        synchronized (writer) {
+            writer.printf(
+                    Locale.ROOT,
+                    "%s,%s,%.3f,%s%n",
+                    quote(report.imageName()),
+                    quote(report.file().getFileName().toString()),
+                    report.durationSeconds(),
+                    report.error() == null ? "" : quote(report.error())
+            );
+            writer.flush();
+        }
+    }
+
+    private static String quote(String text) {
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,21 @@
+package qupath.ext.viewer.export;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A destination of the frames of a movie, for example a sequence of image files or a video encoder.
+ * Frames are provided in order, one at a time.
+ */
+public interface FrameSink extends Closeable {
+
+    /**
+     * Write a frame. The frame is not used after this function returns, so it doesn't need to be copied.
+     *
+     * @param index  the index of the frame in the movie
+     * @param frame  the frame to write
+     * @throws IOException when the frame cannot be written
+     */
+    void write(int index, BufferedImage frame) throws IOException;
+}
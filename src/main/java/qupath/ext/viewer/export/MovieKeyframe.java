@@ -0,0 +1,36 @@
+package qupath.ext.viewer.export;
+
+/**
+ * The pose of the slicer and of the camera at one point of a {@link MoviePath}.
+ *
+ * @param slicerTranslation  the translation of the slicer along the z-axis, as set by the translation slider of the viewer
+ * @param slicerXRotation  the rotation of the slicer around the x-axis, in degrees
+ * @param slicerYRotation  the rotation of the slicer around the y-axis, in degrees
+ * @param viewXRotation  the rotation of the scene around the x-axis, in degrees
+ * @param viewYRotation  the rotation of the scene around the y-axis, in degrees
+ */
+public record MovieKeyframe(
+        double slicerTranslation,
+        double slicerXRotation,
+        double slicerYRotation,
+        double viewXRotation,
+        double viewYRotation
+) {
+
+    /**
+     * Linearly interpolate between this keyframe and another one.
+     *
+     * @param other  the keyframe to interpolate to
+     * @param fraction  0 to get this keyframe, 1 to get the other keyframe
+     * @return the interpolated keyframe
+     */
+    public MovieKeyframe interpolate(MovieKeyframe other, double fraction) {
+        return new MovieKeyframe(
+                slicerTranslation + (other.slicerTranslation - slicerTranslation) * fraction,
+                slicerXRotation + (other.slicerXRotation - slicerXRotation) * fraction,
+                slicerYRotation + (other.slicerYRotation - slicerYRotation) * fraction,
+                viewXRotation + (other.viewXRotation - viewXRotation) * fraction,
+                viewYRotation + (other.viewYRotation - viewYRotation) * fraction
+        );
+    }
+}
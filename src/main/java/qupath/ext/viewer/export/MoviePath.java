@@ -0,0 +1,49 @@
+package qupath.ext.viewer.export;
+
+import java.util.List;
+
+/**
+ * A sequence of keyframes evenly spread over the frames of a movie. The poses of the frames
+ * located between two keyframes are linearly interpolated.
+ *
+ * @param keyframes  the keyframes of the movie. The first keyframe is the pose of the first frame,
+ *                   and the last keyframe the pose of the last frame
+ * @param numberOfFrames  the number of frames of the movie
+ */
+public record MoviePath(List<MovieKeyframe> keyframes, int numberOfFrames) {
+
+    /**
+     * Create a path.
+     *
+     * @throws IllegalArgumentException when there is no keyframe, or when the number of frames is less than 1
+     */
+    public MoviePath {
+        if (keyframes.isEmpty()) {
+            throw new IllegalArgumentException("A movie needs at least one keyframe");
+        }
+        if (numberOfFrames < 1) {
+            throw new IllegalArgumentException(String.format("A movie needs at least one frame (got %d)", numberOfFrames));
+        }
+        keyframes = List.copyOf(keyframes);
+    }
+
+    /**
+     * Get the pose of a frame.
+     *
+     * @param index  the index of the frame, between 0 and the number of frames - 1
+     * @return the pose of the frame
+     * @throws IndexOutOfBoundsException when the index is out of bounds
+     */
+    public MovieKeyframe getFrame(int index) {
+        if (index < 0 || index >= numberOfFrames) {
+            throw new IndexOutOfBoundsException(String.format("Frame %d doesn't exist in a movie of %d frames", index, numberOfFrames));
+        }
+        if (keyframes.size() == 1 || numberOfFrames == 1) {
+            return keyframes.get(0);
+        }
+
+        double position = (double) index / (numberOfFrames - 1) * (keyframes.size() - 1);
+        int keyframe = Math.min((int) position, keyframes.size() - 2);
+        return keyframes.get(keyframe).interpolate(keyframes.get(keyframe + 1), position - keyframe);
+    }
+}
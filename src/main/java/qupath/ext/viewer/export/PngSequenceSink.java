@@ -0,0 +1,40 @@
+package qupath.ext.viewer.export;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A {@link FrameSink} writing each frame to a PNG file named after its index (for example {@code frame-00042.png}),
+ * which most video encoders can read as an image sequence.
+ */
+public class PngSequenceSink implements FrameSink {
+
+    private final Path directory;
+    private final String prefix;
+
+    /**
+     * Create the sink. This creates the directory if it doesn't exist.
+     *
+     * @param directory  the directory where frames should be written. Existing frames with the same name are overwritten
+     * @param prefix  the text to write before the index of each frame in the file names
+     * @throws IOException when the directory cannot be created
+     */
+    public PngSequenceSink(Path directory, String prefix) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void write(int index, BufferedImage frame) throws IOException {
+        Path file = directory.resolve(String.format("%s%05d.png", prefix, index));
+        if (!ImageIO.write(frame, "png", file.toFile())) {
+            throw new IOException(String.format("No PNG writer available to write %s", file));
+        }
+    }
+
+    @Override
+    public void close() {}
+}
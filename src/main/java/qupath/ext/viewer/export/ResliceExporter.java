@@ -0,0 +1,434 @@
+package qupath.ext.viewer.export;
+
+import javafx.geometry.Point3D;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.SampledPlane;
+import qupath.ext.viewer.sampling.Slab;
+import qupath.ext.viewer.sampling.SlabProjection;
+import qupath.ext.viewer.sampling.SlabProjector;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.PixelType;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * <p>
+ *     Export a stack of parallel oblique planes of an image to a tiled, multi-page TIFF file.
+ * </p>
+ * <p>
+ *     Planes are split into strips having the height of the TIFF tiles. Strips are sampled in parallel by an
+ *     {@link ObliqueSampler} (and therefore read from cached bricks), and written in order by a {@link TiledTiffWriter}.
+ *     At most {@link #QUEUE_CAPACITY_PER_THREAD} strips per thread are sampled ahead of the strip being written,
+ *     and no more than what fits in {@link #READ_AHEAD_PROPORTION_OF_HEAP} of the maximum heap size, so the memory used
+ *     by an export doesn't depend on the number of planes or on their height, and doesn't grow without bound with the
+ *     number of processors. Planes can also be the projections of slabs centered on them, computed by a {@link SlabProjector}.
+ * </p>
+ * <p>
+ *     The file is written as a BigTIFF, so its size is not limited to 4 GB.
+ * </p>
+ * <p>
+ *     Each plane is written as one grayscale page per channel (or as one RGB page for RGB images), in the
+ *     order expected by ImageJ hyperstacks, whose metadata is written in the description of the first page.
+ *     8 and 16-bit unsigned images keep their pixel type, other images are exported as 32-bit floats.
+ * </p>
+ */
+public class ResliceExporter {
+
+    /**
+     * The maximum number of strips that each thread can sample ahead of the strip being written
+     */
+    public static final int QUEUE_CAPACITY_PER_THREAD = 2;
+    /**
+     * The maximum proportion of the maximum heap size that the strips sampled ahead of the strip being written can use.
+     * At least one strip is always sampled ahead
+     */
+    public static final double READ_AHEAD_PROPORTION_OF_HEAP = 0.25;
+    private static final int STRIP_HEIGHT = TiledTiffWriter.DEFAULT_TILE_SIZE;
+    private final ObliqueSampler sampler;
+    private final Rectangle firstPlane;
+    private final Point3D step;
+    private final int numberOfPlanes;
+    private final int width;
+    private final int height;
+    private final int t;
+    private final double slabThickness;
+    private final SlabProjection slabProjection;
+    private final int nChannels;
+    private final int numberOfStripsPerPlane;
+
+    /**
+     * Create an exporter.
+     *
+     * @param sampler  the sampler of the image to export
+     * @param firstPlane  the first plane to export, in full resolution pixel coordinates
+     * @param step  the translation between two consecutive planes, in full resolution pixel coordinates
+     * @param numberOfPlanes  the number of planes to export
+     * @param width  the number of samples on the x-axis of each plane
+     * @param height  the number of samples on the y-axis of each plane
+     * @param t  the time point to export
+     * @throws IllegalArgumentException when the number of planes, the width, or the height is less than 1
+     */
+    public ResliceExporter(ObliqueSampler sampler, Rectangle firstPlane, Point3D step, int numberOfPlanes, int width, int height, int t) {
+        this(sampler, firstPlane, step, numberOfPlanes, width, height, 0, null, t);
+    }
+
+    /**
+     * Create an exporter of slab projections. See {@link #ResliceExporter(ObliqueSampler, Rectangle, Point3D, int, int, int, int)}
+     * for the other parameters.
+     *
+     * @param slabThickness  the thickness of the slab projected on each exported plane, in full resolution pixels,
+     *                       or 0 to export the voxels each plane goes through
+     * @param slabProjection  how the voxels of each slab are projected. It is not used when the thickness is 0
+     * @throws IllegalArgumentException when the number of planes, the width, or the height is less than 1,
+     * or when the thickness is negative
+     */
+    public ResliceExporter(
+            ObliqueSampler sampler,
+            Rectangle firstPlane,
+            Point3D step,
+            int numberOfPlanes,
+            int width,
+            int height,
+            double slabThickness,
+            SlabProjection slabProjection,
+            int t
+    ) {
+        if (!(slabThickness >= 0)) {
+            throw new IllegalArgumentException(String.format("The thickness of the slab cannot be negative (got %f)", slabThickness));
+        }
+        if (numberOfPlanes < 1 || width < 1 || height < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "The number of planes (%d), the width (%d) and the height (%d) must be at least 1", numberOfPlanes, width, height
+            ));
+        }
+
+        this.sampler = sampler;
+        this.firstPlane = firstPlane;
+        this.step = step;
+        this.numberOfPlanes = numberOfPlanes;
+        this.width = width;
+        this.height = height;
+        this.t = t;
+        this.slabThickness = slabThickness;
+        this.slabProjection = slabProjection;
+        this.nChannels = sampler.getServer().isRGB() ? 3 : sampler.getServer().nChannels();
+        this.numberOfStripsPerPlane = (height + STRIP_HEIGHT - 1) / STRIP_HEIGHT;
+    }
+
+    /**
+     * Create an exporter of planes parallel to a plane, centered on it, and cropped to the part of the
+     * image they go through. Planes are sampled with one sample per full resolution pixel.
+     *
+     * @param sampler  the sampler of the image to export
+     * @param centerPlane  a plane giving the orientation of the exported planes, in full resolution pixel coordinates.
+     *                     Only its position and orientation are used, not its extent
+     * @param spacing  the distance between two consecutive planes, in full resolution pixels
+     * @param numberOfPlanes  the number of planes to export
+     * @param t  the time point to export
+     * @return a new exporter
+     * @throws IllegalArgumentException when the spacing is not positive or when the number of planes is less than 1
+     */
+    public static ResliceExporter createAlongNormal(ObliqueSampler sampler, Rectangle centerPlane, double spacing, int numberOfPlanes, int t) {
+        return createAlongNormal(sampler, centerPlane, spacing, numberOfPlanes, 0, null, t);
+    }
+
+    /**
+     * Create an exporter of slab projections parallel to a plane. See {@link #createAlongNormal(ObliqueSampler, Rectangle, double, int, int)}
+     * for the other parameters.
+     *
+     * @param slabThickness  the thickness of the slab projected on each exported plane, in full resolution pixels,
+     *                       or 0 to export the voxels each plane goes through
+     * @param slabProjection  how the voxels of each slab are projected. It is not used when the thickness is 0
+     * @return a new exporter
+     * @throws IllegalArgumentException when the spacing is not positive, when the number of planes is less than 1,
+     * or when the thickness is negative
+     */
+    public static ResliceExporter createAlongNormal(
+            ObliqueSampler sampler,
+            Rectangle centerPlane,
+            double spacing,
+            int numberOfPlanes,
+            double slabThickness,
+            SlabProjection slabProjection,
+            int t
+    ) {
+        if (!(spacing > 0)) {
+            throw new IllegalArgumentException(String.format("The spacing between planes must be positive (got %f)", spacing));
+        }
+
+        Point3D xAxis = centerPlane.getU().normalize();
+        Point3D normal = centerPlane.getU().crossProduct(centerPlane.getV()).normalize();
+        Point3D yAxis = normal.crossProduct(xAxis);
+
+        ImageServer<BufferedImage> server = sampler.getServer();
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int corner=0; corner<8; corner++) {
+            Point3D point = new Point3D(
+                    (corner & 1) == 0 ? 0 : server.getWidth() - 1,
+                    (corner & 2) == 0 ? 0 : server.getHeight() - 1,
+                    (corner & 4) == 0 ? 0 : server.nZSlices() - 1
+            );
+            minX = Math.min(minX, xAxis.dotProduct(point));
+            maxX = Math.max(maxX, xAxis.dotProduct(point));
+            minY = Math.min(minY, yAxis.dotProduct(point));
+            maxY = Math.max(maxY, yAxis.dotProduct(point));
+        }
+        int width = (int) Math.ceil(maxX - minX) + 1;
+        int height = (int) Math.ceil(maxY - minY) + 1;
+
+        double firstPosition = normal.dotProduct(centerPlane.p0()) - (numberOfPlanes - 1) * spacing / 2;
+        Point3D p0 = xAxis.multiply(minX).add(yAxis.multiply(minY)).add(normal.multiply(firstPosition));
+        Point3D p1 = p0.add(xAxis.multiply(width));
+        Point3D p2 = p1.add(yAxis.multiply(height));
+
+        return new ResliceExporter(sampler, new Rectangle(p0, p1, p2), normal.multiply(spacing), numberOfPlanes, width, height, slabThickness, slabProjection, t);
+    }
+
+    /**
+     * @return the number of planes exported by this exporter
+     */
+    public int getNumberOfPlanes() {
+        return numberOfPlanes;
+    }
+
+    /**
+     * @return the number of samples on the x-axis of each exported plane
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the number of samples on the y-axis of each exported plane
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Estimate the memory used by {@link #export(Path, DoubleConsumer, BooleanSupplier)}, not counting the bricks
+     * read from the image: the samples and the pages of the strips sampled ahead of the strip being written.
+     *
+     * @return an estimate of the number of bytes used by an export
+     */
+    public long estimateMemoryBytes() {
+        return estimateMemoryBytes(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Same as {@link #estimateMemoryBytes()}, but for {@link #export(Path, int, DoubleConsumer, BooleanSupplier)}.
+     *
+     * @param numberOfThreads  the number of threads sampling planes
+     * @return an estimate of the number of bytes used by an export
+     * @throws IllegalArgumentException when the number of threads is less than 1
+     */
+    public long estimateMemoryBytes(int numberOfThreads) {
+        checkNumberOfThreads(numberOfThreads);
+        return (getNumberOfStripsAhead(numberOfThreads) + 1) * estimateStripBytes();
+    }
+
+    /**
+     * Export the planes. This function reads the image, so it shouldn't be called from the JavaFX Application Thread.
+     *
+     * @param path  the path of the TIFF file to write. It is overwritten if it already exists
+     * @param onProgress  a function called each time a plane is written, with the proportion (between 0 and 1)
+     *                    of planes written so far
+     * @param cancelled  a function called before writing each strip of a plane. If it returns true, the export stops
+     *                   and the file is deleted (as it is when an error occurs)
+     * @return whether all planes were written
+     * @throws IOException when an error occurs while reading the image or writing the file
+     */
+    public boolean export(Path path, DoubleConsumer onProgress, BooleanSupplier cancelled) throws IOException {
+        return export(path, Runtime.getRuntime().availableProcessors(), onProgress, cancelled);
+    }
+
+    /**
+     * Same as {@link #export(Path, DoubleConsumer, BooleanSupplier)}, but with a chosen number of threads sampling
+     * planes instead of one per processor. This is useful when several exports run at the same time.
+     *
+     * @param numberOfThreads  the number of threads sampling planes
+     * @throws IllegalArgumentException when the number of threads is less than 1
+     */
+    public boolean export(Path path, int numberOfThreads, DoubleConsumer onProgress, BooleanSupplier cancelled) throws IOException {
+        checkNumberOfThreads(numberOfThreads);
+
+        int nStripsAhead = getNumberOfStripsAhead(numberOfThreads);
+        int numberOfStrips = numberOfPlanes * numberOfStripsPerPlane;
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, ThreadTools.createThreadFactory("viewer-reslice-export-", true));
+        Queue<Future<List<Raster>>> pendingStrips = new ArrayDeque<>();
+        int nextStrip = 0;
+        boolean completed = false;
+
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TiledTiffWriter.DEFAULT_TILE_SIZE, createImageJDescription())) {
+            for (int strip=0; strip<numberOfStrips; strip++) {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+
+                while (nextStrip < numberOfStrips && pendingStrips.size() < nStripsAhead) {
+                    int index = nextStrip++;
+                    pendingStrips.add(executor.submit(() -> createStrips(index / numberOfStripsPerPlane, index % numberOfStripsPerPlane)));
+                }
+
+                if (strip % numberOfStripsPerPlane == 0) {
+                    writer.startPages(sampler.getServer().isRGB() ? 1 : nChannels, width, height);
+                }
+                writer.writeStrip(getStrips(pendingStrips.remove()));
+                if ((strip + 1) % numberOfStripsPerPlane == 0) {
+                    onProgress.accept((double) ((strip + 1) / numberOfStripsPerPlane) / numberOfPlanes);
+                }
+            }
+            completed = true;
+        } finally {
+            executor.shutdownNow();
+            if (!completed) {
+                Files.deleteIfExists(path);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of strips that can be sampled ahead of the strip being written, given the number of
+     * threads sampling strips and the memory available for read-ahead
+     */
+    private int getNumberOfStripsAhead(int nThreads) {
+        long maxStripsInBudget = (long) (READ_AHEAD_PROPORTION_OF_HEAP * Runtime.getRuntime().maxMemory()) / estimateStripBytes();
+
+        return (int) Math.max(1, Math.min(Math.min((long) numberOfPlanes * numberOfStripsPerPlane, (long) nThreads * QUEUE_CAPACITY_PER_THREAD), maxStripsInBudget));
+    }
+
+    /**
+     * @return an estimate of the number of bytes used by one strip while it is sampled and waiting to be written
+     */
+    private long estimateStripBytes() {
+        // Samples are floats, and slab projections also hold the projected tiles
+        long bytesPerSample = (slabThickness > 0 ? 2L : 1L) * Float.BYTES + getBytesPerPixel(sampler.getServer().getPixelType());
+
+        return bytesPerSample * width * Math.min(STRIP_HEIGHT, height) * nChannels;
+    }
+
+    /**
+     * Sample one strip of a plane.
+     *
+     * @return the strip of each page of the plane: one RGB strip for RGB images, or one grayscale strip per channel
+     */
+    private List<Raster> createStrips(int planeIndex, int stripIndex) throws IOException {
+        int y = stripIndex * STRIP_HEIGHT;
+        int rows = Math.min(STRIP_HEIGHT, height - y);
+        Point3D translation = step.multiply(planeIndex);
+        Rectangle plane = new Rectangle(
+                firstPlane.p0().add(translation),
+                firstPlane.p1().add(translation),
+                firstPlane.p2().add(translation)
+        );
+        // Sample (i, j) of a plane is at p0 + i * u / width + j * v / height, so a strip is a rectangle with the same u
+        Point3D stripOffset = plane.getV().multiply((double) y / height);
+        Rectangle strip = new Rectangle(
+                plane.p0().add(stripOffset),
+                plane.p1().add(stripOffset),
+                plane.p1().add(stripOffset).add(plane.getV().multiply((double) rows / height))
+        );
+        // The slab is the one of the whole plane, so that all strips project the same slab
+        SampledPlane samples = slabThickness > 0 ?
+                new SlabProjector(sampler, 0).project(Slab.create(plane, slabThickness, slabProjection), strip, t, width, rows) :
+                sampler.sample(strip, t, 0, width, rows);
+
+        if (sampler.getServer().isRGB()) {
+            WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, rows, 3, null);
+            for (int c=0; c<3; c++) {
+                raster.setSamples(0, 0, width, rows, c, samples.values()[c]);
+            }
+            return List.of(raster);
+        } else {
+            List<Raster> strips = new ArrayList<>();
+            for (int c=0; c<nChannels; c++) {
+                ComponentColorModel colorModel = new ComponentColorModel(
+                        ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                        false,
+                        false,
+                        Transparency.OPAQUE,
+                        getDataType(sampler.getServer().getPixelType())
+                );
+                WritableRaster raster = colorModel.createCompatibleWritableRaster(width, rows);
+                raster.setSamples(0, 0, width, rows, 0, samples.values()[c]);
+                strips.add(raster);
+            }
+            return strips;
+        }
+    }
+
+    private String createImageJDescription() {
+        if (sampler.getServer().isRGB()) {
+            return String.format("ImageJ=1.11a\nimages=%d\nslices=%d\n", numberOfPlanes, numberOfPlanes);
+        } else {
+            return String.format(
+                    "ImageJ=1.11a\nimages=%d\nchannels=%d\nslices=%d\nhyperstack=true\nmode=grayscale\n",
+                    nChannels * numberOfPlanes,
+                    nChannels,
+                    numberOfPlanes
+            );
+        }
+    }
+
+    private static List<Raster> getStrips(Future<List<Raster>> strips) throws IOException {
+        try {
+            return strips.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            } else {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    private static void checkNumberOfThreads(int numberOfThreads) {
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException(String.format("The number of threads must be at least 1 (got %d)", numberOfThreads));
+        }
+    }
+
+    private static int getBytesPerPixel(PixelType pixelType) {
+        return switch (pixelType) {
+            case UINT8 -> Byte.BYTES;
+            case UINT16 -> Short.BYTES;
+            default -> Float.BYTES;
+        };
+    }
+
+    private static int getDataType(PixelType pixelType) {
+        return switch (pixelType) {
+            case UINT8 -> DataBuffer.TYPE_BYTE;
+            case UINT16 -> DataBuffer.TYPE_USHORT;
+            default -> DataBuffer.TYPE_FLOAT;
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package qupath.ext.viewer.export;
+
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+
+/**
+ * <p>
+ *     An RGB image whose pixels are only computed when they are read, one horizontal strip at a time.
+ * </p>
+ * <p>
+ *     Only the last computed strip is kept in memory, so an image of arbitrary size can be written
+ *     (for example by a {@link TiledTiffWriter}) without being held in memory, as long as it is read
+ *     from top to bottom with regions that don't cross the border of a strip. Other regions are still
+ *     supported, but may compute the same strip several times.
+ * </p>
+ * <p>
+ *     Errors occurring while computing a strip are thrown as {@link UncheckedIOException}, as the
+ *     functions of {@link RenderedImage} cannot throw checked exceptions.
+ * </p>
+ */
+public class StripedImage implements RenderedImage {
+
+    private static final ColorModel COLOR_MODEL = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getColorModel();
+    private final int width;
+    private final int height;
+    private final int stripHeight;
+    private final StripRenderer renderer;
+    private final SampleModel sampleModel;
+    private int lastStripIndex = -1;
+    private Raster lastStrip;
+
+    /**
+     * A function computing the pixels of a strip.
+     */
+    @FunctionalInterface
+    public interface StripRenderer {
+
+        /**
+         * Compute the pixels of a strip.
+         *
+         * @param y  the y-coordinate of the first row of the strip
+         * @param height  the number of rows of the strip
+         * @return the RGB values of the pixels of the strip, packed in integers (as in {@link BufferedImage#TYPE_INT_RGB})
+         *         and stored row by row. Its length must be the width of the image multiplied by the height of the strip
+         * @throws IOException when the strip cannot be computed
+         */
+        int[] render(int y, int height) throws IOException;
+    }
+
+    /**
+     * Create the image. This doesn't compute any pixel.
+     *
+     * @param width  the width of the image
+     * @param height  the height of the image
+     * @param stripHeight  the number of rows of each strip. The last strip can have fewer rows
+     * @param renderer  the function computing the pixels of each strip. It is called from the thread reading the image
+     * @throws IllegalArgumentException when the width, the height, or the height of the strips is less than 1
+     */
+    public StripedImage(int width, int height, int stripHeight, StripRenderer renderer) {
+        if (width < 1 || height < 1 || stripHeight < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "The width (%d), the height (%d) and the strip height (%d) must be at least 1", width, height, stripHeight
+            ));
+        }
+
+        this.width = width;
+        this.height = height;
+        this.stripHeight = stripHeight;
+        this.renderer = renderer;
+        this.sampleModel = COLOR_MODEL.createCompatibleSampleModel(width, stripHeight);
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return COLOR_MODEL;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return (height + stripHeight - 1) / stripHeight;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return stripHeight;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    @Override
+    public synchronized Raster getTile(int tileX, int tileY) {
+        if (tileX != 0 || tileY < 0 || tileY >= getNumYTiles()) {
+            throw new IllegalArgumentException(String.format("The tile (%d, %d) doesn't exist", tileX, tileY));
+        }
+
+        if (tileY != lastStripIndex) {
+            int y = tileY * stripHeight;
+            int rows = Math.min(stripHeight, height - y);
+
+            int[] pixels;
+            try {
+                pixels = renderer.render(y, rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            WritableRaster strip = COLOR_MODEL.createCompatibleWritableRaster(width, rows).createWritableTranslatedChild(0, y);
+            strip.setDataElements(0, y, width, rows, pixels);
+            lastStrip = strip;
+            lastStripIndex = tileY;
+        }
+        return lastStrip;
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        WritableRaster raster = COLOR_MODEL.createCompatibleWritableRaster(rect.width, rect.height)
+                .createWritableTranslatedChild(rect.x, rect.y);
+        copyData(raster);
+        return raster;
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            raster = COLOR_MODEL.createCompatibleWritableRaster(width, height);
+        }
+
+        Rectangle region = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+        if (region.isEmpty()) {
+            return raster;
+        }
+        for (int tileY = region.y / stripHeight; tileY <= (region.y + region.height - 1) / stripHeight; tileY++) {
+            Raster strip = getTile(0, tileY);
+            Rectangle part = strip.getBounds().intersection(region);
+            raster.setDataElements(0, 0, strip.createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+        }
+        return raster;
+    }
+}
@@ -0,0 +1,443 @@
+package qupath.ext.viewer.export;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ *     A writer of tiled, multi-page <a href="https://www.awaresystems.be/imaging/tiff/bigtiff.html">BigTIFF</a> files.
+ *     BigTIFF uses 64-bit offsets, so the size of the written file is not limited to 4 GB.
+ * </p>
+ * <p>
+ *     Pages are written strip by strip, a strip being a row of tiles: each strip is compressed with Deflate
+ *     and written as soon as it is provided, and the directory of a page is written once its last strip is.
+ *     Several pages of the same size can be written at the same time with {@link #startPages(int, int, int)}
+ *     and {@link #writeStrip(List)}, for example the channels of an image sampled one strip at a time.
+ *     The memory used by this writer therefore depends on the size of a strip, but not on the height
+ *     or the number of pages.
+ * </p>
+ * <p>
+ *     Pages can have one sample per pixel (grayscale) or three (RGB), stored as 8 or 16-bit unsigned integers
+ *     or as 32-bit floats.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ */
+public class TiledTiffWriter implements Closeable {
+
+    /**
+     * The default width and height of the tiles of the pages
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+    private static final int BIG_TIFF_MAGIC_NUMBER = 43;
+    private static final int BIG_TIFF_OFFSET_SIZE = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 20;
+    private static final int IMAGE_WIDTH = 256;
+    private static final int IMAGE_LENGTH = 257;
+    private static final int BITS_PER_SAMPLE = 258;
+    private static final int COMPRESSION = 259;
+    private static final int PHOTOMETRIC_INTERPRETATION = 262;
+    private static final int IMAGE_DESCRIPTION = 270;
+    private static final int SAMPLES_PER_PIXEL = 277;
+    private static final int PLANAR_CONFIGURATION = 284;
+    private static final int TILE_WIDTH = 322;
+    private static final int TILE_LENGTH = 323;
+    private static final int TILE_OFFSETS = 324;
+    private static final int TILE_BYTE_COUNTS = 325;
+    private static final int SAMPLE_FORMAT = 339;
+    private static final int ADOBE_DEFLATE_COMPRESSION = 8;
+    private static final int PHOTOMETRIC_BLACK_IS_ZERO = 1;
+    private static final int PHOTOMETRIC_RGB = 2;
+    private static final int PLANAR_CONFIGURATION_CHUNKY = 1;
+    private static final int SAMPLE_FORMAT_UNSIGNED = 1;
+    private static final int SAMPLE_FORMAT_FLOAT = 3;
+    private static final int ASCII = 2;
+    private static final int SHORT = 3;
+    private static final int LONG = 4;
+    private static final int LONG8 = 16;
+    private final Path path;
+    private final FileChannel channel;
+    private final int tileSize;
+    private final String description;
+    private final Deflater deflater = new Deflater();
+    private final List<Page> pages = new ArrayList<>();
+    private long position = HEADER_SIZE;
+    private long nextDirectoryOffsetPosition = BIG_TIFF_OFFSET_SIZE;
+    private int numberOfPages = 0;
+
+    private static class Page {
+
+        private final int width;
+        private final int height;
+        private final long[] tileOffsets;
+        private final long[] tileByteCounts;
+        private int samplesPerPixel;
+        private int bitsPerSample;
+        private int sampleFormat;
+        private int rowsWritten = 0;
+
+        public Page(int width, int height, int numberOfTiles) {
+            this.width = width;
+            this.height = height;
+            this.tileOffsets = new long[numberOfTiles];
+            this.tileByteCounts = new long[numberOfTiles];
+        }
+    }
+
+    /**
+     * Create a writer. This creates (or overwrites) the file.
+     *
+     * @param path  the path of the TIFF file to write
+     * @param tileSize  the width and height of the tiles of the pages. It must be a positive multiple of 16
+     * @param description  a text to write in the ImageDescription tag of the first page (for example ImageJ
+     *                     metadata), or null to not write any description
+     * @throws IOException when the file cannot be created
+     * @throws IllegalArgumentException when the tile size is not a positive multiple of 16
+     */
+    public TiledTiffWriter(Path path, int tileSize, String description) throws IOException {
+        if (tileSize <= 0 || tileSize % 16 != 0) {
+            throw new IllegalArgumentException(String.format("The tile size must be a positive multiple of 16 (got %d)", tileSize));
+        }
+
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.tileSize = tileSize;
+        this.description = description;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putShort((short) 0x4949);
+        header.putShort((short) BIG_TIFF_MAGIC_NUMBER);
+        header.putShort((short) BIG_TIFF_OFFSET_SIZE);
+        header.putShort((short) 0);
+        // The offset of the first directory is set when the first page is complete
+        header.putLong(0);
+        write(header.flip(), 0);
+    }
+
+    /**
+     * Append a page to the file. The image is read one strip at a time (see {@link RenderedImage#getData(Rectangle)}),
+     * from top to bottom.
+     *
+     * @param image  the image to write as a new page
+     * @throws IOException when an error occurs while writing the page
+     * @throws IllegalStateException when pages started with {@link #startPages(int, int, int)} are not complete
+     * @throws IllegalArgumentException when the pixels of the image cannot be written (see the description of this class)
+     */
+    public void writePage(RenderedImage image) throws IOException {
+        startPages(1, image.getWidth(), image.getHeight());
+
+        for (int y=0; y<image.getHeight(); y+=tileSize) {
+            Raster strip = image.getData(new Rectangle(
+                    image.getMinX(),
+                    image.getMinY() + y,
+                    image.getWidth(),
+                    Math.min(tileSize, image.getHeight() - y)
+            ));
+            writeStrip(List.of(strip));
+        }
+    }
+
+    /**
+     * Start appending pages of the same size to the file. Their pixels must then be provided with
+     * {@link #writeStrip(List)}, one strip of each page at a time, until the pages are complete.
+     *
+     * @param numberOfPages  the number of pages to append
+     * @param width  the width of the pages
+     * @param height  the height of the pages
+     * @throws IllegalStateException when previously started pages are not complete
+     * @throws IllegalArgumentException when the number of pages, the width, or the height is less than 1
+     */
+    public void startPages(int numberOfPages, int width, int height) {
+        if (!pages.isEmpty()) {
+            throw new IllegalStateException(String.format("%d pages are not complete", pages.size()));
+        }
+        if (numberOfPages < 1 || width < 1 || height < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "The number of pages (%d), the width (%d) and the height (%d) must be at least 1", numberOfPages, width, height
+            ));
+        }
+
+        int numberOfTiles = ceilDiv(width, tileSize) * ceilDiv(height, tileSize);
+        for (int i=0; i<numberOfPages; i++) {
+            pages.add(new Page(width, height, numberOfTiles));
+        }
+    }
+
+    /**
+     * Write the next strip of each page started with {@link #startPages(int, int, int)}. A strip contains the
+     * next rows of a page: as many as the tile size, or the remaining rows for the last strip. Once the
+     * last strip is written, the pages are complete.
+     *
+     * @param strips  the next strip of each started page, in the order of the pages. The bounds of the rasters are
+     *                not used, only their size
+     * @throws IOException when an error occurs while writing the strips
+     * @throws IllegalStateException when no page is started
+     * @throws IllegalArgumentException when the number of strips or their size is not the expected one, or when
+     * their pixels cannot be written (see the description of this class)
+     */
+    public void writeStrip(List<? extends Raster> strips) throws IOException {
+        if (pages.isEmpty()) {
+            throw new IllegalStateException("No page started");
+        }
+        if (strips.size() != pages.size()) {
+            throw new IllegalArgumentException(String.format("Got %d strips for %d pages", strips.size(), pages.size()));
+        }
+
+        for (int i=0; i<pages.size(); i++) {
+            writeStrip(pages.get(i), strips.get(i));
+        }
+
+        if (pages.get(0).rowsWritten == pages.get(0).height) {
+            for (Page page: pages) {
+                writeDirectory(page);
+                numberOfPages++;
+            }
+            pages.clear();
+        }
+    }
+
+    /**
+     * @return the number of complete pages written so far
+     */
+    public int getNumberOfPages() {
+        return numberOfPages;
+    }
+
+    /**
+     * Release the resources of this writer. Pages that are not complete are not part of the file.
+     *
+     * @throws IOException when an error occurs while closing the file, or when the file doesn't contain
+     * all the bytes that were written (for example because the disk is full)
+     */
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        channel.close();
+
+        // Safety net: check that the file contains everything that was written, as some (for example network)
+        // file systems report write errors late
+        long fileSize = Files.size(path);
+        if (fileSize != position) {
+            throw new IOException(String.format("The TIFF file %s contains %d bytes instead of the %d bytes written", path, fileSize, position));
+        }
+    }
+
+    private void writeStrip(Page page, Raster strip) throws IOException {
+        int rows = Math.min(tileSize, page.height - page.rowsWritten);
+        if (strip.getWidth() != page.width || strip.getHeight() != rows) {
+            throw new IllegalArgumentException(String.format(
+                    "The strip has a size of %d x %d pixels instead of %d x %d", strip.getWidth(), strip.getHeight(), page.width, rows
+            ));
+        }
+        setFormat(page, strip.getSampleModel());
+
+        int bytesPerSample = page.bitsPerSample / 8;
+        ByteBuffer tile = ByteBuffer.allocate(tileSize * tileSize * page.samplesPerPixel * bytesPerSample).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] compressedTile = new byte[tile.capacity() + tile.capacity() / 1000 + 64];
+        int tileIndex = page.rowsWritten / tileSize * ceilDiv(page.width, tileSize);
+
+        for (int x=0; x<page.width; x+=tileSize) {
+            int columns = Math.min(tileSize, page.width - x);
+            Arrays.fill(tile.array(), (byte) 0);
+
+            if (page.sampleFormat == SAMPLE_FORMAT_FLOAT) {
+                float[] samples = strip.getPixels(strip.getMinX() + x, strip.getMinY(), columns, rows, (float[]) null);
+                for (int j=0; j<rows; j++) {
+                    tile.position(j * tileSize * page.samplesPerPixel * bytesPerSample);
+                    for (int i=0; i<columns * page.samplesPerPixel; i++) {
+                        tile.putFloat(samples[j * columns * page.samplesPerPixel + i]);
+                    }
+                }
+            } else {
+                int[] samples = strip.getPixels(strip.getMinX() + x, strip.getMinY(), columns, rows, (int[]) null);
+                for (int j=0; j<rows; j++) {
+                    tile.position(j * tileSize * page.samplesPerPixel * bytesPerSample);
+                    for (int i=0; i<columns * page.samplesPerPixel; i++) {
+                        if (bytesPerSample == 1) {
+                            tile.put((byte) samples[j * columns * page.samplesPerPixel + i]);
+                        } else {
+                            tile.putShort((short) samples[j * columns * page.samplesPerPixel + i]);
+                        }
+                    }
+                }
+            }
+
+            deflater.reset();
+            deflater.setInput(tile.array());
+            deflater.finish();
+            int compressedSize = 0;
+            while (!deflater.finished()) {
+                if (compressedSize == compressedTile.length) {
+                    compressedTile = Arrays.copyOf(compressedTile, 2 * compressedTile.length);
+                }
+                compressedSize += deflater.deflate(compressedTile, compressedSize, compressedTile.length - compressedSize);
+            }
+
+            page.tileOffsets[tileIndex] = position;
+            page.tileByteCounts[tileIndex] = compressedSize;
+            append(ByteBuffer.wrap(compressedTile, 0, compressedSize));
+            tileIndex++;
+        }
+
+        page.rowsWritten += rows;
+    }
+
+    private static void setFormat(Page page, SampleModel sampleModel) {
+        int samplesPerPixel = sampleModel.getNumBands();
+        int bitsPerSample = sampleModel.getSampleSize(0);
+        int sampleFormat = sampleModel.getDataType() == DataBuffer.TYPE_FLOAT ? SAMPLE_FORMAT_FLOAT : SAMPLE_FORMAT_UNSIGNED;
+        boolean supported = (samplesPerPixel == 1 || samplesPerPixel == 3) && switch (sampleModel.getDataType()) {
+            case DataBuffer.TYPE_BYTE, DataBuffer.TYPE_USHORT, DataBuffer.TYPE_INT -> bitsPerSample == 8 || bitsPerSample == 16;
+            case DataBuffer.TYPE_FLOAT -> bitsPerSample == 32;
+            default -> false;
+        };
+        for (int band=1; band<samplesPerPixel; band++) {
+            supported &= sampleModel.getSampleSize(band) == bitsPerSample;
+        }
+        if (!supported) {
+            throw new IllegalArgumentException(String.format(
+                    "Pixels with %d samples of %d bits (data type %d) are not supported", samplesPerPixel, bitsPerSample, sampleModel.getDataType()
+            ));
+        }
+
+        if (page.rowsWritten == 0) {
+            page.samplesPerPixel = samplesPerPixel;
+            page.bitsPerSample = bitsPerSample;
+            page.sampleFormat = sampleFormat;
+        } else if (page.samplesPerPixel != samplesPerPixel || page.bitsPerSample != bitsPerSample || page.sampleFormat != sampleFormat) {
+            throw new IllegalArgumentException("All strips of a page must have the same pixel type");
+        }
+    }
+
+    /**
+     * Write the directory of a complete page after the data written so far, and link it to the previous directory.
+     */
+    private void writeDirectory(Page page) throws IOException {
+        long tileOffsetsOffset = appendLongs(page.tileOffsets);
+        long tileByteCountsOffset = appendLongs(page.tileByteCounts);
+        byte[] descriptionBytes = numberOfPages == 0 && description != null ? (description + "\0").getBytes(StandardCharsets.ISO_8859_1) : null;
+        long descriptionOffset = 0;
+        if (descriptionBytes != null && descriptionBytes.length > 8) {
+            descriptionOffset = position;
+            append(ByteBuffer.wrap(descriptionBytes));
+        }
+        alignPosition();
+
+        int nEntries = descriptionBytes == null ? 12 : 13;
+        ByteBuffer directory = ByteBuffer.allocate(8 + nEntries * ENTRY_SIZE + 8).order(ByteOrder.LITTLE_ENDIAN);
+        directory.putLong(nEntries);
+        // Entries must be sorted by tag
+        putEntry(directory, IMAGE_WIDTH, LONG, 1, page.width);
+        putEntry(directory, IMAGE_LENGTH, LONG, 1, page.height);
+        putShorts(directory, BITS_PER_SAMPLE, page.samplesPerPixel, page.bitsPerSample);
+        putEntry(directory, COMPRESSION, SHORT, 1, ADOBE_DEFLATE_COMPRESSION);
+        putEntry(directory, PHOTOMETRIC_INTERPRETATION, SHORT, 1, page.samplesPerPixel == 3 ? PHOTOMETRIC_RGB : PHOTOMETRIC_BLACK_IS_ZERO);
+        if (descriptionBytes != null) {
+            putEntry(directory, IMAGE_DESCRIPTION, ASCII, descriptionBytes.length, descriptionOffset);
+            if (descriptionOffset == 0) {
+                // A short description is stored in the entry itself
+                directory.put(directory.position() - 8, descriptionBytes);
+            }
+        }
+        putEntry(directory, SAMPLES_PER_PIXEL, SHORT, 1, page.samplesPerPixel);
+        putEntry(directory, PLANAR_CONFIGURATION, SHORT, 1, PLANAR_CONFIGURATION_CHUNKY);
+        putEntry(directory, TILE_WIDTH, LONG, 1, tileSize);
+        putEntry(directory, TILE_LENGTH, LONG, 1, tileSize);
+        putEntry(directory, TILE_OFFSETS, LONG8, page.tileOffsets.length, page.tileOffsets.length == 1 ? page.tileOffsets[0] : tileOffsetsOffset);
+        putEntry(directory, TILE_BYTE_COUNTS, LONG8, page.tileByteCounts.length, page.tileByteCounts.length == 1 ? page.tileByteCounts[0] : tileByteCountsOffset);
+        putShorts(directory, SAMPLE_FORMAT, page.samplesPerPixel, page.sampleFormat);
+        // Offset of the next directory, set when the next page is complete
+        directory.putLong(0);
+
+        long directoryOffset = position;
+        append(directory.flip());
+
+        write(ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, directoryOffset), nextDirectoryOffsetPosition);
+        nextDirectoryOffsetPosition = directoryOffset + 8 + (long) nEntries * ENTRY_SIZE;
+    }
+
+    private static void putEntry(ByteBuffer directory, int tag, int type, long count, long value) {
+        directory.putShort((short) tag);
+        directory.putShort((short) type);
+        directory.putLong(count);
+        switch (type) {
+            case SHORT -> directory.putShort((short) value).putShort((short) 0).putInt(0);
+            case LONG -> directory.putInt((int) value).putInt(0);
+            default -> directory.putLong(value);
+        }
+    }
+
+    /**
+     * Add an entry containing the same short value once per sample. Up to four values fit in the entry.
+     */
+    private static void putShorts(ByteBuffer directory, int tag, int samplesPerPixel, int value) {
+        directory.putShort((short) tag);
+        directory.putShort((short) SHORT);
+        directory.putLong(samplesPerPixel);
+        for (int i=0; i<4; i++) {
+            directory.putShort((short) (i < samplesPerPixel ? value : 0));
+        }
+    }
+
+    /**
+     * Append an array of 64-bit values, unless it fits in a directory entry.
+     *
+     * @return the offset of the array in the file, or 0 if it was not appended
+     */
+    private long appendLongs(long[] values) throws IOException {
+        if (values.length == 1) {
+            return 0;
+        }
+
+        alignPosition();
+        long offset = position;
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asLongBuffer().put(values);
+        append(buffer);
+        return offset;
+    }
+
+    /**
+     * Values must start at an even offset of the file.
+     */
+    private void alignPosition() throws IOException {
+        if (position % 2 != 0) {
+            append(ByteBuffer.allocate(1));
+        }
+    }
+
+    private void append(ByteBuffer buffer) throws IOException {
+        int size = buffer.remaining();
+        write(buffer, position);
+        position += size;
+    }
+
+    private void write(ByteBuffer buffer, long offset) throws IOException {
+        long start = offset - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
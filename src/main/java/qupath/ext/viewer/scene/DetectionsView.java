@@ -0,0 +1,452 @@
+package qupath.ext.viewer.scene;
+
+import javafx.application.Platform;
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Transform;
+import qupath.ext.viewer.detections.ColorPalette;
+import qupath.ext.viewer.detections.Detection;
+import qupath.ext.viewer.detections.DetectionBatch;
+import qupath.ext.viewer.detections.DetectionOctree;
+import qupath.ext.viewer.detections.LevelOfDetail;
+import qupath.ext.viewer.detections.VisibleRegion;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.objects.PathObject;
+import qupath.lib.objects.hierarchy.PathObjectHierarchy;
+import qupath.lib.objects.hierarchy.events.PathObjectHierarchyEvent;
+import qupath.lib.objects.hierarchy.events.PathObjectHierarchyListener;
+import qupath.lib.roi.interfaces.ROI;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *     A group displaying the detections of a {@link PathObjectHierarchy} as spheres, clipped like the volume
+ *     by a slicer.
+ * </p>
+ * <p>
+ *     Detections are indexed by a {@link DetectionOctree}, and only the detections of the {@link VisibleRegion}
+ *     (close to the slicer, or close to the faces of the volume located in front of the slicer) are displayed.
+ *     The detections of each leaf of the octree are merged into a single mesh, whose {@link LevelOfDetail}
+ *     depends on the size the detections have on the screen. Colors are given by a shared {@link ColorPalette}
+ *     texture, so all meshes use the same material.
+ * </p>
+ * <p>
+ *     Meshes are built in the background, and the mesh of a leaf is only rebuilt when the detections of the leaf
+ *     change, when the detections of the leaf located in the visible region change, or when its level of detail changes.
+ *     When the hierarchy changes, only the objects reported by the hierarchy event (and, when objects are added
+ *     or removed, their descendants) are updated in the octree, so the cost of an event doesn't depend on the total
+ *     number of detections. Events that don't say which objects changed trigger a full scan of the detections.
+ * </p>
+ */
+class DetectionsView extends Group {
+
+    private static final double MINIMUM_RADIUS_PIXELS = 2;
+    private static final double FACE_DISTANCE_PIXELS = 1;
+    private static final int DEFAULT_COLOR = 0xFF0000;
+    private final Slicer slicer;
+    private final SceneTransformations sceneTransformations;
+    private final PerspectiveCamera camera;
+    private final ObservableDoubleValue sceneHeight;
+    private final Function<Point3D, Point3D> pixelToSpaceTransform;
+    private final Point3D halfSize;
+    private final double pixelSize;
+    private final ColorPalette palette = new ColorPalette();
+    private final float[] paletteTextureCoordinates = new float[2 * ColorPalette.SIZE];
+    private final WritableImage paletteImage = new WritableImage(ColorPalette.SIZE, 1);
+    private final PhongMaterial material = new PhongMaterial();
+    private final PathObjectHierarchyListener hierarchyListener = this::onHierarchyChanged;
+    private final Queue<PathObject> changedObjects = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean fullScanRequired = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ThreadTools.createThreadFactory("viewer-detections-", true));
+    private volatile PathObjectHierarchy hierarchy = null;
+    private volatile long generation = 0;
+    private DetectionOctree octree;
+    private Map<PathObject, Detection> detections = new HashMap<>();
+    private Map<DetectionOctree.Node, LeafMesh> leafMeshes = new HashMap<>();
+    private int displayedPaletteVersion = -1;
+
+    private record View(VisibleRegion region, Point3D cameraPosition, double focalLength) {}
+    private record LeafMesh(int version, LevelOfDetail levelOfDetail, List<Detection> detections, MeshView meshView) {}
+
+    /**
+     * Create the view. Nothing is displayed until {@link #show(PathObjectHierarchy)} is called.
+     *
+     * @param imageServer  the image the detections belong to
+     * @param slicer  the slicer clipping the volume
+     * @param sceneTransformations  the transformations applied to the scene
+     * @param camera  the camera of the scene
+     * @param sceneHeight  the height of the scene
+     */
+    public DetectionsView(
+            ImageServer<?> imageServer,
+            Slicer slicer,
+            SceneTransformations sceneTransformations,
+            PerspectiveCamera camera,
+            ObservableDoubleValue sceneHeight
+    ) {
+        this.slicer = slicer;
+        this.sceneTransformations = sceneTransformations;
+        this.camera = camera;
+        this.sceneHeight = sceneHeight;
+        this.pixelToSpaceTransform = new Cube(imageServer).getPixelToSpaceTransform();
+        this.halfSize = new Point3D(
+                imageServer.getPixelCalibration().getPixelWidth().doubleValue() * imageServer.getWidth() / 2,
+                imageServer.getPixelCalibration().getPixelHeight().doubleValue() * imageServer.getHeight() / 2,
+                imageServer.getPixelCalibration().getZSpacing().doubleValue() * imageServer.nZSlices() / 2
+        );
+        this.pixelSize = imageServer.getPixelCalibration().getPixelWidth().doubleValue();
+        this.octree = createOctree();
+
+        for (int i=0; i<ColorPalette.SIZE; i++) {
+            paletteTextureCoordinates[2*i] = ColorPalette.getTextureCoordinate(i);
+            paletteTextureCoordinates[2*i + 1] = 0.5f;
+        }
+        material.setDiffuseMap(paletteImage);
+
+        slicer.getTransforms().addListener((ListChangeListener<? super Transform>) change -> draw());
+        slicer.thicknessProperty().addListener((p, o, n) -> draw());
+        sceneTransformations.addListener(this::draw);
+        sceneHeight.addListener((p, o, n) -> draw());
+        setVisible(false);
+    }
+
+    /**
+     * Display the detections of a hierarchy, and update them each time the hierarchy changes.
+     * This replaces the detections of the previously displayed hierarchy.
+     *
+     * @param hierarchy  the hierarchy containing the detections to display. Its coordinates must
+     *                   be the pixel coordinates of the image of this view
+     */
+    public void show(PathObjectHierarchy hierarchy) {
+        if (hierarchy == this.hierarchy) {
+            return;
+        }
+        hide();
+
+        this.hierarchy = hierarchy;
+        hierarchy.addListener(hierarchyListener);
+        fullScanRequired.set(true);
+        setVisible(true);
+        draw();
+    }
+
+    /**
+     * Hide the detections, and stop listening to changes of the hierarchy.
+     */
+    public void hide() {
+        if (hierarchy != null) {
+            hierarchy.removeListener(hierarchyListener);
+            hierarchy = null;
+        }
+        generation++;
+        setVisible(false);
+        getChildren().clear();
+
+        if (!executor.isShutdown()) {
+            executor.execute(() -> {
+                octree = createOctree();
+                detections = new HashMap<>();
+                leafMeshes = new HashMap<>();
+            });
+        }
+    }
+
+    /**
+     * Stop computing meshes in the background. This view won't be updated anymore.
+     */
+    public void close() {
+        if (hierarchy != null) {
+            hierarchy.removeListener(hierarchyListener);
+            hierarchy = null;
+        }
+        generation++;
+        executor.shutdownNow();
+    }
+
+    private void onHierarchyChanged(PathObjectHierarchyEvent event) {
+        if (event.isChanging()) {
+            return;
+        }
+
+        List<PathObject> eventObjects = event.getChangedObjects();
+        PathObjectHierarchyEvent.HierarchyEventType type = event.getEventType();
+        if (type == PathObjectHierarchyEvent.HierarchyEventType.OTHER_STRUCTURE_CHANGE || eventObjects == null || eventObjects.isEmpty()) {
+            fullScanRequired.set(true);
+        } else if (type == PathObjectHierarchyEvent.HierarchyEventType.ADDED || type == PathObjectHierarchyEvent.HierarchyEventType.REMOVED) {
+            // The descendants of an added or removed object are added or removed with it
+            for (PathObject pathObject: eventObjects) {
+                changedObjects.add(pathObject);
+                changedObjects.addAll(pathObject.getDescendantObjects(new ArrayList<>()));
+            }
+        } else {
+            changedObjects.addAll(eventObjects);
+        }
+        Platform.runLater(this::draw);
+    }
+
+    private DetectionOctree createOctree() {
+        return new DetectionOctree(
+                new double[] {-halfSize.getX(), -halfSize.getY(), -halfSize.getZ()},
+                new double[] {halfSize.getX(), halfSize.getY(), halfSize.getZ()},
+                DetectionOctree.DEFAULT_LEAF_CAPACITY
+        );
+    }
+
+    private void draw() {
+        if (hierarchy == null || executor.isShutdown()) {
+            return;
+        }
+
+        View view = computeView();
+        long currentGeneration = ++generation;
+
+        executor.execute(() -> {
+            if (fullScanRequired.getAndSet(false)) {
+                changedObjects.clear();
+                scanDetections();
+            } else {
+                updateChangedDetections();
+            }
+            if (generation != currentGeneration) {
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            List<MeshView> meshViews = computeMeshViews(view, currentGeneration);
+            FrameMetrics.record(PipelineStage.MESHING, startTime);
+            if (meshViews == null) {
+                return;
+            }
+
+            Platform.runLater(() -> {
+                if (generation == currentGeneration) {
+                    long sceneUpdateStartTime = System.nanoTime();
+                    updatePaletteImage();
+                    getChildren().setAll(meshViews);
+                    FrameMetrics.record(PipelineStage.SCENE_UPDATE, sceneUpdateStartTime);
+                }
+            });
+        });
+    }
+
+    /**
+     * Write the colors of the palette to the palette texture if colors were added since the last write.
+     * This must be called from the JavaFX Application Thread, and before displaying meshes using the new colors.
+     */
+    private void updatePaletteImage() {
+        // The version is read before the colors, so colors added in the meantime are written again next time
+        int version = palette.getVersion();
+        if (version == displayedPaletteVersion) {
+            return;
+        }
+
+        int[] colors = palette.getColors();
+        for (int i=0; i<colors.length; i++) {
+            colors[i] |= 0xFF000000;
+        }
+        paletteImage.getPixelWriter().setPixels(0, 0, colors.length, 1, PixelFormat.getIntArgbInstance(), colors, 0, colors.length);
+        displayedPaletteVersion = version;
+    }
+
+    /**
+     * Compute the region where detections can be seen and the position of the camera, in the coordinate system of the volume.
+     */
+    private View computeView() {
+        Rectangle slicerRectangle = slicer.toRectangle();
+
+        return new View(
+                new VisibleRegion(
+                        halfSize,
+                        slicerRectangle.p0(),
+                        slicerRectangle.getU().crossProduct(slicerRectangle.getV()).normalize(),
+                        Math.max(0, slicer.getThickness()) * pixelSize / 2,
+                        FACE_DISTANCE_PIXELS * pixelSize
+                ),
+                sceneTransformations.undo(new Point3D(0, 0, camera.getTranslateZ())),
+                sceneHeight.get() / (2 * Math.tan(Math.toRadians(camera.getFieldOfView() / 2)))
+        );
+    }
+
+    /**
+     * Update the octree with the objects reported by the hierarchy events received since the last update.
+     */
+    private void updateChangedDetections() {
+        PathObjectHierarchy hierarchy = this.hierarchy;
+        PathObject pathObject;
+        while ((pathObject = changedObjects.poll()) != null) {
+            if (hierarchy == null) {
+                continue;
+            }
+
+            Detection previousDetection = detections.remove(pathObject);
+            Detection detection = pathObject.isDetection() && isInHierarchy(pathObject, hierarchy) ? createDetection(pathObject) : null;
+            if (detection != null) {
+                detections.put(pathObject, detection);
+            }
+
+            if (previousDetection != null && !previousDetection.equals(detection)) {
+                octree.remove(previousDetection);
+            }
+            if (detection != null && !detection.equals(previousDetection)) {
+                octree.add(detection);
+            }
+        }
+    }
+
+    /**
+     * @return whether an object is part of a hierarchy (and hasn't been removed from it)
+     */
+    private static boolean isInHierarchy(PathObject pathObject, PathObjectHierarchy hierarchy) {
+        PathObject root = hierarchy.getRootObject();
+        while (pathObject != null && pathObject != root) {
+            pathObject = pathObject.getParent();
+        }
+        return pathObject == root;
+    }
+
+    /**
+     * Update the octree with all detections of the hierarchy, adding, removing or updating the detections
+     * that changed since the last update. This visits every detection of the hierarchy.
+     */
+    private void scanDetections() {
+        PathObjectHierarchy hierarchy = this.hierarchy;
+        if (hierarchy == null) {
+            return;
+        }
+
+        Map<PathObject, Detection> newDetections = new HashMap<>();
+        for (PathObject pathObject: hierarchy.getDetectionObjects()) {
+            Detection detection = createDetection(pathObject);
+            if (detection != null) {
+                newDetections.put(pathObject, detection);
+            }
+        }
+
+        for (Map.Entry<PathObject, Detection> entry: detections.entrySet()) {
+            if (!entry.getValue().equals(newDetections.get(entry.getKey()))) {
+                octree.remove(entry.getValue());
+            }
+        }
+        for (Map.Entry<PathObject, Detection> entry: newDetections.entrySet()) {
+            if (!entry.getValue().equals(detections.get(entry.getKey()))) {
+                octree.add(entry.getValue());
+            }
+        }
+        detections = newDetections;
+    }
+
+    private Detection createDetection(PathObject pathObject) {
+        ROI roi = pathObject.getROI();
+        if (roi == null || roi.getT() != 0) {
+            return null;
+        }
+
+        Point3D center = pixelToSpaceTransform.apply(new Point3D(roi.getCentroidX(), roi.getCentroidY(), roi.getZ()));
+        Integer color = pathObject.getColor();
+        if (color == null && pathObject.getPathClass() != null) {
+            color = pathObject.getPathClass().getColor();
+        }
+
+        return new Detection(
+                center.getX(),
+                center.getY(),
+                center.getZ(),
+                Math.max(MINIMUM_RADIUS_PIXELS, Math.sqrt(roi.getArea() / Math.PI)) * pixelSize,
+                color == null ? DEFAULT_COLOR : color
+        );
+    }
+
+    /**
+     * Compute the meshes of the leaves of the octree located in the visible region, reusing
+     * the meshes of the previous call when possible.
+     *
+     * @return the meshes to display, or null if the computation was cancelled
+     */
+    private List<MeshView> computeMeshViews(View view, long currentGeneration) {
+        Map<DetectionOctree.Node, LeafMesh> newLeafMeshes = new HashMap<>();
+
+        for (DetectionOctree.Node leaf: octree.getLeaves(view.region())) {
+            if (generation != currentGeneration) {
+                // Meshes already built are kept for the next call
+                leafMeshes.putAll(newLeafMeshes);
+                return null;
+            }
+
+            List<Detection> visibleDetections = leaf.getDetections().stream().filter(view.region()::contains).toList();
+            if (visibleDetections.isEmpty()) {
+                continue;
+            }
+
+            double maximumRadius = visibleDetections.stream().mapToDouble(Detection::radius).max().orElse(0);
+            LevelOfDetail levelOfDetail = LevelOfDetail.fromProjectedRadius(
+                    maximumRadius * view.focalLength() / Math.max(pixelSize, getDistance(leaf, view.cameraPosition()))
+            );
+            if (levelOfDetail == null) {
+                continue;
+            }
+
+            LeafMesh leafMesh = leafMeshes.get(leaf);
+            if (leafMesh == null || leafMesh.version() != leaf.getVersion() || leafMesh.levelOfDetail() != levelOfDetail ||
+                    !leafMesh.detections().equals(visibleDetections)) {
+                leafMesh = new LeafMesh(
+                        leaf.getVersion(),
+                        levelOfDetail,
+                        visibleDetections,
+                        createMeshView(DetectionBatch.create(visibleDetections, levelOfDetail, palette))
+                );
+            }
+            newLeafMeshes.put(leaf, leafMesh);
+        }
+
+        leafMeshes = newLeafMeshes;
+        return new ArrayList<>(newLeafMeshes.values().stream().map(LeafMesh::meshView).toList());
+    }
+
+    private MeshView createMeshView(DetectionBatch batch) {
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(batch.points());
+        mesh.getTexCoords().setAll(paletteTextureCoordinates);
+        mesh.getFaces().setAll(batch.faces());
+
+        MeshView meshView = new MeshView(mesh);
+        meshView.setMaterial(material);
+        meshView.setCullFace(CullFace.NONE);
+        return meshView;
+    }
+
+    /**
+     * @return the distance between a point and the closest point of the box covered by a node
+     */
+    private static double getDistance(DetectionOctree.Node node, Point3D point) {
+        double[] min = node.getMin();
+        double[] max = node.getMax();
+        double dx = Math.max(0, Math.max(min[0] - point.getX(), point.getX() - max[0]));
+        double dy = Math.max(0, Math.max(min[1] - point.getY(), point.getY() - max[1]));
+        double dz = Math.max(0, Math.max(min[2] - point.getZ(), point.getZ() - max[2]));
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
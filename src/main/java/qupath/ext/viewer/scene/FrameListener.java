@@ -0,0 +1,27 @@
+package qupath.ext.viewer.scene;
+
+import java.io.IOException;
+
+/**
+ * A listener notified each time the volume of a {@link Scene3D} has been redrawn.
+ */
+@FunctionalInterface
+public interface FrameListener {
+
+    /**
+     * Called on the JavaFX Application Thread after the faces of the volume have been replaced.
+     *
+     * @param fullResolution  whether the faces display the image at its full resolution. If false,
+     *                        another frame with a higher resolution will follow
+     */
+    void onFrame(boolean fullResolution);
+
+    /**
+     * Called on the JavaFX Application Thread when the full resolution textures of the current position
+     * of the slicer cannot be computed because the image cannot be read. No full resolution frame will
+     * follow until the volume is redrawn. Does nothing by default.
+     *
+     * @param error  the error that occurred while reading the image
+     */
+    default void onError(IOException error) {}
+}
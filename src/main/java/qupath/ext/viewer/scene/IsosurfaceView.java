@@ -0,0 +1,168 @@
+package qupath.ext.viewer.scene;
+
+import javafx.application.Platform;
+import javafx.geometry.Point3D;
+import javafx.scene.AmbientLight;
+import javafx.scene.Group;
+import javafx.scene.PointLight;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.ext.viewer.meshes.IndexedMesh;
+import qupath.ext.viewer.meshes.IsosurfaceExtractor;
+import qupath.ext.viewer.meshes.QuadricDecimator;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *     A group displaying the isosurface of a channel of an image, extracted by an {@link IsosurfaceExtractor}
+ *     and optionally decimated by a {@link QuadricDecimator}.
+ * </p>
+ * <p>
+ *     The surface is extracted in the background, and replaces the previous surface once it is ready.
+ *     It is lit by its own lights, so it should be excluded from the scope of the other lights of the scene.
+ * </p>
+ */
+class IsosurfaceView extends Group {
+
+    private static final Logger logger = LoggerFactory.getLogger(IsosurfaceView.class);
+    private static final Color SURFACE_COLOR = Color.rgb(230, 200, 80);
+    private final ImageServer<BufferedImage> imageServer;
+    private final BrickSource brickSource;
+    private final Function<Point3D, Point3D> pixelToSpaceTransform;
+    private final MeshView meshView = new MeshView();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ThreadTools.createThreadFactory("viewer-isosurface-", true));
+    private volatile long generation = 0;
+
+    /**
+     * Create the view. Nothing is displayed until {@link #show(int, double, int)} is called.
+     *
+     * @param imageServer  the image to extract surfaces from
+     */
+    public IsosurfaceView(ImageServer<BufferedImage> imageServer) {
+        this.imageServer = imageServer;
+        this.brickSource = BrickSource.create(imageServer);
+        this.pixelToSpaceTransform = new Cube(imageServer).getPixelToSpaceTransform();
+
+        PhongMaterial material = new PhongMaterial(SURFACE_COLOR);
+        material.setSpecularColor(Color.gray(0.3));
+        meshView.setMaterial(material);
+        // Surfaces are open where they reach the border of the image, so their inside can be visible
+        meshView.setCullFace(CullFace.NONE);
+
+        AmbientLight ambientLight = new AmbientLight(Color.gray(0.4));
+        ambientLight.getScope().add(meshView);
+        PointLight pointLight = new PointLight(Color.gray(0.7));
+        pointLight.getScope().add(meshView);
+        pointLight.setTranslateZ(-4 * Math.max(Math.max(imageServer.getWidth(), imageServer.getHeight()), imageServer.nZSlices()));
+
+        getChildren().addAll(meshView, ambientLight, pointLight);
+        setVisible(false);
+    }
+
+    /**
+     * Extract and display the isosurface of a channel. The surface is extracted in the background,
+     * and replaces the currently displayed surface once it is ready.
+     *
+     * @param channel  the channel whose values should be compared to the threshold
+     * @param threshold  voxels whose value is greater than or equal to this threshold are inside the surface
+     * @param maximumNumberOfTriangles  the number of triangles above which the surface is decimated,
+     *                                  or 0 to never decimate the surface
+     * @throws IllegalArgumentException when the channel doesn't exist or the maximum number of triangles is negative
+     */
+    public void show(int channel, double threshold, int maximumNumberOfTriangles) {
+        if (maximumNumberOfTriangles < 0) {
+            throw new IllegalArgumentException(String.format("The maximum number of triangles %d is negative", maximumNumberOfTriangles));
+        }
+        IsosurfaceExtractor extractor = new IsosurfaceExtractor(brickSource, 0, 0, channel, threshold);
+        long currentGeneration = ++generation;
+
+        executor.execute(() -> {
+            try {
+                long startTime = System.nanoTime();
+                IndexedMesh mesh = extractor.extract(() -> generation != currentGeneration);
+                if (mesh == null) {
+                    return;
+                }
+                if (maximumNumberOfTriangles > 0) {
+                    mesh = QuadricDecimator.decimate(mesh, maximumNumberOfTriangles);
+                }
+                TriangleMesh triangleMesh = createTriangleMesh(mesh);
+                FrameMetrics.record(PipelineStage.MESHING, startTime);
+
+                logger.debug("Isosurface of channel {} at {} extracted with {} triangles", channel, threshold, mesh.nTriangles());
+                Platform.runLater(() -> {
+                    if (generation == currentGeneration) {
+                        long sceneUpdateStartTime = System.nanoTime();
+                        meshView.setMesh(triangleMesh);
+                        setVisible(true);
+                        FrameMetrics.record(PipelineStage.SCENE_UPDATE, sceneUpdateStartTime);
+                    }
+                });
+            } catch (IOException e) {
+                logger.error("Cannot read {}", imageServer, e);
+            }
+        });
+    }
+
+    /**
+     * Hide the currently displayed surface, and stop any extraction in progress.
+     */
+    public void hide() {
+        generation++;
+        setVisible(false);
+        meshView.setMesh(null);
+    }
+
+    /**
+     * Stop extracting surfaces in the background. This view won't be updated anymore.
+     */
+    public void close() {
+        generation++;
+        executor.shutdownNow();
+    }
+
+    private TriangleMesh createTriangleMesh(IndexedMesh mesh) {
+        float[] points = new float[mesh.vertices().length];
+        for (int i=0; i<mesh.nVertices(); i++) {
+            Point3D point = pixelToSpaceTransform.apply(new Point3D(
+                    mesh.vertices()[3*i],
+                    mesh.vertices()[3*i + 1],
+                    mesh.vertices()[3*i + 2]
+            ));
+            points[3*i] = (float) point.getX();
+            points[3*i + 1] = (float) point.getY();
+            points[3*i + 2] = (float) point.getZ();
+        }
+
+        // The pixel to space transform mirrors the z-axis, so the order of the vertices of each triangle
+        // is reversed to keep the outside of the surface as the front face. A single texture coordinate is used
+        int[] faces = new int[2 * mesh.triangles().length];
+        for (int i=0; i<mesh.nTriangles(); i++) {
+            faces[6*i] = mesh.triangles()[3*i];
+            faces[6*i + 2] = mesh.triangles()[3*i + 2];
+            faces[6*i + 4] = mesh.triangles()[3*i + 1];
+        }
+
+        TriangleMesh triangleMesh = new TriangleMesh();
+        triangleMesh.getPoints().setAll(points);
+        triangleMesh.getTexCoords().setAll(0, 0);
+        triangleMesh.getFaces().setAll(faces);
+        return triangleMesh;
+    }
+}
@@ -0,0 +1,250 @@
+package qupath.ext.viewer.scene;
+
+import javafx.application.Platform;
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.input.PickResult;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.metrics.SlicerPose;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.OverviewVolume;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *     A group displaying three orthogonal planes of an image (YZ, XZ and XY) going through a cursor point,
+ *     and clipped to the image. Clicking on a plane moves the cursor to the clicked point, which
+ *     moves the two other planes.
+ * </p>
+ * <p>
+ *     The three planes share one {@link ObliqueSampler} (and therefore the cached bricks of the image)
+ *     and one background thread. When the cursor moves, only the planes whose position changed are sampled
+ *     again: the other ones keep their texture. Since the planes are aligned with the axes of the image,
+ *     consecutive samples of a row are read from the same brick, so each plane is read as strips of bricks.
+ *     A plane that moves again before its texture is ready is not sampled at its intermediate position.
+ * </p>
+ * <p>
+ *     As with the faces of the {@link Volume}, a plane that moves is immediately textured with the low resolution
+ *     {@link OverviewVolume} of the image (shared with the volume), and its full resolution texture replaces the
+ *     overview once it is ready. If the overview is the image itself, the image is not read again.
+ * </p>
+ * <p>
+ *     Nothing is sampled while this group is hidden: planes whose position changed are sampled when
+ *     it becomes visible again.
+ * </p>
+ */
+class OrthoslicesView extends Group {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrthoslicesView.class);
+    private static final int NUMBER_OF_PLANES = 3;
+    private final ImageServer<BufferedImage> imageServer;
+    private final ObliqueSampler sampler;
+    private final OverviewVolume overview;
+    private final Function<Point3D, Point3D> pixelToSpaceTransform;
+    private final Function<Point3D, Point3D> spaceToPixelTransform;
+    private final MeshView[] planes = new MeshView[NUMBER_OF_PLANES];
+    private final boolean[] outdatedPlanes = new boolean[NUMBER_OF_PLANES];
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ThreadTools.createThreadFactory("viewer-orthoslices-", true));
+    private final AtomicLongArray generations = new AtomicLongArray(NUMBER_OF_PLANES);
+    private double[] cursor;
+
+    /**
+     * Create the view. It is hidden by default, and its cursor is located at the center of the image.
+     *
+     * @param imageServer  the image to display
+     * @param overview  a low resolution version of the image, displayed while the planes are sampled. It can still be loading
+     */
+    public OrthoslicesView(ImageServer<BufferedImage> imageServer, OverviewVolume overview) {
+        this.imageServer = imageServer;
+        this.sampler = new ObliqueSampler(BrickSource.create(imageServer));
+        this.overview = overview;
+        Cube cube = new Cube(imageServer);
+        this.pixelToSpaceTransform = cube.getPixelToSpaceTransform();
+        this.spaceToPixelTransform = cube.getSpaceToPixelTransform();
+        this.cursor = new double[] {
+                (imageServer.getWidth() - 1) / 2,
+                (imageServer.getHeight() - 1) / 2,
+                (imageServer.nZSlices() - 1) / 2
+        };
+
+        for (int axis=0; axis<NUMBER_OF_PLANES; axis++) {
+            planes[axis] = new MeshView();
+            planes[axis].setCullFace(CullFace.NONE);
+            planes[axis].setVisible(false);
+            outdatedPlanes[axis] = true;
+        }
+        getChildren().addAll(planes);
+        setVisible(false);
+
+        setOnMouseClicked(event -> {
+            PickResult pickResult = event.getPickResult();
+            if (event.isStillSincePress() && pickResult != null) {
+                onPlaneClicked(pickResult.getIntersectedNode(), pickResult.getIntersectedPoint());
+            }
+        });
+        visibleProperty().addListener((p, o, n) -> {
+            if (n) {
+                updateOutdatedPlanes();
+            }
+        });
+    }
+
+    /**
+     * Move the cursor. Only the planes whose position changes are sampled again.
+     * This must be called from the JavaFX Application Thread.
+     *
+     * @param x  the x-coordinate of the cursor, in full resolution pixels. It is clipped to the image
+     * @param y  the y-coordinate of the cursor, in full resolution pixels. It is clipped to the image
+     * @param z  the z-coordinate of the cursor, in z-slices. It is clipped to the image
+     */
+    public void setCursor(double x, double y, double z) {
+        double[] newCursor = new double[] {
+                Math.max(0, Math.min(imageServer.getWidth() - 1, Math.round(x))),
+                Math.max(0, Math.min(imageServer.getHeight() - 1, Math.round(y))),
+                Math.max(0, Math.min(imageServer.nZSlices() - 1, Math.round(z)))
+        };
+
+        for (int axis=0; axis<NUMBER_OF_PLANES; axis++) {
+            if (newCursor[axis] != cursor[axis]) {
+                outdatedPlanes[axis] = true;
+            }
+        }
+        cursor = newCursor;
+
+        if (isVisible()) {
+            updateOutdatedPlanes();
+        }
+    }
+
+    /**
+     * @return the position of the cursor, in full resolution pixel coordinates
+     */
+    public Point3D getCursor() {
+        return new Point3D(cursor[0], cursor[1], cursor[2]);
+    }
+
+    /**
+     * Stop sampling planes in the background. This view won't be updated anymore.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void onPlaneClicked(Node node, Point3D point) {
+        for (int axis=0; axis<NUMBER_OF_PLANES; axis++) {
+            if (node == planes[axis]) {
+                Point3D pixel = spaceToPixelTransform.apply(point);
+                double[] coordinates = new double[] {pixel.getX(), pixel.getY(), pixel.getZ()};
+                // The clicked plane doesn't move
+                coordinates[axis] = cursor[axis];
+
+                setCursor(coordinates[0], coordinates[1], coordinates[2]);
+                return;
+            }
+        }
+    }
+
+    private void updateOutdatedPlanes() {
+        if (executor.isShutdown()) {
+            return;
+        }
+
+        for (int axis=0; axis<NUMBER_OF_PLANES; axis++) {
+            if (outdatedPlanes[axis]) {
+                outdatedPlanes[axis] = false;
+
+                int planeAxis = axis;
+                long currentGeneration = generations.incrementAndGet(axis);
+                Polygon polygon = createPolygon(axis, cursor[axis]);
+                if (polygon == null) {
+                    continue;
+                }
+
+                displayTexture(axis, polygon, polygon.computeDiffuseMap(sampler, overview));
+                if (overview.isFullResolution() && overview.isLoaded()) {
+                    // The overview is the image itself, so there is no need to read it again
+                    continue;
+                }
+                executor.execute(SlicerPose.wrap(() -> {
+                    // The plane may have moved in the meantime, in which case this texture is not needed anymore
+                    if (generations.get(planeAxis) != currentGeneration) {
+                        return;
+                    }
+
+                    Image diffuseMap;
+                    try {
+                        diffuseMap = polygon.computeDiffuseMap(sampler);
+                    } catch (IOException e) {
+                        logger.error("Cannot read {}", imageServer, e);
+                        return;
+                    }
+
+                    Platform.runLater(() -> {
+                        if (generations.get(planeAxis) == currentGeneration) {
+                            displayTexture(planeAxis, polygon, diffuseMap);
+                        }
+                    });
+                }));
+            }
+        }
+    }
+
+    /**
+     * Replace the mesh and the texture of a plane. This must be called from the JavaFX Application Thread.
+     */
+    private void displayTexture(int axis, Polygon polygon, Image diffuseMap) {
+        long startTime = System.nanoTime();
+        MeshView meshView = polygon.computeMeshView(diffuseMap, null);
+        planes[axis].setMesh(meshView.getMesh());
+        planes[axis].setMaterial(meshView.getMaterial());
+        planes[axis].setVisible(true);
+        FrameMetrics.record(PipelineStage.SCENE_UPDATE, startTime);
+    }
+
+    /**
+     * Create the part of the plane orthogonal to an axis located inside the image, or return null if
+     * the image is flat along one of the two other axes (for example the XZ plane of a single z-slice).
+     */
+    private Polygon createPolygon(int axis, double position) {
+        double[] size = new double[] {imageServer.getWidth() - 1, imageServer.getHeight() - 1, imageServer.nZSlices() - 1};
+        int firstAxis = (axis + 1) % NUMBER_OF_PLANES;
+        int secondAxis = (axis + 2) % NUMBER_OF_PLANES;
+        if (size[firstAxis] == 0 || size[secondAxis] == 0) {
+            return null;
+        }
+
+        List<Point3D> corners = List.of(
+                createCorner(axis, position, firstAxis, 0, secondAxis, 0),
+                createCorner(axis, position, firstAxis, size[firstAxis], secondAxis, 0),
+                createCorner(axis, position, firstAxis, size[firstAxis], secondAxis, size[secondAxis]),
+                createCorner(axis, position, firstAxis, 0, secondAxis, size[secondAxis])
+        );
+        return new Polygon(corners.stream().map(pixelToSpaceTransform).toList(), spaceToPixelTransform);
+    }
+
+    private static Point3D createCorner(int axis, double position, int firstAxis, double first, int secondAxis, double second) {
+        double[] coordinates = new double[NUMBER_OF_PLANES];
+        coordinates[axis] = position;
+        coordinates[firstAxis] = first;
+        coordinates[secondAxis] = second;
+        return new Point3D(coordinates[0], coordinates[1], coordinates[2]);
+    }
+}
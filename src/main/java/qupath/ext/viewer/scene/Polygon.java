@@ -1,20 +1,26 @@
 package qupath.ext.viewer.scene;
 
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Point3D;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Mesh;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.TriangleMesh;
-import qupath.ext.viewer.extensions.BufferedImageExtension;
-import qupath.ext.viewer.extensions.ImageServerExtension;
 import qupath.ext.viewer.extensions.Point3DExtension;
 import qupath.ext.viewer.mathsoperations.BoundingRectangleCalculator;
 import qupath.ext.viewer.mathsoperations.Rectangle;
-import qupath.lib.images.servers.ImageServer;
+import qupath.ext.viewer.metrics.FaceTextureBuildEvent;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.metrics.SlicerPose;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.OverviewVolume;
+import qupath.ext.viewer.sampling.SampledPlane;
+import qupath.ext.viewer.sampling.Slab;
+import qupath.ext.viewer.sampling.SlabProjector;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
@@ -29,6 +35,7 @@ class Polygon {
     private final List<Point3D> points;
     private final Rectangle boundingRectangle;
     private final Function<Point3D, Point3D> spaceToPixelTransform;
+    private final boolean onRectangle;
 
     /**
      * Create a polygon.
@@ -38,13 +45,29 @@ class Polygon {
      * @throws IllegalArgumentException when the number of points is less than 3
      */
     public Polygon(List<Point3D> points, Function<Point3D, Point3D> spaceToPixelTransform) {
+        this(points, spaceToPixelTransform, false);
+    }
+
+    /**
+     * Create a polygon.
+     *
+     * @param points  the vertices of the polygon. They don't have to be in order
+     * @param spaceToPixelTransform  a function that maps a point in space to a pixel coordinate of an image
+     * @param onRectangle  whether this polygon is the part of a cutting rectangle (for example the slicer)
+     *                     located inside a 3D object
+     * @throws IllegalArgumentException when the number of points is less than 3
+     */
+    public Polygon(List<Point3D> points, Function<Point3D, Point3D> spaceToPixelTransform, boolean onRectangle) {
         if (points.size() < 3) {
             throw new IllegalArgumentException("Number of points < 3");
         }
 
+        long startTime = System.nanoTime();
         this.points = points;
         this.boundingRectangle = BoundingRectangleCalculator.getFromPoints(sortPoints(points, null));
         this.spaceToPixelTransform = spaceToPixelTransform;
+        this.onRectangle = onRectangle;
+        FrameMetrics.record(PipelineStage.POLYGON_PREPARATION, startTime);
     }
 
     /**
@@ -54,50 +77,128 @@ class Polygon {
         return points;
     }
 
+    /**
+     * @return whether this polygon is the part of a cutting rectangle located inside a 3D object
+     */
+    public boolean isOnRectangle() {
+        return onRectangle;
+    }
+
     /**
      * Compute a MeshView that represents this polygon.
      *
-     * @param imageServer  the image this polygon should represent
+     * @param diffuseMap  the texture the polygon should display, computed by {@link #computeDiffuseMap(ObliqueSampler)},
+     *                    {@link #computeDiffuseMap(ObliqueSampler, SlabProjector, Slab)}
+     *                    or {@link #computeDiffuseMap(ObliqueSampler, OverviewVolume)}
      * @param centroidOfVolume  the centroid of the 3D object this polygon is part of.
      *                          This is required to correctly orient this polygon but can be null
      *                          if the orientation doesn't matter.
      * @return a MeshView that represents this polygon
      */
-    public MeshView computeMeshView(ImageServer<BufferedImage> imageServer, Point3D centroidOfVolume) {
+    public MeshView computeMeshView(Image diffuseMap, Point3D centroidOfVolume) {
         MeshView meshView = new MeshView(computeMesh(centroidOfVolume));
 
+        long startTime = System.nanoTime();
         PhongMaterial material = new PhongMaterial();
-        try {
-            material.setDiffuseMap(computeDiffuseMap(imageServer));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        material.setDiffuseMap(diffuseMap);
         meshView.setMaterial(material);
+        FrameMetrics.record(PipelineStage.TEXTURE_UPLOAD, startTime);
 
         return meshView;
     }
 
     /**
      * Compute the <a href="https://learnopengl.com/Lighting/Lighting-maps">diffuse map</a>
-     * this polygon should display.
+     * this polygon should display, at the full resolution of the image.
+     * The width (height) of the diffuse map is the width (height) of the bounding rectangle
+     * of this polygon + 1.
+     * This function reads the image, so it shouldn't be called from the JavaFX Application Thread.
      *
-     * @param imageServer  the image to represent
-     * @return a diffuse map representing part of the image corresponding to this polygon,
-     * or null if the diffuse map couldn't be computed
+     * @param sampler  the sampler of the image to represent
+     * @return a diffuse map representing part of the image corresponding to this polygon
      * @throws IOException when an error occurs while reading the image
      */
-    private Image computeDiffuseMap(ImageServer<BufferedImage> imageServer) throws IOException {
-        BufferedImage image = BufferedImageExtension.toRGB(ImageServerExtension.readRegion(
-                imageServer,
-                new Rectangle(boundingRectangle, spaceToPixelTransform),
-                0
-        ));
-
-        if (image == null) {
-            return null;
-        } else {
-            return SwingFXUtils.toFXImage(image, null);
+    public Image computeDiffuseMap(ObliqueSampler sampler) throws IOException {
+        FaceTextureBuildEvent event = new FaceTextureBuildEvent();
+        event.begin();
+
+        Rectangle area = new Rectangle(boundingRectangle, spaceToPixelTransform);
+        int width = (int) area.getU().magnitude() + 1;
+        int height = (int) area.getV().magnitude() + 1;
+        Image image = createImage(sampler.sampleARGB(area, 0, 0, width, height), width, height);
+
+        if (event.shouldCommit()) {
+            event.poseId = SlicerPose.current();
+            event.width = width;
+            event.height = height;
+            event.level = 0;
+            event.commit();
         }
+        return image;
+    }
+
+    /**
+     * Compute the <a href="https://learnopengl.com/Lighting/Lighting-maps">diffuse map</a>
+     * this polygon should display as the projection of a slab, at the full resolution of the image.
+     * The dimensions of the diffuse map are the same as with {@link #computeDiffuseMap(ObliqueSampler)}.
+     * This function reads the image, so it shouldn't be called from the JavaFX Application Thread.
+     *
+     * @param sampler  the sampler of the image to represent
+     * @param projector  the projector reading from the sampler
+     * @param slab  the slab to project. This polygon should lie in its middle plane
+     * @return a diffuse map representing the projection of the slab on this polygon
+     * @throws IOException when an error occurs while reading the image
+     */
+    public Image computeDiffuseMap(ObliqueSampler sampler, SlabProjector projector, Slab slab) throws IOException {
+        FaceTextureBuildEvent event = new FaceTextureBuildEvent();
+        event.begin();
+
+        Rectangle area = new Rectangle(boundingRectangle, spaceToPixelTransform);
+        int width = (int) area.getU().magnitude() + 1;
+        int height = (int) area.getV().magnitude() + 1;
+        SampledPlane plane = projector.project(slab, area, 0, width, height);
+
+        long startTime = System.nanoTime();
+        int[] colors = sampler.getCompositor().toARGB(plane);
+        FrameMetrics.record(PipelineStage.RGB_CONVERSION, startTime);
+        Image image = createImage(colors, width, height);
+
+        if (event.shouldCommit()) {
+            event.poseId = SlicerPose.current();
+            event.width = width;
+            event.height = height;
+            event.level = 0;
+            event.commit();
+        }
+        return image;
+    }
+
+    /**
+     * Compute the <a href="https://learnopengl.com/Lighting/Lighting-maps">diffuse map</a>
+     * this polygon should display, at the resolution of the overview of the image.
+     * This function doesn't read the image, so it can be called from the JavaFX Application Thread.
+     *
+     * @param sampler  the sampler of the image to represent
+     * @param overview  the overview of the image to represent
+     * @return a diffuse map representing part of the overview corresponding to this polygon
+     */
+    public Image computeDiffuseMap(ObliqueSampler sampler, OverviewVolume overview) {
+        FaceTextureBuildEvent event = new FaceTextureBuildEvent();
+        event.begin();
+
+        Rectangle area = new Rectangle(boundingRectangle, spaceToPixelTransform);
+        int width = (int) (area.getU().magnitude() / overview.getXYDownsample()) + 1;
+        int height = (int) (area.getV().magnitude() / overview.getXYDownsample()) + 1;
+        Image image = createImage(sampler.sampleARGB(overview, area, width, height), width, height);
+
+        if (event.shouldCommit()) {
+            event.poseId = SlicerPose.current();
+            event.width = width;
+            event.height = height;
+            event.level = -1;
+            event.commit();
+        }
+        return image;
     }
 
     /**
@@ -112,7 +213,8 @@ class Polygon {
      *                         if the orientation doesn't matter.
      * @return the mesh this polygon represent
      */
-    private Mesh computeMesh(Point3D centroidOfVolume) {
+    Mesh computeMesh(Point3D centroidOfVolume) {
+        long startTime = System.nanoTime();
         float[] vertices;
         float[] textureCoordinates;
         int[] faceIndices;
@@ -158,10 +260,20 @@ class Polygon {
         mesh.getPoints().addAll(vertices);
         mesh.getTexCoords().addAll(textureCoordinates);
         mesh.getFaces().addAll(faceIndices);
+        FrameMetrics.record(PipelineStage.POLYGON_PREPARATION, startTime);
 
         return mesh;
     }
 
+    private static Image createImage(int[] colors, int width, int height) {
+        long startTime = System.nanoTime();
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), colors, 0, width);
+        FrameMetrics.record(PipelineStage.TEXTURE_UPLOAD, startTime);
+
+        return image;
+    }
+
     /**
      * Sort a list of points.
      *
@@ -0,0 +1,196 @@
+package qupath.ext.viewer.scene;
+
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.input.PickResult;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Cylinder;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.Sphere;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Translate;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *     A group displaying a polyline drawn on the surfaces of the scene, for example to measure
+ *     an intensity profile along it.
+ * </p>
+ * <p>
+ *     Vertices are added by {@link #addVertex(PickResult)} at the point of a surface (the volume, an
+ *     orthoslice, or an isosurface) under the mouse, and can then be moved by dragging them on another surface.
+ *     While a vertex is dragged, it doesn't catch mouse events, so the surface under it can be picked, and
+ *     the scene doesn't rotate. Listeners are called with the new polyline each time it changes, including
+ *     during drags.
+ * </p>
+ * <p>
+ *     This class must be used from the JavaFX Application Thread.
+ * </p>
+ */
+class ProfileView extends Group {
+
+    private static final double HANDLE_RADIUS_PROPORTION = 0.01;
+    private static final double SEGMENT_RADIUS_PROPORTION = 0.3;
+    private static final PhongMaterial MATERIAL = new PhongMaterial(Color.YELLOW);
+    private final Function<Point3D, Point3D> spaceToPixelTransform;
+    private final double handleRadius;
+    private final List<Point3D> vertices = new ArrayList<>();
+    private final List<Sphere> handles = new ArrayList<>();
+    private final Group handleGroup = new Group();
+    private final Group segmentGroup = new Group();
+    private final List<Consumer<List<Point3D>>> listeners = new ArrayList<>();
+
+    /**
+     * Create the view. It is hidden by default, and contains no vertex.
+     *
+     * @param imageServer  the image the polyline is drawn on
+     */
+    public ProfileView(ImageServer<BufferedImage> imageServer) {
+        this.spaceToPixelTransform = new Cube(imageServer).getSpaceToPixelTransform();
+        this.handleRadius = HANDLE_RADIUS_PROPORTION * Math.max(Math.max(
+                imageServer.getPixelCalibration().getPixelWidth().doubleValue() * imageServer.getWidth(),
+                imageServer.getPixelCalibration().getPixelHeight().doubleValue() * imageServer.getHeight()),
+                imageServer.getPixelCalibration().getZSpacing().doubleValue() * imageServer.nZSlices()
+        );
+
+        getChildren().addAll(segmentGroup, handleGroup);
+        setVisible(false);
+    }
+
+    /**
+     * Add a vertex at the end of the polyline, at the point of a surface picked by the mouse.
+     *
+     * @param pickResult  the result of picking the scene
+     * @return whether a vertex was added, which is not the case if the picked node is not a surface of the scene
+     */
+    public boolean addVertex(PickResult pickResult) {
+        Point3D point = getSurfacePoint(pickResult);
+        if (point == null) {
+            return false;
+        }
+
+        int index = vertices.size();
+        vertices.add(point);
+
+        Sphere handle = new Sphere(handleRadius);
+        handle.setMaterial(MATERIAL);
+        handle.setTranslateX(point.getX());
+        handle.setTranslateY(point.getY());
+        handle.setTranslateZ(point.getZ());
+        handle.setOnMousePressed(event -> {
+            setMouseTransparent(true);
+            event.consume();
+        });
+        handle.setOnMouseDragged(event -> {
+            moveVertex(index, event.getPickResult());
+            event.consume();
+        });
+        handle.setOnMouseReleased(event -> {
+            setMouseTransparent(false);
+            event.consume();
+        });
+        handles.add(handle);
+        handleGroup.getChildren().add(handle);
+
+        updateSegments();
+        return true;
+    }
+
+    /**
+     * Remove all vertices of the polyline.
+     */
+    public void clear() {
+        vertices.clear();
+        handles.clear();
+        handleGroup.getChildren().clear();
+        updateSegments();
+    }
+
+    /**
+     * @return the vertices of the polyline, in full resolution pixel coordinates
+     */
+    public List<Point3D> getPolyline() {
+        return vertices.stream().map(spaceToPixelTransform).toList();
+    }
+
+    /**
+     * Add a listener called with the vertices of the polyline (see {@link #getPolyline()}) each time it changes.
+     *
+     * @param listener  the listener to call
+     */
+    public void addListener(Consumer<List<Point3D>> listener) {
+        listeners.add(listener);
+    }
+
+    private void moveVertex(int index, PickResult pickResult) {
+        Point3D point = getSurfacePoint(pickResult);
+        if (point != null) {
+            vertices.set(index, point);
+            handles.get(index).setTranslateX(point.getX());
+            handles.get(index).setTranslateY(point.getY());
+            handles.get(index).setTranslateZ(point.getZ());
+
+            updateSegments();
+        }
+    }
+
+    /**
+     * @return the picked point in the coordinates of this group, or null if the picked node is not a surface
+     */
+    private Point3D getSurfacePoint(PickResult pickResult) {
+        if (pickResult == null || !(pickResult.getIntersectedNode() instanceof MeshView)) {
+            return null;
+        }
+        Node node = pickResult.getIntersectedNode();
+        return sceneToLocal(node.localToScene(pickResult.getIntersectedPoint()));
+    }
+
+    private void updateSegments() {
+        segmentGroup.getChildren().clear();
+        for (int i=1; i<vertices.size(); i++) {
+            Cylinder segment = createSegment(vertices.get(i - 1), vertices.get(i));
+            if (segment != null) {
+                segmentGroup.getChildren().add(segment);
+            }
+        }
+
+        List<Point3D> polyline = getPolyline();
+        for (Consumer<List<Point3D>> listener: listeners) {
+            listener.accept(polyline);
+        }
+    }
+
+    /**
+     * @return a cylinder joining two points, or null if the points are equal
+     */
+    private Cylinder createSegment(Point3D start, Point3D end) {
+        Point3D direction = end.subtract(start);
+        if (direction.magnitude() == 0) {
+            return null;
+        }
+
+        // Cylinders are aligned with the y-axis
+        Point3D axis = Rotate.Y_AXIS.crossProduct(direction);
+        if (axis.magnitude() == 0) {
+            axis = Rotate.X_AXIS;
+        }
+        Point3D center = start.midpoint(end);
+
+        Cylinder cylinder = new Cylinder(SEGMENT_RADIUS_PROPORTION * handleRadius, direction.magnitude());
+        cylinder.setMaterial(MATERIAL);
+        cylinder.getTransforms().addAll(
+                new Translate(center.getX(), center.getY(), center.getZ()),
+                new Rotate(Rotate.Y_AXIS.angle(direction), axis)
+        );
+        return cylinder;
+    }
+}
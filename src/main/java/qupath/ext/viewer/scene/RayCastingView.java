@@ -0,0 +1,211 @@
+package qupath.ext.viewer.scene;
+
+import javafx.application.Platform;
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.geometry.Point3D;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.metrics.SlicerPose;
+import qupath.ext.viewer.sampling.RayCaster;
+import qupath.ext.viewer.sampling.RayCastingMode;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *     A 2D view displaying the whole image rendered by a {@link RayCaster}, as seen from the camera
+ *     of a {@link Scene3D}. Rays are parallel, so the view is an orthographic approximation of
+ *     the perspective used by the camera, at the distance of the center of the image.
+ * </p>
+ * <p>
+ *     Each time the view changes (for example while the scene is being rotated), a rendering
+ *     at a reduced resolution is displayed first, and then replaced by a full resolution rendering.
+ *     Renderings are computed in the background and cancelled when the view changes again.
+ *     This view doesn't catch mouse events, so it can be placed on top of the SubScene of the scene.
+ * </p>
+ */
+class RayCastingView extends ImageView {
+
+    private static final Logger logger = LoggerFactory.getLogger(RayCastingView.class);
+    private static final int INTERACTION_DOWNSAMPLE = 4;
+    private final ImageServer<BufferedImage> imageServer;
+    private final RayCaster rayCaster;
+    private final SceneTransformations sceneTransformations;
+    private final PerspectiveCamera camera;
+    private final ObservableDoubleValue sceneWidth;
+    private final ObservableDoubleValue sceneHeight;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(ThreadTools.createThreadFactory("viewer-ray-casting-", true));
+    private RayCastingMode mode = null;
+    private volatile long generation = 0;
+
+    private record View(Rectangle plane, Point3D direction, int width, int height) {}
+
+    /**
+     * Create the view. Nothing is rendered until a mode is set with {@link #setMode(RayCastingMode)}.
+     *
+     * @param imageServer  the image to render
+     * @param sceneTransformations  the transformations applied to the scene
+     * @param camera  the camera of the scene
+     * @param sceneWidth  the width of the scene
+     * @param sceneHeight  the height of the scene
+     */
+    public RayCastingView(
+            ImageServer<BufferedImage> imageServer,
+            SceneTransformations sceneTransformations,
+            PerspectiveCamera camera,
+            ObservableDoubleValue sceneWidth,
+            ObservableDoubleValue sceneHeight
+    ) {
+        this.imageServer = imageServer;
+        this.rayCaster = new RayCaster(BrickSource.create(imageServer));
+        this.sceneTransformations = sceneTransformations;
+        this.camera = camera;
+        this.sceneWidth = sceneWidth;
+        this.sceneHeight = sceneHeight;
+
+        setMouseTransparent(true);
+        setVisible(false);
+        fitWidthProperty().bind(sceneWidth);
+        fitHeightProperty().bind(sceneHeight);
+
+        sceneTransformations.addListener(this::draw);
+        sceneWidth.addListener((p, o, n) -> draw());
+        sceneHeight.addListener((p, o, n) -> draw());
+    }
+
+    /**
+     * Set how the image should be rendered.
+     *
+     * @param mode  the ray casting mode to use, or null to hide this view and stop rendering
+     */
+    public void setMode(RayCastingMode mode) {
+        this.mode = mode;
+        setVisible(mode != null);
+
+        if (mode == null) {
+            generation++;
+            setImage(null);
+        } else {
+            draw();
+        }
+    }
+
+    /**
+     * Stop rendering in the background. This view won't be updated anymore.
+     */
+    public void close() {
+        generation++;
+        executor.shutdownNow();
+    }
+
+    private void draw() {
+        if (mode == null || executor.isShutdown()) {
+            return;
+        }
+
+        View view = computeView();
+        RayCastingMode mode = this.mode;
+        long currentGeneration = ++generation;
+
+        executor.execute(SlicerPose.wrap(() -> {
+            try {
+                render(view, mode, currentGeneration, INTERACTION_DOWNSAMPLE);
+                render(view, mode, currentGeneration, 1);
+            } catch (IOException e) {
+                logger.error("Cannot read {}", imageServer, e);
+            }
+        }));
+    }
+
+    /**
+     * Compute the rays corresponding to the current position of the camera. Rays start in front of
+     * the image, and go in the direction the camera is looking at.
+     */
+    private View computeView() {
+        double radius = Math.sqrt(
+                Math.pow(imageServer.getPixelCalibration().getPixelWidth().doubleValue() * imageServer.getWidth(), 2) +
+                Math.pow(imageServer.getPixelCalibration().getPixelHeight().doubleValue() * imageServer.getHeight(), 2) +
+                Math.pow(imageServer.getPixelCalibration().getZSpacing().doubleValue() * imageServer.nZSlices(), 2)
+        ) / 2;
+        double centerZ = sceneTransformations.getZTranslation();
+        double distanceToCenter = Math.max(radius, centerZ - camera.getTranslateZ());
+        double visibleHeight = 2 * distanceToCenter * Math.tan(Math.toRadians(camera.getFieldOfView() / 2));
+        double visibleWidth = visibleHeight * sceneWidth.get() / Math.max(1, sceneHeight.get());
+
+        Point3D p0 = sceneTransformations.undo(new Point3D(-visibleWidth / 2, -visibleHeight / 2, centerZ - radius));
+        Point3D p1 = sceneTransformations.undo(new Point3D(visibleWidth / 2, -visibleHeight / 2, centerZ - radius));
+        Point3D p2 = sceneTransformations.undo(new Point3D(visibleWidth / 2, visibleHeight / 2, centerZ - radius));
+        Point3D end = sceneTransformations.undo(new Point3D(-visibleWidth / 2, -visibleHeight / 2, centerZ + radius));
+
+        Function<Point3D, Point3D> spaceToPixelTransform = new Cube(imageServer).getSpaceToPixelTransform();
+        Point3D pixelP0 = spaceToPixelTransform.apply(p0);
+        return new View(
+                new Rectangle(pixelP0, spaceToPixelTransform.apply(p1), spaceToPixelTransform.apply(p2)),
+                spaceToPixelTransform.apply(end).subtract(pixelP0),
+                Math.max(1, (int) sceneWidth.get()),
+                Math.max(1, (int) sceneHeight.get())
+        );
+    }
+
+    private void render(View view, RayCastingMode mode, long currentGeneration, int downsample) throws IOException {
+        long frameStartTime = System.nanoTime();
+        int width = Math.max(1, view.width() / downsample);
+        int height = Math.max(1, view.height() / downsample);
+
+        int[] colors = rayCaster.renderARGB(
+                view.plane(),
+                view.direction(),
+                mode,
+                0,
+                getLevel(downsample),
+                width,
+                height,
+                () -> generation != currentGeneration
+        );
+        if (colors == null) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), colors, 0, width);
+        FrameMetrics.record(PipelineStage.TEXTURE_UPLOAD, startTime);
+
+        Platform.runLater(() -> {
+            if (generation == currentGeneration) {
+                long sceneUpdateStartTime = System.nanoTime();
+                setImage(image);
+                FrameMetrics.record(PipelineStage.SCENE_UPDATE, sceneUpdateStartTime);
+                FrameMetrics.endFrame(frameStartTime);
+            }
+        });
+    }
+
+    /**
+     * @return the lowest resolution level whose downsample is not greater than the provided one
+     */
+    private int getLevel(double downsample) {
+        int level = 0;
+        for (int i=1; i<imageServer.nResolutions(); i++) {
+            if (imageServer.getDownsampleForResolution(i) <= downsample) {
+                level = i;
+            }
+        }
+        return level;
+    }
+}
@@ -0,0 +1,46 @@
+package qupath.ext.viewer.scene;
+
+import qupath.ext.viewer.sampling.RayCastingMode;
+
+/**
+ * The ways a {@link Scene3D} can render its image.
+ */
+public enum RenderMode {
+    /**
+     * The faces of the volume located in front of the slicer are textured with the voxels they go through.
+     */
+    SURFACES("Surfaces", null),
+    /**
+     * Three orthogonal planes going through a cursor point are textured with the voxels they go through.
+     * Clicking on a plane moves the cursor.
+     */
+    ORTHOSLICES("Orthoslices", null),
+    /**
+     * The whole volume is rendered on the CPU by ray casting, see {@link RayCastingMode#MAXIMUM_INTENSITY}.
+     */
+    MAXIMUM_INTENSITY("Maximum intensity", RayCastingMode.MAXIMUM_INTENSITY),
+    /**
+     * The whole volume is rendered on the CPU by ray casting, see {@link RayCastingMode#COMPOSITING}.
+     */
+    COMPOSITING("Compositing", RayCastingMode.COMPOSITING);
+
+    private final String name;
+    private final RayCastingMode rayCastingMode;
+
+    RenderMode(String name, RayCastingMode rayCastingMode) {
+        this.name = name;
+        this.rayCastingMode = rayCastingMode;
+    }
+
+    /**
+     * @return the ray casting mode corresponding to this render mode, or null if this mode doesn't use ray casting
+     */
+    public RayCastingMode getRayCastingMode() {
+        return rayCastingMode;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,24 +1,56 @@
 package qupath.ext.viewer.scene;
 
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableDoubleValue;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Point3D;
 import javafx.scene.AmbientLight;
-import javafx.scene.Camera;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.PerspectiveCamera;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.SubScene;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Transform;
+import qupath.ext.viewer.mathsoperations.Cube;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.sampling.SlabProjection;
 import qupath.lib.images.servers.ImageServer;
+import qupath.lib.objects.hierarchy.PathObjectHierarchy;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Represent the 3D scene where the image and the slicer are rendered.
+ * The image can be rendered as textured surfaces (the default), as three orthogonal planes, or by ray casting
+ * (see {@link #renderModeProperty()}). In the latter case, the rendering is displayed by
+ * a 2D view that should be placed on top of the {@link #getSubScene() SubScene}.
+ * An isosurface of the image and the detections of a hierarchy can also be displayed
+ * (see {@link #showIsosurface(int, double, int)} and {@link #showDetections(PathObjectHierarchy)}),
+ * as well as a polyline drawn on the surfaces of the scene (see {@link #setProfileEditing(boolean)}).
  */
 public class Scene3D {
 
     private final SubScene subScene;
     private final Group root;
+    private final SceneTransformations sceneTransformations;
+    private final Slicer slicer;
+    private final Volume volume;
+    private final RayCastingView rayCastingView;
+    private final IsosurfaceView isosurfaceView;
+    private final DetectionsView detectionsView;
+    private final OrthoslicesView orthoslicesView;
+    private final ProfileView profileView;
+    private final Cube cube;
+    private final PerspectiveCamera camera;
+    private final ObjectProperty<RenderMode> renderMode = new SimpleObjectProperty<>(RenderMode.SURFACES);
 
     /**
      * Create a new 3D scene.
@@ -39,22 +71,58 @@ public class Scene3D {
             ObservableDoubleValue yRotationSliderValue
     ) {
         root = new Group();
+        cube = new Cube(imageServer);
 
         subScene = new SubScene(root, sceneWidth.get(), sceneHeight.get());
         subScene.setFill(new Color(0.5, 0.5, 0.5, 1));
         subScene.widthProperty().bind(sceneWidth);
         subScene.heightProperty().bind(sceneHeight);
 
-        root.getChildren().add(new AmbientLight());
-        root.getTransforms().addAll(new SceneTransformations(subScene, 10).getTransforms());
+        AmbientLight ambientLight = new AmbientLight();
+        root.getChildren().add(ambientLight);
+        sceneTransformations = new SceneTransformations(subScene, 10);
+        root.getTransforms().addAll(sceneTransformations.getTransforms());
 
-        setUpObjects(
-                imageServer,
+        slicer = new Slicer(
+                2 * imageServer.getWidth(),
+                2 * imageServer.getHeight(),
+                imageServer.nZSlices(),
                 translationSliderValue,
                 xRotationSliderValue,
                 yRotationSliderValue
         );
-        setUpCamera(2 * Math.max(imageServer.getWidth(), imageServer.getHeight()));
+        root.getChildren().add(slicer);
+
+        volume = new Volume(imageServer, slicer);
+        root.getChildren().add(volume);
+
+        orthoslicesView = new OrthoslicesView(imageServer, volume.getOverview());
+        root.getChildren().add(orthoslicesView);
+
+        isosurfaceView = new IsosurfaceView(imageServer);
+        ambientLight.getExclusionScope().add(isosurfaceView);
+        root.getChildren().add(isosurfaceView);
+        camera = setUpCamera(2 * Math.max(imageServer.getWidth(), imageServer.getHeight()));
+
+        detectionsView = new DetectionsView(imageServer, slicer, sceneTransformations, camera, sceneHeight);
+        root.getChildren().add(detectionsView);
+
+        profileView = new ProfileView(imageServer);
+        root.getChildren().add(profileView);
+        // A filter is used so that clicking on an orthoslice adds a vertex instead of moving the cursor
+        subScene.addEventFilter(MouseEvent.MOUSE_CLICKED, event -> {
+            if (profileView.isVisible() && event.isStillSincePress() && profileView.addVertex(event.getPickResult())) {
+                event.consume();
+            }
+        });
+
+        rayCastingView = new RayCastingView(imageServer, sceneTransformations, camera, sceneWidth, sceneHeight);
+        renderMode.addListener((p, o, n) -> {
+            slicer.setVisible(n == RenderMode.SURFACES);
+            volume.setVisible(n == RenderMode.SURFACES);
+            orthoslicesView.setVisible(n == RenderMode.ORTHOSLICES);
+            rayCastingView.setMode(n.getRayCastingMode());
+        });
     }
 
     /**
@@ -64,30 +132,268 @@ public class Scene3D {
         return subScene;
     }
 
-    private void setUpObjects(
-            ImageServer<BufferedImage> imageServer,
-            ObservableDoubleValue translationSliderValue,
-            ObservableDoubleValue xRotationSliderValue,
-            ObservableDoubleValue yRotationSliderValue
-    ) {
-        Rectangle slicer = new Slicer(
-                2 * imageServer.getWidth(),
-                2 * imageServer.getHeight(),
-                imageServer.nZSlices(),
-                translationSliderValue,
-                xRotationSliderValue,
-                yRotationSliderValue
+    /**
+     * Rotate the scene, as if the mouse had been dragged.
+     *
+     * @param xAngle  the rotation on the x-axis, in degrees
+     * @param yAngle  the rotation on the y-axis, in degrees
+     */
+    public void setViewRotation(double xAngle, double yAngle) {
+        sceneTransformations.setRotation(xAngle, yAngle);
+    }
+
+    /**
+     * @return the rotation of the scene on the x-axis, in degrees
+     */
+    public double getViewXRotation() {
+        return sceneTransformations.getXRotation();
+    }
+
+    /**
+     * @return the rotation of the scene on the y-axis, in degrees
+     */
+    public double getViewYRotation() {
+        return sceneTransformations.getYRotation();
+    }
+
+    /**
+     * @return whether the volume currently displays the image at its full resolution. If false, a
+     * frame listener (see {@link #addFrameListener(FrameListener)}) will be called once the full
+     * resolution is displayed. This must be called from the JavaFX Application Thread
+     */
+    public boolean isFullResolutionDisplayed() {
+        return volume.isFullResolutionDisplayed();
+    }
+
+    /**
+     * Start computing in the background the full resolution textures of the volume for another position of the
+     * slicer, so that the volume is redrawn faster if the sliders take these values. Nothing is displayed.
+     * This must be called from the JavaFX Application Thread.
+     *
+     * @param slicerTranslation  the future value of the translation slider
+     * @param slicerXRotation  the future value of the x-axis rotation slider
+     * @param slicerYRotation  the future value of the y-axis rotation slider
+     */
+    public void prepareSlicerPosition(double slicerTranslation, double slicerXRotation, double slicerYRotation) {
+        volume.prepare(slicer.toRectangle(slicerTranslation, slicerXRotation, slicerYRotation));
+    }
+
+    /**
+     * @return the 2D view displaying the image when it is rendered by ray casting. It doesn't catch
+     * mouse events, and is only visible when the render mode uses ray casting
+     */
+    public Node getRayCastingView() {
+        return rayCastingView;
+    }
+
+    /**
+     * @return the rectangle currently representing the slicer, in full resolution pixel coordinates of the image
+     */
+    public Rectangle getSlicerPlane() {
+        return new Rectangle(slicer.toRectangle(), cube.getSpaceToPixelTransform());
+    }
+
+    /**
+     * <p>
+     *     Take a snapshot of a part of an enlarged rendering of the current view, as if the SubScene
+     *     was larger by the provided factor. The part has the size of the SubScene, so snapshots of
+     *     adjacent parts can be stitched into a rendering much larger than the window and than the
+     *     maximum texture size of the graphics card.
+     * </p>
+     * <p>
+     *     The part is rendered with the sub-frustum of the camera covering it. JavaFX cameras only have
+     *     symmetric frustums, so the shift of the image plane is obtained by shearing the scene along the
+     *     view axis, and the field of view of the camera is reduced by the scale. The scene is restored before
+     *     returning, so the displayed view never changes. Only the SubScene is rendered: the ray casting view
+     *     is not included, and the level of detail of the detections is the one of the displayed view.
+     *     This must be called from the JavaFX Application Thread.
+     * </p>
+     *
+     * @param scale  the ratio between the size of the enlarged rendering and the size of the SubScene
+     * @param x  the x-coordinate of the top left corner of the part in the enlarged rendering, in pixels
+     * @param y  the y-coordinate of the top left corner of the part in the enlarged rendering, in pixels
+     * @return a snapshot of the part, with the size of the SubScene
+     */
+    public WritableImage snapshotTile(double scale, double x, double y) {
+        double fieldOfView = camera.getFieldOfView();
+        double focalLength = scale * subScene.getHeight() / 2 / Math.tan(Math.toRadians(fieldOfView / 2));
+        double shiftX = x + subScene.getWidth() / 2 - scale * subScene.getWidth() / 2;
+        double shiftY = y + subScene.getHeight() / 2 - scale * subScene.getHeight() / 2;
+
+        // Moves a point at depth z (relative to the camera) by -shift * z / focalLength,
+        // which shifts its projection by -shift pixels
+        Affine shear = new Affine(
+                1, 0, -shiftX / focalLength, shiftX * camera.getTranslateZ() / focalLength,
+                0, 1, -shiftY / focalLength, shiftY * camera.getTranslateZ() / focalLength,
+                0, 0, 1, 0
         );
-        root.getChildren().add(slicer);
 
-        root.getChildren().add(new Volume(imageServer, slicer));
+        root.getTransforms().add(0, shear);
+        camera.setFieldOfView(2 * Math.toDegrees(Math.atan(Math.tan(Math.toRadians(fieldOfView / 2)) / scale)));
+        try {
+            return subScene.snapshot(new SnapshotParameters(), null);
+        } finally {
+            root.getTransforms().remove(shear);
+            camera.setFieldOfView(fieldOfView);
+        }
+    }
+
+    /**
+     * Add a listener called each time the slicer moves. The new position of the slicer
+     * can be retrieved with {@link #getSlicerPlane()}.
+     *
+     * @param listener  the listener to call
+     */
+    public void addSlicerListener(Runnable listener) {
+        slicer.getTransforms().addListener((ListChangeListener<? super Transform>) change -> listener.run());
+    }
+
+    /**
+     * Move the point the three planes of the {@link RenderMode#ORTHOSLICES orthoslices} render mode go through.
+     * Only the planes whose position changes are sampled again. The cursor can also be moved by clicking on a plane.
+     *
+     * @param x  the x-coordinate of the cursor, in full resolution pixels. It is clipped to the image
+     * @param y  the y-coordinate of the cursor, in full resolution pixels. It is clipped to the image
+     * @param z  the z-coordinate of the cursor, in z-slices. It is clipped to the image
+     */
+    public void setOrthosliceCursor(double x, double y, double z) {
+        orthoslicesView.setCursor(x, y, z);
+    }
+
+    /**
+     * @return the point the three planes of the {@link RenderMode#ORTHOSLICES orthoslices} render mode go through,
+     * in full resolution pixel coordinates
+     */
+    public Point3D getOrthosliceCursor() {
+        return orthoslicesView.getCursor();
+    }
+
+    /**
+     * Show or hide the polyline used to measure intensity profiles. While it is shown, clicking on a surface
+     * of the scene (the volume, an orthoslice, or an isosurface) adds a vertex at the end of the polyline, and
+     * vertices can be moved by dragging them on a surface. Hiding the polyline keeps its vertices.
+     *
+     * @param editing  whether the polyline should be shown and edited
+     */
+    public void setProfileEditing(boolean editing) {
+        profileView.setVisible(editing);
+    }
+
+    /**
+     * Remove all vertices of the polyline used to measure intensity profiles.
+     */
+    public void clearProfile() {
+        profileView.clear();
+    }
+
+    /**
+     * Add a listener called each time the polyline used to measure intensity profiles changes,
+     * including while a vertex is being dragged.
+     *
+     * @param listener  the listener to call with the vertices of the polyline, in full resolution pixel coordinates
+     */
+    public void addProfileListener(Consumer<List<Point3D>> listener) {
+        profileView.addListener(listener);
+    }
+
+    /**
+     * @return how the image is rendered
+     */
+    public ObjectProperty<RenderMode> renderModeProperty() {
+        return renderMode;
+    }
+
+    /**
+     * @return the thickness of the slicer, in full resolution pixels. When positive, the part of the image
+     * cut by the slicer displays a projection of the slab of this thickness centered on the slicer
+     */
+    public DoubleProperty slabThicknessProperty() {
+        return slicer.thicknessProperty();
+    }
+
+    /**
+     * @return how the voxels of the slab centered on the slicer are projected, when the slicer has a thickness
+     */
+    public ObjectProperty<SlabProjection> slabProjectionProperty() {
+        return slicer.projectionProperty();
+    }
+
+    /**
+     * Extract the isosurface of a channel of the image and display it in the scene, replacing
+     * any previously displayed isosurface. The surface is extracted in the background, so
+     * this returns without waiting for the surface to be displayed.
+     *
+     * @param channel  the channel whose values should be compared to the threshold
+     * @param threshold  voxels whose value is greater than or equal to this threshold are inside the surface
+     * @param maximumNumberOfTriangles  the number of triangles above which the surface is decimated,
+     *                                  or 0 to never decimate the surface
+     * @throws IllegalArgumentException when the channel doesn't exist or the maximum number of triangles is negative
+     */
+    public void showIsosurface(int channel, double threshold, int maximumNumberOfTriangles) {
+        isosurfaceView.show(channel, threshold, maximumNumberOfTriangles);
+    }
+
+    /**
+     * Hide the isosurface displayed by {@link #showIsosurface(int, double, int)}.
+     */
+    public void hideIsosurface() {
+        isosurfaceView.hide();
+    }
+
+    /**
+     * Display the detections of a hierarchy in the scene, close to the slicer and to the visible faces
+     * of the volume, and keep them updated when the hierarchy changes. This replaces the detections
+     * previously displayed.
+     *
+     * @param hierarchy  the hierarchy containing the detections to display. It must belong to the image of this scene
+     */
+    public void showDetections(PathObjectHierarchy hierarchy) {
+        detectionsView.show(hierarchy);
+    }
+
+    /**
+     * Hide the detections displayed by {@link #showDetections(PathObjectHierarchy)}.
+     */
+    public void hideDetections() {
+        detectionsView.hide();
+    }
+
+    /**
+     * Add a listener that will be called each time the volume is redrawn.
+     *
+     * @param frameListener  the listener to add
+     */
+    public void addFrameListener(FrameListener frameListener) {
+        volume.addFrameListener(frameListener);
+    }
+
+    /**
+     * Remove a listener previously added with {@link #addFrameListener(FrameListener)}.
+     *
+     * @param frameListener  the listener to remove
+     */
+    public void removeFrameListener(FrameListener frameListener) {
+        volume.removeFrameListener(frameListener);
+    }
+
+    /**
+     * Stop reading the image in the background. The scene won't be updated anymore,
+     * so this should be called once the scene is not displayed anymore.
+     */
+    public void close() {
+        volume.close();
+        rayCastingView.close();
+        isosurfaceView.close();
+        detectionsView.close();
+        orthoslicesView.close();
     }
 
-    private void setUpCamera(int distanceFromOrigin) {
-        Camera camera = new PerspectiveCamera(true);
+    private PerspectiveCamera setUpCamera(int distanceFromOrigin) {
+        PerspectiveCamera camera = new PerspectiveCamera(true);
         camera.setNearClip(1);
         camera.setFarClip(10 * distanceFromOrigin);
         camera.translateZProperty().set(-distanceFromOrigin);
         subScene.setCamera(camera);
+        return camera;
     }
 }
@@ -1,5 +1,6 @@
 package qupath.ext.viewer.scene;
 
+import javafx.geometry.Point3D;
 import javafx.scene.SubScene;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.transform.Rotate;
@@ -47,6 +48,62 @@ class SceneTransformations {
         return List.of(zTranslate, xRotate, yRotate);
     }
 
+    /**
+     * Add a listener called each time one of the transformations changes.
+     *
+     * @param listener  the listener to call
+     */
+    public void addListener(Runnable listener) {
+        xRotate.angleProperty().addListener((p, o, n) -> listener.run());
+        yRotate.angleProperty().addListener((p, o, n) -> listener.run());
+        zTranslate.zProperty().addListener((p, o, n) -> listener.run());
+    }
+
+    /**
+     * @return the rotation on the x-axis happened so far, in degrees
+     */
+    public double getXRotation() {
+        return xRotate.getAngle();
+    }
+
+    /**
+     * @return the rotation on the y-axis happened so far, in degrees
+     */
+    public double getYRotation() {
+        return yRotate.getAngle();
+    }
+
+    /**
+     * @return the translation on the z-axis happened so far
+     */
+    public double getZTranslation() {
+        return zTranslate.getZ();
+    }
+
+    /**
+     * Map a point of the SubScene to the coordinate system the transformations are applied to
+     * (in other words, undo the transformations).
+     *
+     * @param point  the point to map
+     * @return the mapped point
+     */
+    public Point3D undo(Point3D point) {
+        Point3D translated = new Translate(0, 0, -zTranslate.getZ()).transform(point);
+        Point3D xRotated = new Rotate(-xRotate.getAngle(), Rotate.X_AXIS).transform(translated);
+        return new Rotate(-yRotate.getAngle(), Rotate.Y_AXIS).transform(xRotated);
+    }
+
+    /**
+     * Set the rotations on the x and y-axis, as if the mouse had been dragged.
+     *
+     * @param xAngle  the rotation on the x-axis, in degrees
+     * @param yAngle  the rotation on the y-axis, in degrees
+     */
+    public void setRotation(double xAngle, double yAngle) {
+        xRotate.setAngle(xAngle);
+        yRotate.setAngle(yAngle);
+    }
+
     private void onMousePressed(double xPosition, double yPosition) {
         anchorX = xPosition;
         anchorY = yPosition;
@@ -1,18 +1,39 @@
 package qupath.ext.viewer.scene;
 
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableDoubleValue;
+import javafx.geometry.Point3D;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Transform;
 import javafx.scene.transform.Translate;
+import qupath.ext.viewer.metrics.SlicerPose;
+import qupath.ext.viewer.metrics.SlicerPoseChangeEvent;
+import qupath.ext.viewer.sampling.SlabProjection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * A rectangle in a 3D space whose translation on the z-axis
  * and rotations and the x and y-axis can be updated.
  * Its is centered in (0, 0, 0).
+ * Each new position gets a {@link SlicerPose} ID that is set as current
+ * before the transforms are updated.
+ * The slicer can have a thickness, in which case the part of the image it cuts
+ * is displayed as a projection of the slab of this thickness centered on the slicer.
  */
 class Slicer extends Rectangle {
 
+    private final DoubleProperty thickness = new SimpleDoubleProperty(0);
+    private final ObjectProperty<SlabProjection> projection = new SimpleObjectProperty<>(SlabProjection.MAXIMUM);
+    private final double depth;
+
     /**
      * Create the slicer.
      *
@@ -33,23 +54,107 @@ class Slicer extends Rectangle {
     ) {
         super(-width/2, -height/2, width, height);
         setFill(Color.BLUE);
+        this.depth = depth;
+
+        updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue);
+        translationSliderValue.addListener((p, o, n) -> updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue));
+        xRotationSliderValue.addListener((p, o, n) -> updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue));
+        yRotationSliderValue.addListener((p, o, n) -> updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue));
+    }
+
+    /**
+     * @return the thickness of this slicer, in full resolution pixels. A thickness of 0 or less means that
+     * the slicer displays the voxels it goes through, without projection
+     */
+    public DoubleProperty thicknessProperty() {
+        return thickness;
+    }
+
+    /**
+     * @return how the voxels of the slab covered by this slicer are combined when its thickness is positive
+     */
+    public ObjectProperty<SlabProjection> projectionProperty() {
+        return projection;
+    }
+
+    /**
+     * @return the value of {@link #thicknessProperty()}
+     */
+    public double getThickness() {
+        return thickness.get();
+    }
+
+    /**
+     * @return the value of {@link #projectionProperty()}
+     */
+    public SlabProjection getProjection() {
+        return projection.get();
+    }
+
+    /**
+     * Create a rectangle corresponding to this slicer. This will take the transforms of the slicer into account.
+     *
+     * @return a new rectangle corresponding to the current position of this slicer, in space coordinates
+     */
+    public qupath.ext.viewer.mathsoperations.Rectangle toRectangle() {
+        return toRectangle(getTransforms());
+    }
 
-        updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue, depth);
-        translationSliderValue.addListener((p, o, n) -> updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue, depth));
-        xRotationSliderValue.addListener((p, o, n) -> updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue, depth));
-        yRotationSliderValue.addListener((p, o, n) -> updateTransforms(translationSliderValue, xRotationSliderValue, yRotationSliderValue, depth));
+    /**
+     * Create a rectangle corresponding to this slicer if the sliders had the provided values. This doesn't move the slicer.
+     *
+     * @param translation  the value of the translation slider
+     * @param xRotation  the value of the x-axis rotation slider
+     * @param yRotation  the value of the y-axis rotation slider
+     * @return a new rectangle corresponding to this position of the slicer, in space coordinates. It is equal to
+     * the result of {@link #toRectangle()} once the sliders have these values
+     */
+    public qupath.ext.viewer.mathsoperations.Rectangle toRectangle(double translation, double xRotation, double yRotation) {
+        return toRectangle(createTransforms(translation, xRotation, yRotation));
+    }
+
+    private qupath.ext.viewer.mathsoperations.Rectangle toRectangle(List<Transform> slicerTransforms) {
+        Point3D A = new Point3D(getX(), getY(), 0);
+        Point3D B = new Point3D(getX() + getWidth(), getY(), 0);
+        Point3D C = new Point3D(getX() + getWidth(), getY() + getHeight(), 0);
+
+        List<Transform> transforms = new ArrayList<>(slicerTransforms);
+        Collections.reverse(transforms);
+
+        for (Transform transform: transforms) {
+            A = transform.transform(A);
+            B = transform.transform(B);
+            C = transform.transform(C);
+        }
+
+        return new qupath.ext.viewer.mathsoperations.Rectangle(A, B, C);
     }
 
     private void updateTransforms(
             ObservableDoubleValue translationSliderValue,
             ObservableDoubleValue xRotationSliderValue,
-            ObservableDoubleValue yRotationSliderValue,
-            double depth
+            ObservableDoubleValue yRotationSliderValue
     ) {
-        getTransforms().setAll(
-                new Rotate(yRotationSliderValue.get(), Rotate.Y_AXIS),
-                new Rotate(xRotationSliderValue.get(), Rotate.X_AXIS),
-                new Translate(0, 0, translationSliderValue.get() - depth/2)
+        long poseId = SlicerPose.next();
+        SlicerPose.setCurrent(poseId);
+
+        SlicerPoseChangeEvent event = new SlicerPoseChangeEvent();
+        if (event.shouldCommit()) {
+            event.poseId = poseId;
+            event.translation = translationSliderValue.get();
+            event.xRotation = xRotationSliderValue.get();
+            event.yRotation = yRotationSliderValue.get();
+            event.commit();
+        }
+
+        getTransforms().setAll(createTransforms(translationSliderValue.get(), xRotationSliderValue.get(), yRotationSliderValue.get()));
+    }
+
+    private List<Transform> createTransforms(double translation, double xRotation, double yRotation) {
+        return List.of(
+                new Rotate(yRotation, Rotate.Y_AXIS),
+                new Rotate(xRotation, Rotate.X_AXIS),
+                new Translate(0, 0, translation - depth/2)
         );
     }
 }
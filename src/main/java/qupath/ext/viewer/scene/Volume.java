@@ -1,52 +1,377 @@
 package qupath.ext.viewer.scene;
 
+import javafx.application.Platform;
 import javafx.collections.ListChangeListener;
 import javafx.geometry.Point3D;
 import javafx.scene.Group;
+import javafx.scene.image.Image;
 import javafx.scene.shape.MeshView;
 import javafx.scene.transform.Transform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.BrickSource;
 import qupath.ext.viewer.extensions.Point3DExtension;
+import qupath.ext.viewer.mathsoperations.Cube;
 import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameDroppedEvent;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.metrics.SlicerPose;
+import qupath.ext.viewer.metrics.VolumeRebuildEvent;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.ext.viewer.sampling.OverviewVolume;
+import qupath.ext.viewer.sampling.Slab;
+import qupath.ext.viewer.sampling.SlabProjector;
+import qupath.lib.common.ThreadTools;
 import qupath.lib.images.servers.ImageServer;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
- * Represent the image as a 3D volume.
- * A rectangle can slice this volume, so that its inside
- * can be seen.
+ * <p>
+ *     Represent the image as a 3D volume.
+ *     A rectangle can slice this volume, so that its inside
+ *     can be seen.
+ * </p>
+ * <p>
+ *     The faces of the volume are first textured with a low resolution {@link OverviewVolume}, which
+ *     is read in the background when the volume is created and refined as its z-slices arrive.
+ *     The full resolution textures are then computed in the background (with the {@link SlicerPose} of the
+ *     position that requested them), and replace the overview textures once all of them are ready.
+ *     Nothing is read from the JavaFX Application Thread.
+ *     If the image cannot be read, frame listeners are notified with {@link FrameListener#onError(IOException)}.
+ * </p>
+ * <p>
+ *     The full resolution textures of a future position of the slicer can be computed in advance with
+ *     {@link #prepare(Rectangle)}, for example by a movie export while the current frame is being captured.
+ *     They are used if the slicer moves to exactly this position.
+ * </p>
+ * <p>
+ *     When the slicer has a thickness, the face cut by the slicer displays the projection of the slab
+ *     covered by the slicer (computed by a {@link SlabProjector}) instead of the voxels the slicer goes through.
+ * </p>
  */
 class Volume extends Group {
 
+    private static final Logger logger = LoggerFactory.getLogger(Volume.class);
+    private static final long FRAME_BUDGET_NANOS = 1_000_000_000 / 60;
+    private static final AtomicInteger volumeCounter = new AtomicInteger(0);
     private final ImageServer<BufferedImage> imageServer;
-    private final javafx.scene.shape.Rectangle slicer;
+    private final ObliqueSampler sampler;
+    private final OverviewVolume overview;
+    private final SlabProjector slabProjector;
+    private final Slicer slicer;
+    private final List<FrameListener> frameListeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, ThreadTools.createThreadFactory("viewer-volume-", true));
+    private final AtomicBoolean overviewRedrawPending = new AtomicBoolean(false);
+    private PreparedFrame preparedFrame;
+    // Each volume has its own gauge, so that closing one viewer doesn't remove the gauge of another
+    private final String overviewGaugeName = String.format("Overview loaded (%%) #%d", volumeCounter.incrementAndGet());
+    private List<Polygon> polygons = List.of();
+    private Point3D centroidOfVolume;
+    private volatile long generation = 0;
+    private boolean fullResolutionDisplayed = false;
+    private record PreparedFrame(Rectangle slicerRectangle, Slab slab, CompletableFuture<List<Image>> diffuseMaps) {}
 
     /**
-     * Create the volume.
+     * Create the volume. This doesn't read the image.
      *
      * @param imageServer  the image this volume should represent
      * @param slicer  a rectangle that should slice this volume
      */
-    public Volume(ImageServer<BufferedImage> imageServer, javafx.scene.shape.Rectangle slicer) {
+    public Volume(ImageServer<BufferedImage> imageServer, Slicer slicer) {
         this.imageServer = imageServer;
+        this.sampler = new ObliqueSampler(BrickSource.create(imageServer));
+        this.overview = new OverviewVolume(imageServer, OverviewVolume.DEFAULT_MAXIMUM_SIZE_BYTES);
+        this.slabProjector = new SlabProjector(sampler, SlabProjector.DEFAULT_MAXIMUM_SIZE_BYTES);
         this.slicer = slicer;
 
+        FrameMetrics.registerGauge(overviewGaugeName, () -> 100 * overview.getLoadedProportion());
+        executor.execute(() -> {
+            try {
+                overview.load(0, this::requestOverviewRedraw);
+            } catch (IOException e) {
+                logger.error("Cannot read the overview of {}", imageServer, e);
+            }
+        });
+
         draw();
         slicer.getTransforms().addListener((ListChangeListener<? super Transform>) change -> draw());
+        slicer.thicknessProperty().addListener((p, o, n) -> draw());
+        slicer.projectionProperty().addListener((p, o, n) -> draw());
     }
 
-    private void draw() {
-        getChildren().setAll(getMeshes());
+    /**
+     * Add a listener that will be called each time this volume is redrawn.
+     *
+     * @param frameListener  the listener to add
+     */
+    public void addFrameListener(FrameListener frameListener) {
+        frameListeners.add(frameListener);
+    }
+
+    /**
+     * Remove a listener previously added with {@link #addFrameListener(FrameListener)}.
+     *
+     * @param frameListener  the listener to remove
+     */
+    public void removeFrameListener(FrameListener frameListener) {
+        frameListeners.remove(frameListener);
+    }
+
+    /**
+     * @return the low resolution version of the image displayed by this volume while full resolution textures
+     * are computed. It is loaded in the background, and can be displayed by other views of the same image
+     */
+    OverviewVolume getOverview() {
+        return overview;
+    }
+
+    /**
+     * @return whether the faces currently display the image at its full resolution for the current position
+     * of the slicer. This must be called from the JavaFX Application Thread
+     */
+    public boolean isFullResolutionDisplayed() {
+        return fullResolutionDisplayed;
     }
 
-    private List<MeshView> getMeshes() {
+    /**
+     * Start computing in the background the full resolution textures of the faces for another position of the
+     * slicer, so that they are ready (or partly computed) when the slicer moves there. Nothing is displayed.
+     * Only the last prepared position is kept, and it is discarded when the slicer moves elsewhere.
+     * This must be called from the JavaFX Application Thread.
+     *
+     * @param slicerRectangle  the future position of the slicer, in the coordinates of {@link Slicer#toRectangle()}
+     */
+    public void prepare(Rectangle slicerRectangle) {
+        discardPreparedFrame();
+
+        Cube cube = new Cube(imageServer);
+        Slab slab = createSlab(cube, slicerRectangle);
+        if (executor.isShutdown() || (slab == null && overview.isFullResolution() && overview.isLoaded())) {
+            return;
+        }
+
+        List<Polygon> polygons = createPolygons(cube, slicerRectangle);
+        CompletableFuture<List<Image>> diffuseMaps = new CompletableFuture<>();
+        preparedFrame = new PreparedFrame(slicerRectangle, slab, diffuseMaps);
+        executor.execute(SlicerPose.wrap(() -> {
+            try {
+                List<Image> maps = computeDiffuseMaps(polygons, slab, diffuseMaps::isCancelled);
+                if (maps != null) {
+                    diffuseMaps.complete(maps);
+                }
+            } catch (IOException e) {
+                diffuseMaps.completeExceptionally(e);
+            }
+        }));
+    }
+
+    /**
+     * Stop reading the image in the background. This volume won't be updated anymore.
+     */
+    public void close() {
+        executor.shutdownNow();
+        slabProjector.clear();
+        FrameMetrics.unregisterGauge(overviewGaugeName);
+    }
+
+    /**
+     * Recompute the faces of the volume for the current position of the slicer. The faces
+     * are immediately textured with the overview, and the computation of the full resolution
+     * textures is started in the background.
+     */
+    private void draw() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        long frameStartTime = System.nanoTime();
+
         Cube cube = new Cube(imageServer);
-        List<Polygon> polygons = cube.getPartOfCubeInFrontOfRectangle(Rectangle.createFromJavaFXRectangle(slicer));
-        Point3D centroidOfVolume = Point3DExtension.centroid(polygons.stream().map(Polygon::getPoints).flatMap(List::stream).toList());
+        Rectangle slicerRectangle = slicer.toRectangle();
+        polygons = createPolygons(cube, slicerRectangle);
+        centroidOfVolume = Point3DExtension.centroid(polygons.stream().map(Polygon::getPoints).flatMap(List::stream).toList());
+        fullResolutionDisplayed = false;
+        long currentGeneration = ++generation;
+        Slab slab = createSlab(cube, slicerRectangle);
+
+        if (slab == null && overview.isFullResolution() && overview.isLoaded()) {
+            // The overview is the image itself, so there is no need to read it again
+            fullResolutionDisplayed = true;
+            displayFrame(computeOverviewDiffuseMaps(), frameStartTime, frameStartTime, true);
+            return;
+        }
+        displayFrame(computeOverviewDiffuseMaps(), frameStartTime, frameStartTime, false);
+
+        PreparedFrame prepared = preparedFrame;
+        if (prepared != null && prepared.slicerRectangle().equals(slicerRectangle) && Objects.equals(prepared.slab(), slab)) {
+            preparedFrame = null;
+            prepared.diffuseMaps().whenComplete((diffuseMaps, error) -> Platform.runLater(() ->
+                    displayFullResolution(currentGeneration, frameStartTime, diffuseMaps, error)
+            ));
+            return;
+        }
+        discardPreparedFrame();
+
+        List<Polygon> polygons = this.polygons;
+        executor.execute(SlicerPose.wrap(() -> {
+            List<Image> diffuseMaps = null;
+            IOException error = null;
+            try {
+                // The slicer may have moved in the meantime, in which case these textures are not needed anymore
+                diffuseMaps = computeDiffuseMaps(polygons, slab, () -> generation != currentGeneration);
+                if (diffuseMaps == null) {
+                    return;
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+
+            List<Image> maps = diffuseMaps;
+            IOException readError = error;
+            Platform.runLater(() -> displayFullResolution(currentGeneration, frameStartTime, maps, readError));
+        }));
+    }
+
+    /**
+     * Display the full resolution textures computed for a generation, or notify the frame listeners that they
+     * couldn't be computed, unless the slicer moved in the meantime. This must be called from the JavaFX Application Thread.
+     */
+    private void displayFullResolution(long frameGeneration, long frameStartTime, List<Image> diffuseMaps, Throwable error) {
+        if (generation != frameGeneration) {
+            return;
+        }
+
+        if (error == null) {
+            fullResolutionDisplayed = true;
+            displayFrame(diffuseMaps, frameStartTime, System.nanoTime(), true);
+        } else {
+            logger.error("Cannot read {}", imageServer, error);
+            IOException exception = error instanceof IOException ioException ? ioException : new IOException(error);
+            for (FrameListener frameListener: frameListeners) {
+                frameListener.onError(exception);
+            }
+        }
+    }
+
+    /**
+     * Compute the full resolution textures of some polygons.
+     *
+     * @return the textures, or null if the computation was cancelled
+     */
+    private List<Image> computeDiffuseMaps(List<Polygon> polygons, Slab slab, BooleanSupplier cancelled) throws IOException {
+        List<Image> diffuseMaps = new ArrayList<>();
+        for (Polygon polygon: polygons) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            diffuseMaps.add(polygon.isOnRectangle() && slab != null ?
+                    polygon.computeDiffuseMap(sampler, slabProjector, slab) :
+                    polygon.computeDiffuseMap(sampler)
+            );
+        }
+        return diffuseMaps;
+    }
+
+    private void discardPreparedFrame() {
+        if (preparedFrame != null) {
+            preparedFrame.diffuseMaps().cancel(false);
+            preparedFrame = null;
+        }
+    }
+
+    private static List<Polygon> createPolygons(Cube cube, Rectangle slicerRectangle) {
+        return cube.getPartOfCubeInFrontOfRectangle(slicerRectangle).stream()
+                .map(face -> new Polygon(face.points(), cube.getSpaceToPixelTransform(), face.onRectangle()))
+                .toList();
+    }
+
+    /**
+     * @return the slab covered by the slicer at some position, or null if the slicer has no thickness
+     */
+    private Slab createSlab(Cube cube, Rectangle slicerRectangle) {
+        return slicer.getThickness() > 0 ?
+                Slab.create(new Rectangle(slicerRectangle, cube.getSpaceToPixelTransform()), slicer.getThickness(), slicer.getProjection()) :
+                null;
+    }
+
+    /**
+     * Replace the overview textures of the faces with more recent ones, unless the full resolution
+     * textures are already displayed. Several requests can be merged into one redraw.
+     * This function can be called from any thread.
+     */
+    private void requestOverviewRedraw() {
+        if (overviewRedrawPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                overviewRedrawPending.set(false);
+
+                if (!fullResolutionDisplayed) {
+                    boolean fullResolution = overview.isFullResolution() && overview.isLoaded();
+                    fullResolutionDisplayed = fullResolution;
+                    long frameStartTime = System.nanoTime();
+                    displayFrame(computeOverviewDiffuseMaps(), frameStartTime, frameStartTime, fullResolution);
+                }
+            });
+        }
+    }
+
+    private List<Image> computeOverviewDiffuseMaps() {
+        return polygons.stream().map(polygon -> polygon.computeDiffuseMap(sampler, overview)).toList();
+    }
+
+    /**
+     * Replace the faces of the volume. This must be called from the JavaFX Application Thread.
+     *
+     * @param diffuseMaps  the textures of the current polygons
+     * @param frameStartTime  the value of {@link System#nanoTime()} when the computation of the frame started
+     * @param fxThreadStartTime  the value of {@link System#nanoTime()} when the JavaFX Application Thread
+     *                           started working on the frame
+     * @param fullResolution  whether the textures display the image at its full resolution
+     */
+    private void displayFrame(List<Image> diffuseMaps, long frameStartTime, long fxThreadStartTime, boolean fullResolution) {
+        VolumeRebuildEvent rebuildEvent = new VolumeRebuildEvent();
+        FrameDroppedEvent frameDroppedEvent = new FrameDroppedEvent();
+        rebuildEvent.begin();
+        frameDroppedEvent.begin();
+
+        List<MeshView> meshes = new ArrayList<>();
+        for (int i=0; i<polygons.size(); i++) {
+            meshes.add(polygons.get(i).computeMeshView(diffuseMaps.get(i), centroidOfVolume));
+        }
+
+        long startTime = System.nanoTime();
+        getChildren().setAll(meshes);
+        FrameMetrics.record(PipelineStage.SCENE_UPDATE, startTime);
+
+        FrameMetrics.endFrame(frameStartTime);
+
+        if (rebuildEvent.shouldCommit()) {
+            rebuildEvent.poseId = SlicerPose.current();
+            rebuildEvent.numberOfFaces = meshes.size();
+            rebuildEvent.commit();
+        }
+        // Only the time spent on the JavaFX Application Thread can make frames drop
+        long frameDuration = System.nanoTime() - fxThreadStartTime;
+        if (frameDuration > FRAME_BUDGET_NANOS && frameDroppedEvent.shouldCommit()) {
+            frameDroppedEvent.poseId = SlicerPose.current();
+            frameDroppedEvent.budget = FRAME_BUDGET_NANOS;
+            frameDroppedEvent.missedFrames = (int) (frameDuration / FRAME_BUDGET_NANOS);
+            frameDroppedEvent.commit();
+        }
 
-        return polygons.stream().map(
-                polygon -> polygon.computeMeshView(imageServer, centroidOfVolume)
-        ).toList();
+        for (FrameListener frameListener: frameListeners) {
+            frameListener.onFrame(fullResolution);
+        }
     }
 }
@@ -0,0 +1,281 @@
+package qupath.ext.viewer.servers;
+
+import qupath.ext.viewer.bricks.Brick;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.bricks.MappedBrick;
+import qupath.lib.color.ColorModelFactory;
+import qupath.lib.images.servers.AbstractTileableImageServer;
+import qupath.lib.images.servers.ImageChannel;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.ImageServerBuilder;
+import qupath.lib.images.servers.ImageServerMetadata;
+import qupath.lib.images.servers.TileRequest;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ *     An image whose voxels are read from an uncompressed local file (raw, NRRD or TIFF) described
+ *     by a {@link VolumeLayout}. Each z-slice of the file is
+ *     <a href="https://docs.oracle.com/en/java/javase/17/docs/api/java.base/java/nio/channels/FileChannel.html#map(java.nio.channels.FileChannel.MapMode,long,long)">memory-mapped</a>,
+ *     so the operating system loads and caches the pages of the file on demand.
+ * </p>
+ * <p>
+ *     This server is also a {@link BrickSource} whose unique brick (for each time point) covers the whole volume
+ *     and reads voxels directly from the mapped memory. Samplers can therefore read voxels without any copy,
+ *     decoding or intermediate image. Tiles requested through the {@link ImageServer} API are filled with
+ *     bulk copies of the mapped rows when possible.
+ * </p>
+ */
+public class MappedVolumeImageServer extends AbstractTileableImageServer implements BrickSource {
+
+    private static final int MAX_TILE_SIZE = 512;
+    private final VolumeLayout layout;
+    private final ImageServerMetadata metadata;
+    private final ByteBuffer[] blocks;
+    private final MappedBrick[] bricks;
+
+    /**
+     * Map the file described by a layout.
+     *
+     * @param layout  the description of the volume to read
+     * @throws IOException when the file cannot be opened or is smaller than described by the layout
+     */
+    public MappedVolumeImageServer(VolumeLayout layout) throws IOException {
+        this.layout = layout;
+
+        ImageServerMetadata.Builder builder = new ImageServerMetadata.Builder()
+                .name(layout.dataFile().getFileName().toString())
+                .width(layout.width())
+                .height(layout.height())
+                .sizeZ(layout.sizeZ())
+                .sizeT(layout.sizeT())
+                .pixelType(layout.pixelType())
+                .rgb(layout.rgb())
+                .channels(layout.rgb() ? ImageChannel.getDefaultRGBChannels() : ImageChannel.getDefaultChannelList(layout.nChannels()))
+                .preferredTileSize(Math.min(layout.width(), MAX_TILE_SIZE), Math.min(layout.height(), MAX_TILE_SIZE));
+        if (!Double.isNaN(layout.pixelWidthMicrons()) && !Double.isNaN(layout.pixelHeightMicrons())) {
+            builder.pixelSizeMicrons(layout.pixelWidthMicrons(), layout.pixelHeightMicrons());
+        }
+        if (!Double.isNaN(layout.zSpacingMicrons())) {
+            builder.zSpacingMicrons(layout.zSpacingMicrons());
+        }
+        this.metadata = builder.build();
+
+        this.blocks = new ByteBuffer[layout.blockOffsets().length];
+        try (FileChannel channel = FileChannel.open(layout.dataFile(), StandardOpenOption.READ)) {
+            for (int i=0; i<blocks.length; i++) {
+                long offset = layout.blockOffsets()[i];
+                if (offset < 0 || offset + layout.getBlockSize() > channel.size()) {
+                    throw new IOException(String.format(
+                            "%s is too small: block %d ends at byte %d but the file has %d bytes",
+                            layout.dataFile(), i, offset + layout.getBlockSize(), channel.size()
+                    ));
+                }
+
+                // Mappings remain valid after the channel is closed
+                blocks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, layout.getBlockSize()).order(layout.byteOrder());
+            }
+        }
+
+        int blocksPerTimepoint = layout.sizeZ() * layout.getBlocksPerSlice();
+        this.bricks = new MappedBrick[layout.sizeT()];
+        for (int t=0; t<layout.sizeT(); t++) {
+            bricks[t] = new MappedBrick(
+                    0,
+                    0,
+                    0,
+                    layout.width(),
+                    layout.height(),
+                    layout.sizeZ(),
+                    layout.nChannels(),
+                    layout.pixelType(),
+                    Arrays.copyOfRange(blocks, t * blocksPerTimepoint, (t+1) * blocksPerTimepoint),
+                    layout.width(),
+                    layout.channelsInterleaved()
+            );
+        }
+    }
+
+    @Override
+    protected ImageServerBuilder.ServerBuilder<BufferedImage> createServerBuilder() {
+        return null;
+    }
+
+    @Override
+    protected String createID() {
+        return String.format(
+                "mapped://%s#%dx%dx%dx%d/%d-%s-%s%s/%d",
+                layout.dataFile().toUri(),
+                layout.width(),
+                layout.height(),
+                layout.sizeZ(),
+                layout.sizeT(),
+                layout.nChannels(),
+                layout.pixelType(),
+                layout.byteOrder(),
+                layout.channelsInterleaved() ? "-interleaved" : "",
+                layout.blockOffsets()[0]
+        );
+    }
+
+    @Override
+    public Collection<URI> getURIs() {
+        return List.of(layout.dataFile().toUri());
+    }
+
+    @Override
+    public String getServerType() {
+        return "Memory-mapped volume";
+    }
+
+    @Override
+    public ImageServerMetadata getOriginalMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public ImageServer<BufferedImage> getServer() {
+        return this;
+    }
+
+    @Override
+    public int getBrickWidth() {
+        return layout.width();
+    }
+
+    @Override
+    public int getBrickHeight() {
+        return layout.height();
+    }
+
+    @Override
+    public int getBrickDepth() {
+        return layout.sizeZ();
+    }
+
+    @Override
+    public Brick getBrick(int level, int t, int x, int y, int z) {
+        if (level != 0 || x != 0 || y != 0 || z != 0 || t < 0 || t >= bricks.length) {
+            throw new IllegalArgumentException(String.format("Brick (%d, %d, %d, level %d, t %d) outside of image", x, y, z, level, t));
+        }
+        return bricks[t];
+    }
+
+    /**
+     * @return the layout of the file read by this server
+     */
+    public VolumeLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    protected BufferedImage readTile(TileRequest tileRequest) {
+        int width = tileRequest.getTileWidth();
+        int height = tileRequest.getTileHeight();
+        double downsample = tileRequest.getDownsample();
+        int x0 = tileRequest.getImageX();
+        int y0 = tileRequest.getImageY();
+        MappedBrick brick = bricks[tileRequest.getT()];
+        int z = tileRequest.getZ();
+
+        if (isRGB()) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+            for (int y=0; y<height; y++) {
+                int j = Math.min(getHeight() - 1, (int) (y0 + y * downsample));
+                for (int x=0; x<width; x++) {
+                    int i = Math.min(getWidth() - 1, (int) (x0 + x * downsample));
+                    pixels[y * width + x] = (int) brick.getValue(0, i, j, z) << 16 |
+                            (int) brick.getValue(1, i, j, z) << 8 |
+                            (int) brick.getValue(2, i, j, z);
+                }
+            }
+
+            return image;
+        } else {
+            DataBuffer dataBuffer = createDataBuffer(width * height, nChannels());
+
+            for (int c=0; c<nChannels(); c++) {
+                for (int y=0; y<height; y++) {
+                    int j = Math.min(getHeight() - 1, (int) (y0 + y * downsample));
+
+                    if (downsample == 1 && !layout.channelsInterleaved()) {
+                        int blockIndex = ((tileRequest.getT() * nZSlices() + z) * nChannels()) + c;
+                        copyRow(blockIndex, j * getWidth() + x0, dataBuffer, c, y * width, width);
+                    } else {
+                        for (int x=0; x<width; x++) {
+                            int i = Math.min(getWidth() - 1, (int) (x0 + x * downsample));
+                            dataBuffer.setElemDouble(c, y * width + x, brick.getValue(c, i, j, z));
+                        }
+                    }
+                }
+            }
+
+            WritableRaster raster = Raster.createWritableRaster(
+                    new BandedSampleModel(dataBuffer.getDataType(), width, height, nChannels()),
+                    dataBuffer,
+                    null
+            );
+            return new BufferedImage(
+                    ColorModelFactory.createColorModel(getPixelType(), getMetadata().getChannels()),
+                    raster,
+                    false,
+                    null
+            );
+        }
+    }
+
+    /**
+     * Copy consecutive values of a block to a bank of a data buffer, without converting them.
+     */
+    private void copyRow(int blockIndex, int elementIndex, DataBuffer dataBuffer, int bank, int offset, int length) {
+        ByteBuffer block = blocks[blockIndex];
+
+        if (dataBuffer instanceof DataBufferByte dataBufferByte) {
+            block.get(elementIndex, dataBufferByte.getData(bank), offset, length);
+        } else if (dataBuffer instanceof DataBufferUShort dataBufferUShort) {
+            block.asShortBuffer().get(elementIndex, dataBufferUShort.getData(bank), offset, length);
+        } else if (dataBuffer instanceof DataBufferShort dataBufferShort) {
+            block.asShortBuffer().get(elementIndex, dataBufferShort.getData(bank), offset, length);
+        } else if (dataBuffer instanceof DataBufferInt dataBufferInt) {
+            block.asIntBuffer().get(elementIndex, dataBufferInt.getData(bank), offset, length);
+        } else if (dataBuffer instanceof DataBufferFloat dataBufferFloat) {
+            block.asFloatBuffer().get(elementIndex, dataBufferFloat.getData(bank), offset, length);
+        } else if (dataBuffer instanceof DataBufferDouble dataBufferDouble) {
+            block.asDoubleBuffer().get(elementIndex, dataBufferDouble.getData(bank), offset, length);
+        }
+    }
+
+    private DataBuffer createDataBuffer(int size, int nBanks) {
+        return switch (getPixelType()) {
+            case UINT8 -> new DataBufferByte(size, nBanks);
+            case UINT16 -> new DataBufferUShort(size, nBanks);
+            case INT16 -> new DataBufferShort(size, nBanks);
+            case INT32 -> new DataBufferInt(size, nBanks);
+            case FLOAT32 -> new DataBufferFloat(size, nBanks);
+            case FLOAT64 -> new DataBufferDouble(size, nBanks);
+            default -> throw new IllegalStateException(getPixelType() + " is not supported");
+        };
+    }
+}
@@ -0,0 +1,330 @@
+package qupath.ext.viewer.servers;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read the layout of a <a href="https://teem.sourceforge.net/nrrd/format.html">NRRD</a> file.
+ */
+class NrrdLayoutReader {
+
+    private static final Set<String> SPATIAL_KINDS = Set.of("domain", "space");
+    private static final String TIME_KIND = "time";
+
+    private NrrdLayoutReader() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    private enum Axis {
+        X,
+        Y,
+        Z,
+        T,
+        C
+    }
+
+    /**
+     * See {@link VolumeLayout#createFromNrrd(Path)}.
+     */
+    public static VolumeLayout read(Path file) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        long headerSize = readHeader(file, fields);
+
+        String encoding = fields.getOrDefault("encoding", "");
+        if (!encoding.equals("raw")) {
+            throw new IOException("Unsupported NRRD encoding: " + encoding);
+        }
+        PixelType pixelType = getPixelType(fields.getOrDefault("type", ""));
+        ByteOrder byteOrder = "big".equals(fields.get("endian")) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+        String[] sizeValues = getRequiredField(fields, "sizes").split("\\s+");
+        int[] sizes = new int[sizeValues.length];
+        for (int i=0; i<sizes.length; i++) {
+            sizes[i] = parseInt(sizeValues[i], "sizes");
+            if (sizes[i] < 1) {
+                throw new IOException("Invalid NRRD size: " + sizes[i]);
+            }
+        }
+        if (sizes.length != parseInt(getRequiredField(fields, "dimension"), "dimension")) {
+            throw new IOException("The number of sizes doesn't match the dimension");
+        }
+        Axis[] axes = getAxes(sizes, fields.get("kinds"));
+
+        Path dataFile = file;
+        long dataOffset = headerSize;
+        String detachedFile = fields.containsKey("data file") ? fields.get("data file") : fields.get("datafile");
+        if (detachedFile != null) {
+            if (detachedFile.startsWith("LIST") || detachedFile.contains(" ")) {
+                throw new IOException("NRRD data split across several files is not supported");
+            }
+            dataFile = file.resolveSibling(detachedFile);
+            dataOffset = 0;
+        }
+        long byteSkip = parseLong(fields.getOrDefault("byte skip", "0"), "byte skip");
+        if (byteSkip < 0 || !fields.getOrDefault("line skip", "0").equals("0")) {
+            throw new IOException("Negative byte skips and line skips are not supported");
+        }
+        dataOffset += byteSkip;
+
+        long[] strides = new long[Axis.values().length];
+        int[] axisSizes = new int[Axis.values().length];
+        Arrays.fill(axisSizes, 1);
+        long stride = pixelType.getBytesPerPixel();
+        for (int i=0; i<axes.length; i++) {
+            strides[axes[i].ordinal()] = stride;
+            axisSizes[axes[i].ordinal()] = sizes[i];
+            stride *= sizes[i];
+        }
+
+        boolean channelsInterleaved = axes[0] == Axis.C;
+        int firstPlaneAxis = channelsInterleaved ? 1 : 0;
+        if (firstPlaneAxis + 1 >= axes.length || axes[firstPlaneAxis] != Axis.X || axes[firstPlaneAxis + 1] != Axis.Y) {
+            throw new IOException("The x and y axes must be the fastest varying spatial axes");
+        }
+
+        int sizeZ = axisSizes[Axis.Z.ordinal()];
+        int sizeT = axisSizes[Axis.T.ordinal()];
+        int nChannels = axisSizes[Axis.C.ordinal()];
+        int blocksPerSlice = channelsInterleaved ? 1 : nChannels;
+        long[] blockOffsets = new long[sizeT * sizeZ * blocksPerSlice];
+        for (int t=0; t<sizeT; t++) {
+            for (int z=0; z<sizeZ; z++) {
+                for (int c=0; c<blocksPerSlice; c++) {
+                    blockOffsets[(t * sizeZ + z) * blocksPerSlice + c] = dataOffset +
+                            t * strides[Axis.T.ordinal()] +
+                            z * strides[Axis.Z.ordinal()] +
+                            c * strides[Axis.C.ordinal()];
+                }
+            }
+        }
+
+        double[] spacings = getSpacingsInMicrons(fields, axes);
+        try {
+            return new VolumeLayout(
+                    dataFile,
+                    axisSizes[Axis.X.ordinal()],
+                    axisSizes[Axis.Y.ordinal()],
+                    sizeZ,
+                    sizeT,
+                    nChannels,
+                    pixelType,
+                    byteOrder,
+                    channelsInterleaved,
+                    false,
+                    blockOffsets,
+                    spacings[Axis.X.ordinal()],
+                    spacings[Axis.Y.ordinal()],
+                    spacings[Axis.Z.ordinal()]
+            );
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Read the header of a NRRD file.
+     *
+     * @param file  the file to read
+     * @param fields  a map that will be filled with the fields of the header. Keys are lowercase
+     * @return the number of bytes of the header, including the empty line terminating it
+     * @throws IOException when the file cannot be read or is not a NRRD file
+     */
+    private static long readHeader(Path file, Map<String, String> fields) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+            long headerSize = 0;
+            boolean firstLine = true;
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+            int b;
+            while ((b = inputStream.read()) != -1) {
+                headerSize++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                String text = line.toString(StandardCharsets.ISO_8859_1).strip();
+                line.reset();
+                if (firstLine) {
+                    if (!text.startsWith("NRRD000")) {
+                        throw new IOException(file + " is not a NRRD file");
+                    }
+                    firstLine = false;
+                } else if (text.isEmpty()) {
+                    return headerSize;
+                } else if (!text.startsWith("#") && !text.contains(":=")) {
+                    int separator = text.indexOf(':');
+                    if (separator > 0) {
+                        fields.put(text.substring(0, separator).strip().toLowerCase(Locale.ROOT), text.substring(separator + 1).strip());
+                    }
+                }
+            }
+
+            // Detached headers don't have to end with an empty line
+            if (firstLine) {
+                throw new IOException(file + " is not a NRRD file");
+            }
+            return headerSize;
+        }
+    }
+
+    private static String getRequiredField(Map<String, String> fields, String name) throws IOException {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new IOException("Missing NRRD field: " + name);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String fieldName) throws IOException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid value of the NRRD field %s: %s", fieldName, value), e);
+        }
+    }
+
+    private static long parseLong(String value, String fieldName) throws IOException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid value of the NRRD field %s: %s", fieldName, value), e);
+        }
+    }
+
+    private static double parseDouble(String value, String fieldName) throws IOException {
+        if (value.equalsIgnoreCase("nan")) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid value of the NRRD field %s: %s", fieldName, value), e);
+        }
+    }
+
+    private static PixelType getPixelType(String type) throws IOException {
+        return switch (type) {
+            case "uchar", "unsigned char", "uint8", "uint8_t" -> PixelType.UINT8;
+            case "short", "short int", "signed short", "signed short int", "int16", "int16_t" -> PixelType.INT16;
+            case "ushort", "unsigned short", "unsigned short int", "uint16", "uint16_t" -> PixelType.UINT16;
+            case "int", "signed int", "int32", "int32_t" -> PixelType.INT32;
+            case "float" -> PixelType.FLOAT32;
+            case "double" -> PixelType.FLOAT64;
+            default -> throw new IOException("Unsupported NRRD type: " + type);
+        };
+    }
+
+    /**
+     * Find the meaning of each axis of the file, from the fastest to the slowest varying one.
+     * The spatial axes are x, y and z in this order. If kinds are not provided, the first axis of
+     * a 4D volume is considered to be the channel axis.
+     */
+    private static Axis[] getAxes(int[] sizes, String kindsField) throws IOException {
+        if (sizes.length < 2 || sizes.length > 5) {
+            throw new IOException("Unsupported NRRD dimension: " + sizes.length);
+        }
+
+        Axis[] axes = new Axis[sizes.length];
+        if (kindsField == null) {
+            List<Axis> spatialAxes = new ArrayList<>(List.of(Axis.X, Axis.Y, Axis.Z));
+            for (int i=0; i<sizes.length; i++) {
+                if (sizes.length >= 4 && i == 0) {
+                    axes[i] = Axis.C;
+                } else {
+                    axes[i] = spatialAxes.isEmpty() ? Axis.T : spatialAxes.remove(0);
+                }
+            }
+        } else {
+            String[] kinds = kindsField.split("\\s+");
+            if (kinds.length != sizes.length) {
+                throw new IOException("The number of kinds doesn't match the dimension");
+            }
+
+            List<Axis> spatialAxes = new ArrayList<>(List.of(Axis.X, Axis.Y, Axis.Z));
+            for (int i=0; i<kinds.length; i++) {
+                String kind = kinds[i].toLowerCase(Locale.ROOT);
+                if (SPATIAL_KINDS.contains(kind) && !spatialAxes.isEmpty()) {
+                    axes[i] = spatialAxes.remove(0);
+                } else if (kind.equals(TIME_KIND)) {
+                    axes[i] = Axis.T;
+                } else {
+                    axes[i] = Axis.C;
+                }
+            }
+        }
+
+        if (Arrays.stream(axes).distinct().count() != axes.length) {
+            throw new IOException("Unsupported NRRD axes: " + Arrays.toString(axes));
+        }
+        return axes;
+    }
+
+    /**
+     * @return the spacing in microns of each {@link Axis}, or NaN if unknown
+     * @throws IOException when the spacings of the file are not numbers
+     */
+    private static double[] getSpacingsInMicrons(Map<String, String> fields, Axis[] axes) throws IOException {
+        double[] spacings = new double[Axis.values().length];
+        Arrays.fill(spacings, Double.NaN);
+
+        List<Double> spatialSpacings = new ArrayList<>();
+        if (fields.containsKey("space directions")) {
+            for (String direction: fields.get("space directions").split("\\)\\s*")) {
+                String vector = direction.strip().replace("(", "");
+                if (!vector.isEmpty() && !vector.equals("none")) {
+                    double squaredNorm = 0;
+                    for (String component: vector.split(",")) {
+                        squaredNorm += Math.pow(parseDouble(component.strip(), "space directions"), 2);
+                    }
+                    spatialSpacings.add(Math.sqrt(squaredNorm));
+                }
+            }
+        } else if (fields.containsKey("spacings")) {
+            String[] values = fields.get("spacings").split("\\s+");
+            for (int i=0; i<values.length && i<axes.length; i++) {
+                if (axes[i] == Axis.X || axes[i] == Axis.Y || axes[i] == Axis.Z) {
+                    spatialSpacings.add(parseDouble(values[i], "spacings"));
+                }
+            }
+        }
+
+        double unitToMicrons = getUnitToMicrons(fields.get("space units"));
+        List<Axis> spatialAxes = Arrays.stream(axes).filter(axis -> axis == Axis.X || axis == Axis.Y || axis == Axis.Z).toList();
+        for (int i=0; i<spatialAxes.size() && i<spatialSpacings.size(); i++) {
+            spacings[spatialAxes.get(i).ordinal()] = spatialSpacings.get(i) * unitToMicrons;
+        }
+
+        return spacings;
+    }
+
+    private static double getUnitToMicrons(String unitsField) {
+        if (unitsField == null) {
+            return Double.NaN;
+        }
+
+        String unit = unitsField.replace("\"", "").strip().split("\\s+")[0];
+        return switch (unit) {
+            case "m" -> 1e6;
+            case "mm" -> 1e3;
+            case "um", "\u00B5m", "micron", "microns" -> 1;
+            case "nm" -> 1e-3;
+            default -> Double.NaN;
+        };
+    }
+}
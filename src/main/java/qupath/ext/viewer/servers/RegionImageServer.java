@@ -0,0 +1,232 @@
+package qupath.ext.viewer.servers;
+
+import qupath.lib.color.ColorModelFactory;
+import qupath.lib.images.servers.AbstractTileableImageServer;
+import qupath.lib.images.servers.ImageServer;
+import qupath.lib.images.servers.ImageServerBuilder;
+import qupath.lib.images.servers.ImageServerMetadata;
+import qupath.lib.images.servers.TileRequest;
+import qupath.lib.regions.RegionRequest;
+import qupath.lib.roi.interfaces.ROI;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+
+/**
+ * <p>
+ *     A sub-volume of another image, delimited by the bounding box of a {@link ROI} on the x and y axes
+ *     and by a range of z-slices. Pixels outside the ROI are set to 0.
+ * </p>
+ * <p>
+ *     Only the part of the other image inside the sub-volume is read: tiles located entirely outside the ROI
+ *     are returned empty without reading the other image, and tiles located entirely inside the ROI are returned
+ *     without masking. As caches (including brick caches) are keyed by the ID of the image, they only contain
+ *     voxels of the sub-volume.
+ * </p>
+ */
+public class RegionImageServer extends AbstractTileableImageServer {
+
+    private final ImageServer<BufferedImage> server;
+    private final ROI roi;
+    private final Shape mask;
+    private final int x;
+    private final int y;
+    private final int zStart;
+    private final ImageServerMetadata metadata;
+
+    /**
+     * Create the sub-volume.
+     *
+     * @param server  the image to read
+     * @param roi  the region of the image to keep. Pixels outside this region are set to 0 if it's an area,
+     *             otherwise all pixels of its bounding box are kept
+     * @param zStart  the first z-slice (inclusive) to keep
+     * @param zEnd  the last z-slice (exclusive) to keep
+     * @throws IllegalArgumentException when the bounding box of the ROI doesn't intersect the image,
+     * or when the range of z-slices is empty or outside the image
+     */
+    public RegionImageServer(ImageServer<BufferedImage> server, ROI roi, int zStart, int zEnd) {
+        this.x = Math.max(0, (int) Math.floor(roi.getBoundsX()));
+        this.y = Math.max(0, (int) Math.floor(roi.getBoundsY()));
+        int width = Math.min(server.getWidth(), (int) Math.ceil(roi.getBoundsX() + roi.getBoundsWidth())) - x;
+        int height = Math.min(server.getHeight(), (int) Math.ceil(roi.getBoundsY() + roi.getBoundsHeight())) - y;
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException(String.format("The ROI %s doesn't intersect the image %s", roi, server));
+        }
+        if (zStart < 0 || zEnd > server.nZSlices() || zStart >= zEnd) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid z-slice range [%d, %d[ for an image with %d z-slices", zStart, zEnd, server.nZSlices()
+            ));
+        }
+
+        this.server = server;
+        this.roi = roi;
+        this.mask = roi.isArea() ? roi.getShape() : null;
+        this.zStart = zStart;
+        this.metadata = new ImageServerMetadata.Builder(server.getMetadata())
+                .name(server.getMetadata().getName() + " (region)")
+                .width(width)
+                .height(height)
+                .sizeZ(zEnd - zStart)
+                .levelsFromDownsamples(server.getPreferredDownsamples())
+                .preferredTileSize(
+                        Math.min(width, server.getMetadata().getPreferredTileWidth()),
+                        Math.min(height, server.getMetadata().getPreferredTileHeight())
+                )
+                .build();
+    }
+
+    @Override
+    protected ImageServerBuilder.ServerBuilder<BufferedImage> createServerBuilder() {
+        return null;
+    }
+
+    @Override
+    protected String createID() {
+        return String.format(
+                "%s#region=%d,%d,%dx%d/z%d-%d/%s-%08x",
+                server.getPath(),
+                x,
+                y,
+                metadata.getWidth(),
+                metadata.getHeight(),
+                zStart,
+                zStart + metadata.getSizeZ(),
+                roi.getRoiName(),
+                mask == null ? 0 : getShapeHash(mask)
+        );
+    }
+
+    @Override
+    public Collection<URI> getURIs() throws IOException {
+        return server.getURIs();
+    }
+
+    @Override
+    public String getServerType() {
+        return "Region of " + server.getServerType();
+    }
+
+    @Override
+    public ImageServerMetadata getOriginalMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the image this sub-volume is part of
+     */
+    public ImageServer<BufferedImage> getWrappedServer() {
+        return server;
+    }
+
+    /**
+     * @return the ROI delimiting this sub-volume
+     */
+    public ROI getROI() {
+        return roi;
+    }
+
+    @Override
+    protected BufferedImage readTile(TileRequest tileRequest) throws IOException {
+        // Bounds of the tile in the full resolution coordinates of the wrapped image
+        Rectangle bounds = new Rectangle(
+                x + tileRequest.getImageX(),
+                y + tileRequest.getImageY(),
+                tileRequest.getImageWidth(),
+                tileRequest.getImageHeight()
+        );
+
+        if (mask != null && !mask.intersects(bounds)) {
+            return createEmptyTile(tileRequest.getTileWidth(), tileRequest.getTileHeight());
+        }
+
+        BufferedImage image = server.readRegion(RegionRequest.createInstance(
+                server.getPath(),
+                tileRequest.getDownsample(),
+                bounds.x,
+                bounds.y,
+                bounds.width,
+                bounds.height,
+                zStart + tileRequest.getZ(),
+                tileRequest.getT()
+        ));
+        if (image == null || mask == null || mask.contains(bounds)) {
+            return image;
+        }
+
+        // The image returned by the wrapped server may be cached, so it must not be modified
+        BufferedImage maskedImage = new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+        applyMask(maskedImage.getRaster(), bounds, tileRequest.getDownsample());
+        return maskedImage;
+    }
+
+    private void applyMask(WritableRaster raster, Rectangle bounds, double downsample) {
+        BufferedImage maskImage = new BufferedImage(raster.getWidth(), raster.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = maskImage.createGraphics();
+        graphics.scale(1 / downsample, 1 / downsample);
+        graphics.translate(-bounds.x, -bounds.y);
+        graphics.setColor(Color.WHITE);
+        graphics.fill(mask);
+        graphics.dispose();
+
+        Raster maskRaster = maskImage.getRaster();
+        for (int j=0; j<raster.getHeight(); j++) {
+            for (int i=0; i<raster.getWidth(); i++) {
+                if (maskRaster.getSample(i, j, 0) == 0) {
+                    for (int b=0; b<raster.getNumBands(); b++) {
+                        raster.setSample(i, j, b, 0);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a hash of the vertices of a shape, which (unlike {@link Shape#hashCode()}) doesn't change between sessions
+     */
+    private static int getShapeHash(Shape shape) {
+        int hash = 1;
+        double[] coordinates = new double[6];
+
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int segmentType = iterator.currentSegment(coordinates);
+            hash = 31 * hash + segmentType;
+            for (double coordinate: coordinates) {
+                hash = 31 * hash + Double.hashCode(coordinate);
+            }
+        }
+        return hash;
+    }
+
+    private BufferedImage createEmptyTile(int width, int height) {
+        if (isRGB()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        int dataType = switch (getPixelType()) {
+            case UINT8, INT8 -> DataBuffer.TYPE_BYTE;
+            case UINT16 -> DataBuffer.TYPE_USHORT;
+            case INT16 -> DataBuffer.TYPE_SHORT;
+            case UINT32, INT32 -> DataBuffer.TYPE_INT;
+            case FLOAT32 -> DataBuffer.TYPE_FLOAT;
+            case FLOAT64 -> DataBuffer.TYPE_DOUBLE;
+        };
+        return new BufferedImage(
+                ColorModelFactory.createColorModel(getPixelType(), getMetadata().getChannels()),
+                Raster.createWritableRaster(new BandedSampleModel(dataType, width, height, nChannels()), null),
+                false,
+                null
+        );
+    }
+}
@@ -0,0 +1,370 @@
+package qupath.ext.viewer.servers;
+
+import qupath.lib.color.ColorModelFactory;
+import qupath.lib.images.servers.AbstractTileableImageServer;
+import qupath.lib.images.servers.ImageChannel;
+import qupath.lib.images.servers.ImageServerBuilder;
+import qupath.lib.images.servers.ImageServerMetadata;
+import qupath.lib.images.servers.PixelType;
+import qupath.lib.images.servers.TileRequest;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ *     A generated image whose dimensions, pixel type, number of channels, resolution levels
+ *     and tile size can be configured with a {@link Builder}. It is intended for load testing.
+ * </p>
+ * <p>
+ *     The image contains spheres placed on a regular grid on a background of zeros. The radius
+ *     of the spheres depends on the channel, and their intensity decreases from their center.
+ *     Pixels are computed directly into the buffers of the returned tiles, without creating
+ *     any intermediate object.
+ * </p>
+ * <p>
+ *     Each tile request can be delayed by a fixed latency plus a random jitter, to reproduce
+ *     the behaviour of images located on a network storage. The number of bytes generated
+ *     so far can be retrieved with {@link #getBytesRead()}.
+ * </p>
+ */
+public class SyntheticImageServer extends AbstractTileableImageServer {
+
+    private static final int SPHERE_SPACING = 64;
+    private static final int SPHERE_RADIUS = 20;
+    private static final int SPHERE_RADIUS_INCREMENT_PER_CHANNEL = 4;
+    private final ImageServerMetadata metadata;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final LongAdder bytesRead = new LongAdder();
+
+    private SyntheticImageServer(Builder builder) {
+        this.latencyMillis = builder.latencyMillis;
+        this.jitterMillis = builder.jitterMillis;
+
+        metadata = new ImageServerMetadata.Builder()
+                .name("Synthetic image")
+                .width(builder.width)
+                .height(builder.height)
+                .sizeZ(builder.sizeZ)
+                .sizeT(builder.sizeT)
+                .pixelType(builder.pixelType)
+                .rgb(builder.rgb)
+                .channels(builder.rgb ? ImageChannel.getDefaultRGBChannels() : ImageChannel.getDefaultChannelList(builder.nChannels))
+                .levelsFromDownsamples(IntStream.range(0, builder.nLevels).mapToDouble(i -> Math.pow(2, i)).toArray())
+                .preferredTileSize(builder.tileWidth, builder.tileHeight)
+                .build();
+    }
+
+    /**
+     * A builder to create a {@link SyntheticImageServer}. By default, the image
+     * has a size of (x: 1024, y: 1024, z: 256, t: 1), one 8-bit channel, one resolution level,
+     * tiles of 256x256 pixels, and no latency.
+     */
+    public static class Builder {
+
+        private int width = 1024;
+        private int height = 1024;
+        private int sizeZ = 256;
+        private int sizeT = 1;
+        private int nChannels = 1;
+        private PixelType pixelType = PixelType.UINT8;
+        private boolean rgb = false;
+        private int nLevels = 1;
+        private int tileWidth = 256;
+        private int tileHeight = 256;
+        private long latencyMillis = 0;
+        private long jitterMillis = 0;
+
+        /**
+         * @param width  the width of the image in pixels
+         * @return this builder
+         */
+        public Builder width(int width) {
+            this.width = width;
+            return this;
+        }
+
+        /**
+         * @param height  the height of the image in pixels
+         * @return this builder
+         */
+        public Builder height(int height) {
+            this.height = height;
+            return this;
+        }
+
+        /**
+         * @param sizeZ  the number of z-slices of the image
+         * @return this builder
+         */
+        public Builder sizeZ(int sizeZ) {
+            this.sizeZ = sizeZ;
+            return this;
+        }
+
+        /**
+         * @param sizeT  the number of time points of the image
+         * @return this builder
+         */
+        public Builder sizeT(int sizeT) {
+            this.sizeT = sizeT;
+            return this;
+        }
+
+        /**
+         * @param nChannels  the number of channels of the image. Ignored if the image is RGB
+         * @return this builder
+         */
+        public Builder channels(int nChannels) {
+            this.nChannels = nChannels;
+            return this;
+        }
+
+        /**
+         * @param pixelType  the type of the pixels. {@link PixelType#INT8} and {@link PixelType#UINT32}
+         *                   are not supported
+         * @return this builder
+         */
+        public Builder pixelType(PixelType pixelType) {
+            this.pixelType = pixelType;
+            return this;
+        }
+
+        /**
+         * @param rgb  whether the image should be a packed RGB image. This requires the
+         *             pixel type to be {@link PixelType#UINT8}
+         * @return this builder
+         */
+        public Builder rgb(boolean rgb) {
+            this.rgb = rgb;
+            return this;
+        }
+
+        /**
+         * @param nLevels  the number of resolution levels. Each level has half the
+         *                 resolution of the previous one
+         * @return this builder
+         */
+        public Builder levels(int nLevels) {
+            this.nLevels = nLevels;
+            return this;
+        }
+
+        /**
+         * @param tileWidth  the width of the tiles in pixels
+         * @param tileHeight  the height of the tiles in pixels
+         * @return this builder
+         */
+        public Builder tileSize(int tileWidth, int tileHeight) {
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            return this;
+        }
+
+        /**
+         * @param latencyMillis  the time each tile request should at least take, in milliseconds
+         * @param jitterMillis  the maximum random time added to the latency of each tile request, in milliseconds
+         * @return this builder
+         */
+        public Builder latency(long latencyMillis, long jitterMillis) {
+            this.latencyMillis = latencyMillis;
+            this.jitterMillis = jitterMillis;
+            return this;
+        }
+
+        /**
+         * Create the image server.
+         *
+         * @return a new image server with the parameters of this builder
+         * @throws IllegalArgumentException when a parameter is invalid
+         */
+        public SyntheticImageServer build() {
+            if (width < 1 || height < 1 || sizeZ < 1 || sizeT < 1 || nChannels < 1 || nLevels < 1 || tileWidth < 1 || tileHeight < 1) {
+                throw new IllegalArgumentException("Sizes, number of channels and number of levels must be positive");
+            }
+            if (latencyMillis < 0 || jitterMillis < 0) {
+                throw new IllegalArgumentException("Latency and jitter must be positive");
+            }
+            if (pixelType == PixelType.INT8 || pixelType == PixelType.UINT32) {
+                throw new IllegalArgumentException(pixelType + " is not supported");
+            }
+            if (rgb && pixelType != PixelType.UINT8) {
+                throw new IllegalArgumentException("RGB images must have the " + PixelType.UINT8 + " pixel type");
+            }
+
+            return new SyntheticImageServer(this);
+        }
+    }
+
+    @Override
+    protected ImageServerBuilder.ServerBuilder<BufferedImage> createServerBuilder() {
+        return null;
+    }
+
+    @Override
+    protected String createID() {
+        return String.format(
+                "synthetic://%dx%dx%dx%d/%d-%s%s/%d-levels/%dx%d-tiles/%d+%dms",
+                metadata.getWidth(),
+                metadata.getHeight(),
+                metadata.getSizeZ(),
+                metadata.getSizeT(),
+                metadata.getSizeC(),
+                metadata.getPixelType(),
+                metadata.isRGB() ? "-rgb" : "",
+                metadata.nLevels(),
+                metadata.getPreferredTileWidth(),
+                metadata.getPreferredTileHeight(),
+                latencyMillis,
+                jitterMillis
+        );
+    }
+
+    @Override
+    public Collection<URI> getURIs() {
+        return List.of();
+    }
+
+    @Override
+    public String getServerType() {
+        return "Synthetic image server";
+    }
+
+    @Override
+    public ImageServerMetadata getOriginalMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the total number of bytes of the tiles generated by this server so far
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    protected BufferedImage readTile(TileRequest tileRequest) throws IOException {
+        waitLatency();
+
+        int width = tileRequest.getTileWidth();
+        int height = tileRequest.getTileHeight();
+        bytesRead.add((long) width * height * nChannels() * getPixelType().getBytesPerPixel());
+        double downsample = tileRequest.getDownsample();
+        int x0 = tileRequest.getImageX();
+        int y0 = tileRequest.getImageY();
+        int z = tileRequest.getZ();
+
+        if (isRGB()) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+            for (int y=0; y<height; y++) {
+                for (int x=0; x<width; x++) {
+                    int i = (int) (x0 + x * downsample);
+                    int j = (int) (y0 + y * downsample);
+                    pixels[y * width + x] = (int) (255 * getIntensity(i, j, z, 0)) << 16 |
+                            (int) (255 * getIntensity(i, j, z, 1)) << 8 |
+                            (int) (255 * getIntensity(i, j, z, 2));
+                }
+            }
+
+            return image;
+        } else {
+            DataBuffer dataBuffer = createDataBuffer(width * height, nChannels());
+            double maxValue = getMaxValue();
+
+            for (int c=0; c<nChannels(); c++) {
+                for (int y=0; y<height; y++) {
+                    for (int x=0; x<width; x++) {
+                        dataBuffer.setElemDouble(
+                                c,
+                                y * width + x,
+                                maxValue * getIntensity((int) (x0 + x * downsample), (int) (y0 + y * downsample), z, c)
+                        );
+                    }
+                }
+            }
+
+            WritableRaster raster = Raster.createWritableRaster(
+                    new BandedSampleModel(dataBuffer.getDataType(), width, height, nChannels()),
+                    dataBuffer,
+                    null
+            );
+            return new BufferedImage(
+                    ColorModelFactory.createColorModel(getPixelType(), getMetadata().getChannels()),
+                    raster,
+                    false,
+                    null
+            );
+        }
+    }
+
+    private void waitLatency() throws InterruptedIOException {
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while simulating the latency of " + getPath());
+            }
+        }
+    }
+
+    /**
+     * Compute the intensity of a pixel.
+     *
+     * @return the intensity of the pixel at the provided position (in full resolution coordinates),
+     * between 0 and 1
+     */
+    private static double getIntensity(int x, int y, int z, int c) {
+        int dx = Math.floorMod(x, SPHERE_SPACING) - SPHERE_SPACING / 2;
+        int dy = Math.floorMod(y, SPHERE_SPACING) - SPHERE_SPACING / 2;
+        int dz = Math.floorMod(z, SPHERE_SPACING) - SPHERE_SPACING / 2;
+        int radius = SPHERE_RADIUS + c * SPHERE_RADIUS_INCREMENT_PER_CHANNEL;
+        int squaredDistance = dx*dx + dy*dy + dz*dz;
+
+        return squaredDistance < radius*radius ? 1 - (double) squaredDistance / (radius*radius) : 0;
+    }
+
+    private DataBuffer createDataBuffer(int size, int nBanks) {
+        return switch (getPixelType()) {
+            case UINT8 -> new DataBufferByte(size, nBanks);
+            case UINT16 -> new DataBufferUShort(size, nBanks);
+            case INT16 -> new DataBufferShort(size, nBanks);
+            case INT32 -> new DataBufferInt(size, nBanks);
+            case FLOAT32 -> new DataBufferFloat(size, nBanks);
+            case FLOAT64 -> new DataBufferDouble(size, nBanks);
+            default -> throw new IllegalStateException(getPixelType() + " is not supported");
+        };
+    }
+
+    private double getMaxValue() {
+        return switch (getPixelType()) {
+            case UINT8 -> 255;
+            case UINT16 -> 65535;
+            case INT16 -> Short.MAX_VALUE;
+            case INT32 -> Integer.MAX_VALUE;
+            default -> 1;
+        };
+    }
+}
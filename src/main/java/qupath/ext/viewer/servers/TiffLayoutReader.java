@@ -0,0 +1,366 @@
+package qupath.ext.viewer.servers;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read the layout of an uncompressed <a href="https://www.itu.int/itudoc/itu-t/com16/tiff-fx/docs/tiff6.pdf">TIFF</a> file.
+ */
+class TiffLayoutReader {
+
+    private static final int MAGIC_NUMBER = 42;
+    private static final int BIG_TIFF_MAGIC_NUMBER = 43;
+    private static final int IMAGE_WIDTH = 256;
+    private static final int IMAGE_LENGTH = 257;
+    private static final int BITS_PER_SAMPLE = 258;
+    private static final int COMPRESSION = 259;
+    private static final int PHOTOMETRIC_INTERPRETATION = 262;
+    private static final int IMAGE_DESCRIPTION = 270;
+    private static final int STRIP_OFFSETS = 273;
+    private static final int SAMPLES_PER_PIXEL = 277;
+    private static final int STRIP_BYTE_COUNTS = 279;
+    private static final int X_RESOLUTION = 282;
+    private static final int Y_RESOLUTION = 283;
+    private static final int PLANAR_CONFIGURATION = 284;
+    private static final int RESOLUTION_UNIT = 296;
+    private static final int TILE_OFFSETS = 324;
+    private static final int SAMPLE_FORMAT = 339;
+    private static final int NO_COMPRESSION = 1;
+    private static final int PHOTOMETRIC_RGB = 2;
+    private static final int PLANAR_CONFIGURATION_SEPARATE = 2;
+    private static final int RESOLUTION_UNIT_INCH = 2;
+    private static final int RESOLUTION_UNIT_CENTIMETER = 3;
+    private static final int SAMPLE_FORMAT_SIGNED = 2;
+    private static final int SAMPLE_FORMAT_FLOAT = 3;
+    private static final int BYTE = 1;
+    private static final int ASCII = 2;
+    private static final int SHORT = 3;
+    private static final int LONG = 4;
+    private static final int RATIONAL = 5;
+
+    private TiffLayoutReader() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    private record Page(
+            int width,
+            int height,
+            int bitsPerSample,
+            int samplesPerPixel,
+            int sampleFormat,
+            boolean separatePlanes,
+            long[] stripOffsets,
+            long[] stripByteCounts
+    ) {}
+
+    /**
+     * See {@link VolumeLayout#createFromTiff(Path)}.
+     */
+    public static VolumeLayout read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, 8, ByteOrder.LITTLE_ENDIAN);
+            ByteOrder byteOrder = switch (header.getShort(0)) {
+                case 0x4949 -> ByteOrder.LITTLE_ENDIAN;
+                case 0x4D4D -> ByteOrder.BIG_ENDIAN;
+                default -> throw new IOException(file + " is not a TIFF file");
+            };
+            header.order(byteOrder);
+            int magicNumber = header.getShort(2);
+            if (magicNumber == BIG_TIFF_MAGIC_NUMBER) {
+                throw new IOException("BigTIFF files are not supported");
+            } else if (magicNumber != MAGIC_NUMBER) {
+                throw new IOException(file + " is not a TIFF file");
+            }
+
+            List<Page> pages = new ArrayList<>();
+            Map<Integer, long[]> firstPageTags = null;
+            String description = null;
+            long ifdOffset = Integer.toUnsignedLong(header.getInt(4));
+            while (ifdOffset != 0) {
+                Map<Integer, long[]> tags = new HashMap<>();
+                String pageDescription = readDirectory(channel, ifdOffset, byteOrder, tags);
+                if (firstPageTags == null) {
+                    firstPageTags = tags;
+                    description = pageDescription;
+                }
+                pages.add(createPage(tags));
+
+                ByteBuffer entryCount = read(channel, ifdOffset, 2, byteOrder);
+                ifdOffset = Integer.toUnsignedLong(read(channel, ifdOffset + 2 + 12L * Short.toUnsignedInt(entryCount.getShort(0)), 4, byteOrder).getInt(0));
+            }
+            if (pages.isEmpty()) {
+                throw new IOException(file + " doesn't contain any image");
+            }
+
+            return createLayout(file, pages, firstPageTags, parseImageJDescription(description), byteOrder, channel.size());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static VolumeLayout createLayout(
+            Path file,
+            List<Page> pages,
+            Map<Integer, long[]> firstPageTags,
+            Map<String, String> imageJProperties,
+            ByteOrder byteOrder,
+            long fileSize
+    ) throws IOException {
+        Page firstPage = pages.get(0);
+        for (Page page: pages) {
+            if (page.width != firstPage.width || page.height != firstPage.height || page.bitsPerSample != firstPage.bitsPerSample ||
+                    page.samplesPerPixel != firstPage.samplesPerPixel || page.sampleFormat != firstPage.sampleFormat ||
+                    page.separatePlanes != firstPage.separatePlanes) {
+                throw new IOException("All pages of the TIFF file must have the same dimensions and pixel type");
+            }
+        }
+        PixelType pixelType = getPixelType(firstPage.bitsPerSample, firstPage.sampleFormat);
+
+        int nImages = Integer.parseInt(imageJProperties.getOrDefault("images", String.valueOf(pages.size())));
+        int sizeT = Integer.parseInt(imageJProperties.getOrDefault("frames", "1"));
+        int nPageChannels = Integer.parseInt(imageJProperties.getOrDefault("channels", "1"));
+        int sizeZ = Integer.parseInt(imageJProperties.getOrDefault("slices", String.valueOf(nImages / sizeT / nPageChannels)));
+        if ((long) sizeZ * sizeT * nPageChannels != nImages) {
+            throw new IOException(String.format(
+                    "%d images cannot be split into %d z-slices, %d time points and %d channels", nImages, sizeZ, sizeT, nPageChannels
+            ));
+        }
+
+        // Each page (or each sample of each page if samples are separate) is one block
+        int blocksPerPage = firstPage.separatePlanes ? firstPage.samplesPerPixel : 1;
+        long[] pageBlockOffsets = new long[nImages * blocksPerPage];
+        long blockSize = (long) firstPage.width * firstPage.height * pixelType.getBytesPerPixel() * (firstPage.separatePlanes ? 1 : firstPage.samplesPerPixel);
+        for (int i=0; i<pages.size() && i<nImages; i++) {
+            for (int s=0; s<blocksPerPage; s++) {
+                pageBlockOffsets[i * blocksPerPage + s] = getBlockOffset(pages.get(i), s, blocksPerPage, blockSize);
+            }
+        }
+        // ImageJ doesn't write a directory for each page of stacks larger than 4 GB, but stores images contiguously
+        for (int i=pages.size() * blocksPerPage; i<pageBlockOffsets.length; i++) {
+            pageBlockOffsets[i] = pageBlockOffsets[i - 1] + blockSize;
+        }
+        if (pageBlockOffsets[pageBlockOffsets.length - 1] + blockSize > fileSize) {
+            throw new IOException("The TIFF file is smaller than the images it describes");
+        }
+
+        if (nPageChannels > 1 && firstPage.samplesPerPixel > 1) {
+            throw new IOException("Hyperstacks with several samples per pixel are not supported");
+        }
+        // ImageJ stores channels first, then z-slices, then time points, so blocks are already ordered by (t, z, c)
+        boolean channelsInterleaved = nPageChannels == 1 && !firstPage.separatePlanes;
+        int nChannels = nPageChannels * firstPage.samplesPerPixel;
+
+        double[] pixelSize = getPixelSizeInMicrons(firstPageTags, imageJProperties);
+        return new VolumeLayout(
+                file,
+                firstPage.width,
+                firstPage.height,
+                sizeZ,
+                sizeT,
+                nChannels,
+                pixelType,
+                byteOrder,
+                channelsInterleaved,
+                firstPage.samplesPerPixel == 3 && pixelType == PixelType.UINT8 && nPageChannels == 1 &&
+                        getFirstValue(firstPageTags, PHOTOMETRIC_INTERPRETATION, 1) == PHOTOMETRIC_RGB,
+                pageBlockOffsets,
+                pixelSize[0],
+                pixelSize[1],
+                pixelSize[2]
+        );
+    }
+
+    /**
+     * Read an image file directory.
+     *
+     * @param tags  a map that will be filled with the numerical values of the tags of the directory
+     * @return the image description of the directory, or null if not present
+     */
+    private static String readDirectory(FileChannel channel, long offset, ByteOrder byteOrder, Map<Integer, long[]> tags) throws IOException {
+        int nEntries = Short.toUnsignedInt(read(channel, offset, 2, byteOrder).getShort(0));
+        ByteBuffer entries = read(channel, offset + 2, 12 * nEntries, byteOrder);
+        String description = null;
+
+        for (int i=0; i<nEntries; i++) {
+            int tag = Short.toUnsignedInt(entries.getShort(i * 12));
+            int type = Short.toUnsignedInt(entries.getShort(i * 12 + 2));
+            int count = entries.getInt(i * 12 + 4);
+            int valueSize = switch (type) {
+                case BYTE, ASCII -> 1;
+                case SHORT -> 2;
+                case LONG -> 4;
+                case RATIONAL -> 8;
+                default -> -1;
+            };
+            if (valueSize < 0 || count < 0) {
+                continue;
+            }
+
+            ByteBuffer values = valueSize * (long) count <= 4 ?
+                    entries.slice(i * 12 + 8, 4).order(byteOrder) :
+                    read(channel, Integer.toUnsignedLong(entries.getInt(i * 12 + 8)), valueSize * count, byteOrder);
+            if (type == ASCII) {
+                if (tag == IMAGE_DESCRIPTION) {
+                    byte[] bytes = new byte[count];
+                    values.get(0, bytes);
+                    description = new String(bytes, StandardCharsets.ISO_8859_1).replace("\0", "");
+                }
+            } else {
+                long[] numbers = new long[type == RATIONAL ? 2 * count : count];
+                for (int j=0; j<numbers.length; j++) {
+                    numbers[j] = switch (type) {
+                        case BYTE -> Byte.toUnsignedLong(values.get(j));
+                        case SHORT -> Short.toUnsignedLong(values.getShort(j * 2));
+                        default -> Integer.toUnsignedLong(values.getInt(j * 4));
+                    };
+                }
+                tags.put(tag, numbers);
+            }
+        }
+
+        return description;
+    }
+
+    private static Page createPage(Map<Integer, long[]> tags) throws IOException {
+        if (tags.containsKey(TILE_OFFSETS)) {
+            throw new IOException("Tiled TIFF files are not supported");
+        }
+        if (getFirstValue(tags, COMPRESSION, NO_COMPRESSION) != NO_COMPRESSION) {
+            throw new IOException("Compressed TIFF files are not supported");
+        }
+        if (!tags.containsKey(IMAGE_WIDTH) || !tags.containsKey(IMAGE_LENGTH) || !tags.containsKey(STRIP_OFFSETS) || !tags.containsKey(STRIP_BYTE_COUNTS)) {
+            throw new IOException("Missing required TIFF tags");
+        }
+
+        return new Page(
+                (int) getFirstValue(tags, IMAGE_WIDTH, 0),
+                (int) getFirstValue(tags, IMAGE_LENGTH, 0),
+                (int) getFirstValue(tags, BITS_PER_SAMPLE, 1),
+                (int) getFirstValue(tags, SAMPLES_PER_PIXEL, 1),
+                (int) getFirstValue(tags, SAMPLE_FORMAT, 1),
+                getFirstValue(tags, PLANAR_CONFIGURATION, 1) == PLANAR_CONFIGURATION_SEPARATE,
+                tags.get(STRIP_OFFSETS),
+                tags.get(STRIP_BYTE_COUNTS)
+        );
+    }
+
+    /**
+     * Get the offset of one block of a page, checking that the strips of this block are contiguous.
+     */
+    private static long getBlockOffset(Page page, int blockIndex, int blocksPerPage, long blockSize) throws IOException {
+        int stripsPerBlock = page.stripOffsets.length / blocksPerPage;
+        int firstStrip = blockIndex * stripsPerBlock;
+        long size = 0;
+
+        for (int i=firstStrip; i<firstStrip + stripsPerBlock; i++) {
+            if (page.stripOffsets[i] != page.stripOffsets[firstStrip] + size) {
+                throw new IOException("TIFF files with non-contiguous strips are not supported");
+            }
+            size += page.stripByteCounts[i];
+        }
+        if (size < blockSize) {
+            throw new IOException(String.format("TIFF strips contain %d bytes instead of %d", size, blockSize));
+        }
+
+        return page.stripOffsets[firstStrip];
+    }
+
+    private static PixelType getPixelType(int bitsPerSample, int sampleFormat) throws IOException {
+        if (sampleFormat == SAMPLE_FORMAT_FLOAT) {
+            return switch (bitsPerSample) {
+                case 32 -> PixelType.FLOAT32;
+                case 64 -> PixelType.FLOAT64;
+                default -> throw new IOException("Unsupported TIFF floating point size: " + bitsPerSample);
+            };
+        } else {
+            boolean signed = sampleFormat == SAMPLE_FORMAT_SIGNED;
+            if (bitsPerSample == 8 && !signed) {
+                return PixelType.UINT8;
+            } else if (bitsPerSample == 16) {
+                return signed ? PixelType.INT16 : PixelType.UINT16;
+            } else if (bitsPerSample == 32 && signed) {
+                return PixelType.INT32;
+            } else {
+                throw new IOException(String.format("Unsupported TIFF pixel type: %d bits, %s", bitsPerSample, signed ? "signed" : "unsigned"));
+            }
+        }
+    }
+
+    /**
+     * Parse the description written by ImageJ to the first page of the TIFF files it creates.
+     *
+     * @return the properties found in the description, or an empty map if the description was not written by ImageJ
+     */
+    private static Map<String, String> parseImageJDescription(String description) {
+        Map<String, String> properties = new HashMap<>();
+
+        if (description != null && description.startsWith("ImageJ=")) {
+            for (String line: description.split("\n")) {
+                int separator = line.indexOf('=');
+                if (separator > 0) {
+                    properties.put(line.substring(0, separator).strip(), line.substring(separator + 1).strip());
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * @return the size of a voxel in microns on the x, y and z axes, or NaN if unknown
+     */
+    private static double[] getPixelSizeInMicrons(Map<Integer, long[]> tags, Map<String, String> imageJProperties) {
+        double unitToMicrons;
+        String imageJUnit = imageJProperties.get("unit");
+        if (imageJUnit != null) {
+            unitToMicrons = switch (imageJUnit) {
+                case "micron", "um", "\u00B5m" -> 1;
+                case "mm" -> 1e3;
+                case "nm" -> 1e-3;
+                default -> Double.NaN;
+            };
+        } else {
+            unitToMicrons = switch ((int) getFirstValue(tags, RESOLUTION_UNIT, RESOLUTION_UNIT_INCH)) {
+                case RESOLUTION_UNIT_INCH -> 25400;
+                case RESOLUTION_UNIT_CENTIMETER -> 10000;
+                default -> Double.NaN;
+            };
+        }
+
+        return new double[] {
+                unitToMicrons / getRational(tags.get(X_RESOLUTION)),
+                unitToMicrons / getRational(tags.get(Y_RESOLUTION)),
+                unitToMicrons * Double.parseDouble(imageJProperties.getOrDefault("spacing", "NaN"))
+        };
+    }
+
+    private static double getRational(long[] values) {
+        return values == null || values.length < 2 || values[1] == 0 || values[0] == 0 ? Double.NaN : (double) values[0] / values[1];
+    }
+
+    private static long getFirstValue(Map<Integer, long[]> tags, int tag, long defaultValue) {
+        long[] values = tags.get(tag);
+        return values == null || values.length == 0 ? defaultValue : values[0];
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size, ByteOrder byteOrder) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(byteOrder);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of TIFF file");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,171 @@
+package qupath.ext.viewer.servers;
+
+import qupath.lib.images.servers.PixelType;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+
+/**
+ * <p>
+ *     The description of an uncompressed volume stored in a file, as read by {@link MappedVolumeImageServer}.
+ * </p>
+ * <p>
+ *     The voxels are stored in blocks that each contain one entire z-slice. If channels are interleaved,
+ *     a block contains all channels of a z-slice (the channel index varying fastest, then x, then y).
+ *     Otherwise, a block contains one channel of a z-slice (x varying fastest, then y).
+ * </p>
+ *
+ * @param dataFile  the file containing the voxels
+ * @param width  the number of voxels on the x-axis
+ * @param height  the number of voxels on the y-axis
+ * @param sizeZ  the number of z-slices
+ * @param sizeT  the number of time points
+ * @param nChannels  the number of channels
+ * @param pixelType  the type of the voxel values
+ * @param byteOrder  the byte order of the voxel values
+ * @param channelsInterleaved  whether the channels of a voxel are stored next to each other
+ * @param rgb  whether the volume should be displayed as a RGB image. This requires three
+ *             {@link PixelType#UINT8} channels
+ * @param blockOffsets  the position in bytes of each block in the file, indexed by
+ *                      {@code (t * sizeZ + z) * nChannels + c} if channels are not interleaved,
+ *                      and by {@code t * sizeZ + z} otherwise
+ * @param pixelWidthMicrons  the size of a voxel on the x-axis in microns, or NaN if unknown
+ * @param pixelHeightMicrons  the size of a voxel on the y-axis in microns, or NaN if unknown
+ * @param zSpacingMicrons  the size of a voxel on the z-axis in microns, or NaN if unknown
+ */
+public record VolumeLayout(
+        Path dataFile,
+        int width,
+        int height,
+        int sizeZ,
+        int sizeT,
+        int nChannels,
+        PixelType pixelType,
+        ByteOrder byteOrder,
+        boolean channelsInterleaved,
+        boolean rgb,
+        long[] blockOffsets,
+        double pixelWidthMicrons,
+        double pixelHeightMicrons,
+        double zSpacingMicrons
+) {
+
+    /**
+     * Create a volume layout.
+     *
+     * @throws IllegalArgumentException when a size is not positive, when the pixel type is {@link PixelType#INT8}
+     * or {@link PixelType#UINT32}, when the number of block offsets doesn't match the dimensions of the volume,
+     * when a block is larger than 2 GB, or when the volume is RGB but doesn't have three 8-bit channels
+     */
+    public VolumeLayout {
+        if (width < 1 || height < 1 || sizeZ < 1 || sizeT < 1 || nChannels < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid volume size: (x: %d, y: %d, z: %d, t: %d, c: %d)", width, height, sizeZ, sizeT, nChannels
+            ));
+        }
+        if (pixelType == PixelType.INT8 || pixelType == PixelType.UINT32) {
+            throw new IllegalArgumentException(pixelType + " is not supported");
+        }
+        if (blockOffsets.length != (long) sizeT * sizeZ * (channelsInterleaved ? 1 : nChannels)) {
+            throw new IllegalArgumentException(String.format(
+                    "%d block offsets provided for %d z-slices, %d time points and %d %s channels",
+                    blockOffsets.length, sizeZ, sizeT, nChannels, channelsInterleaved ? "interleaved" : "separate"
+            ));
+        }
+        if (rgb && (nChannels != 3 || pixelType != PixelType.UINT8)) {
+            throw new IllegalArgumentException("RGB volumes must have three " + PixelType.UINT8 + " channels");
+        }
+        if ((long) width * height * (channelsInterleaved ? nChannels : 1) * pixelType.getBytesPerPixel() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("A z-slice of %dx%d voxels is too large to be mapped", width, height));
+        }
+    }
+
+    /**
+     * Create the layout of a raw file containing a single time point, where blocks are stored
+     * one after the other (channel after channel if channels are not interleaved, then z-slice after z-slice).
+     *
+     * @param file  the raw file
+     * @param width  the number of voxels on the x-axis
+     * @param height  the number of voxels on the y-axis
+     * @param sizeZ  the number of z-slices
+     * @param nChannels  the number of channels
+     * @param pixelType  the type of the voxel values
+     * @param byteOrder  the byte order of the voxel values
+     * @param channelsInterleaved  whether the channels of a voxel are stored next to each other
+     * @param headerSize  the number of bytes to skip at the beginning of the file
+     * @return the layout of the raw file
+     * @throws IllegalArgumentException when the parameters are invalid (see {@link VolumeLayout})
+     */
+    public static VolumeLayout createFromRaw(
+            Path file,
+            int width,
+            int height,
+            int sizeZ,
+            int nChannels,
+            PixelType pixelType,
+            ByteOrder byteOrder,
+            boolean channelsInterleaved,
+            long headerSize
+    ) {
+        long blockSize = (long) width * height * (channelsInterleaved ? nChannels : 1) * pixelType.getBytesPerPixel();
+
+        return new VolumeLayout(
+                file,
+                width,
+                height,
+                sizeZ,
+                1,
+                nChannels,
+                pixelType,
+                byteOrder,
+                channelsInterleaved,
+                false,
+                LongStream.range(0, (long) sizeZ * (channelsInterleaved ? 1 : nChannels))
+                        .map(i -> headerSize + i * blockSize)
+                        .toArray(),
+                Double.NaN,
+                Double.NaN,
+                Double.NaN
+        );
+    }
+
+    /**
+     * Read the layout of a <a href="https://teem.sourceforge.net/nrrd/format.html">NRRD</a> file.
+     * The data must be raw encoded, either attached to the header or in a single detached file.
+     *
+     * @param file  the NRRD file (.nrrd or .nhdr)
+     * @return the layout of the volume described by the file
+     * @throws IOException when the file cannot be read or describes an unsupported volume
+     */
+    public static VolumeLayout createFromNrrd(Path file) throws IOException {
+        return NrrdLayoutReader.read(file);
+    }
+
+    /**
+     * Read the layout of an uncompressed TIFF file. Each z-slice must be stored in contiguous strips.
+     * Hyperstacks written by ImageJ are supported, including stacks larger than 4 GB.
+     *
+     * @param file  the TIFF file
+     * @return the layout of the volume described by the file
+     * @throws IOException when the file cannot be read or describes an unsupported volume
+     */
+    public static VolumeLayout createFromTiff(Path file) throws IOException {
+        return TiffLayoutReader.read(file);
+    }
+
+    /**
+     * @return the number of bytes of a block
+     */
+    public int getBlockSize() {
+        return width * height * (channelsInterleaved ? nChannels : 1) * pixelType.getBytesPerPixel();
+    }
+
+    /**
+     * @return the number of blocks per z-slice
+     */
+    public int getBlocksPerSlice() {
+        return channelsInterleaved ? 1 : nChannels;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Image servers providing volumes to the viewer.
+ */
+package qupath.ext.viewer.servers;
@@ -0,0 +1,303 @@
+package qupath.ext.viewer.slice;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.ext.viewer.bricks.BrickSource;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+import qupath.ext.viewer.metrics.FrameMetrics;
+import qupath.ext.viewer.metrics.PipelineStage;
+import qupath.ext.viewer.sampling.ObliqueSampler;
+import qupath.lib.common.ThreadTools;
+import qupath.lib.images.servers.ImageServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ *     A 2D panel displaying an oblique plane of an image face-on, which can be panned by dragging
+ *     the mouse and zoomed with the scroll wheel.
+ * </p>
+ * <p>
+ *     The plane is rendered like the 2D viewer of QuPath: it is divided into a grid of square tiles of
+ *     {@link #TILE_SIZE} samples, and only the tiles visible on the screen are sampled, in the background.
+ *     Samples of a tile are separated by the largest power of two not greater than the size of a screen
+ *     pixel, and are read from the lowest resolution level whose downsample is not greater than this spacing,
+ *     so the cost of a tile doesn't depend on the zoom. Rendered tiles are stored in a {@link SliceTileCache} and reused when panning,
+ *     zooming back, or displaying the same plane again. While a tile is being sampled, it is replaced
+ *     by the cached tiles of neighbouring spacings covering it, so zooming stays smooth.
+ * </p>
+ */
+public class SlicePanel extends Region {
+
+    /**
+     * The number of samples on each axis of a tile
+     */
+    public static final int TILE_SIZE = 256;
+    private static final Logger logger = LoggerFactory.getLogger(SlicePanel.class);
+    private static final double ZOOM_PER_SCROLL_UNIT = 1.005;
+    private static final int MAXIMUM_FALLBACK_EXPONENT_DIFFERENCE = 4;
+    private final ImageServer<BufferedImage> imageServer;
+    private final ObliqueSampler sampler;
+    private final SliceTileCache cache;
+    private final Canvas canvas = new Canvas();
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            ThreadTools.createThreadFactory("viewer-slice-", true)
+    );
+    private final Map<SliceTileKey, Long> pendingTiles = new ConcurrentHashMap<>();
+    private final AtomicBoolean repaintPending = new AtomicBoolean(false);
+    private Rectangle plane;
+    private double centerX;
+    private double centerY;
+    private double zoom = 0;
+    private double anchorX;
+    private double anchorY;
+    private double anchorCenterX;
+    private double anchorCenterY;
+    private volatile long generation = 0;
+
+    /**
+     * Create the panel. Nothing is displayed until a plane is set with {@link #setPlane(Rectangle)}.
+     *
+     * @param imageServer  the image to display
+     * @param cache  the cache storing the rendered tiles. It can be shared with other panels displaying the same image
+     */
+    public SlicePanel(ImageServer<BufferedImage> imageServer, SliceTileCache cache) {
+        this.imageServer = imageServer;
+        this.sampler = new ObliqueSampler(BrickSource.create(imageServer));
+        this.cache = cache;
+
+        getChildren().add(canvas);
+        setMinSize(0, 0);
+        visibleProperty().addListener((p, o, n) -> repaint());
+
+        setOnMousePressed(e -> {
+            anchorX = e.getX();
+            anchorY = e.getY();
+            anchorCenterX = centerX;
+            anchorCenterY = centerY;
+        });
+        setOnMouseDragged(e -> {
+            if (zoom > 0) {
+                centerX = anchorCenterX - (e.getX() - anchorX) / zoom;
+                centerY = anchorCenterY - (e.getY() - anchorY) / zoom;
+                repaint();
+            }
+        });
+        addEventHandler(ScrollEvent.SCROLL, e -> {
+            if (zoom > 0) {
+                // Keep the point under the cursor at the same place
+                double x = centerX + (e.getX() - getWidth() / 2) / zoom;
+                double y = centerY + (e.getY() - getHeight() / 2) / zoom;
+                zoom *= Math.pow(ZOOM_PER_SCROLL_UNIT, e.getDeltaY());
+                centerX = x - (e.getX() - getWidth() / 2) / zoom;
+                centerY = y - (e.getY() - getHeight() / 2) / zoom;
+                repaint();
+            }
+        });
+    }
+
+    /**
+     * Set the plane to display. The position and zoom of the panel are kept, except for the first plane,
+     * which is displayed entirely. Nothing is sampled while the panel is hidden.
+     * This must be called from the JavaFX Application Thread.
+     *
+     * @param plane  the plane to display, in full resolution pixel coordinates. The x-axis of the panel
+     *               follows the U vector of the rectangle, and its y-axis follows the V vector
+     */
+    public void setPlane(Rectangle plane) {
+        this.plane = plane;
+        repaint();
+    }
+
+    /**
+     * Stop sampling tiles in the background. This panel won't be updated anymore.
+     */
+    public void close() {
+        generation++;
+        executor.shutdownNow();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setWidth(getWidth());
+        canvas.setHeight(getHeight());
+        repaint();
+    }
+
+    private void repaint() {
+        long startTime = System.nanoTime();
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.setImageSmoothing(false);
+        graphics.setFill(Color.BLACK);
+        graphics.fillRect(0, 0, getWidth(), getHeight());
+
+        if (plane == null || !isVisible() || getWidth() <= 0 || getHeight() <= 0 || executor.isShutdown()) {
+            return;
+        }
+        double planeWidth = plane.getU().magnitude();
+        double planeHeight = plane.getV().magnitude();
+        if (zoom == 0) {
+            zoom = Math.min(getWidth() / planeWidth, getHeight() / planeHeight);
+            centerX = planeWidth / 2;
+            centerY = planeHeight / 2;
+        }
+
+        long currentGeneration = ++generation;
+        int spacingExponent = Math.max(0, (int) Math.floor(-Math.log(zoom) / Math.log(2)));
+        double tileExtent = TILE_SIZE * Math.scalb(1.0, spacingExponent);
+        double minX = Math.max(0, centerX - getWidth() / 2 / zoom);
+        double maxX = Math.min(planeWidth, centerX + getWidth() / 2 / zoom);
+        double minY = Math.max(0, centerY - getHeight() / 2 / zoom);
+        double maxY = Math.min(planeHeight, centerY + getHeight() / 2 / zoom);
+
+        for (int tileY = (int) (minY / tileExtent); tileY * tileExtent < maxY; tileY++) {
+            for (int tileX = (int) (minX / tileExtent); tileX * tileExtent < maxX; tileX++) {
+                SliceTileKey key = createKey(spacingExponent, tileX, tileY);
+                Image tile = cache.get(key);
+
+                if (tile == null) {
+                    drawFallback(graphics, key);
+                    requestTile(key, currentGeneration);
+                } else {
+                    drawTile(graphics, key, tile);
+                }
+            }
+        }
+        FrameMetrics.record(PipelineStage.SCENE_UPDATE, startTime);
+    }
+
+    /**
+     * Draw the cached tiles of other spacings covering a missing tile: first the closest coarser tile, and
+     * then the finer tiles on top of it.
+     */
+    private void drawFallback(GraphicsContext graphics, SliceTileKey key) {
+        for (int difference=1; difference<=MAXIMUM_FALLBACK_EXPONENT_DIFFERENCE; difference++) {
+            SliceTileKey coarserKey = createKey(key.spacingExponent() + difference, key.tileX() >> difference, key.tileY() >> difference);
+            Image coarserTile = cache.getIfPresent(coarserKey);
+
+            if (coarserTile != null) {
+                int size = TILE_SIZE >> difference;
+                int mask = (1 << difference) - 1;
+                drawTile(
+                        graphics,
+                        key,
+                        coarserTile,
+                        (key.tileX() & mask) * size,
+                        (key.tileY() & mask) * size,
+                        size
+                );
+                break;
+            }
+        }
+
+        if (key.spacingExponent() > 0) {
+            for (int j=0; j<2; j++) {
+                for (int i=0; i<2; i++) {
+                    SliceTileKey finerKey = createKey(key.spacingExponent() - 1, 2 * key.tileX() + i, 2 * key.tileY() + j);
+                    Image finerTile = cache.getIfPresent(finerKey);
+
+                    if (finerTile != null) {
+                        drawTile(graphics, finerKey, finerTile);
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawTile(GraphicsContext graphics, SliceTileKey key, Image tile) {
+        drawTile(graphics, key, tile, 0, 0, TILE_SIZE);
+    }
+
+    /**
+     * Draw a square part of a tile at the position of a tile, which can have a different spacing.
+     */
+    private void drawTile(GraphicsContext graphics, SliceTileKey key, Image tile, double sourceX, double sourceY, double sourceSize) {
+        double tileExtent = TILE_SIZE * key.getSpacing();
+        double x0 = Math.floor((key.tileX() * tileExtent - centerX) * zoom + getWidth() / 2);
+        double y0 = Math.floor((key.tileY() * tileExtent - centerY) * zoom + getHeight() / 2);
+        double x1 = Math.ceil(((key.tileX() + 1) * tileExtent - centerX) * zoom + getWidth() / 2);
+        double y1 = Math.ceil(((key.tileY() + 1) * tileExtent - centerY) * zoom + getHeight() / 2);
+
+        graphics.drawImage(tile, sourceX, sourceY, sourceSize, sourceSize, x0, y0, x1 - x0, y1 - y0);
+    }
+
+    private SliceTileKey createKey(int spacingExponent, int tileX, int tileY) {
+        return new SliceTileKey(plane, getLevel(Math.scalb(1.0, spacingExponent)), spacingExponent, tileX, tileY);
+    }
+
+    /**
+     * Sample a tile in the background, unless it is already being sampled. The tile is skipped if it
+     * is not visible anymore when its sampling starts.
+     */
+    private void requestTile(SliceTileKey key, long requestGeneration) {
+        if (pendingTiles.put(key, requestGeneration) == null) {
+            executor.execute(() -> {
+                try {
+                    while (true) {
+                        Long lastRequestGeneration = pendingTiles.get(key);
+                        if (lastRequestGeneration == null || lastRequestGeneration == generation) {
+                            break;
+                        }
+                        // Another request may have been made in the meantime, in which case the tile is still needed
+                        if (pendingTiles.remove(key, lastRequestGeneration)) {
+                            return;
+                        }
+                    }
+
+                    int[] colors = sampler.sampleARGB(key.getArea(TILE_SIZE), 0, key.level(), TILE_SIZE, TILE_SIZE);
+                    WritableImage tile = new WritableImage(TILE_SIZE, TILE_SIZE);
+                    tile.getPixelWriter().setPixels(0, 0, TILE_SIZE, TILE_SIZE, PixelFormat.getIntArgbInstance(), colors, 0, TILE_SIZE);
+                    cache.put(key, tile);
+
+                    pendingTiles.remove(key);
+                    requestRepaint();
+                } catch (IOException e) {
+                    pendingTiles.remove(key);
+                    logger.error("Cannot read {}", imageServer, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Repaint the panel from the JavaFX Application Thread. Several requests can be merged into one repaint.
+     * This function can be called from any thread.
+     */
+    private void requestRepaint() {
+        if (repaintPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                repaintPending.set(false);
+                repaint();
+            });
+        }
+    }
+
+    /**
+     * @return the lowest resolution level whose downsample is not greater than the provided one
+     */
+    private int getLevel(double downsample) {
+        int level = 0;
+        for (int i=1; i<imageServer.nResolutions(); i++) {
+            if (imageServer.getDownsampleForResolution(i) <= downsample) {
+                level = i;
+            }
+        }
+        return level;
+    }
+}
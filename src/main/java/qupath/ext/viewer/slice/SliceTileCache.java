@@ -0,0 +1,106 @@
+package qupath.ext.viewer.slice;
+
+import javafx.scene.image.Image;
+import qupath.ext.viewer.metrics.FrameMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ *     An in-memory cache of rendered slice tiles, limited by the number of bytes used by the stored tiles.
+ *     When the limit is reached, the least recently used tiles are discarded.
+ * </p>
+ * <p>
+ *     Tiles are identified by their plane, so one cache can be shared by several panels displaying
+ *     different planes of the same image, and tiles of a plane are reused when the plane is displayed again.
+ * </p>
+ * <p>
+ *     This class is thread-safe. Accesses are reported to {@link FrameMetrics} under the name {@link #METRICS_NAME}.
+ * </p>
+ */
+public class SliceTileCache {
+
+    /**
+     * The name under which accesses to slice tile caches are reported to {@link FrameMetrics}
+     */
+    public static final String METRICS_NAME = "Slice tiles";
+    /**
+     * The default maximum number of bytes the stored tiles can use
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE_BYTES = 128L * 1024 * 1024;
+    private final Map<SliceTileKey, Image> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maximumSizeBytes;
+    private long sizeBytes = 0;
+
+    /**
+     * Create a cache.
+     *
+     * @param maximumSizeBytes  the maximum number of bytes the stored tiles can use. Tiles are
+     *                          counted as 4 bytes per pixel
+     * @throws IllegalArgumentException when the maximum size is negative
+     */
+    public SliceTileCache(long maximumSizeBytes) {
+        if (maximumSizeBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size: " + maximumSizeBytes);
+        }
+
+        this.maximumSizeBytes = maximumSizeBytes;
+    }
+
+    /**
+     * Get a tile from the cache.
+     *
+     * @param key  the key of the tile
+     * @return the tile corresponding to the key, or null if it's not in the cache
+     */
+    public synchronized Image get(SliceTileKey key) {
+        Image tile = tiles.get(key);
+        FrameMetrics.recordCacheAccess(METRICS_NAME, tile != null);
+        return tile;
+    }
+
+    /**
+     * Get a tile from the cache without reporting the access to {@link FrameMetrics}, for example
+     * to find a replacement for a missing tile.
+     *
+     * @param key  the key of the tile
+     * @return the tile corresponding to the key, or null if it's not in the cache
+     */
+    public synchronized Image getIfPresent(SliceTileKey key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * Add a tile to the cache, replacing any tile with the same key.
+     *
+     * @param key  the key of the tile
+     * @param tile  the tile to add
+     */
+    public synchronized void put(SliceTileKey key, Image tile) {
+        Image previousTile = tiles.put(key, tile);
+        if (previousTile != null) {
+            sizeBytes -= getSizeBytes(previousTile);
+        }
+        sizeBytes += getSizeBytes(tile);
+
+        Iterator<Image> iterator = tiles.values().iterator();
+        while (sizeBytes > maximumSizeBytes && iterator.hasNext()) {
+            sizeBytes -= getSizeBytes(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Remove all tiles from the cache.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        sizeBytes = 0;
+    }
+
+    private static long getSizeBytes(Image tile) {
+        return (long) tile.getWidth() * (long) tile.getHeight() * Integer.BYTES;
+    }
+}
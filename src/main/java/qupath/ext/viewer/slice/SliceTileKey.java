@@ -0,0 +1,49 @@
+package qupath.ext.viewer.slice;
+
+import javafx.geometry.Point3D;
+import qupath.ext.viewer.mathsoperations.Rectangle;
+
+/**
+ * <p>
+ *     Identify a square tile of an oblique plane of an image.
+ * </p>
+ * <p>
+ *     The plane is given by a rectangle in full resolution pixel coordinates. The position (u, v) on the plane
+ *     is {@code p0 + u * U / |U| + v * V / |V|}, where U and V are the vectors defined in {@link Rectangle}, so
+ *     u and v are expressed in full resolution pixels. Samples of the tile are separated by {@code 2^spacingExponent}
+ *     full resolution pixels, so the tile (tileX, tileY) covers the positions
+ *     {@code [tileX * tileSize * 2^spacingExponent, (tileX + 1) * tileSize * 2^spacingExponent]} on the u-axis,
+ *     and similarly on the v-axis.
+ * </p>
+ *
+ * @param plane  the plane containing the tile, in full resolution pixel coordinates
+ * @param level  the resolution level the samples of the tile are read from
+ * @param spacingExponent  the base 2 logarithm of the distance between two samples of the tile, in full resolution pixels
+ * @param tileX  the index of the tile on the u-axis of the plane
+ * @param tileY  the index of the tile on the v-axis of the plane
+ */
+public record SliceTileKey(Rectangle plane, int level, int spacingExponent, int tileX, int tileY) {
+
+    /**
+     * @return the distance between two samples of the tile, in full resolution pixels
+     */
+    public double getSpacing() {
+        return Math.scalb(1.0, spacingExponent);
+    }
+
+    /**
+     * Get the rectangle covered by this tile, to be sampled with {@code tileSize} samples on each axis.
+     *
+     * @param tileSize  the number of samples on each axis of the tile
+     * @return the rectangle covered by this tile, in full resolution pixel coordinates
+     */
+    public Rectangle getArea(int tileSize) {
+        double extent = tileSize * getSpacing();
+        Point3D u = plane.getU().normalize().multiply(extent);
+        Point3D v = plane.getV().normalize().multiply(extent);
+
+        Point3D p0 = plane.p0().add(u.multiply(tileX)).add(v.multiply(tileY));
+        Point3D p1 = p0.add(u);
+        return new Rectangle(p0, p1, p1.add(v));
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Face-on 2D display of oblique planes of an image, rendered with a grid of cached tiles.
+ */
+package qupath.ext.viewer.slice;
@@ -0,0 +1,128 @@
+package qupath.ext.viewer.regression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * <p>
+ *     The measurements of a reference run of the suite, from which the budgets of later runs are computed
+ *     (see {@link Budgets#createFromBaseline(PoseMeasurement, Properties)}).
+ * </p>
+ * <p>
+ *     A baseline is stored as a properties file containing the parameters of the synthetic volume it was
+ *     measured on, and one measurement per pose. Times depend on the machine, so a baseline should be
+ *     recorded on the machine that runs the suite.
+ * </p>
+ */
+class Baseline {
+
+    private static final List<String> VOLUME_PROPERTIES = List.of(
+            "regression.width",
+            "regression.height",
+            "regression.depth",
+            "regression.tileSize",
+            "regression.latencyMillis",
+            "regression.jitterMillis"
+    );
+
+    private Baseline() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Write the measurements of a run as a baseline.
+     *
+     * @param file  the file to write
+     * @param measurements  the measurements of each pose
+     * @param properties  the parameters of the run
+     * @throws IOException when the file cannot be written
+     */
+    public static void write(Path file, List<PoseMeasurement> measurements, Properties properties) throws IOException {
+        Properties baseline = new Properties();
+        for (String name: VOLUME_PROPERTIES) {
+            baseline.setProperty(name, properties.getProperty(name));
+        }
+        for (int i=0; i<measurements.size(); i++) {
+            PoseMeasurement measurement = measurements.get(i);
+            baseline.setProperty(getKey(i, "name"), measurement.pose().name());
+            baseline.setProperty(getKey(i, "timeToFirstFrameMillis"), String.valueOf(measurement.timeToFirstFrameMillis()));
+            baseline.setProperty(getKey(i, "timeToFullResolutionMillis"), String.valueOf(measurement.timeToFullResolutionMillis()));
+            baseline.setProperty(getKey(i, "bytesRead"), String.valueOf(measurement.bytesRead()));
+            baseline.setProperty(getKey(i, "peakHeapBytes"), String.valueOf(measurement.peakHeapBytes()));
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            baseline.store(outputStream, "Baseline of the frame time regression suite");
+        }
+    }
+
+    /**
+     * Read a baseline.
+     *
+     * @param file  the file containing the baseline
+     * @param poses  the poses the baseline should contain, in order
+     * @param properties  the parameters of the current run
+     * @return the measurement of each pose of the baseline
+     * @throws IOException when the file cannot be read, or when it was recorded on a different volume
+     * or with different poses
+     */
+    public static List<PoseMeasurement> read(Path file, List<Pose> poses, Properties properties) throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            baseline.load(inputStream);
+        }
+
+        checkVolume(file, baseline, properties);
+
+        List<PoseMeasurement> measurements = new ArrayList<>();
+        for (int i=0; i<poses.size(); i++) {
+            if (!poses.get(i).name().equals(baseline.getProperty(getKey(i, "name")))) {
+                throw new IOException(String.format("The baseline %s doesn't contain the pose \"%s\"", file, poses.get(i).name()));
+            }
+
+            try {
+                measurements.add(new PoseMeasurement(
+                        poses.get(i),
+                        Double.parseDouble(baseline.getProperty(getKey(i, "timeToFirstFrameMillis"))),
+                        Double.parseDouble(baseline.getProperty(getKey(i, "timeToFullResolutionMillis"))),
+                        Long.parseLong(baseline.getProperty(getKey(i, "bytesRead"))),
+                        Long.parseLong(baseline.getProperty(getKey(i, "peakHeapBytes")))
+                ));
+            } catch (NullPointerException | NumberFormatException e) {
+                throw new IOException(String.format("Invalid measurement of the pose \"%s\" in %s", poses.get(i).name(), file), e);
+            }
+        }
+        return measurements;
+    }
+
+    /**
+     * Check that a file describing the poses of the suite was created for the synthetic volume of the current run.
+     *
+     * @param file  the file that was read
+     * @param fileProperties  the content of the file
+     * @param properties  the parameters of the current run
+     * @throws IOException when the file was created for a different volume
+     */
+    static void checkVolume(Path file, Properties fileProperties, Properties properties) throws IOException {
+        for (String name: VOLUME_PROPERTIES) {
+            if (!properties.getProperty(name).equals(fileProperties.getProperty(name))) {
+                throw new IOException(String.format(
+                        "%s was created with %s=%s instead of %s", file, name, fileProperties.getProperty(name), properties.getProperty(name)
+                ));
+            }
+        }
+    }
+
+    static String getKey(int poseIndex, String name) {
+        return String.format("pose.%d.%s", poseIndex, name);
+    }
+}
@@ -0,0 +1,80 @@
+package qupath.ext.viewer.regression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The maximum cost allowed to move a scene to a pose, computed from a {@link Baseline} or read from the
+ * committed {@link ReadBudgets}.
+ *
+ * @param timeToFirstFrameMillis  the maximum time before the first redraw
+ * @param timeToFullResolutionMillis  the maximum time before the first redraw at full resolution
+ * @param bytesReadPerPose  the maximum number of bytes read
+ * @param peakHeapBytes  the maximum heap usage
+ */
+record Budgets(
+        double timeToFirstFrameMillis,
+        double timeToFullResolutionMillis,
+        long bytesReadPerPose,
+        long peakHeapBytes
+) {
+
+    /**
+     * Compute the budgets of a pose from its baseline measurement and the tolerances defined in properties.
+     * Each budget is the baseline value increased by a relative tolerance. Times are also given an absolute
+     * tolerance, so that poses measured in a few milliseconds are not failed by scheduling noise.
+     *
+     * @param baseline  the measurement of the pose in the baseline
+     * @param properties  the properties containing the tolerances
+     * @return the budgets of the pose
+     * @throws NumberFormatException when a tolerance is missing or is not a number
+     */
+    public static Budgets createFromBaseline(PoseMeasurement baseline, Properties properties) {
+        double timeRatio = 1 + Double.parseDouble(properties.getProperty("regression.tolerance.timeRatio"));
+        double timeMillis = Double.parseDouble(properties.getProperty("regression.tolerance.timeMillis"));
+
+        return new Budgets(
+                baseline.timeToFirstFrameMillis() * timeRatio + timeMillis,
+                baseline.timeToFullResolutionMillis() * timeRatio + timeMillis,
+                (long) (baseline.bytesRead() * (1 + Double.parseDouble(properties.getProperty("regression.tolerance.bytesReadRatio")))),
+                (long) (baseline.peakHeapBytes() * (1 + Double.parseDouble(properties.getProperty("regression.tolerance.peakHeapRatio"))))
+        );
+    }
+
+    /**
+     * Create budgets that only limit the number of bytes read.
+     *
+     * @param bytesReadPerPose  the maximum number of bytes read
+     * @return budgets with no limit on times and heap usage
+     */
+    public static Budgets createFromBytesRead(long bytesReadPerPose) {
+        return new Budgets(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, bytesReadPerPose, Long.MAX_VALUE);
+    }
+
+    /**
+     * Check a measurement against these budgets.
+     *
+     * @param measurement  the measurement to check
+     * @return a description of each budget exceeded by the measurement, or an empty list
+     * if all budgets are respected
+     */
+    public List<String> findViolations(PoseMeasurement measurement) {
+        List<String> violations = new ArrayList<>();
+
+        if (measurement.timeToFirstFrameMillis() > timeToFirstFrameMillis) {
+            violations.add(String.format("time to first frame %.1f ms > %.1f ms", measurement.timeToFirstFrameMillis(), timeToFirstFrameMillis));
+        }
+        if (measurement.timeToFullResolutionMillis() > timeToFullResolutionMillis) {
+            violations.add(String.format("time to full resolution %.1f ms > %.1f ms", measurement.timeToFullResolutionMillis(), timeToFullResolutionMillis));
+        }
+        if (measurement.bytesRead() > bytesReadPerPose) {
+            violations.add(String.format("%d bytes read > %d bytes", measurement.bytesRead(), bytesReadPerPose));
+        }
+        if (measurement.peakHeapBytes() > peakHeapBytes) {
+            violations.add(String.format("peak heap %d bytes > %d bytes", measurement.peakHeapBytes(), peakHeapBytes));
+        }
+
+        return violations;
+    }
+}
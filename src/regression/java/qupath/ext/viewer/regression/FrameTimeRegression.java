@@ -0,0 +1,291 @@
+package qupath.ext.viewer.regression;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import qupath.ext.viewer.scene.FrameListener;
+import qupath.ext.viewer.scene.Scene3D;
+import qupath.ext.viewer.servers.SyntheticImageServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ *     Drive a {@link Scene3D} displaying a {@link SyntheticImageServer} through a scripted
+ *     sequence of slicer and camera poses, without showing any window.
+ * </p>
+ * <p>
+ *     For each pose, the time to the first frame, the time to the first full resolution frame,
+ *     the number of bytes read and the peak heap usage are measured. The number of bytes read is
+ *     checked against the {@link ReadBudgets} read from the file given as third argument. When a
+ *     {@link Baseline} exists, all measurements are also compared to budgets computed from it and the
+ *     tolerances defined in regression.properties (which can be overridden by system properties).
+ *     The measurements are written as CSV to the file given as first argument, and the process
+ *     exits with a non-zero status if a budget is exceeded or if the budgets or the baseline cannot be read.
+ * </p>
+ * <p>
+ *     The baseline is read from the file given as second argument. As times and heap usage depend on the
+ *     machine, there is no baseline by default. When the regression.recordBaseline property is true,
+ *     the measurements are written to this file instead of being compared to a baseline.
+ * </p>
+ */
+public class FrameTimeRegression {
+
+    private static final String PROPERTIES_FILE = "regression.properties";
+    private static final String PROPERTIES_PREFIX = "regression.";
+    private static final long POSE_TIMEOUT_MINUTES = 10;
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = readProperties();
+        Path csvFile = Path.of(args[0]);
+        Path baselineFile = Path.of(args[1]);
+        Path readBudgetsFile = Path.of(args[2]);
+        boolean recordBaseline = Boolean.parseBoolean(properties.getProperty("regression.recordBaseline"));
+        SyntheticImageServer imageServer = new SyntheticImageServer.Builder()
+                .width(Integer.parseInt(properties.getProperty("regression.width")))
+                .height(Integer.parseInt(properties.getProperty("regression.height")))
+                .sizeZ(Integer.parseInt(properties.getProperty("regression.depth")))
+                .tileSize(Integer.parseInt(properties.getProperty("regression.tileSize")), Integer.parseInt(properties.getProperty("regression.tileSize")))
+                .latency(Long.parseLong(properties.getProperty("regression.latencyMillis")), Long.parseLong(properties.getProperty("regression.jitterMillis")))
+                .build();
+
+        List<Pose> poses = createPoses(imageServer);
+        List<Budgets> readBudgets = null;
+        try {
+            readBudgets = ReadBudgets.read(readBudgetsFile, poses, properties);
+        } catch (IOException e) {
+            System.err.printf("Cannot read the budgets of bytes read (%s)%n", e.getMessage());
+            System.exit(2);
+        }
+
+        List<PoseMeasurement> baseline = null;
+        if (!recordBaseline) {
+            if (Files.exists(baselineFile)) {
+                try {
+                    baseline = Baseline.read(baselineFile, poses, properties);
+                } catch (IOException e) {
+                    System.err.printf(
+                            "Cannot read the baseline (%s). Record it again with 'gradlew frameTimeRegression -Pregression.recordBaseline=true'%n",
+                            e.getMessage()
+                    );
+                    System.exit(2);
+                }
+            } else {
+                System.out.printf(
+                        "No baseline found at %s, so only the number of bytes read is checked. Record one with " +
+                                "'gradlew frameTimeRegression -Pregression.recordBaseline=true' to also check times and heap usage%n",
+                        baselineFile
+                );
+            }
+        }
+
+        CountDownLatch toolkitStarted = new CountDownLatch(1);
+        Platform.setImplicitExit(false);
+        Platform.startup(toolkitStarted::countDown);
+        toolkitStarted.await();
+
+        List<PoseMeasurement> measurements;
+        try {
+            measurements = new FrameTimeRegression().run(imageServer, poses);
+        } finally {
+            Platform.exit();
+        }
+
+        boolean budgetsRespected = report(measurements, readBudgets, baseline, properties, csvFile);
+        if (recordBaseline) {
+            Baseline.write(baselineFile, measurements, properties);
+            System.out.printf("Baseline written to %s%n", baselineFile);
+        }
+        System.exit(budgetsRespected ? 0 : 1);
+    }
+
+    private List<PoseMeasurement> run(SyntheticImageServer imageServer, List<Pose> poses) throws Exception {
+        DoubleProperty translation = new SimpleDoubleProperty(imageServer.nZSlices() / 2.);
+        DoubleProperty xRotation = new SimpleDoubleProperty(0);
+        DoubleProperty yRotation = new SimpleDoubleProperty(0);
+        Scene3D scene = callOnFXThread(() -> new Scene3D(
+                new SimpleDoubleProperty(800),
+                new SimpleDoubleProperty(600),
+                imageServer,
+                translation,
+                xRotation,
+                yRotation
+        ));
+
+        List<PoseMeasurement> measurements = new ArrayList<>();
+        for (Pose pose: poses) {
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long bytesReadBefore = imageServer.getBytesRead();
+
+            AtomicLong firstFrameTime = new AtomicLong(-1);
+            CompletableFuture<Long> fullResolutionTime = new CompletableFuture<>();
+            FrameListener frameListener = fullResolution -> {
+                long now = System.nanoTime();
+                firstFrameTime.compareAndSet(-1, now);
+                if (fullResolution) {
+                    fullResolutionTime.complete(now);
+                }
+            };
+
+            long startTime = callOnFXThread(() -> {
+                scene.addFrameListener(frameListener);
+
+                long poseStartTime = System.nanoTime();
+                scene.setViewRotation(pose.viewXRotation(), pose.viewYRotation());
+                boolean slicerMoved = pose.translation() != translation.get() || pose.xRotation() != xRotation.get() || pose.yRotation() != yRotation.get();
+                translation.set(pose.translation());
+                xRotation.set(pose.xRotation());
+                yRotation.set(pose.yRotation());
+
+                if (!slicerMoved) {
+                    long now = System.nanoTime();
+                    firstFrameTime.compareAndSet(-1, now);
+                    fullResolutionTime.complete(now);
+                }
+                return poseStartTime;
+            });
+            long endTime = fullResolutionTime.get(POSE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            callOnFXThread(() -> {
+                scene.removeFrameListener(frameListener);
+                return null;
+            });
+
+            measurements.add(new PoseMeasurement(
+                    pose,
+                    (firstFrameTime.get() - startTime) / 1e6,
+                    (endTime - startTime) / 1e6,
+                    imageServer.getBytesRead() - bytesReadBefore,
+                    heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum()
+            ));
+        }
+
+        return measurements;
+    }
+
+    /**
+     * Create the poses to go through. Each pose only changes one slider of the
+     * slicer (or only the camera), as a user would do.
+     */
+    private static List<Pose> createPoses(SyntheticImageServer imageServer) {
+        double depth = imageServer.nZSlices();
+
+        return List.of(
+                new Pose("Translate slicer to 25%", depth * 0.25, 0, 0, 0, 0),
+                new Pose("Translate slicer to 75%", depth * 0.75, 0, 0, 0, 0),
+                new Pose("Rotate slicer 30 degrees on x", depth * 0.75, 30, 0, 0, 0),
+                new Pose("Rotate slicer 45 degrees on y", depth * 0.75, 30, 45, 0, 0),
+                new Pose("Rotate slicer 60 degrees on x", depth * 0.75, 60, 45, 0, 0),
+                new Pose("Rotate camera 30 degrees on x", depth * 0.75, 60, 45, 30, 0),
+                new Pose("Rotate camera 60 degrees on y", depth * 0.75, 60, 45, 30, 60),
+                new Pose("Translate slicer to 50%", depth * 0.5, 60, 45, 30, 60),
+                new Pose("Reset slicer rotation on y", depth * 0.5, 60, 0, 30, 60),
+                new Pose("Reset slicer rotation on x", depth * 0.5, 0, 0, 30, 60)
+        );
+    }
+
+    private static Properties readProperties() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = FrameTimeRegression.class.getResourceAsStream(PROPERTIES_FILE)) {
+            if (inputStream == null) {
+                throw new IOException(PROPERTIES_FILE + " not found");
+            }
+            properties.load(inputStream);
+        }
+
+        for (String name: System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PROPERTIES_PREFIX)) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Print the measurements, check them against the budgets of bytes read and the budgets computed
+     * from the baseline (if not null), and write them to the CSV file.
+     *
+     * @return whether all budgets are respected
+     */
+    private static boolean report(
+            List<PoseMeasurement> measurements,
+            List<Budgets> readBudgets,
+            List<PoseMeasurement> baseline,
+            Properties properties,
+            Path csvFile
+    ) throws IOException {
+        boolean budgetsRespected = true;
+
+        System.out.printf("%-30s %12s %12s %14s %14s%n", "Pose", "First (ms)", "Full (ms)", "Bytes read", "Peak heap");
+        for (int i=0; i<measurements.size(); i++) {
+            PoseMeasurement measurement = measurements.get(i);
+            System.out.printf(
+                    "%-30s %12.1f %12.1f %14d %14d%n",
+                    measurement.pose().name(),
+                    measurement.timeToFirstFrameMillis(),
+                    measurement.timeToFullResolutionMillis(),
+                    measurement.bytesRead(),
+                    measurement.peakHeapBytes()
+            );
+
+            List<String> violations = new ArrayList<>(readBudgets.get(i).findViolations(measurement));
+            if (baseline != null) {
+                violations.addAll(Budgets.createFromBaseline(baseline.get(i), properties).findViolations(measurement));
+            }
+            for (String violation: violations) {
+                System.err.printf("Budget exceeded for \"%s\": %s%n", measurement.pose().name(), violation);
+                budgetsRespected = false;
+            }
+        }
+
+        if (csvFile.getParent() != null) {
+            Files.createDirectories(csvFile.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(csvFile))) {
+            writer.println("pose,timeToFirstFrameMillis,timeToFullResolutionMillis,bytesRead,peakHeapBytes");
+            for (PoseMeasurement measurement: measurements) {
+                writer.printf(
+                        "\"%s\",%.3f,%.3f,%d,%d%n",
+                        measurement.pose().name(),
+                        measurement.timeToFirstFrameMillis(),
+                        measurement.timeToFullResolutionMillis(),
+                        measurement.bytesRead(),
+                        measurement.peakHeapBytes()
+                );
+            }
+        }
+
+        return budgetsRespected;
+    }
+
+    private static <T> T callOnFXThread(Supplier<T> supplier) throws InterruptedException, ExecutionException, TimeoutException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(supplier.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(POSE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,20 @@
+package qupath.ext.viewer.regression;
+
+/**
+ * A position of the slicer and of the camera of a scene.
+ *
+ * @param name  a short description of the pose
+ * @param translation  the translation of the slicer on the z-axis
+ * @param xRotation  the rotation of the slicer on the x-axis, in degrees
+ * @param yRotation  the rotation of the slicer on the y-axis, in degrees
+ * @param viewXRotation  the rotation of the camera on the x-axis, in degrees
+ * @param viewYRotation  the rotation of the camera on the y-axis, in degrees
+ */
+record Pose(
+        String name,
+        double translation,
+        double xRotation,
+        double yRotation,
+        double viewXRotation,
+        double viewYRotation
+) {}
@@ -0,0 +1,19 @@
+package qupath.ext.viewer.regression;
+
+/**
+ * The cost of moving a scene to a pose.
+ *
+ * @param pose  the pose the scene was moved to
+ * @param timeToFirstFrameMillis  the time between the pose change and the first redraw of the volume
+ * @param timeToFullResolutionMillis  the time between the pose change and the first redraw of the
+ *                                    volume at full resolution
+ * @param bytesRead  the number of bytes read from the image while moving to the pose
+ * @param peakHeapBytes  the maximum heap usage while moving to the pose
+ */
+record PoseMeasurement(
+        Pose pose,
+        double timeToFirstFrameMillis,
+        double timeToFullResolutionMillis,
+        long bytesRead,
+        long peakHeapBytes
+) {}
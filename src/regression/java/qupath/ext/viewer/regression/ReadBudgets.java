@@ -0,0 +1,59 @@
+package qupath.ext.viewer.regression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * <p>
+ *     The maximum number of bytes the suite can read for each pose, committed with the suite.
+ * </p>
+ * <p>
+ *     Unlike times and heap usage, the bytes read to reach a pose depend on the code and not on the machine,
+ *     so these budgets are checked on every run, even without a {@link Baseline}. They are stored as a properties
+ *     file containing the parameters of the synthetic volume they were defined for, and one budget per pose.
+ * </p>
+ */
+class ReadBudgets {
+
+    private ReadBudgets() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * Read the budgets.
+     *
+     * @param file  the file containing the budgets
+     * @param poses  the poses the file should contain, in order
+     * @param properties  the parameters of the current run
+     * @return the budgets of each pose, which only limit the number of bytes read
+     * @throws IOException when the file cannot be read, or when it was defined for a different volume
+     * or with different poses
+     */
+    public static List<Budgets> read(Path file, List<Pose> poses, Properties properties) throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            budgets.load(inputStream);
+        }
+
+        Baseline.checkVolume(file, budgets, properties);
+
+        List<Budgets> readBudgets = new ArrayList<>();
+        for (int i=0; i<poses.size(); i++) {
+            if (!poses.get(i).name().equals(budgets.getProperty(Baseline.getKey(i, "name")))) {
+                throw new IOException(String.format("The budgets %s don't contain the pose \"%s\"", file, poses.get(i).name()));
+            }
+
+            try {
+                readBudgets.add(Budgets.createFromBytesRead(Long.parseLong(budgets.getProperty(Baseline.getKey(i, "bytesRead")))));
+            } catch (NumberFormatException e) {
+                throw new IOException(String.format("Invalid budget of the pose \"%s\" in %s", poses.get(i).name(), file), e);
+            }
+        }
+        return readBudgets;
+    }
+}
@@ -0,0 +1,87 @@
+package qupath.ext.viewer.detections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ColorPaletteTest {
+
+    @Test
+    void Check_Colors_Given_Consecutive_Indices() {
+        ColorPalette palette = new ColorPalette();
+
+        int firstIndex = palette.getIndex(0xFF0000);
+        int secondIndex = palette.getIndex(0x00FF00);
+
+        Assertions.assertEquals(0, firstIndex);
+        Assertions.assertEquals(1, secondIndex);
+    }
+
+    @Test
+    void Check_Same_Color_Given_Same_Index() {
+        ColorPalette palette = new ColorPalette();
+        int expectedIndex = palette.getIndex(0x123456);
+        palette.getIndex(0x654321);
+
+        int index = palette.getIndex(0x123456);
+
+        Assertions.assertEquals(expectedIndex, index);
+    }
+
+    @Test
+    void Check_Colors_Stored_At_Their_Index() {
+        ColorPalette palette = new ColorPalette();
+        int firstIndex = palette.getIndex(0xFF0000);
+        int secondIndex = palette.getIndex(0x0000FF);
+
+        int[] colors = palette.getColors();
+
+        Assertions.assertEquals(ColorPalette.SIZE, colors.length);
+        Assertions.assertEquals(0xFF0000, colors[firstIndex]);
+        Assertions.assertEquals(0x0000FF, colors[secondIndex]);
+        Assertions.assertEquals(0, colors[ColorPalette.SIZE - 1]);
+    }
+
+    @Test
+    void Check_Colors_Returned_As_Copy() {
+        ColorPalette palette = new ColorPalette();
+        int index = palette.getIndex(0xFF0000);
+
+        palette.getColors()[index] = 0x00FF00;
+
+        Assertions.assertEquals(0xFF0000, palette.getColors()[index]);
+    }
+
+    @Test
+    void Check_Version_Changes_Only_When_Color_Added() {
+        ColorPalette palette = new ColorPalette();
+        int initialVersion = palette.getVersion();
+        palette.getIndex(0xFF0000);
+        int versionAfterAddition = palette.getVersion();
+
+        palette.getIndex(0xFF0000);
+
+        Assertions.assertNotEquals(initialVersion, versionAfterAddition);
+        Assertions.assertEquals(versionAfterAddition, palette.getVersion());
+    }
+
+    @Test
+    void Check_Colors_Of_Full_Palette_Given_Last_Index() {
+        ColorPalette palette = new ColorPalette();
+        for (int color=0; color<ColorPalette.SIZE; color++) {
+            palette.getIndex(color);
+        }
+        int version = palette.getVersion();
+
+        int index = palette.getIndex(ColorPalette.SIZE);
+
+        Assertions.assertEquals(ColorPalette.SIZE - 1, index);
+        Assertions.assertEquals(version, palette.getVersion());
+        Assertions.assertEquals(ColorPalette.SIZE - 1, palette.getColors()[ColorPalette.SIZE - 1]);
+    }
+
+    @Test
+    void Check_Texture_Coordinates_At_Pixel_Centers() {
+        Assertions.assertEquals(0.5f / ColorPalette.SIZE, ColorPalette.getTextureCoordinate(0));
+        Assertions.assertEquals(1 - 0.5f / ColorPalette.SIZE, ColorPalette.getTextureCoordinate(ColorPalette.SIZE - 1));
+    }
+}
@@ -0,0 +1,187 @@
+package qupath.ext.viewer.detections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class DetectionOctreeTest {
+
+    private static final double[] MIN = {0, 0, 0};
+    private static final double[] MAX = {100, 100, 100};
+
+    @Test
+    void Check_Detection_Inside_Box_Added() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+
+        boolean added = octree.add(new Detection(10, 20, 30, 1, 0));
+
+        Assertions.assertTrue(added);
+        Assertions.assertEquals(1, octree.size());
+    }
+
+    @Test
+    void Check_Detection_Outside_Box_Not_Added() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+
+        boolean added = octree.add(new Detection(10, 20, 130, 1, 0));
+
+        Assertions.assertFalse(added);
+        Assertions.assertEquals(0, octree.size());
+    }
+
+    @Test
+    void Check_Leaves_Contain_All_Detections() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        List<Detection> detections = createDetections(200);
+        detections.forEach(octree::add);
+
+        List<Detection> detectionsOfLeaves = new ArrayList<>();
+        for (DetectionOctree.Node leaf: octree.getLeaves((min, max, maximumRadius) -> true)) {
+            detectionsOfLeaves.addAll(leaf.getDetections());
+        }
+
+        Assertions.assertEquals(new HashSet<>(detections), new HashSet<>(detectionsOfLeaves));
+        Assertions.assertEquals(detections.size(), detectionsOfLeaves.size());
+    }
+
+    @Test
+    void Check_Leaves_Split_Above_Capacity() {
+        int leafCapacity = 4;
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, leafCapacity);
+        createDetections(200).forEach(octree::add);
+
+        List<DetectionOctree.Node> leaves = octree.getLeaves((min, max, maximumRadius) -> true);
+
+        Assertions.assertTrue(leaves.size() > 1);
+        for (DetectionOctree.Node leaf: leaves) {
+            Assertions.assertTrue(leaf.getDetections().size() <= leafCapacity);
+        }
+    }
+
+    @Test
+    void Check_Detections_Inside_Their_Leaf() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        createDetections(200).forEach(octree::add);
+
+        for (DetectionOctree.Node leaf: octree.getLeaves((min, max, maximumRadius) -> true)) {
+            for (Detection detection: leaf.getDetections()) {
+                Assertions.assertTrue(leaf.getMin()[0] <= detection.x() && detection.x() <= leaf.getMax()[0]);
+                Assertions.assertTrue(leaf.getMin()[1] <= detection.y() && detection.y() <= leaf.getMax()[1]);
+                Assertions.assertTrue(leaf.getMin()[2] <= detection.z() && detection.z() <= leaf.getMax()[2]);
+            }
+        }
+    }
+
+    @Test
+    void Check_Rejected_Boxes_Not_Visited() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        createDetections(200).forEach(octree::add);
+
+        List<DetectionOctree.Node> leaves = octree.getLeaves((min, max, maximumRadius) -> min[0] < 50);
+
+        Assertions.assertFalse(leaves.isEmpty());
+        for (DetectionOctree.Node leaf: leaves) {
+            for (Detection detection: leaf.getDetections()) {
+                Assertions.assertTrue(detection.x() < 50);
+            }
+        }
+    }
+
+    @Test
+    void Check_Filter_Given_Maximum_Radius() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        octree.add(new Detection(10, 10, 10, 2, 0));
+        octree.add(new Detection(20, 20, 20, 5, 0));
+        Set<Double> maximumRadii = new HashSet<>();
+
+        octree.getLeaves((min, max, maximumRadius) -> {
+            maximumRadii.add(maximumRadius);
+            return true;
+        });
+
+        Assertions.assertEquals(Set.of(5d), maximumRadii);
+    }
+
+    @Test
+    void Check_Detection_Removed() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        Detection detection = new Detection(10, 20, 30, 1, 0);
+        octree.add(detection);
+
+        boolean removed = octree.remove(detection);
+
+        Assertions.assertTrue(removed);
+        Assertions.assertEquals(0, octree.size());
+        Assertions.assertTrue(octree.getLeaves((min, max, maximumRadius) -> true).isEmpty());
+    }
+
+    @Test
+    void Check_Missing_Detection_Not_Removed() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        octree.add(new Detection(10, 20, 30, 1, 0));
+
+        boolean removed = octree.remove(new Detection(10, 20, 31, 1, 0));
+
+        Assertions.assertFalse(removed);
+        Assertions.assertEquals(1, octree.size());
+    }
+
+    @Test
+    void Check_Leaf_Version_Changes_When_Detection_Added() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        octree.add(new Detection(10, 10, 10, 1, 0));
+        DetectionOctree.Node leaf = octree.getLeaves((min, max, maximumRadius) -> true).get(0);
+        int version = leaf.getVersion();
+
+        octree.add(new Detection(11, 11, 11, 1, 0));
+
+        Assertions.assertNotEquals(version, leaf.getVersion());
+    }
+
+    @Test
+    void Check_Leaf_Version_Changes_When_Detection_Removed() {
+        DetectionOctree octree = new DetectionOctree(MIN, MAX, 4);
+        Detection detection = new Detection(10, 10, 10, 1, 0);
+        octree.add(detection);
+        octree.add(new Detection(11, 11, 11, 1, 0));
+        DetectionOctree.Node leaf = octree.getLeaves((min, max, maximumRadius) -> true).get(0);
+        int version = leaf.getVersion();
+
+        octree.remove(detection);
+
+        Assertions.assertNotEquals(version, leaf.getVersion());
+    }
+
+    @Test
+    void Check_Empty_Box_Rejected() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new DetectionOctree(new double[] {0, 0, 0}, new double[] {100, 0, 100}, 4)
+        );
+    }
+
+    @Test
+    void Check_Invalid_Leaf_Capacity_Rejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new DetectionOctree(MIN, MAX, 0));
+    }
+
+    private static List<Detection> createDetections(int numberOfDetections) {
+        Random random = new Random(42);
+        List<Detection> detections = new ArrayList<>();
+        for (int i=0; i<numberOfDetections; i++) {
+            detections.add(new Detection(
+                    random.nextDouble() * MAX[0],
+                    random.nextDouble() * MAX[1],
+                    random.nextDouble() * MAX[2],
+                    random.nextDouble(),
+                    random.nextInt(0xFFFFFF)
+            ));
+        }
+        return detections;
+    }
+}
@@ -0,0 +1,192 @@
+package qupath.ext.viewer.export;
+
+import javafx.geometry.Point3D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import qupath.ext.viewer.sampling.SlabProjection;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+public class BatchResliceJobTest {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    @Test
+    void Check_Valid_Job_Created() {
+        Assertions.assertDoesNotThrow(() -> new BatchResliceJob(new Point3D(0, 0, 1), 0, 0, SlabProjection.MAXIMUM, 2, MEGABYTE));
+    }
+
+    @Test
+    void Check_Null_Normal_Rejected() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new BatchResliceJob(new Point3D(0, 0, 0), 0, 0, SlabProjection.MAXIMUM, 2, MEGABYTE)
+        );
+    }
+
+    @Test
+    void Check_Negative_Thickness_Rejected() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new BatchResliceJob(new Point3D(0, 0, 1), 0, -1, SlabProjection.MAXIMUM, 2, MEGABYTE)
+        );
+    }
+
+    @Test
+    void Check_NaN_Thickness_Rejected() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new BatchResliceJob(new Point3D(0, 0, 1), 0, Double.NaN, SlabProjection.MAXIMUM, 2, MEGABYTE)
+        );
+    }
+
+    @Test
+    void Check_No_Worker_Rejected() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new BatchResliceJob(new Point3D(0, 0, 1), 0, 0, SlabProjection.MAXIMUM, 0, MEGABYTE)
+        );
+    }
+
+    @Test
+    void Check_Budget_Below_One_Megabyte_Rejected() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new BatchResliceJob(new Point3D(0, 0, 1), 0, 0, SlabProjection.MAXIMUM, 2, MEGABYTE - 1)
+        );
+    }
+
+    @Test
+    void Check_Bytes_Rounded_Up_To_Megabytes() {
+        Assertions.assertEquals(0, BatchResliceJob.toMegabytes(0));
+        Assertions.assertEquals(1, BatchResliceJob.toMegabytes(1));
+        Assertions.assertEquals(1, BatchResliceJob.toMegabytes(MEGABYTE));
+        Assertions.assertEquals(2, BatchResliceJob.toMegabytes(MEGABYTE + 1));
+    }
+
+    @Test
+    void Check_Megabytes_Limited_To_Integer_Range() {
+        Assertions.assertEquals(Integer.MAX_VALUE, BatchResliceJob.toMegabytes(Long.MAX_VALUE));
+    }
+
+    @Test
+    void Check_Available_Memory_Reserved() {
+        Semaphore memory = new Semaphore(10);
+
+        boolean acquired = BatchResliceJob.acquire(memory, 4, () -> false);
+
+        Assertions.assertTrue(acquired);
+        Assertions.assertEquals(6, memory.availablePermits());
+    }
+
+    @Test
+    void Check_Reservation_Stops_When_Cancelled() {
+        Semaphore memory = new Semaphore(10);
+
+        boolean acquired = BatchResliceJob.acquire(memory, 11, () -> true);
+
+        Assertions.assertFalse(acquired);
+        Assertions.assertEquals(10, memory.availablePermits());
+    }
+
+    @Test
+    void Check_Reservation_Waits_For_Released_Memory() throws InterruptedException {
+        Semaphore memory = new Semaphore(0);
+        Thread releasingThread = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            memory.release(4);
+        });
+        releasingThread.start();
+
+        boolean acquired = BatchResliceJob.acquire(memory, 4, () -> false);
+        releasingThread.join();
+
+        Assertions.assertTrue(acquired);
+        Assertions.assertEquals(0, memory.availablePermits());
+    }
+
+    @Test
+    void Check_Reservation_Stops_When_Interrupted() {
+        Semaphore memory = new Semaphore(0);
+        Thread.currentThread().interrupt();
+
+        boolean acquired = BatchResliceJob.acquire(memory, 4, () -> false);
+
+        Assertions.assertFalse(acquired);
+        Assertions.assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    void Check_Successful_Report_Written() {
+        StringWriter output = new StringWriter();
+
+        BatchResliceJob.writeReport(
+                new PrintWriter(output),
+                new BatchResliceJob.Report("image", Path.of("directory", "image-1.tif"), 1.5, null)
+        );
+
+        Assertions.assertEquals(String.format("\"image\",\"image-1.tif\",1.500,%n"), output.toString());
+    }
+
+    @Test
+    void Check_Report_Text_Quoted() {
+        StringWriter output = new StringWriter();
+
+        BatchResliceJob.writeReport(
+                new PrintWriter(output),
+                new BatchResliceJob.Report("image, \"1\"", Path.of("image-1.tif"), 0, "Cannot read \"image\", sorry")
+        );
+
+        Assertions.assertEquals(
+                String.format("\"image, \"\"1\"\"\",\"image-1.tif\",0.000,\"Cannot read \"\"image\"\", sorry\"%n"),
+                output.toString()
+        );
+    }
+
+    @Test
+    void Check_Report_Independent_Of_Default_Locale() {
+        Locale defaultLocale = Locale.getDefault();
+        StringWriter output = new StringWriter();
+
+        try {
+            Locale.setDefault(Locale.FRANCE);
+            BatchResliceJob.writeReport(
+                    new PrintWriter(output),
+                    new BatchResliceJob.Report("image", Path.of("image-1.tif"), 1234.5, null)
+            );
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+
+        Assertions.assertEquals(String.format("\"image\",\"image-1.tif\",1234.500,%n"), output.toString());
+    }
+
+    @Test
+    void Check_Report_File_Written_Without_Images(@TempDir Path directory) throws IOException {
+        Path outputDirectory = directory.resolve("output");
+        BatchResliceJob job = new BatchResliceJob(new Point3D(0, 0, 1), 0, 0, SlabProjection.MAXIMUM, 2, MEGABYTE);
+        List<BatchResliceJob.Report> reports = new ArrayList<>();
+
+        List<BatchResliceJob.Report> returnedReports = job.run(List.of(), outputDirectory, reports::add, () -> false);
+
+        Assertions.assertTrue(returnedReports.isEmpty());
+        Assertions.assertTrue(reports.isEmpty());
+        Assertions.assertEquals(
+                List.of("image,file,durationSeconds,error"),
+                Files.readAllLines(outputDirectory.resolve(BatchResliceJob.REPORT_FILE_NAME))
+        );
+    }
+}
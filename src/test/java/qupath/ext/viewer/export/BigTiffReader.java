@@ -0,0 +1,227 @@
+package qupath.ext.viewer.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A minimal reader of the little-endian, tiled and Deflate-compressed BigTIFF files written by
+ * {@link TiledTiffWriter}, as the Java Image I/O API doesn't support BigTIFF.
+ */
+class BigTiffReader {
+
+    private static final int IMAGE_WIDTH = 256;
+    private static final int IMAGE_LENGTH = 257;
+    private static final int BITS_PER_SAMPLE = 258;
+    private static final int COMPRESSION = 259;
+    private static final int PHOTOMETRIC_INTERPRETATION = 262;
+    private static final int IMAGE_DESCRIPTION = 270;
+    private static final int SAMPLES_PER_PIXEL = 277;
+    private static final int TILE_WIDTH = 322;
+    private static final int TILE_LENGTH = 323;
+    private static final int TILE_OFFSETS = 324;
+    private static final int TILE_BYTE_COUNTS = 325;
+    private static final int SAMPLE_FORMAT = 339;
+    private static final int SAMPLE_FORMAT_FLOAT = 3;
+    private static final int ASCII = 2;
+    private static final int SHORT = 3;
+    private static final int LONG = 4;
+    private static final int LONG8 = 16;
+
+    private BigTiffReader() {
+        throw new AssertionError("This class is not instantiable.");
+    }
+
+    /**
+     * A page of a TIFF file.
+     *
+     * @param width  the width of the page
+     * @param height  the height of the page
+     * @param samplesPerPixel  the number of samples of each pixel
+     * @param bitsPerSample  the number of bits of each sample
+     * @param sampleFormat  the TIFF code of the type of the samples
+     * @param photometricInterpretation  the TIFF code of the color space of the pixels
+     * @param compression  the TIFF code of the compression of the tiles
+     * @param tileWidth  the width of the tiles
+     * @param tileHeight  the height of the tiles
+     * @param description  the image description of the page, or null if not present
+     * @param samples  the samples of the pixels, stored pixel by pixel and row by row
+     */
+    public record Page(
+            int width,
+            int height,
+            int samplesPerPixel,
+            int bitsPerSample,
+            int sampleFormat,
+            int photometricInterpretation,
+            int compression,
+            int tileWidth,
+            int tileHeight,
+            String description,
+            double[] samples
+    ) {
+
+        /**
+         * @return the value of a sample of the page
+         */
+        public double getSample(int x, int y, int band) {
+            return samples[(y * width + x) * samplesPerPixel + band];
+        }
+    }
+
+    /**
+     * Read all pages of a BigTIFF file.
+     *
+     * @param path  the path of the file
+     * @return the pages of the file
+     * @throws IOException when the file cannot be read, or is not a little-endian BigTIFF file
+     */
+    public static List<Page> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, 16);
+            if (header.getShort(0) != 0x4949 || header.getShort(2) != 43 || header.getShort(4) != 8) {
+                throw new IOException(path + " is not a little-endian BigTIFF file");
+            }
+
+            List<Page> pages = new ArrayList<>();
+            long directoryOffset = header.getLong(8);
+            while (directoryOffset != 0) {
+                long nEntries = read(channel, directoryOffset, 8).getLong(0);
+                ByteBuffer entries = read(channel, directoryOffset + 8, (int) (20 * nEntries));
+                pages.add(readPage(channel, entries, (int) nEntries));
+
+                directoryOffset = read(channel, directoryOffset + 8 + 20 * nEntries, 8).getLong(0);
+            }
+            return pages;
+        }
+    }
+
+    private static Page readPage(FileChannel channel, ByteBuffer entries, int nEntries) throws IOException {
+        Map<Integer, long[]> tags = new HashMap<>();
+        String description = null;
+
+        for (int i=0; i<nEntries; i++) {
+            int tag = Short.toUnsignedInt(entries.getShort(i * 20));
+            int type = Short.toUnsignedInt(entries.getShort(i * 20 + 2));
+            int count = (int) entries.getLong(i * 20 + 4);
+            int valueSize = switch (type) {
+                case ASCII -> 1;
+                case SHORT -> 2;
+                case LONG -> 4;
+                case LONG8 -> 8;
+                default -> throw new IOException("Unexpected TIFF type " + type);
+            };
+            ByteBuffer values = (long) valueSize * count <= 8 ?
+                    entries.slice(i * 20 + 12, 8).order(ByteOrder.LITTLE_ENDIAN) :
+                    read(channel, entries.getLong(i * 20 + 12), valueSize * count);
+
+            if (type == ASCII) {
+                if (tag == IMAGE_DESCRIPTION) {
+                    byte[] bytes = new byte[count];
+                    values.get(0, bytes);
+                    description = new String(bytes, StandardCharsets.ISO_8859_1).replace("\0", "");
+                }
+            } else {
+                long[] numbers = new long[count];
+                for (int j=0; j<count; j++) {
+                    numbers[j] = switch (type) {
+                        case SHORT -> Short.toUnsignedLong(values.getShort(j * 2));
+                        case LONG -> Integer.toUnsignedLong(values.getInt(j * 4));
+                        default -> values.getLong(j * 8);
+                    };
+                }
+                tags.put(tag, numbers);
+            }
+        }
+
+        int width = (int) tags.get(IMAGE_WIDTH)[0];
+        int height = (int) tags.get(IMAGE_LENGTH)[0];
+        int samplesPerPixel = (int) tags.get(SAMPLES_PER_PIXEL)[0];
+        int bitsPerSample = (int) tags.get(BITS_PER_SAMPLE)[0];
+        int sampleFormat = (int) tags.get(SAMPLE_FORMAT)[0];
+        int tileWidth = (int) tags.get(TILE_WIDTH)[0];
+        int tileHeight = (int) tags.get(TILE_LENGTH)[0];
+        long[] tileOffsets = tags.get(TILE_OFFSETS);
+        long[] tileByteCounts = tags.get(TILE_BYTE_COUNTS);
+        int bytesPerSample = bitsPerSample / 8;
+        int tilesPerRow = (width + tileWidth - 1) / tileWidth;
+        double[] samples = new double[width * height * samplesPerPixel];
+
+        for (int tile=0; tile<tileOffsets.length; tile++) {
+            ByteBuffer pixels = inflate(
+                    read(channel, tileOffsets[tile], (int) tileByteCounts[tile]),
+                    tileWidth * tileHeight * samplesPerPixel * bytesPerSample
+            );
+            int xStart = tile % tilesPerRow * tileWidth;
+            int yStart = tile / tilesPerRow * tileHeight;
+
+            for (int j=0; j<tileHeight && yStart + j<height; j++) {
+                for (int i=0; i<tileWidth && xStart + i<width; i++) {
+                    for (int s=0; s<samplesPerPixel; s++) {
+                        int position = ((j * tileWidth + i) * samplesPerPixel + s) * bytesPerSample;
+                        samples[((yStart + j) * width + xStart + i) * samplesPerPixel + s] = switch (bytesPerSample) {
+                            case 1 -> Byte.toUnsignedInt(pixels.get(position));
+                            case 2 -> Short.toUnsignedInt(pixels.getShort(position));
+                            default -> sampleFormat == SAMPLE_FORMAT_FLOAT ? pixels.getFloat(position) : Integer.toUnsignedLong(pixels.getInt(position));
+                        };
+                    }
+                }
+            }
+        }
+
+        return new Page(
+                width,
+                height,
+                samplesPerPixel,
+                bitsPerSample,
+                sampleFormat,
+                (int) tags.get(PHOTOMETRIC_INTERPRETATION)[0],
+                (int) tags.get(COMPRESSION)[0],
+                tileWidth,
+                tileHeight,
+                description,
+                samples
+        );
+    }
+
+    private static ByteBuffer inflate(ByteBuffer compressed, int size) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] bytes = new byte[size];
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                length += inflater.inflate(bytes, length, size - length);
+            }
+            if (length != size) {
+                throw new IOException(String.format("Tile of %d bytes instead of %d", length, size));
+            }
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of TIFF file");
+            }
+        }
+        return buffer.flip();
+    }
+}
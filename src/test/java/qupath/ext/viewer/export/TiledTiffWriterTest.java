@@ -0,0 +1,242 @@
+package qupath.ext.viewer.export;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TiledTiffWriterTest {
+
+    private static final int TILE_SIZE = 16;
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+
+    @Test
+    void Check_File_Written_As_BigTiff(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, null)) {
+            writer.writePage(createPage(0));
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(path), 0, 8).order(ByteOrder.LITTLE_ENDIAN);
+
+        Assertions.assertEquals(0x4949, header.getShort(0));
+        Assertions.assertEquals(43, header.getShort(2));
+        Assertions.assertEquals(8, header.getShort(4));
+    }
+
+    @Test
+    void Check_Pages_Read_After_Being_Written(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+        List<BufferedImage> expectedPages = List.of(createPage(0), createPage(1), createPage(2));
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, null)) {
+            for (BufferedImage page: expectedPages) {
+                writer.writePage(page);
+            }
+        }
+
+        List<BigTiffReader.Page> pages = BigTiffReader.read(path);
+
+        Assertions.assertEquals(expectedPages.size(), pages.size());
+        for (int i=0; i<pages.size(); i++) {
+            assertPagesEqual(expectedPages.get(i).getRaster(), pages.get(i));
+            Assertions.assertEquals(16, pages.get(i).bitsPerSample());
+        }
+    }
+
+    @Test
+    void Check_Pages_Read_After_Being_Written_Strip_By_Strip(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+        List<WritableRaster> expectedPages = List.of(createFloatRaster(0), createFloatRaster(1));
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, null)) {
+            writer.startPages(expectedPages.size(), WIDTH, HEIGHT);
+            for (int y=0; y<HEIGHT; y+=TILE_SIZE) {
+                int top = y;
+                int rows = Math.min(TILE_SIZE, HEIGHT - y);
+                writer.writeStrip(expectedPages.stream()
+                        .map(page -> page.createChild(0, top, WIDTH, rows, 0, 0, null))
+                        .toList()
+                );
+            }
+        }
+
+        List<BigTiffReader.Page> pages = BigTiffReader.read(path);
+
+        Assertions.assertEquals(expectedPages.size(), pages.size());
+        for (int i=0; i<pages.size(); i++) {
+            assertPagesEqual(expectedPages.get(i), pages.get(i));
+            Assertions.assertEquals(32, pages.get(i).bitsPerSample());
+        }
+    }
+
+    @Test
+    void Check_RGB_Page_Read_After_Being_Written(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+        BufferedImage expectedPage = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y=0; y<HEIGHT; y++) {
+            for (int x=0; x<WIDTH; x++) {
+                expectedPage.setRGB(x, y, x << 16 | y << 8 | (x + y));
+            }
+        }
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, null)) {
+            writer.writePage(expectedPage);
+        }
+
+        BigTiffReader.Page page = BigTiffReader.read(path).get(0);
+
+        Assertions.assertEquals(3, page.samplesPerPixel());
+        Assertions.assertEquals(2, page.photometricInterpretation());
+        assertPagesEqual(expectedPage.getRaster(), page);
+    }
+
+    @Test
+    void Check_Number_Of_Pages_Counted(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, null)) {
+            writer.writePage(createPage(0));
+            writer.writePage(createPage(1));
+
+            Assertions.assertEquals(2, writer.getNumberOfPages());
+        }
+    }
+
+    @Test
+    void Check_Incomplete_Pages_Not_Counted(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, null)) {
+            writer.startPages(2, WIDTH, HEIGHT);
+            writer.writeStrip(List.of(
+                    createFloatRaster(0).createChild(0, 0, WIDTH, TILE_SIZE, 0, 0, null),
+                    createFloatRaster(1).createChild(0, 0, WIDTH, TILE_SIZE, 0, 0, null)
+            ));
+
+            Assertions.assertEquals(0, writer.getNumberOfPages());
+        }
+    }
+
+    @Test
+    void Check_Pages_Tiled_And_Compressed(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, null)) {
+            writer.writePage(createPage(0));
+        }
+
+        BigTiffReader.Page page = BigTiffReader.read(path).get(0);
+
+        Assertions.assertEquals(TILE_SIZE, page.tileWidth());
+        Assertions.assertEquals(TILE_SIZE, page.tileHeight());
+        Assertions.assertEquals(8, page.compression());
+    }
+
+    @Test
+    void Check_Description_Written_In_First_Page(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("image.tif");
+        String expectedDescription = "ImageJ=1.11a\nimages=2\nslices=2\n";
+        try (TiledTiffWriter writer = new TiledTiffWriter(path, TILE_SIZE, expectedDescription)) {
+            writer.writePage(createPage(0));
+            writer.writePage(createPage(1));
+        }
+
+        List<BigTiffReader.Page> pages = BigTiffReader.read(path);
+
+        Assertions.assertEquals(expectedDescription, pages.get(0).description());
+        Assertions.assertNull(pages.get(1).description());
+    }
+
+    @Test
+    void Check_Strip_Of_Wrong_Size_Rejected(@TempDir Path directory) throws IOException {
+        try (TiledTiffWriter writer = new TiledTiffWriter(directory.resolve("image.tif"), TILE_SIZE, null)) {
+            writer.startPages(1, WIDTH, HEIGHT);
+
+            Assertions.assertThrows(
+                    IllegalArgumentException.class,
+                    () -> writer.writeStrip(List.of(createFloatRaster(0).createChild(0, 0, WIDTH, TILE_SIZE - 1, 0, 0, null)))
+            );
+        }
+    }
+
+    @Test
+    void Check_Pages_Started_Before_Previous_Complete_Rejected(@TempDir Path directory) throws IOException {
+        try (TiledTiffWriter writer = new TiledTiffWriter(directory.resolve("image.tif"), TILE_SIZE, null)) {
+            writer.startPages(1, WIDTH, HEIGHT);
+
+            Assertions.assertThrows(IllegalStateException.class, () -> writer.startPages(1, WIDTH, HEIGHT));
+        }
+    }
+
+    @Test
+    void Check_Tile_Size_Not_Multiple_Of_16_Rejected(@TempDir Path directory) {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new TiledTiffWriter(directory.resolve("image.tif"), 20, null)
+        );
+    }
+
+    @Test
+    void Check_Non_Positive_Tile_Size_Rejected(@TempDir Path directory) {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new TiledTiffWriter(directory.resolve("image.tif"), 0, null)
+        );
+    }
+
+    /**
+     * @return a 16-bit image whose size is not a multiple of the tile size, so that it has partial tiles
+     */
+    private static BufferedImage createPage(int index) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y=0; y<image.getHeight(); y++) {
+            for (int x=0; x<image.getWidth(); x++) {
+                raster.setSample(x, y, 0, 1000 * index + 40 * y + x);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @return a 32-bit floating point raster of the same size as {@link #createPage(int)}
+     */
+    private static WritableRaster createFloatRaster(int index) {
+        WritableRaster raster = new ComponentColorModel(
+                ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false,
+                false,
+                Transparency.OPAQUE,
+                DataBuffer.TYPE_FLOAT
+        ).createCompatibleWritableRaster(WIDTH, HEIGHT);
+        for (int y=0; y<HEIGHT; y++) {
+            for (int x=0; x<WIDTH; x++) {
+                raster.setSample(x, y, 0, index - 0.5f * y + 0.25f * x);
+            }
+        }
+        return raster;
+    }
+
+    private static void assertPagesEqual(WritableRaster expectedPage, BigTiffReader.Page page) {
+        Assertions.assertEquals(expectedPage.getWidth(), page.width());
+        Assertions.assertEquals(expectedPage.getHeight(), page.height());
+        Assertions.assertEquals(expectedPage.getNumBands(), page.samplesPerPixel());
+        for (int y=0; y<page.height(); y++) {
+            for (int x=0; x<page.width(); x++) {
+                for (int band=0; band<page.samplesPerPixel(); band++) {
+                    Assertions.assertEquals(expectedPage.getSampleDouble(x, y, band), page.getSample(x, y, band));
+                }
+            }
+        }
+    }
+}